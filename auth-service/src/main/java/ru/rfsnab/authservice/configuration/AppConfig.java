@@ -1,6 +1,7 @@
 package ru.rfsnab.authservice.configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -12,9 +13,10 @@ import ru.rfsnab.authservice.utils.RoleExtractor;
 
 @Configuration
 public class AppConfig {
+    /** Пул соединений, таймауты и bulkhead подключает http-client-common через RestTemplateBuilder. */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
+        return restTemplateBuilder.build();
     }
 
     @Bean
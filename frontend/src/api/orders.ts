@@ -51,6 +51,35 @@ export interface PaymentInitiationResponse {
     orderStatus: { code: string; displayName: string };
 }
 
+export interface CheckoutStatus {
+    orderId: string;
+    status: 'STOCK_PENDING' | 'PAYMENT_PENDING' | 'COMPLETED' | 'FAILED';
+    failureReason: string | null;
+}
+
+/** Ход оформления заказа (резерв товара идёт асинхронно) — GET /api/v1/orders/{orderId}/checkout */
+export const getCheckoutStatus = async (id: string): Promise<CheckoutStatus> => {
+    const { data } = await apiClient.get<CheckoutStatus>(`/v1/orders/${id}/checkout`);
+    return data;
+};
+
+/**
+ * Дождаться резерва товара: опрашивает ход оформления, пока заказ в STOCK_PENDING.
+ * По истечении попыток возвращает последний статус — сервер сам закроет оформление по таймауту.
+ */
+export const waitForCheckout = async (
+    id: string,
+    attempts = 30,
+    intervalMs = 1000,
+): Promise<CheckoutStatus> => {
+    let checkout = await getCheckoutStatus(id);
+    for (let i = 1; i < attempts && checkout.status === 'STOCK_PENDING'; i++) {
+        await new Promise((resolve) => setTimeout(resolve, intervalMs));
+        checkout = await getCheckoutStatus(id);
+    }
+    return checkout;
+};
+
 /** Подтвердить заказ (CREATED → PROCESSING, отправка в 1С) — POST /api/v1/orders/{orderId}/confirm */
 export const confirmOrder = async (id: string): Promise<OrderDto> => {
     const { data } = await apiClient.post<OrderDto>(`/v1/orders/${id}/confirm`);
@@ -19,7 +19,7 @@ import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
 import { useNavigate } from 'react-router-dom';
 import { useCartStore } from '@/store/cartStore';
 import { useAuthStore } from '@/store/authStore';
-import { createOrder, confirmOrder } from '@/api/orders';
+import { createOrder, confirmOrder, waitForCheckout } from '@/api/orders';
 import { getWarehousePoints } from '@/api/warehouse';
 import {
     getRecipients,
@@ -209,6 +209,11 @@ const createRecipientMutation = useMutation({
             }
 
             const order = await createOrder(request);
+            const checkout = await waitForCheckout(order.id);
+            if (checkout.status === 'FAILED') {
+                messageApi.error(checkout.failureReason || 'Не удалось оформить заказ. Попробуйте позже.');
+                return;
+            }
             await confirmOrder(order.id);
             await clearCart();
             messageApi.success('Заказ успешно оформлен!');
@@ -153,6 +153,7 @@ export interface OrderSummaryDto {
     status: OrderStatus;
     customerType?: unknown;
     itemsCount: number;
+    firstItemName?: string | null;
     totalAmount: number;
     customerEmail: string;
     customerName?: string | null;
@@ -0,0 +1,15 @@
+package ru.rfsnab.common.http;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Лимит одновременных вызовов к адресату исчерпан — вызов отклонён, не дожидаясь
+ * соединения. Наследует RestClientException: обработчики ошибок клиентов сервисов
+ * обрабатывают его как недоступность адресата.
+ */
+public class BulkheadFullException extends RestClientException {
+
+    public BulkheadFullException(String target, int limit) {
+        super("Too many concurrent calls to " + target + " (limit " + limit + ")");
+    }
+}
@@ -0,0 +1,136 @@
+package ru.rfsnab.common.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulkhead на адресата: не больше maxConcurrentCalls одновременных вызовов. Лишний вызов ждёт
+ * место не дольше bulkhead-wait и получает {@link BulkheadFullException} — зависший сервис
+ * не забирает все потоки вызывающего. Место держится, пока читается тело: оно освобождается при закрытии
+ * ответа (RestTemplate и RestClient закрывают его сами) или сразу, если вызов упал.
+ */
+public class BulkheadInterceptor implements ClientHttpRequestInterceptor, MeterBinder {
+
+    private final InterServiceTargets targets;
+    private final long waitNanos;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    record Bulkhead(String target, int limit, Semaphore permits) {
+    }
+
+    public BulkheadInterceptor(InterServiceTargets targets, InterServiceHttpProperties properties) {
+        this.targets = targets;
+        this.waitNanos = properties.getBulkheadWait().toNanos();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Bulkhead bulkhead = bulkhead(request.getURI());
+        boolean acquired;
+        try {
+            acquired = bulkhead.permits().tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + bulkhead.target());
+        }
+        if (!acquired) {
+            MeterRegistry meters = registry;
+            if (meters != null) {
+                Counter.builder("http.client.bulkhead.rejected")
+                        .tag("target", bulkhead.target())
+                        .register(meters)
+                        .increment();
+            }
+            throw new BulkheadFullException(bulkhead.target(), bulkhead.limit());
+        }
+        try {
+            return new PermitReleasingResponse(execution.execute(request, body), bulkhead.permits());
+        } catch (IOException | RuntimeException | Error e) {
+            bulkhead.permits().release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (InterServiceTargets.Target target : targets.known()) {
+            Bulkhead bulkhead = bulkhead(URI.create(target.host().toURI()));
+            Gauge.builder("http.client.bulkhead.active", bulkhead,
+                            b -> b.limit() - b.permits().availablePermits())
+                    .tag("target", target.name())
+                    .register(registry);
+        }
+    }
+
+    /** Ответ, возвращающий место bulkhead'а при первом закрытии. */
+    static final class PermitReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    Bulkhead bulkhead(URI uri) {
+        return bulkheads.computeIfAbsent(targets.key(uri), key -> {
+            InterServiceTargets.Target target = targets.resolve(uri);
+            return new Bulkhead(target.name(), target.maxConcurrentCalls(), new Semaphore(target.maxConcurrentCalls()));
+        });
+    }
+}
@@ -0,0 +1,158 @@
+package ru.rfsnab.common.http;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Общий пул HTTP/1.1 keep-alive соединений (Apache HttpClient 5) для межсервисных вызовов.
+ * <p>
+ * Подключается к каждому RestTemplate и RestClient, собранным через Spring-овые
+ * RestTemplateBuilder / RestClient.Builder: пул с лимитом соединений на адресата, таймауты
+ * адресата, bulkhead ({@link BulkheadInterceptor}). Метрики вызовов по адресатам
+ * (http.client.requests, тег client.name) даёт сам Spring Boot при наличии actuator;
+ * здесь добавляются метрики пула и bulkhead.
+ */
+@AutoConfiguration
+@ConditionalOnClass({RestTemplate.class, CloseableHttpClient.class})
+@EnableConfigurationProperties(InterServiceHttpProperties.class)
+public class InterServiceHttpAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public InterServiceTargets interServiceTargets(InterServiceHttpProperties properties) {
+        return new InterServiceTargets(properties);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public PoolingHttpClientConnectionManager interServiceConnectionManager(InterServiceHttpProperties properties,
+                                                                            InterServiceTargets targets) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(targets.defaults().maxConnections())
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(timeout(properties.getReadTimeout()))
+                        .build())
+                .setConnectionConfigResolver(route -> {
+                    InterServiceTargets.Target target = targets.resolve(route.getTargetHost());
+                    return ConnectionConfig.custom()
+                            .setConnectTimeout(timeout(target.connectTimeout()))
+                            .setSocketTimeout(timeout(target.readTimeout()))
+                            .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+                            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                            .build();
+                })
+                .build();
+        for (InterServiceTargets.Target target : targets.known()) {
+            connectionManager.setMaxPerRoute(new HttpRoute(target.host()), target.maxConnections());
+        }
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(name = "interServiceHttpClient")
+    public CloseableHttpClient interServiceHttpClient(PoolingHttpClientConnectionManager interServiceConnectionManager,
+                                                      InterServiceHttpProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(interServiceConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout(properties.getConnectionRequestTimeout()))
+                        .setResponseTimeout(timeout(properties.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    /**
+     * Фабрика запросов поверх общего пула: таймаут ответа берётся из настроек адресата запроса.
+     * Пул закрывается вместе с бином HTTP-клиента, а не фабрикой.
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "interServiceRequestFactory")
+    public HttpComponentsClientHttpRequestFactory interServiceRequestFactory(CloseableHttpClient interServiceHttpClient,
+                                                                             InterServiceTargets targets,
+                                                                             InterServiceHttpProperties properties) {
+        Timeout connectionRequestTimeout = timeout(properties.getConnectionRequestTimeout());
+        return new HttpComponentsClientHttpRequestFactory(interServiceHttpClient) {
+            @Override
+            protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectionRequestTimeout)
+                        .setResponseTimeout(timeout(targets.resolve(uri).readTimeout()))
+                        .build());
+                return context;
+            }
+
+            @Override
+            public void destroy() {
+                // HTTP-клиент — отдельный бин со своим жизненным циклом
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public BulkheadInterceptor interServiceBulkhead(InterServiceTargets targets, InterServiceHttpProperties properties) {
+        return new BulkheadInterceptor(targets, properties);
+    }
+
+    @Bean
+    public RestTemplateCustomizer interServiceRestTemplateCustomizer(
+            HttpComponentsClientHttpRequestFactory interServiceRequestFactory, BulkheadInterceptor interServiceBulkhead) {
+        return restTemplate -> {
+            restTemplate.setRequestFactory(interServiceRequestFactory);
+            restTemplate.getInterceptors().add(interServiceBulkhead);
+        };
+    }
+
+    @Bean
+    public RestClientCustomizer interServiceRestClientCustomizer(
+            HttpComponentsClientHttpRequestFactory interServiceRequestFactory, BulkheadInterceptor interServiceBulkhead) {
+        return builder -> builder
+                .requestFactory(interServiceRequestFactory)
+                .requestInterceptor(interServiceBulkhead);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public VirtualThreadFanOut virtualThreadFanOut() {
+        return new VirtualThreadFanOut();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public InterServicePoolMetrics interServicePoolMetrics(PoolingHttpClientConnectionManager interServiceConnectionManager,
+                                                           InterServiceTargets targets) {
+        return new InterServicePoolMetrics(interServiceConnectionManager, targets);
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.of(duration);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.rfsnab.common.http;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Настройки пула HTTP-клиента для межсервисных вызовов (inter-service.http.*).
+ * Значения верхнего уровня — умолчания для любого адресата; в targets задаются
+ * известные сервисы (по url) со своими лимитами и таймаутами. Вызов сопоставляется
+ * с адресатом по хосту и порту URI.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "inter-service.http")
+public class InterServiceHttpProperties {
+
+    /** Установка TCP-соединения. */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /** Ожидание ответа (и каждого чтения из сокета). */
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    /** Ожидание свободного соединения в пуле. */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    /** Простаивающее keep-alive соединение закрывается через idle-timeout. */
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    /** Максимальный срок жизни соединения — чтобы пул подхватывал смену адреса сервиса. */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    private int maxConnectionsTotal = 200;
+
+    private int maxConnectionsPerTarget = 20;
+
+    /** Bulkhead: одновременных вызовов к адресату; 0 — равно числу соединений адресата. */
+    private int maxConcurrentCallsPerTarget = 0;
+
+    /** Сколько вызов ждёт места в bulkhead, прежде чем получить отказ. */
+    private Duration bulkheadWait = Duration.ofMillis(500);
+
+    private Map<String, Target> targets = new LinkedHashMap<>();
+
+    /**
+     * Известный адресат: незаданные поля берутся из умолчаний.
+     */
+    @Getter
+    @Setter
+    public static class Target {
+        private URI url;
+        private Integer maxConnections;
+        private Integer maxConcurrentCalls;
+        private Duration connectTimeout;
+        private Duration readTimeout;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.rfsnab.common.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Состояние пула соединений: занятые, свободные, ожидающие соединения и лимит —
+ * по каждому известному адресату и по пулу целиком (target=total).
+ */
+public class InterServicePoolMetrics implements MeterBinder {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final InterServiceTargets targets;
+
+    public InterServicePoolMetrics(PoolingHttpClientConnectionManager connectionManager, InterServiceTargets targets) {
+        this.connectionManager = connectionManager;
+        this.targets = targets;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry, "total", connectionManager::getTotalStats);
+        for (InterServiceTargets.Target target : targets.known()) {
+            HttpRoute route = new HttpRoute(target.host());
+            register(registry, target.name(), () -> connectionManager.getStats(route));
+        }
+    }
+
+    private static void register(MeterRegistry registry, String target, Supplier<PoolStats> stats) {
+        gauge(registry, "http.client.pool.leased", target, stats, PoolStats::getLeased);
+        gauge(registry, "http.client.pool.available", target, stats, PoolStats::getAvailable);
+        gauge(registry, "http.client.pool.pending", target, stats, PoolStats::getPending);
+        gauge(registry, "http.client.pool.max", target, stats, PoolStats::getMax);
+    }
+
+    private static void gauge(MeterRegistry registry, String name, String target,
+                              Supplier<PoolStats> stats, ToIntFunction<PoolStats> value) {
+        Gauge.builder(name, stats, s -> value.applyAsInt(s.get()))
+                .tag("target", target)
+                .register(registry);
+    }
+}
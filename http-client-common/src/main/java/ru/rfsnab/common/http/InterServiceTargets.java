@@ -0,0 +1,98 @@
+package ru.rfsnab.common.http;
+
+import org.apache.hc.core5.http.HttpHost;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Адресаты межсервисных вызовов: сопоставление хоста и порта с настройками из
+ * {@link InterServiceHttpProperties#getTargets()}. Вызовы к незаданным адресам
+ * получают умолчания и в метриках идут под именем {@link #OTHER}.
+ */
+public class InterServiceTargets {
+
+    public static final String OTHER = "other";
+
+    /**
+     * Итоговые настройки адресата.
+     *
+     * @param host null для незаданных адресатов
+     */
+    public record Target(String name, HttpHost host, int maxConnections, int maxConcurrentCalls,
+                         Duration connectTimeout, Duration readTimeout) {
+    }
+
+    private final Target defaults;
+    private final Map<String, Target> byAuthority = new LinkedHashMap<>();
+
+    public InterServiceTargets(InterServiceHttpProperties properties) {
+        this.defaults = new Target(OTHER, null,
+                properties.getMaxConnectionsPerTarget(),
+                concurrency(properties.getMaxConcurrentCallsPerTarget(), properties.getMaxConnectionsPerTarget()),
+                properties.getConnectTimeout(),
+                properties.getReadTimeout());
+
+        properties.getTargets().forEach((name, target) -> {
+            if (target.getUrl() == null) {
+                throw new IllegalStateException("inter-service.http.targets." + name + ".url is required");
+            }
+            URI url = target.getUrl();
+            HttpHost host = new HttpHost(url.getScheme(), url.getHost(), port(url.getScheme(), url.getPort()));
+            int maxConnections = target.getMaxConnections() != null
+                    ? target.getMaxConnections()
+                    : defaults.maxConnections();
+            int maxConcurrentCalls = target.getMaxConcurrentCalls() != null
+                    ? target.getMaxConcurrentCalls()
+                    : concurrency(properties.getMaxConcurrentCallsPerTarget(), maxConnections);
+            byAuthority.put(authority(host), new Target(name, host, maxConnections, maxConcurrentCalls,
+                    target.getConnectTimeout() != null ? target.getConnectTimeout() : defaults.connectTimeout(),
+                    target.getReadTimeout() != null ? target.getReadTimeout() : defaults.readTimeout()));
+        });
+    }
+
+    public Target resolve(URI uri) {
+        return byAuthority.getOrDefault(authority(uri.getScheme(), uri.getHost(), uri.getPort()), defaults);
+    }
+
+    public Target resolve(HttpHost host) {
+        return byAuthority.getOrDefault(authority(host), defaults);
+    }
+
+    /** Ключ bulkhead: у незаданных адресатов — свой для каждого хоста. */
+    public String key(URI uri) {
+        return authority(uri.getScheme(), uri.getHost(), uri.getPort());
+    }
+
+    public Collection<Target> known() {
+        return byAuthority.values();
+    }
+
+    public Target defaults() {
+        return defaults;
+    }
+
+    private static int concurrency(int configured, int maxConnections) {
+        return configured > 0 ? configured : maxConnections;
+    }
+
+    private static String authority(HttpHost host) {
+        return authority(host.getSchemeName(), host.getHostName(), host.getPort());
+    }
+
+    private static String authority(String scheme, String host, int port) {
+        String hostName = host != null ? host.toLowerCase(Locale.ROOT) : "";
+        return hostName + ":" + port(scheme, port);
+    }
+
+    private static int port(String scheme, int port) {
+        if (port >= 0) {
+            return port;
+        }
+        return "https".equalsIgnoreCase(scheme) ? 443 : 80;
+    }
+}
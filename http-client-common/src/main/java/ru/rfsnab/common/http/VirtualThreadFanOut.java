@@ -0,0 +1,66 @@
+package ru.rfsnab.common.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Параллельные блокирующие вызовы на виртуальных потоках: поток на вызов, без общего
+ * ForkJoinPool и без ограничения размером пула платформенных потоков. Ограничение
+ * параллелизма к адресату — bulkhead и пул соединений, а не исполнитель.
+ * <p>
+ * MDC и SecurityContext в виртуальные потоки не переносятся — всё нужное вызову
+ * передаётся явно.
+ */
+public class VirtualThreadFanOut implements AutoCloseable {
+
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fan-out-", 0).factory());
+
+    /**
+     * Применить call к каждому элементу параллельно.
+     *
+     * @return результаты в порядке элементов
+     * @throws RuntimeException первая ошибка вызова как есть; остальные вызовы отменяются
+     */
+    public <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> call) {
+        List<R> results = new ArrayList<>(items.size());
+        if (items.size() <= 1) {
+            items.forEach(item -> results.add(call.apply(item)));
+            return results;
+        }
+
+        List<Future<? extends R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(executor.submit(() -> call.apply(item)));
+        }
+        try {
+            for (Future<? extends R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel calls", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
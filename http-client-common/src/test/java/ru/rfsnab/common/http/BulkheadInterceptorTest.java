@@ -0,0 +1,103 @@
+package ru.rfsnab.common.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("BulkheadInterceptor")
+class BulkheadInterceptorTest {
+
+    private static final URI PRODUCT = URI.create("http://product-service:8083/api/v1/products/1");
+
+    private static BulkheadInterceptor interceptor() {
+        InterServiceHttpProperties properties = new InterServiceHttpProperties();
+        properties.setBulkheadWait(Duration.ofMillis(50));
+        InterServiceHttpProperties.Target product = new InterServiceHttpProperties.Target();
+        product.setUrl(URI.create("http://product-service:8083"));
+        product.setMaxConcurrentCalls(1);
+        properties.getTargets().put("product-service", product);
+        return new BulkheadInterceptor(new InterServiceTargets(properties), properties);
+    }
+
+    @Test
+    @DisplayName("лимит занят — вызов отклоняется BulkheadFullException и считается в метрике")
+    void intercept_LimitReached_Rejects() throws Exception {
+        BulkheadInterceptor bulkhead = interceptor();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        bulkhead.bindTo(registry);
+
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClientHttpRequestExecution slow = (request, body) -> {
+            inFlight.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> bulkhead.intercept(new MockClientHttpRequest(HttpMethod.GET, PRODUCT), new byte[0], slow));
+            assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> bulkhead.intercept(new MockClientHttpRequest(HttpMethod.GET, PRODUCT),
+                    new byte[0], slow))
+                    .isInstanceOf(BulkheadFullException.class);
+            assertThat(registry.get("http.client.bulkhead.active").tag("target", "product-service").gauge().value())
+                    .isEqualTo(1);
+            release.countDown();
+        }
+
+        assertThat(registry.get("http.client.bulkhead.rejected").tag("target", "product-service").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("место держится до закрытия ответа и освобождается один раз")
+    void intercept_ReleasesPermitOnResponseClose() throws Exception {
+        BulkheadInterceptor bulkhead = interceptor();
+        ClientHttpRequestExecution ok = (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+
+        ClientHttpResponse response = bulkhead.intercept(new MockClientHttpRequest(HttpMethod.GET, PRODUCT),
+                new byte[0], ok);
+        // заголовки получены, тело ещё не прочитано
+        assertThat(bulkhead.bulkhead(PRODUCT).permits().availablePermits()).isZero();
+
+        response.close();
+        response.close();
+        assertThat(bulkhead.bulkhead(PRODUCT).permits().availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("вызов упал — место освобождается сразу")
+    void intercept_ExecutionFailed_ReleasesPermit() {
+        BulkheadInterceptor bulkhead = interceptor();
+        ClientHttpRequestExecution failing = (request, body) -> {
+            throw new IOException("connection reset");
+        };
+
+        assertThatThrownBy(() -> bulkhead.intercept(new MockClientHttpRequest(HttpMethod.GET, PRODUCT),
+                new byte[0], failing))
+                .isInstanceOf(IOException.class);
+        assertThat(bulkhead.bulkhead(PRODUCT).permits().availablePermits()).isEqualTo(1);
+    }
+}
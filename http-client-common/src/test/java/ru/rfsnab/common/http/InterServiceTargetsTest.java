@@ -0,0 +1,54 @@
+package ru.rfsnab.common.http;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("InterServiceTargets")
+class InterServiceTargetsTest {
+
+    private static InterServiceTargets targets() {
+        InterServiceHttpProperties properties = new InterServiceHttpProperties();
+        properties.setMaxConnectionsPerTarget(10);
+        InterServiceHttpProperties.Target product = new InterServiceHttpProperties.Target();
+        product.setUrl(URI.create("http://product-service:8083"));
+        product.setMaxConnections(40);
+        product.setReadTimeout(Duration.ofSeconds(10));
+        properties.getTargets().put("product-service", product);
+        return new InterServiceTargets(properties);
+    }
+
+    @Test
+    @DisplayName("вызов к известному сервису получает его лимиты и таймауты, незаданное — из умолчаний")
+    void resolve_KnownTarget_MergesWithDefaults() {
+        InterServiceTargets.Target target = targets().resolve(URI.create("http://Product-Service:8083/api/v1/products/1"));
+
+        assertThat(target.name()).isEqualTo("product-service");
+        assertThat(target.maxConnections()).isEqualTo(40);
+        assertThat(target.maxConcurrentCalls()).isEqualTo(40);
+        assertThat(target.readTimeout()).isEqualTo(Duration.ofSeconds(10));
+        assertThat(target.connectTimeout()).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    @DisplayName("маршрут пула (HttpHost с явным портом) сопоставляется с тем же адресатом")
+    void resolve_RouteHost_SameTarget() {
+        assertThat(targets().resolve(new HttpHost("http", "product-service", 8083)).name())
+                .isEqualTo("product-service");
+    }
+
+    @Test
+    @DisplayName("незаданный адрес — умолчания под именем other")
+    void resolve_UnknownHost_Defaults() {
+        InterServiceTargets.Target target = targets().resolve(URI.create("https://example.com/file.jpg"));
+
+        assertThat(target.name()).isEqualTo(InterServiceTargets.OTHER);
+        assertThat(target.maxConnections()).isEqualTo(10);
+        assertThat(target.readTimeout()).isEqualTo(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.rfsnab.common.http;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("VirtualThreadFanOut")
+class VirtualThreadFanOutTest {
+
+    @Test
+    @DisplayName("результаты в порядке элементов, вызовы — на виртуальных потоках")
+    void map_KeepsOrder() {
+        try (VirtualThreadFanOut fanOut = new VirtualThreadFanOut()) {
+            List<String> result = fanOut.map(List.of(3, 1, 2), i -> {
+                assertThat(Thread.currentThread().isVirtual()).isTrue();
+                return "#" + i;
+            });
+
+            assertThat(result).containsExactly("#3", "#1", "#2");
+        }
+    }
+
+    @Test
+    @DisplayName("ошибка вызова пробрасывается как есть")
+    void map_RethrowsFailure() {
+        try (VirtualThreadFanOut fanOut = new VirtualThreadFanOut()) {
+            assertThatThrownBy(() -> fanOut.map(List.of(1, 2), i -> {
+                if (i == 2) {
+                    throw new IllegalArgumentException("boom");
+                }
+                return i;
+            })).isInstanceOf(IllegalArgumentException.class).hasMessage("boom");
+        }
+    }
+}
@@ -80,6 +80,31 @@ public class IntegrationProperties {
     public static class ImportConfig {
         private int chunkSize = 100;
         private int maxConcurrentRequests = 4;
+        /** Канал передачи товаров в product-service: HTTP-chunk'и или поток через Kafka */
+        private ImportTransport transport = ImportTransport.HTTP;
+        /** Kafka: сколько ждать очередного ответа product-service, прежде чем считать остаток failed */
+        private int resultTimeoutSec = 300;
+        /** Инкрементальная синхронизация по отпечаткам содержимого */
+        @NestedConfigurationProperty
+        private IncrementalSyncProperties incremental = new IncrementalSyncProperties();
+    }
+
+    public enum ImportTransport {
+        /** POST /api/v1/products/import/batch chunk'ами по chunkSize */
+        HTTP,
+        /** Топик product-import-items, ответы — из product-import-results */
+        KAFKA
+    }
+
+    @Getter
+    @Setter
+    public static class IncrementalSyncProperties {
+        /** false — отправлять все товары (отпечатки всё равно обновляются) */
+        private boolean enabled = true;
+        /** Отпечатки старше N дней не доверяются — товар уходит повторно. 0 = без срока */
+        private int fullResyncDays = 7;
+        /** Tombstone-проход по товарам, выбывшим из полной выгрузки */
+        private boolean tombstones = true;
     }
 
     @Getter
@@ -94,6 +119,22 @@ public class IntegrationProperties {
         /** Параметры FTP-сервера ФТК */
         @NestedConfigurationProperty
         private FtpProperties ftp = new FtpProperties();
+        /** Конвейер загрузки изображений: скачивание → конвертация → отправка */
+        @NestedConfigurationProperty
+        private ImagePipelineProperties imagePipeline = new ImagePipelineProperties();
+    }
+
+    @Getter
+    @Setter
+    public static class ImagePipelineProperties {
+        /** FTP-сессий в пуле = параллельных скачиваний (сервер ФТК ограничивает подключения на логин) */
+        private int ftpSessions = 4;
+        /** Потоков конвертации в WebP. 0 = по числу ядер CPU */
+        private int convertThreads = 0;
+        /** Параллельных отправок в product-service */
+        private int uploadConcurrency = 4;
+        /** Ёмкость очереди между стадиями (backpressure: быстрая стадия ждёт медленную) */
+        private int queueCapacity = 32;
     }
 
     @Getter
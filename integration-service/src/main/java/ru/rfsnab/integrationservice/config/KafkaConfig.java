@@ -15,12 +15,16 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.apache.kafka.clients.producer.ProducerConfig.BATCH_SIZE_CONFIG;
 import static org.apache.kafka.clients.producer.ProducerConfig.BOOTSTRAP_SERVERS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.COMPRESSION_TYPE_CONFIG;
 import static org.apache.kafka.clients.producer.ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.LINGER_MS_CONFIG;
 
 /**
- * Kafka producer для событий импорта (топик "import-events").
- * Consumer-часть (order-1c-export) настроена отдельно через @KafkaListener.
+ * Kafka producer для событий импорта (топик "import-events") и потокового импорта
+ * товаров в product-service (топик "product-import-items").
+ * Consumer-часть (order-1c-export, product-import-results) настроена отдельно через @KafkaListener.
  */
 @Configuration
 public class KafkaConfig {
@@ -41,6 +45,10 @@ public class KafkaConfig {
         Map<String, Object> config = new HashMap<>();
         config.put(BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        // Поток импорта — десятки тысяч однотипных JSON-товаров: копим пачки и сжимаем их
+        config.put(LINGER_MS_CONFIG, 20);
+        config.put(BATCH_SIZE_CONFIG, 256 * 1024);
+        config.put(COMPRESSION_TYPE_CONFIG, "lz4");
 
         JsonSerializer<Object> serializer = new JsonSerializer<>(kafkaObjectMapper());
         serializer.setAddTypeInfo(false);
@@ -13,4 +13,6 @@ public class KafkaTopicsProperties {
     private String orderEvents;
     private String order1cExport;
     private String importEvents;
+    private String productImportItems;
+    private String productImportResults;
 }
@@ -3,9 +3,9 @@ package ru.rfsnab.integrationservice.config;
 import io.netty.resolver.DefaultAddressResolverGroup;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -43,17 +43,20 @@ public class WebClientConfig {
                 .responseTimeout(Duration.ofSeconds(30));
     }
 
+    /**
+     * Пул соединений, таймауты (inter-service.http.targets.product-service) и bulkhead
+     * подключает http-client-common через RestTemplateBuilder. Конвертеры — стандартные
+     * RestTemplate, а не на kafkaObjectMapper.
+     */
     @Bean
-    public RestTemplate productServiceRestTemplate(@Value("${internal.secret}") String internalSecret) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(10000);
-
-        RestTemplate template = new RestTemplate(factory);
-        template.getInterceptors().add((request, body, execution) -> {
-            request.getHeaders().set("X-Internal-Token", internalSecret);
-            return execution.execute(request, body);
-        });
-        return template;
+    public RestTemplate productServiceRestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                                   @Value("${internal.secret}") String internalSecret) {
+        return restTemplateBuilder
+                .messageConverters(new RestTemplate().getMessageConverters())
+                .additionalInterceptors((request, body, execution) -> {
+                    request.getHeaders().set("X-Internal-Token", internalSecret);
+                    return execution.execute(request, body);
+                })
+                .build();
     }
 }
\ No newline at end of file
@@ -16,4 +16,6 @@ import lombok.Setter;
 public class OrderSyncRequest {
     private String externalId;
     private String newStatus;
+    /** Версия документа 1С или идентификатор обмена — ключ идемпотентности в order-service */
+    private String messageId;
 }
@@ -0,0 +1,21 @@
+package ru.rfsnab.integrationservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Товар в топике product-import-items (ключ — externalId).
+ * Зеркало ProductImportMessage из product-service.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportMessage {
+
+    /** Прогон импорта — по нему ответы product-service возвращаются в свой ImportRun */
+    private String runId;
+    private ProductImportItemDto item;
+}
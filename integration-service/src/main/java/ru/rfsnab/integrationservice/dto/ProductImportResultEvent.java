@@ -0,0 +1,20 @@
+package ru.rfsnab.integrationservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Результат импорта пачки товаров одного прогона из топика product-import-results (ключ — runId).
+ * Зеркало ProductImportResultEvent из product-service.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResultEvent {
+
+    private String runId;
+    private BatchImportResponse response;
+}
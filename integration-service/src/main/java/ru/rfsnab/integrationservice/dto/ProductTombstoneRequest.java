@@ -0,0 +1,21 @@
+package ru.rfsnab.integrationservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Request для POST /api/v1/products/import/tombstones в product-service.
+ * Зеркало ProductTombstoneRequest.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductTombstoneRequest {
+
+    private List<String> externalIds;
+}
@@ -0,0 +1,21 @@
+package ru.rfsnab.integrationservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Response от POST /api/v1/products/import/tombstones.
+ * Зеркало ProductTombstoneResponse из product-service.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductTombstoneResponse {
+
+    private int requested;
+    /** Товаров и вариантов, снятых с остатка */
+    private int withdrawn;
+}
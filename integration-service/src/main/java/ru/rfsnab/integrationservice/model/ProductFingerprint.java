@@ -0,0 +1,48 @@
+package ru.rfsnab.integrationservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отпечаток содержимого товара на момент последней успешной передачи в product-service.
+ * Пишется upsert'ом из ProductFingerprintRepository; сущность нужна для чтения и тестов.
+ */
+@Entity
+@Table(name = "product_fingerprints")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFingerprint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Источник каталога: FTK, 1C — tombstone-проход идёт в пределах источника */
+    @Column(name = "source", nullable = false, length = 20)
+    private String source;
+
+    @Column(name = "external_id", nullable = false, length = 100)
+    private String externalId;
+
+    /** SHA-256 (hex) канонического JSON ProductImportItemDto */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "synced_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime syncedAt = LocalDateTime.now();
+}
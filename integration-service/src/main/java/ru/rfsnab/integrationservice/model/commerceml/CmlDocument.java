@@ -52,6 +52,10 @@ public class CmlDocument {
     @XmlElement(name = "Время")
     private String time;
 
+    /** Версия документа в 1С — меняется при каждой записи документа */
+    @XmlElement(name = "НомерВерсии")
+    private String version;
+
     @XmlElementWrapper(name = "Контрагенты")
     @XmlElement(name = "Контрагент")
     private List<CmlContragent> contragents = new ArrayList<>();
@@ -0,0 +1,47 @@
+package ru.rfsnab.integrationservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rfsnab.integrationservice.model.ProductFingerprint;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductFingerprintRepository extends JpaRepository<ProductFingerprint, Long> {
+
+    /** Только то, что нужно для сверки, — без загрузки сущностей в persistence context. */
+    interface FingerprintView {
+        String getExternalId();
+
+        String getContentHash();
+
+        LocalDateTime getSyncedAt();
+    }
+
+    List<FingerprintView> findBySource(String source);
+
+    /**
+     * Записать отпечаток после успешной передачи товара: новый — вставка, известный — замена
+     * хеша и времени синхронизации одним оператором.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_fingerprints (source, external_id, content_hash, synced_at)
+            VALUES (:source, :externalId, :contentHash, CURRENT_TIMESTAMP)
+            ON CONFLICT (source, external_id)
+            DO UPDATE SET content_hash = EXCLUDED.content_hash, synced_at = EXCLUDED.synced_at
+            """, nativeQuery = true)
+    void upsert(@Param("source") String source,
+                @Param("externalId") String externalId,
+                @Param("contentHash") String contentHash);
+
+    @Modifying
+    @Query("DELETE FROM ProductFingerprint f WHERE f.source = :source AND f.externalId IN :externalIds")
+    int deleteBySourceAndExternalIdIn(@Param("source") String source,
+                                      @Param("externalIds") Collection<String> externalIds);
+}
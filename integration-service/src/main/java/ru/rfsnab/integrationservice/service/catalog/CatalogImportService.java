@@ -1,8 +1,5 @@
 package ru.rfsnab.integrationservice.service.catalog;
 
-import jakarta.xml.bind.JAXBContext;
-import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Unmarshaller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -11,18 +8,29 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.config.IntegrationProperties.ImportTransport;
 import ru.rfsnab.integrationservice.dto.BatchImportRequest;
 import ru.rfsnab.integrationservice.dto.BatchImportResponse;
 import ru.rfsnab.integrationservice.dto.ImportResult;
 import ru.rfsnab.integrationservice.dto.ProductImportItemDto;
 import ru.rfsnab.integrationservice.model.ImportLog;
 import ru.rfsnab.integrationservice.model.ImportLog.ImportStatus;
-import ru.rfsnab.integrationservice.model.commerceml.*;
+import ru.rfsnab.integrationservice.model.commerceml.Classifier;
+import ru.rfsnab.integrationservice.model.commerceml.CmlProduct;
+import ru.rfsnab.integrationservice.model.commerceml.Group;
+import ru.rfsnab.integrationservice.model.commerceml.PriceType;
 import ru.rfsnab.integrationservice.model.ImageProcessingTask.TaskStatus;
 import ru.rfsnab.integrationservice.repository.ImageProcessingTaskRepository;
 import ru.rfsnab.integrationservice.repository.ImportLogRepository;
+import ru.rfsnab.integrationservice.service.catalog.CommerceMlStreamParser.OfferData;
+import ru.rfsnab.integrationservice.service.catalog.CommerceMlStreamParser.OffersIndex;
 import ru.rfsnab.integrationservice.service.ftk.FtkCategoryMapper;
 import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ClassifierData;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncRun;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncSummary;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel.ImportRun;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -35,17 +43,18 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Основной pipeline импорта каталога из 1С через CommerceML.
  * Последовательность:
- * 1. Parse import.xml (товары) и offers.xml (цены + остатки)
- * 2. Merge данных по externalId
- * 3. Map в ProductImportItemDto
- * 4. Нарезка на chunk'и
- * 5. Параллельная отправка в product-service через virtual threads + Semaphore
+ * 1. Потоковый parse offers.xml (цены + остатки) в компактный индекс по Ид
+ * 2. Потоковый parse import.xml (CommerceMlStreamParser): товары читаются по одному
+ * 3. Каждый товар сразу merge с предложением по externalId и map в ProductImportItemDto
+ * 4. Нарезка на chunk'и по мере разбора; товары с прежним отпечатком содержимого
+ *    не отправляются (IncrementalSyncService), после полной выгрузки — tombstone-проход
+ * 5. Параллельная отправка в product-service через virtual threads + Semaphore — первые chunk'и
+ *    уходят, пока import.xml ещё читается; Semaphore держит парсер не дальше maxConcurrent chunk'ов.
+ *    При transport=kafka вместо chunk'ов — поток товаров через ProductImportKafkaChannel
  * 6. Постановка задач на обработку изображений
  * 7. Логирование результата в import_log
  * Virtual threads (Java 21) выбраны потому что задача I/O-bound:
@@ -64,17 +73,20 @@ public class CatalogImportService {
     private static final String BATCH_IMPORT_URI = "/api/v1/products/import/batch";
 
     private static final String CATALOG_ROOT_SLUG = "import-1c";
+    private static final String SYNC_SOURCE = "1C";
 
     private static final int IMAGE_WAIT_INTERVAL_MS = 5_000;
     private static final int IMAGE_WAIT_TIMEOUT_MS  = 10 * 60 * 1_000;
 
-    private final JAXBContext commerceMlJaxbContext;
+    private final CommerceMlStreamParser commerceMlParser;
     private final RestTemplate productServiceRestTemplate;
     private final IntegrationProperties properties;
     private final ImportLogRepository importLogRepository;
     private final ImageProcessingPool imageProcessingPool;
     private final ImageProcessingTaskRepository imageTaskRepository;
     private final FtkCategoryMapper categoryMapper;
+    private final IncrementalSyncService syncService;
+    private final ProductImportKafkaChannel kafkaChannel;
 
     /**
      * Запускает полный цикл импорта каталога.
@@ -89,44 +101,36 @@ public class CatalogImportService {
         log.info("Начало импорта каталога. Session: {}, dir: {}", sessionId, exchangeDir);
 
         try {
-            // 1. Parse XML файлы
+            // 1. Индекс offers.xml — до товаров, чтобы джойнить их на лету
             logReceivedFiles(exchangeDir, sessionId);
-            CommerceInfo importInfo = parseXmlFile(exchangeDir.resolve(IMPORT_XML));
-            CommerceInfo offersInfo = parseOffersIfExists(exchangeDir.resolve(OFFERS_XML));
-
-            List<CmlProduct> products = extractProducts(importInfo);
-            if (products.isEmpty()) {
-                log.warn("import.xml не содержит товаров. Session: {}", sessionId);
-                saveImportLog(sessionId, "CATALOG", ImportStatus.SUCCESS,
-                        0, 0, 0, 0, 0, null, startedAt);
-                return "success";
-            }
+            OffersIndex offers = readOffersIfExists(exchangeDir.resolve(OFFERS_XML));
 
-            // 1.5. Построить дерево категорий из Классификатора
+            // 2-5. Товары import.xml → DTO → chunk'и в product-service по мере разбора
             categoryMapper.resetCache();
-            ClassifierData classifierData = buildClassifierData(importInfo.getClassifier());
-            categoryMapper.loadClassifier(classifierData, CATALOG_ROOT_SLUG);
-            log.info("Загружен классификатор 1С: {} групп. Session: {}",
-                    classifierData.groupPaths().size(), sessionId);
-
-            // 2. Merge: товары + цены/остатки по externalId
-            Map<String, Offer> offersById = indexOffers(offersInfo);
-            List<PriceType> priceTypes = (offersInfo != null && offersInfo.getOffersPackage() != null)
-                    ? offersInfo.getOffersPackage().getPriceTypes()
-                    : Collections.emptyList();
-            List<ProductImportItemDto> importItems = mergeAndMap(products, offersById, priceTypes);
-            log.info("Подготовлено {} товаров для импорта. Session: {}", importItems.size(), sessionId);
-
-            // 3. Chunk + parallel send
-            int chunkSize = properties.getImportConfig().getChunkSize();
-            List<List<ProductImportItemDto>> chunks = partition(importItems, chunkSize);
-            log.info("Разбито на {} chunk(ов) по {}. Session: {}", chunks.size(), chunkSize, sessionId);
-
-            ImportResult result = sendChunksInParallel(chunks);
+            SyncRun syncRun = syncService.startRun(SYNC_SOURCE);
+            CatalogStream catalog = new CatalogStream(offers, sessionId, syncRun);
+            ImportResult result;
+            try (StreamingChunkSender sender = new StreamingChunkSender(syncRun)) {
+                catalog.sender = sender;
+                int productCount = commerceMlParser.readCatalog(exchangeDir.resolve(IMPORT_XML), catalog);
+                result = sender.finish();
+                if (productCount == 0) {
+                    log.warn("import.xml не содержит товаров. Session: {}", sessionId);
+                    categoryMapper.resetCache();
+                    saveImportLog(sessionId, "CATALOG", ImportStatus.SUCCESS,
+                            0, 0, 0, 0, 0, null, startedAt);
+                    return "success";
+                }
+                log.info("Отправлено {} товаров из {} ({}). Session: {}",
+                        catalog.mapped - syncRun.skipped(), productCount, sender.describe(), sessionId);
+            }
+            // Выгрузка «только изменения» — не повод снимать отсутствующие в ней товары
+            SyncSummary sync = syncRun.finish(!catalog.containsOnlyChanges);
+            result = withSkipped(result, sync.skipped());
             categoryMapper.resetCache();
 
             // 4. Постановка задач на обработку изображений
-            int enqueuedImages = enqueueImageTasks(exchangeDir, products, sessionId);
+            int enqueuedImages = enqueueImageTasks(exchangeDir, catalog.images, sessionId);
 
             // 5. Log
             ImportStatus status = resolveStatus(result);
@@ -190,76 +194,84 @@ public class CatalogImportService {
         }
     }
 
-    /**
-     * JAXB unmarshalling XML-файла в CommerceInfo.
-     * Unmarshaller создаётся per-call — он не thread-safe, но дешёвый в создании.
-     */
-    private CommerceInfo parseXmlFile(Path xmlFile) {
-        log.debug("Парсинг XML: {}", xmlFile);
-        if (!Files.exists(xmlFile)) {
-            throw new IllegalStateException("XML-файл не найден: " + xmlFile.getFileName());
-        }
-        try {
-            Unmarshaller unmarshaller = commerceMlJaxbContext.createUnmarshaller();
-            return (CommerceInfo) unmarshaller.unmarshal(xmlFile.toFile());
-        } catch (JAXBException e) {
-            throw new IllegalStateException("Ошибка парсинга XML: " + xmlFile.getFileName(), e);
-        }
-    }
-
     /**
      * offers.xml может отсутствовать (если 1С выгружает только каталог без цен).
      * В этом случае товары импортируются без цены — она обновится при следующей выгрузке.
      */
-    private CommerceInfo parseOffersIfExists(Path offersFile) {
+    private OffersIndex readOffersIfExists(Path offersFile) {
         if (Files.exists(offersFile)) {
-            return parseXmlFile(offersFile);
+            return commerceMlParser.readOffers(offersFile);
         }
         log.info("offers.xml отсутствует — импорт без цен и остатков");
-        return null;
-    }
-
-    private List<CmlProduct> extractProducts(CommerceInfo importInfo) {
-        if (importInfo.getCatalog() == null || importInfo.getCatalog().getProducts() == null) {
-            return Collections.emptyList();
-        }
-        return importInfo.getCatalog().getProducts();
+        return OffersIndex.EMPTY;
     }
 
     // ==================== Merge & Mapping ====================
 
     /**
-     * Индексирует предложения (Offer) из offers.xml по ID для быстрого lookup.
+     * Обработчик потока import.xml: классификатор → дерево категорий,
+     * товар → merge с предложением по externalId → DTO в очередь отправки.
+     * От товара после маппинга остаются только пути картинок.
      */
-    private Map<String, Offer> indexOffers(CommerceInfo offersInfo) {
-        if (offersInfo == null || offersInfo.getOffersPackage() == null
-                || offersInfo.getOffersPackage().getOffers() == null) {
-            return Collections.emptyMap();
+    private final class CatalogStream implements CommerceMlStreamParser.CatalogHandler {
+
+        private final OffersIndex offers;
+        private final String sessionId;
+        private final SyncRun syncRun;
+        private final Map<String, List<String>> images = new LinkedHashMap<>();
+        private StreamingChunkSender sender;
+        private boolean classifierLoaded;
+        private boolean containsOnlyChanges;
+        private int mapped;
+
+        private CatalogStream(OffersIndex offers, String sessionId, SyncRun syncRun) {
+            this.offers = offers;
+            this.sessionId = sessionId;
+            this.syncRun = syncRun;
         }
-        return offersInfo.getOffersPackage().getOffers().stream()
-                .filter(o -> o.getId() != null)
-                .collect(Collectors.toMap(Offer::getId, Function.identity(), (a, b) -> a));
-    }
 
-    /**
-     * Объединяет данные из import.xml (товар) и offers.xml (цена/остаток)
-     * по совпадению externalId, маппит в DTO для product-service.
-     */
-    private List<ProductImportItemDto> mergeAndMap(List<CmlProduct> products,
-                                                   Map<String, Offer> offersById,
-                                                   List<PriceType> priceTypes) {
-        return products.stream()
-                .map(product -> mapToImportItem(product, offersById.get(product.getId()), priceTypes, categoryMapper))
-                .filter(Objects::nonNull)
-                .toList();
+        @Override
+        public void onCatalog(boolean containsOnlyChanges) {
+            this.containsOnlyChanges = containsOnlyChanges;
+        }
+
+        @Override
+        public void onClassifier(Classifier classifier) {
+            loadClassifier(classifier);
+        }
+
+        @Override
+        public void onProduct(CmlProduct product) {
+            if (!classifierLoaded) {
+                // import.xml без Классификатора — товары без категорий 1С
+                loadClassifier(null);
+            }
+            if (product.getImages() != null && !product.getImages().isEmpty()) {
+                images.put(product.getId(), product.getImages());
+            }
+            ProductImportItemDto item = mapToImportItem(product, offers.offersById().get(product.getId()),
+                    offers.priceTypes(), categoryMapper);
+            if (item != null) {
+                mapped++;
+                if (syncRun.shouldSend(item)) sender.add(item);
+            }
+        }
+
+        private void loadClassifier(Classifier classifier) {
+            ClassifierData classifierData = buildClassifierData(classifier);
+            categoryMapper.loadClassifier(classifierData, CATALOG_ROOT_SLUG);
+            classifierLoaded = true;
+            log.info("Загружен классификатор 1С: {} групп. Session: {}",
+                    classifierData.groupPaths().size(), sessionId);
+        }
     }
 
     /**
-     * Маппинг CmlProduct + Offer → ProductImportItemDto.
+     * Маппинг CmlProduct + предложение → ProductImportItemDto.
      * Числовые поля парсятся здесь, чтобы JAXB-слой не падал на невалидных данных из 1С.
      * price = "Оптовая" (B2B цена), wholesalePrice = "Розничная" (B2C цена).
      */
-    private ProductImportItemDto mapToImportItem(CmlProduct product, Offer offer,
+    private ProductImportItemDto mapToImportItem(CmlProduct product, OfferData offer,
                                                   List<PriceType> priceTypes, FtkCategoryMapper mapper) {
         if (product.getId() == null || product.getName() == null) {
             log.warn("Пропущен товар без Ид или Наименования: {}", product.getId());
@@ -281,7 +293,7 @@ public class CatalogImportService {
         if (offer != null) {
             builder.price(extractPriceByType(offer, priceTypes, "Оптовая цена"))
                     .wholesalePrice(extractPriceByType(offer, priceTypes, "Розничная цена"))
-                    .stockQuantity(parseStock(offer.getQuantity()))
+                    .stockQuantity(parseStock(offer.quantity()))
                     .vatRate(extractVatRate(offer));
         }
 
@@ -322,27 +334,22 @@ public class CatalogImportService {
         return (value != null && !value.isBlank()) ? value.trim() : product.getBaseUnit().getFullName();
     }
 
-    private BigDecimal extractPriceByType(Offer offer, List<PriceType> priceTypes, String typeName) {
-        if (offer.getPrices() == null || offer.getPrices().isEmpty()) return null;
+    private BigDecimal extractPriceByType(OfferData offer, List<PriceType> priceTypes, String typeName) {
+        if (offer.pricesByType().isEmpty()) return null;
         String targetTypeId = priceTypes.stream()
                 .filter(pt -> pt.getName() != null && pt.getName().toLowerCase().contains(typeName.toLowerCase()))
                 .map(PriceType::getId)
                 .findFirst()
                 .orElse(null);
-        if (targetTypeId == null) return null;
-        return offer.getPrices().stream()
-                .filter(p -> targetTypeId.equals(p.getPriceTypeId()))
-                .findFirst()
-                .map(p -> parseBigDecimal(p.getPricePerUnit(), "цена " + typeName))
-                .orElse(null);
+        if (targetTypeId == null || !offer.pricesByType().containsKey(targetTypeId)) return null;
+        return parseBigDecimal(offer.pricesByType().get(targetTypeId), "цена " + typeName);
     }
 
-    private Integer extractVatRate(Offer offer) {
-        if (offer.getTaxRates() == null || offer.getTaxRates().isEmpty()) {
+    private Integer extractVatRate(OfferData offer) {
+        if (offer.taxRate() == null) {
             return null;
         }
-        TaxRate taxRate = offer.getTaxRates().getFirst();
-        String rate = taxRate.getRate();
+        String rate = offer.taxRate().getRate();
         if (rate == null || "Без НДС".equalsIgnoreCase(rate.trim())) {
             return 0;
         }
@@ -378,33 +385,90 @@ public class CatalogImportService {
     // ==================== Chunking & Parallel Send ====================
 
     /**
-     * Параллельная отправка chunk'ов в product-service.
+     * Параллельная отправка chunk'ов в product-service по мере разбора import.xml.
      * Virtual threads + Semaphore: каждый chunk в отдельном virtual thread,
-     * Semaphore ограничивает количество одновременных запросов.
+     * Semaphore ограничивает количество одновременных запросов. Разрешение берётся
+     * до запуска chunk'а, в потоке парсера: если product-service не успевает, парсинг
+     * ждёт, и в памяти не копится больше maxConcurrent + 1 chunk'ов.
+     * При transport=kafka chunk'ов нет: товар сразу уходит в Kafka, ответы собираются в finish().
      */
-    private ImportResult sendChunksInParallel(List<List<ProductImportItemDto>> chunks) {
-        int maxConcurrent = properties.getImportConfig().getMaxConcurrentRequests();
-        Semaphore semaphore = new Semaphore(maxConcurrent);
-
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<CompletableFuture<BatchImportResponse>> futures = chunks.stream()
-                    .map(chunk -> CompletableFuture.supplyAsync(() -> {
-                        try {
-                            semaphore.acquire();
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException("Прервано ожидание семафора", e);
-                        }
-                        try {
-                            return sendChunk(chunk);
-                        } finally {
-                            semaphore.release();
-                        }
-                    }, executor))
-                    .toList();
+    private final class StreamingChunkSender implements AutoCloseable {
+
+        private final SyncRun syncRun;
+        private final ImportRun kafkaRun;
+        private final int chunkSize = properties.getImportConfig().getChunkSize();
+        private final Semaphore semaphore = new Semaphore(properties.getImportConfig().getMaxConcurrentRequests());
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final List<CompletableFuture<BatchImportResponse>> futures = new ArrayList<>();
+        private List<ProductImportItemDto> buffer = new ArrayList<>(chunkSize);
+        private int chunks;
+
+        private StreamingChunkSender(SyncRun syncRun) {
+            this.syncRun = syncRun;
+            this.kafkaRun = properties.getImportConfig().getTransport() == ImportTransport.KAFKA
+                    ? kafkaChannel.open(SYNC_SOURCE)
+                    : null;
+        }
 
+        void add(ProductImportItemDto item) {
+            if (kafkaRun != null) {
+                kafkaRun.send(item);
+                return;
+            }
+            buffer.add(item);
+            if (buffer.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        /** Отправляет остаток и ждёт ответы по всем chunk'ам. */
+        ImportResult finish() {
+            if (kafkaRun != null) {
+                for (BatchImportResponse response : kafkaRun.finish()) {
+                    syncRun.confirm(response);
+                    futures.add(CompletableFuture.completedFuture(response));
+                }
+            } else {
+                flush();
+            }
             return aggregateResults(futures);
         }
+
+        String describe() {
+            return kafkaRun != null
+                    ? "потоком через Kafka"
+                    : chunks + " chunk(ов) по " + chunkSize;
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<ProductImportItemDto> chunk = buffer;
+            buffer = new ArrayList<>(chunkSize);
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Прервано ожидание семафора", e);
+            }
+            chunks++;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    BatchImportResponse response = sendChunk(chunk);
+                    syncRun.confirm(response);
+                    return response;
+                } finally {
+                    semaphore.release();
+                }
+            }, executor));
+        }
+
+        @Override
+        public void close() {
+            if (kafkaRun != null) kafkaRun.close();
+            executor.close();
+        }
     }
 
     /**
@@ -470,6 +534,13 @@ public class CatalogImportService {
         return new ImportResult(totalItems, createdCount, updatedCount, unchangedCount, failedCount, allErrors);
     }
 
+    /** Не отправленные из-за неизменного отпечатка товары считаются полученными и неизменёнными. */
+    private ImportResult withSkipped(ImportResult result, int skipped) {
+        if (skipped == 0) return result;
+        return new ImportResult(result.totalItems() + skipped, result.createdCount(), result.updatedCount(),
+                result.unchangedCount() + skipped, result.failedCount(), result.errors());
+    }
+
     // ==================== Image Tasks ====================
 
     /**
@@ -480,14 +551,11 @@ public class CatalogImportService {
      *
      * @return количество поставленных в очередь задач
      */
-    private int enqueueImageTasks(Path exchangeDir, List<CmlProduct> products, String sessionId) {
+    private int enqueueImageTasks(Path exchangeDir, Map<String, List<String>> imagesByProduct, String sessionId) {
         int enqueued = 0;
-        for (CmlProduct product : products) {
-            if (product.getImages() != null && !product.getImages().isEmpty()) {
-                imageProcessingPool.enqueueImages(
-                        exchangeDir, product.getId(), product.getImages(), sessionId);
-                enqueued += product.getImages().size();
-            }
+        for (Map.Entry<String, List<String>> entry : imagesByProduct.entrySet()) {
+            imageProcessingPool.enqueueImages(exchangeDir, entry.getKey(), entry.getValue(), sessionId);
+            enqueued += entry.getValue().size();
         }
         if (enqueued > 0) {
             log.info("Создано {} задач на обработку изображений. Session: {}", enqueued, sessionId);
@@ -578,17 +646,6 @@ public class CatalogImportService {
         }
     }
 
-    /**
-     * Разбивает список на подсписки фиксированного размера.
-     */
-    private <T> List<List<T>> partition(List<T> list, int chunkSize) {
-        List<List<T>> chunks = new ArrayList<>();
-        for (int i = 0; i < list.size(); i += chunkSize) {
-            chunks.add(list.subList(i, Math.min(i + chunkSize, list.size())));
-        }
-        return chunks;
-    }
-
     /**
      * Метод обрезки краткого описания до 1000 символов
      */
@@ -0,0 +1,199 @@
+package ru.rfsnab.integrationservice.service.catalog;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.integrationservice.model.commerceml.Classifier;
+import ru.rfsnab.integrationservice.model.commerceml.CmlProduct;
+import ru.rfsnab.integrationservice.model.commerceml.Offer;
+import ru.rfsnab.integrationservice.model.commerceml.OfferPrice;
+import ru.rfsnab.integrationservice.model.commerceml.PriceType;
+import ru.rfsnab.integrationservice.model.commerceml.TaxRate;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковое чтение CommerceML-файлов обмена с 1С.
+ * StAX идёт по документу, а JAXB разбирает по одному элементу за раз
+ * (Классификатор, Товар, ТипЦены, Предложение) — в памяти нет дерева всего
+ * import.xml / offers.xml, полные выгрузки в сотни МБ не требуют многогигабайтной кучи.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommerceMlStreamParser {
+
+    private static final String CATALOG = "Каталог";
+    private static final String CONTAINS_ONLY_CHANGES = "СодержитТолькоИзменения";
+    private static final String CLASSIFIER = "Классификатор";
+    private static final String PRODUCT = "Товар";
+    private static final String PRICE_TYPE = "ТипЦены";
+    private static final String OFFER = "Предложение";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final JAXBContext commerceMlJaxbContext;
+
+    /**
+     * Обработчик элементов import.xml. Классификатор в CommerceML идёт раньше каталога,
+     * поэтому к первому товару дерево групп уже загружено.
+     */
+    public interface CatalogHandler {
+        /**
+         * Начало Каталога, до первого товара.
+         *
+         * @param containsOnlyChanges СодержитТолькоИзменения="true" — выгрузка изменений,
+         *                            отсутствие товара в ней не значит, что его сняли
+         */
+        default void onCatalog(boolean containsOnlyChanges) {
+        }
+
+        void onClassifier(Classifier classifier);
+
+        void onProduct(CmlProduct product);
+    }
+
+    /**
+     * Из предложения остаётся только то, что нужно для импорта: цены по Ид типа цены
+     * и остаток сырыми строками, первая ставка НДС; разбор и валидация — в CatalogImportService.
+     *
+     * @param taxRate null — ставок налога в предложении нет
+     */
+    public record OfferData(Map<String, String> pricesByType, String quantity, TaxRate taxRate) {
+    }
+
+    /**
+     * Компактный индекс offers.xml для джойна с товарами по Ид.
+     */
+    public record OffersIndex(List<PriceType> priceTypes, Map<String, OfferData> offersById) {
+
+        public static final OffersIndex EMPTY = new OffersIndex(List.of(), Map.of());
+    }
+
+    /**
+     * Читает import.xml, передавая обработчику классификатор и товары по мере разбора.
+     *
+     * @return количество прочитанных товаров
+     */
+    public int readCatalog(Path importXml, CatalogHandler handler) {
+        int[] products = {0};
+        stream(importXml, (reader, unmarshaller) -> switch (reader.getLocalName()) {
+            case CATALOG -> {
+                // Только атрибут: элемент не поглощается, StAX идёт дальше внутрь Каталога
+                handler.onCatalog(Boolean.parseBoolean(reader.getAttributeValue(null, CONTAINS_ONLY_CHANGES)));
+                yield false;
+            }
+            case CLASSIFIER -> {
+                handler.onClassifier(unmarshaller.unmarshal(reader, Classifier.class).getValue());
+                yield true;
+            }
+            case PRODUCT -> {
+                handler.onProduct(unmarshaller.unmarshal(reader, CmlProduct.class).getValue());
+                products[0]++;
+                yield true;
+            }
+            default -> false;
+        });
+        return products[0];
+    }
+
+    /**
+     * Читает offers.xml в компактный индекс. Дубли Ид — побеждает первое предложение.
+     */
+    public OffersIndex readOffers(Path offersXml) {
+        List<PriceType> priceTypes = new ArrayList<>();
+        Map<String, OfferData> offersById = new HashMap<>();
+        stream(offersXml, (reader, unmarshaller) -> switch (reader.getLocalName()) {
+            case PRICE_TYPE -> {
+                priceTypes.add(unmarshaller.unmarshal(reader, PriceType.class).getValue());
+                yield true;
+            }
+            case OFFER -> {
+                Offer offer = unmarshaller.unmarshal(reader, Offer.class).getValue();
+                if (offer.getId() != null) {
+                    offersById.putIfAbsent(offer.getId(), compact(offer));
+                }
+                yield true;
+            }
+            default -> false;
+        });
+        log.info("offers.xml: {} предложений, {} типов цен", offersById.size(), priceTypes.size());
+        return new OffersIndex(List.copyOf(priceTypes), offersById);
+    }
+
+    private static OfferData compact(Offer offer) {
+        Map<String, String> prices = new HashMap<>(4);
+        if (offer.getPrices() != null) {
+            for (OfferPrice price : offer.getPrices()) {
+                if (price.getPriceTypeId() != null) {
+                    prices.putIfAbsent(price.getPriceTypeId(), price.getPricePerUnit());
+                }
+            }
+        }
+        TaxRate taxRate = (offer.getTaxRates() != null && !offer.getTaxRates().isEmpty())
+                ? offer.getTaxRates().getFirst()
+                : null;
+        return new OfferData(prices, offer.getQuantity(), taxRate);
+    }
+
+    /**
+     * Элемент, который читается целиком через JAXB.
+     *
+     * @return true — элемент разобран, reader стоит уже после него
+     */
+    @FunctionalInterface
+    private interface ElementReader {
+        boolean read(XMLStreamReader reader, Unmarshaller unmarshaller) throws JAXBException;
+    }
+
+    /**
+     * Обход документа: на START_ELEMENT элемент отдаётся ElementReader; разобранный элемент
+     * JAXB уже прочитал до конца, поэтому следующее событие берётся без reader.next().
+     * Unmarshaller создаётся на файл — он не thread-safe, но дешёвый в создании.
+     */
+    private void stream(Path xmlFile, ElementReader elementReader) {
+        log.debug("Потоковый парсинг XML: {}", xmlFile);
+        if (!Files.exists(xmlFile)) {
+            throw new IllegalStateException("XML-файл не найден: " + xmlFile.getFileName());
+        }
+        try (InputStream in = Files.newInputStream(xmlFile)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                Unmarshaller unmarshaller = commerceMlJaxbContext.createUnmarshaller();
+                while (reader.hasNext()) {
+                    if (reader.getEventType() == XMLStreamConstants.START_ELEMENT
+                            && elementReader.read(reader, unmarshaller)) {
+                        continue;
+                    }
+                    reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | JAXBException | IOException e) {
+            throw new IllegalStateException("Ошибка парсинга XML: " + xmlFile.getFileName(), e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Файлы приходят извне — без DTD и внешних сущностей (XXE)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
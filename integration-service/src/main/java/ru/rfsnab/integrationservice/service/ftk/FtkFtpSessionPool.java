@@ -0,0 +1,98 @@
+package ru.rfsnab.integrationservice.service.ftk;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченный пул залогиненных FTP-сессий ФТК.
+ *
+ * Сессия берётся на одно скачивание и возвращается в пул, а не закрывается:
+ * connect + login к серверу ФТК стоят дольше передачи типичной картинки.
+ * Одновременно открыто не больше maxSessions сессий — сервер ограничивает
+ * число подключений на логин, лишние потоки ждут в {@link #borrow()}.
+ *
+ * Сессия, на которой случилась ошибка передачи, в пул не возвращается
+ * ({@link #invalidate}) — следующий borrow откроет новую.
+ */
+@Slf4j
+class FtkFtpSessionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    interface Connector {
+        /** Открывает новую сессию: connect + login + пассивный бинарный режим. */
+        FTPClient connect() throws IOException;
+    }
+
+    private final Semaphore permits;
+    private final Connector connector;
+    /** LIFO: последней возвращённая сессия — самая «тёплая», меньше шанс, что сервер её уже закрыл */
+    private final Deque<FTPClient> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger opened = new AtomicInteger();
+
+    FtkFtpSessionPool(int maxSessions, Connector connector) {
+        this.permits = new Semaphore(Math.max(1, maxSessions));
+        this.connector = connector;
+    }
+
+    /**
+     * Свободная сессия из пула или новая, если свободных нет и лимит не исчерпан.
+     * Блокируется, пока все maxSessions сессий заняты.
+     */
+    FTPClient borrow() throws IOException, InterruptedException {
+        permits.acquire();
+        FTPClient ftp = idle.pollFirst();
+        if (ftp != null && ftp.isConnected()) {
+            return ftp;
+        }
+        if (ftp != null) {
+            disconnect(ftp);
+        }
+        try {
+            FTPClient fresh = connector.connect();
+            opened.incrementAndGet();
+            return fresh;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Возвращает исправную сессию в пул. */
+    void release(FTPClient ftp) {
+        idle.addFirst(ftp);
+        permits.release();
+    }
+
+    /** Закрывает сломанную сессию, освобождая место под новую. */
+    void invalidate(FTPClient ftp) {
+        disconnect(ftp);
+        permits.release();
+    }
+
+    /** Сколько сессий было открыто за время жизни пула (с учётом переоткрытых). */
+    int openedSessions() {
+        return opened.get();
+    }
+
+    @Override
+    public void close() {
+        FTPClient ftp;
+        while ((ftp = idle.pollFirst()) != null) {
+            disconnect(ftp);
+        }
+        log.debug("Пул FTP-сессий закрыт, всего открывалось сессий: {}", opened.get());
+    }
+
+    private static void disconnect(FTPClient ftp) {
+        if (ftp.isConnected()) {
+            try { ftp.logout(); } catch (Exception ignored) {}
+            try { ftp.disconnect(); } catch (Exception ignored) {}
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package ru.rfsnab.integrationservice.service.ftk;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -17,10 +20,12 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import ru.rfsnab.integrationservice.config.IntegrationProperties;
 import ru.rfsnab.integrationservice.config.IntegrationProperties.FtpProperties;
+import ru.rfsnab.integrationservice.config.IntegrationProperties.ImagePipelineProperties;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -31,12 +36,28 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Скачивает изображение с FTP/HTTP URL ФТК, конвертирует в WebP и загружает в product-service.
  *
  * URL изображений ФТК содержит только путь к файлу — хост, порт и учётные данные
  * берутся из конфигурации (env-переменные FTK_FTP_*).
+ *
+ * Пачка картинок идёт через конвейер из трёх стадий со своей параллельностью
+ * (integration.ftk.image-pipeline):
+ * - download — виртуальные потоки по числу сессий в пуле залогиненных FTP-сессий;
+ * - convert — платформенные потоки по числу ядер (декодирование и WebP — CPU-bound);
+ * - upload — виртуальные потоки, multipart в product-service.
+ * Стадии связаны ограниченными очередями: если конвертация или отправка не успевают,
+ * скачивание ждёт, а не копит картинки в памяти.
+ * Время и исход каждой стадии — таймер ftk.images.stage{stage, outcome}.
  */
 @Component
 @RequiredArgsConstructor
@@ -46,9 +67,19 @@ public class FtkImageDownloader {
     private static final String UPLOAD_URI = "/api/v1/products/external/{externalId}/images";
     private static final String EXISTING_KEYS_BATCH_URI = "/api/v1/products/external/images/keys/batch";
     private static final String WEBP_FORMAT = "webp";
+    private static final String STAGE_METRIC = "ftk.images.stage";
 
     private final RestTemplate productServiceRestTemplate;
     private final IntegrationProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /** Картинка товара к загрузке: URL (ftp:// или http(s)://) и externalId товара. */
+    public record ImageJob(String imageUrl, String externalId) {}
+
+    /** Итог загрузки пачки картинок. */
+    public record ImageBatchResult(int ok, int failed) {
+        public static final ImageBatchResult EMPTY = new ImageBatchResult(0, 0);
+    }
 
     /**
      * Уже загруженные fileKey картинок для набора товаров (один batch-запрос вместо N).
@@ -82,40 +113,54 @@ public class FtkImageDownloader {
         return "products/ftk/" + externalId + "/" + buildFileName(imageUrl, externalId);
     }
 
-    public boolean downloadAndUpload(String imageUrl, String externalId) {
-        if (imageUrl == null || imageUrl.isBlank()) return false;
-
-        try {
-            byte[] imageBytes = downloadImage(imageUrl);
-            if (imageBytes == null || imageBytes.length == 0) {
-                log.warn("Пустое изображение: externalId={}", externalId);
-                return false;
-            }
-
-            byte[] webpBytes;
-            if (isWebP(imageBytes)) {
-                webpBytes = imageBytes;
-            } else if (isSafeToDecode(imageBytes)) {
-                webpBytes = convertToWebP(imageBytes);
-            } else {
-                log.warn("Неизвестный формат изображения, пропускаем: externalId={}, url={}", externalId, imageUrl);
-                return false;
-            }
-            String fileName = buildFileName(imageUrl, externalId);
-            uploadToProductService(externalId, webpBytes, fileName);
+    /**
+     * Скачивает, конвертирует в WebP и загружает в product-service все картинки пачки.
+     * Ошибка по отдельной картинке не прерывает остальные — она попадает в failed.
+     */
+    public ImageBatchResult downloadAndUploadAll(List<ImageJob> jobs) {
+        if (jobs.isEmpty()) return ImageBatchResult.EMPTY;
+
+        ImagePipelineProperties cfg = properties.getFtk().getImagePipeline();
+        try (FtkFtpSessionPool ftpSessions = new FtkFtpSessionPool(cfg.getFtpSessions(), this::connectFtp)) {
+            ImageBatchResult result = new ImagePipeline(cfg, ftpSessions).run(jobs);
+            log.info("ФТК изображения: FTP-сессий открыто {} (пул {})", ftpSessions.openedSessions(), cfg.getFtpSessions());
+            return result;
+        }
+    }
 
-            log.debug("Изображение загружено: externalId={}, size={}KB", externalId, webpBytes.length / 1024);
-            return true;
+    /** Стадия download: байты картинки как есть. */
+    byte[] download(ImageJob job, FtkFtpSessionPool ftpSessions) throws IOException, InterruptedException {
+        byte[] imageBytes = downloadImage(job.imageUrl(), ftpSessions);
+        if (imageBytes == null || imageBytes.length == 0) {
+            throw new IOException("Пустое изображение");
+        }
+        return imageBytes;
+    }
 
-        } catch (Exception e) {
-            log.warn("Ошибка загрузки изображения: externalId={}: {}", externalId, e.getMessage());
-            return false;
+    /**
+     * Стадия convert: WebP заливаем как есть, безопасные форматы перекодируем.
+     * @return null — формат неизвестен, картинка пропускается
+     */
+    byte[] toWebP(ImageJob job, byte[] imageBytes) throws IOException {
+        if (isWebP(imageBytes)) {
+            return imageBytes;
+        }
+        if (isSafeToDecode(imageBytes)) {
+            return convertToWebP(imageBytes);
         }
+        log.warn("Неизвестный формат изображения, пропускаем: externalId={}, url={}", job.externalId(), job.imageUrl());
+        return null;
     }
 
-    private byte[] downloadImage(String imageUrl) throws IOException, InterruptedException {
+    /** Стадия upload: multipart в product-service. */
+    void upload(ImageJob job, byte[] webpBytes) {
+        uploadToProductService(job.externalId(), webpBytes, buildFileName(job.imageUrl(), job.externalId()));
+        log.debug("Изображение загружено: externalId={}, size={}KB", job.externalId(), webpBytes.length / 1024);
+    }
+
+    private byte[] downloadImage(String imageUrl, FtkFtpSessionPool ftpSessions) throws IOException, InterruptedException {
         if (imageUrl.startsWith("ftp://")) {
-            return downloadViaFtp(extractFtpPath(imageUrl));
+            return downloadViaFtp(extractFtpPath(imageUrl), ftpSessions);
         }
 
         int timeoutSec = properties.getFtk().getImageDownloadTimeoutSec();
@@ -151,7 +196,47 @@ public class FtkImageDownloader {
         }
     }
 
-    private byte[] downloadViaFtp(String remotePath) throws IOException {
+    /**
+     * Скачивание на сессии из пула. Сервер мог закрыть простаивавшую сессию —
+     * тогда она выбрасывается и попытка повторяется один раз на новой.
+     * Отсутствующий файл (5xx-ответ на RETR) сессию не ломает и не повторяется.
+     */
+    private byte[] downloadViaFtp(String remotePath, FtkFtpSessionPool ftpSessions) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            FTPClient ftp = ftpSessions.borrow();
+            try {
+                byte[] data = retrieve(ftp, remotePath);
+                ftpSessions.release(ftp);
+                return data;
+            } catch (FileNotFoundException e) {
+                ftpSessions.release(ftp);
+                throw e;
+            } catch (IOException e) {
+                ftpSessions.invalidate(ftp);
+                if (attempt >= 2) throw e;
+                log.debug("FTP-сессия ФТК недоступна ({}), повтор на новой: {}", e.getMessage(), remotePath);
+            }
+        }
+    }
+
+    private static byte[] retrieve(FTPClient ftp, String remotePath) throws IOException {
+        byte[] data;
+        try (InputStream is = ftp.retrieveFileStream(remotePath)) {
+            if (is == null) {
+                if (FTPReply.isNegativePermanent(ftp.getReplyCode())) {
+                    throw new FileNotFoundException("Файл не найден на FTP: " + remotePath);
+                }
+                throw new IOException("FTP не открыл передачу: " + ftp.getReplyString().trim());
+            }
+            data = is.readAllBytes();
+        }
+        if (!ftp.completePendingCommand()) {
+            throw new IOException("FTP не подтвердил передачу: " + ftp.getReplyString().trim());
+        }
+        return data;
+    }
+
+    private FTPClient connectFtp() throws IOException {
         FtpProperties cfg = properties.getFtk().getFtp();
         int timeoutMs = properties.getFtk().getImageDownloadTimeoutSec() * 1000;
 
@@ -162,23 +247,18 @@ public class FtkImageDownloader {
 
         try {
             ftp.connect(cfg.getHost(), cfg.getPort());
-            ftp.login(cfg.getUsername(), cfg.getPassword());
+            if (!ftp.login(cfg.getUsername(), cfg.getPassword())) {
+                throw new IOException("FTP логин не прошёл для пользователя: " + cfg.getUsername()
+                        + " (reply: " + ftp.getReplyString().trim() + ")");
+            }
             ftp.enterLocalPassiveMode();
             ftp.setFileType(FTP.BINARY_FILE_TYPE);
-
-            try (InputStream is = ftp.retrieveFileStream(remotePath)) {
-                if (is == null) {
-                    throw new IOException("Файл не найден на FTP: " + remotePath);
-                }
-                byte[] data = is.readAllBytes();
-                ftp.completePendingCommand();
-                return data;
-            }
-        } finally {
+            return ftp;
+        } catch (IOException e) {
             if (ftp.isConnected()) {
-                try { ftp.logout(); } catch (Exception ignored) {}
                 try { ftp.disconnect(); } catch (Exception ignored) {}
             }
+            throw e;
         }
     }
 
@@ -265,4 +345,182 @@ public class FtkImageDownloader {
         if (base.isEmpty()) base = externalId;
         return "ftk-" + base + ".webp";
     }
+
+    // ──────────────────────────────────────────────────────────────
+    // Конвейер download → convert → upload
+    // ──────────────────────────────────────────────────────────────
+
+    /** Картинка между стадиями; END — сигнал «входов больше не будет» для одного воркера. */
+    private record StageItem(ImageJob job, byte[] bytes) {
+        static final StageItem END = new StageItem(null, null);
+    }
+
+    @FunctionalInterface
+    private interface StageStep {
+        /** @return результат для следующей стадии; null — картинка пропущена (считается failed) */
+        byte[] apply(ImageJob job, byte[] bytes) throws Exception;
+    }
+
+    /**
+     * Один прогон конвейера. Каждая стадия — N воркеров, читающих свою входную очередь;
+     * последний завершившийся воркер стадии отправляет END каждому воркеру следующей.
+     * Очереди ограничены queueCapacity — put() блокирует быструю стадию (backpressure).
+     */
+    private final class ImagePipeline {
+
+        private final FtkFtpSessionPool ftpSessions;
+        private final Stage download;
+        private final Stage convert;
+        private final Stage upload;
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        ImagePipeline(ImagePipelineProperties cfg, FtkFtpSessionPool ftpSessions) {
+            this.ftpSessions = ftpSessions;
+            int converters = cfg.getConvertThreads() > 0
+                    ? cfg.getConvertThreads()
+                    : Runtime.getRuntime().availableProcessors();
+            int capacity = Math.max(1, cfg.getQueueCapacity());
+
+            this.upload = new Stage("upload", cfg.getUploadConcurrency(), capacity, null,
+                    (job, bytes) -> {
+                        FtkImageDownloader.this.upload(job, bytes);
+                        return bytes;
+                    });
+            this.convert = new Stage("convert", converters, capacity, upload, FtkImageDownloader.this::toWebP);
+            this.download = new Stage("download", cfg.getFtpSessions(), capacity, convert,
+                    (job, ignored) -> FtkImageDownloader.this.download(job, this.ftpSessions));
+        }
+
+        ImageBatchResult run(List<ImageJob> jobs) {
+            long startedAt = System.nanoTime();
+            ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            ExecutorService cpuExecutor = Executors.newFixedThreadPool(convert.workers,
+                    Thread.ofPlatform().name("ftk-img-convert-", 0).factory());
+            try {
+                download.start(ioExecutor);
+                convert.start(cpuExecutor);
+                upload.start(ioExecutor);
+
+                for (ImageJob job : jobs) {
+                    download.input.put(new StageItem(job, null));
+                }
+                download.finishInput();
+
+                ioExecutor.shutdown();
+                cpuExecutor.shutdown();
+                ioExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                cpuExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ioExecutor.shutdownNow();
+                cpuExecutor.shutdownNow();
+                log.warn("ФТК изображения: конвейер прерван, обработано {} из {}", ok.get() + failed.get(), jobs.size());
+            }
+
+            double elapsedSec = Math.max((System.nanoTime() - startedAt) / 1e9, 0.001);
+            for (Stage stage : List.of(download, convert, upload)) {
+                stage.logSummary(elapsedSec);
+            }
+            return new ImageBatchResult(ok.get(), failed.get());
+        }
+
+        private final class Stage {
+
+            private final String name;
+            private final int workers;
+            private final BlockingQueue<StageItem> input;
+            private final Stage next;
+            private final StageStep step;
+            private final Timer successTimer;
+            private final Timer failureTimer;
+            private final AtomicInteger alive;
+            private final AtomicInteger processed = new AtomicInteger();
+            private final AtomicInteger stageFailed = new AtomicInteger();
+            private final AtomicLong busyNanos = new AtomicLong();
+
+            Stage(String name, int workers, int capacity, Stage next, StageStep step) {
+                this.name = name;
+                this.workers = Math.max(1, workers);
+                this.input = new ArrayBlockingQueue<>(capacity);
+                this.next = next;
+                this.step = step;
+                this.successTimer = stageTimer(name, "success");
+                this.failureTimer = stageTimer(name, "failure");
+                this.alive = new AtomicInteger(this.workers);
+            }
+
+            void start(ExecutorService executor) {
+                for (int i = 0; i < workers; i++) {
+                    executor.execute(this::work);
+                }
+            }
+
+            /** Входов больше не будет: по END на каждого воркера. */
+            void finishInput() throws InterruptedException {
+                for (int i = 0; i < workers; i++) {
+                    input.put(StageItem.END);
+                }
+            }
+
+            private void work() {
+                try {
+                    StageItem item;
+                    while ((item = input.take()) != StageItem.END) {
+                        byte[] result = process(item);
+                        if (result == null) {
+                            failed.incrementAndGet();
+                        } else if (next != null) {
+                            next.input.put(new StageItem(item.job(), result));
+                        } else {
+                            ok.incrementAndGet();
+                        }
+                    }
+                    if (alive.decrementAndGet() == 0 && next != null) {
+                        next.finishInput();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            private byte[] process(StageItem item) {
+                long started = System.nanoTime();
+                byte[] result;
+                try {
+                    result = step.apply(item.job(), item.bytes());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result = null;
+                } catch (Exception e) {
+                    log.warn("Ошибка изображения на стадии {}: externalId={}: {}",
+                            name, item.job().externalId(), e.getMessage());
+                    result = null;
+                }
+                long elapsed = System.nanoTime() - started;
+                busyNanos.addAndGet(elapsed);
+                processed.incrementAndGet();
+                if (result == null) {
+                    stageFailed.incrementAndGet();
+                    failureTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                } else {
+                    successTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                }
+                return result;
+            }
+
+            void logSummary(double elapsedSec) {
+                log.info("ФТК изображения [{}]: потоков={}, обработано={} ({} шт/с), ошибок={}, занятость={} с",
+                        name, workers, processed.get(), Math.round(processed.get() / elapsedSec),
+                        stageFailed.get(), TimeUnit.NANOSECONDS.toSeconds(busyNanos.get()));
+            }
+        }
+    }
+
+    private Timer stageTimer(String stage, String outcome) {
+        return Timer.builder(STAGE_METRIC)
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
@@ -8,6 +8,7 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.config.IntegrationProperties.ImportTransport;
 import ru.rfsnab.integrationservice.config.KafkaTopicsProperties;
 import ru.rfsnab.integrationservice.dto.BatchImportRequest;
 import ru.rfsnab.integrationservice.dto.BatchImportResponse;
@@ -21,14 +22,24 @@ import ru.rfsnab.integrationservice.model.ftk.FtkProduct;
 import ru.rfsnab.integrationservice.model.ftk.FtkProduct.FtkVariant;
 import ru.rfsnab.integrationservice.repository.ImportLogRepository;
 import ru.rfsnab.integrationservice.service.ftk.FtkFtpClient.FtpStreamHandle;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageBatchResult;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageJob;
 import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ClassifierData;
 import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.OfferData;
-import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ProductData;
+import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.PartOffers;
 import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.RestData;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncRun;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncSummary;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel.ImportRun;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -70,6 +81,8 @@ public class FtkImportService {
     private final ImportLogRepository importLogRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final KafkaTopicsProperties kafkaTopics;
+    private final IncrementalSyncService syncService;
+    private final ProductImportKafkaChannel kafkaChannel;
 
     private final AtomicBoolean importInProgress = new AtomicBoolean(false);
 
@@ -118,6 +131,7 @@ public class FtkImportService {
 
         log.info("ФТК XML импорт запущен");
 
+        FtkImportStream importStream = null;
         try {
             // 1. Классификатор → группы + свойства + единицы измерения (общий для всех порций)
             String rootImportPath = ftpClient.findFileByPrefix(rootDir, "import___");
@@ -129,113 +143,117 @@ public class FtkImportService {
             classifier = mergePropertyClassifiers(classifier);
             categoryMapper.loadClassifier(classifier);
 
-            // 2-6. Товары/офферы/цены/остатки/сборка — по каждой из трёх FTP-порций
-            List<FtkProduct> allProducts = new ArrayList<>();
+            // 2-6. Офферы/цены/остатки/товары/сборка — по каждой из трёх FTP-порций.
+            //      Товары собираются по одному и сразу уходят в batch-импорт: ни DOM файлов,
+            //      ни списка всех товаров каталога в памяти нет. Товары с прежним отпечатком
+            //      содержимого (см. IncrementalSyncService) в product-service не отправляются
+            SyncRun syncRun = syncService.startRun(SOURCE);
+            importStream = new FtkImportStream(cfg.getImportLimit(), syncRun);
+            int partsCompleted = 0;
             for (int part = 1; part <= FtkFtpClient.GOODS_PARTS_COUNT; part++) {
                 String goodsDir = ftpClient.getGoodsDir(part);
                 try {
-                    // 2. Товары
                     String goodsImportPath = ftpClient.findFileByPrefix(goodsDir, "import___");
                     if (goodsImportPath == null) {
                         log.warn("ФТК: goods/{}/import___.xml не найден на FTP, порция пропущена", part);
                         continue;
                     }
-                    Map<String, ProductData> products;
-                    try (InputStream is = ftpClient.openStream(goodsImportPath)) {
-                        products = xmlParser.parseProducts(is, classifier);
-                    }
-
-                    // 3. Предложения
                     String offersPath = ftpClient.findFileByPrefix(goodsDir, "offers___");
                     if (offersPath == null) {
                         log.warn("ФТК: goods/{}/offers___.xml не найден на FTP, порция пропущена", part);
                         continue;
                     }
-                    Map<String, OfferData> offers;
-                    try (InputStream is = ftpClient.openStream(offersPath)) {
-                        offers = xmlParser.parseOffers(is);
-                    }
-
-                    // 4. Цены — StAX стрим (125 МБ)
                     String pricesPath = ftpClient.findFileByPrefix(goodsDir, "prices___");
                     if (pricesPath == null) {
                         log.warn("ФТК: goods/{}/prices___.xml не найден на FTP, порция пропущена", part);
                         continue;
                     }
-                    Map<String, BigDecimal> prices;
-                    try (FtpStreamHandle handle = ftpClient.openLargeStream(pricesPath)) {
-                        prices = xmlParser.parsePrices(handle.getStream());
-                    }
-
-                    // 5. Остатки
                     String restsPath = ftpClient.findFileByPrefix(goodsDir, "rests___");
                     if (restsPath == null) {
                         log.warn("ФТК: goods/{}/rests___.xml не найден на FTP, порция пропущена", part);
                         continue;
                     }
-                    Map<String, RestData> rests;
-                    try (InputStream is = ftpClient.openStream(restsPath)) {
-                        rests = xmlParser.parseRests(is);
+
+                    // 2. Предложения
+                    Map<String, OfferData> offers;
+                    try (FtpStreamHandle handle = ftpClient.openLargeStream(offersPath)) {
+                        offers = xmlParser.parseOffers(handle.getStream());
+                    }
+
+                    // 3. Цены (125 МБ)
+                    Map<String, BigDecimal> prices;
+                    try (FtpStreamHandle handle = ftpClient.openLargeStream(pricesPath)) {
+                        prices = xmlParser.parsePrices(handle.getStream());
                     }
 
-                    // 6. Сборка
-                    List<FtkProduct> partProducts = xmlParser.assemble(products, offers, prices, rests, classifier, part);
-                    log.info("ФТК: goods/{} — собрано {} товаров", part, partProducts.size());
-                    allProducts.addAll(partProducts);
+                    // 4. Остатки
+                    Map<String, RestData> rests;
+                    try (FtpStreamHandle handle = ftpClient.openLargeStream(restsPath)) {
+                        rests = xmlParser.parseRests(handle.getStream());
+                    }
+                    PartOffers partOffers = PartOffers.of(offers, prices, rests);
+
+                    // 5-6. Товары потоком → сборка → chunk'и в product-service
+                    Path goodsImport = downloadToTempFile(goodsImportPath);
+                    int assembled;
+                    try (InputStream is = Files.newInputStream(goodsImport)) {
+                        assembled = xmlParser.assemblePart(is, classifier, partOffers, part, importStream::accept);
+                    } finally {
+                        Files.deleteIfExists(goodsImport);
+                    }
+                    log.info("ФТК: goods/{} — собрано {} товаров", part, assembled);
+                    partsCompleted++;
                 } catch (Exception e) {
                     log.warn("ФТК: ошибка обработки порции goods/{} — порция пропущена: {}", part, e.getMessage());
                 }
             }
-            log.info("ФТК: всего собрано {} товаров из {} порций", allProducts.size(), FtkFtpClient.GOODS_PARTS_COUNT);
+            log.info("ФТК: всего собрано {} товаров из {} порций", importStream.assembled, FtkFtpClient.GOODS_PARTS_COUNT);
 
-            // 7. Лимит
+            // 7. Лимит — применяется в FtkImportStream по мере сборки
             int limit = cfg.getImportLimit();
-            List<FtkProduct> limited = (limit > 0 && allProducts.size() > limit)
-                    ? allProducts.subList(0, limit)
-                    : allProducts;
-            if (limit > 0 && allProducts.size() > limit) {
-                log.info("ФТК: применён лимит {} из {}", limit, allProducts.size());
+            if (limit > 0 && importStream.assembled > limit) {
+                log.info("ФТК: применён лимит {} из {}", limit, importStream.assembled);
             }
 
-            // 8. Маппинг и batch-импорт
-            List<ProductImportItemDto> dtos = limited.stream()
-                    .map(this::mapToDto)
-                    .filter(dto -> dto != null)
-                    .toList();
-
-            BatchImportResult batchResult = sendBatch(dtos);
-            log.info("ФТК batch-импорт: created={}, updated={}, unchanged={}, failed={}",
-                    batchResult.created(), batchResult.updated(), batchResult.unchanged(), batchResult.failed());
+            // 8. Досылка последнего chunk'а batch-импорта, затем tombstone-проход — только если
+            //    каталог прочитан целиком: все порции без ошибок и без лимита
+            BatchImportResult batchResult = importStream.sender.finish();
+            boolean fullSnapshot = partsCompleted == FtkFtpClient.GOODS_PARTS_COUNT && limit == 0;
+            SyncSummary sync = syncRun.finish(fullSnapshot);
+            int unchanged = batchResult.unchanged() + sync.skipped();
+            log.info("ФТК batch-импорт: created={}, updated={}, unchanged={} (не отправлено {}), failed={}, снято с остатка={}",
+                    batchResult.created(), batchResult.updated(), unchanged, sync.skipped(), batchResult.failed(), sync.withdrawn());
 
             // 9. Изображения — все картинки каждого товара, кроме уже загруженных ранее
-            List<String> externalIdsWithImages = limited.stream()
-                    .filter(p -> !p.getImagePaths().isEmpty())
-                    .map(p -> buildProductExternalId(p.getArticle()))
+            List<ProductImages> withImages = importStream.images;
+            List<String> externalIdsWithImages = withImages.stream()
+                    .map(ProductImages::externalId)
                     .toList();
             Map<String, Set<String>> existingFileKeysByProduct = imageDownloader.getExistingFileKeysBatch(externalIdsWithImages);
 
-            int imagesOk = 0, imagesFailed = 0, imagesSkipped = 0;
-            for (FtkProduct p : limited) {
-                if (p.getImagePaths().isEmpty()) continue;
-                String externalId = buildProductExternalId(p.getArticle());
+            List<ImageJob> imageJobs = new ArrayList<>();
+            int imagesSkipped = 0;
+            for (ProductImages p : withImages) {
+                String externalId = p.externalId();
                 Set<String> existingFileKeys = existingFileKeysByProduct.getOrDefault(externalId, Set.of());
-                for (String imagePath : p.getImagePaths()) {
+                for (String imagePath : p.imagePaths()) {
                     String ftpImagePath = "ftp://" + properties.getFtk().getFtp().getHost()
-                            + ftpClient.getGoodsDir(p.getPartNumber()) + imagePath;
+                            + ftpClient.getGoodsDir(p.partNumber()) + imagePath;
                     String predictedFileKey = imageDownloader.predictFileKey(ftpImagePath, externalId);
                     if (existingFileKeys.contains(predictedFileKey)) {
                         imagesSkipped++;
                         log.debug("ФТК изображение уже загружено, пропуск: externalId={}, fileKey={}", externalId, predictedFileKey);
                         continue;
                     }
-                    boolean ok = imageDownloader.downloadAndUpload(ftpImagePath, externalId);
-                    if (ok) imagesOk++; else imagesFailed++;
+                    imageJobs.add(new ImageJob(ftpImagePath, externalId));
                 }
             }
+            ImageBatchResult images = imageDownloader.downloadAndUploadAll(imageJobs);
+            int imagesOk = images.ok(), imagesFailed = images.failed();
             log.info("ФТК изображения: ok={}, failed={}, skipped={}", imagesOk, imagesFailed, imagesSkipped);
 
-            FtkImportResult result = new FtkImportResult(limited.size(), batchResult.created(),
-                    batchResult.updated(), batchResult.unchanged(), batchResult.failed(), imagesOk, imagesFailed, imagesSkipped);
+            FtkImportResult result = new FtkImportResult(importStream.accepted, batchResult.created(),
+                    batchResult.updated(), unchanged, batchResult.failed(), imagesOk, imagesFailed, imagesSkipped);
             saveFtkLog(logEntry, startedAt, resumeAttempts, result, null, batchResult.errors());
             return result;
 
@@ -243,9 +261,64 @@ public class FtkImportService {
             log.error("ФТК XML импорт завершился с ошибкой: {}", e.getMessage(), e);
             saveFtkLog(logEntry, startedAt, resumeAttempts, null, e, List.of());
             throw e;
+        } finally {
+            if (importStream != null) importStream.sender.close();
+        }
+    }
+
+    /**
+     * goods/N/import разбирается потоком, пока собранные товары отправляются в product-service.
+     * Держать FTP-соединение открытым на время HTTP-вызовов нельзя (data timeout), поэтому
+     * файл сначала копируется во временный файл на диске — в память он не поднимается.
+     */
+    private Path downloadToTempFile(String ftpPath) throws IOException {
+        Path tempFile = Files.createTempFile("ftk-goods-", ".xml");
+        try (FtpStreamHandle handle = ftpClient.openLargeStream(ftpPath)) {
+            Files.copy(handle.getStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Приёмник собранных товаров FTP-импорта: лимит, маппинг в DTO и отправка chunk'ами
+     * по мере сборки. От товара дальше живут только ссылки на его картинки (шаг 9) —
+     * и для неизменившихся товаров тоже: недокачанные картинки догружаются в любом случае.
+     */
+    private final class FtkImportStream {
+
+        private final int limit;
+        private final SyncRun syncRun;
+        private final BatchSender sender;
+        private final List<ProductImages> images = new ArrayList<>();
+        /** Собрано товаров во всех порциях */
+        private int assembled;
+        /** Из них прошло лимит */
+        private int accepted;
+
+        private FtkImportStream(int limit, SyncRun syncRun) {
+            this.limit = limit;
+            this.syncRun = syncRun;
+            this.sender = new BatchSender(syncRun);
+        }
+
+        void accept(FtkProduct p) {
+            assembled++;
+            if (limit > 0 && accepted >= limit) return;
+            accepted++;
+
+            ProductImportItemDto dto = mapToDto(p);
+            if (dto != null && syncRun.shouldSend(dto)) sender.add(dto);
+            if (!p.getImagePaths().isEmpty()) {
+                images.add(new ProductImages(buildProductExternalId(p.getArticle()), p.getPartNumber(), p.getImagePaths()));
+            }
         }
     }
 
+    private record ProductImages(String externalId, int partNumber, List<String> imagePaths) {}
+
     /**
      * Классификатор свойств (Бренд, Защитные свойства и т.д.) в корневом import___.xml
      * пустой — реальные свойства лежат в подпапках /webdata/000000003/properties/{N}/.
@@ -302,14 +375,15 @@ public class FtkImportService {
             log.info("ФТК XLS batch-импорт: created={}, updated={}, unchanged={}, failed={}",
                     batchResult.created(), batchResult.updated(), batchResult.unchanged(), batchResult.failed());
 
-            int imagesOk = 0, imagesFailed = 0;
+            List<ImageJob> imageJobs = new ArrayList<>();
             for (FtkProduct p : products) {
                 String externalId = buildProductExternalId(p.getArticle());
                 for (String imagePath : p.getImagePaths()) {
-                    boolean ok = imageDownloader.downloadAndUpload(imagePath, externalId);
-                    if (ok) imagesOk++; else imagesFailed++;
+                    imageJobs.add(new ImageJob(imagePath, externalId));
                 }
             }
+            ImageBatchResult images = imageDownloader.downloadAndUploadAll(imageJobs);
+            int imagesOk = images.ok(), imagesFailed = images.failed();
 
             FtkImportResult result = new FtkImportResult(products.size(), batchResult.created(),
                     batchResult.updated(), batchResult.unchanged(), batchResult.failed(), imagesOk, imagesFailed, 0);
@@ -396,30 +470,69 @@ public class FtkImportService {
     // ══════════════════════════════════════════════════════════════
 
     private BatchImportResult sendBatch(List<ProductImportItemDto> items) {
-        if (items.isEmpty()) return new BatchImportResult(0, 0, 0, 0, List.of());
+        try (BatchSender sender = new BatchSender(null)) {
+            items.forEach(sender::add);
+            return sender.finish();
+        }
+    }
+
+    /**
+     * Последовательная отправка DTO chunk'ами по мере поступления:
+     * в памяти не больше одного chunk'а, результаты суммируются.
+     * При transport=kafka товары уходят потоком по одному, без ожидания ответа на chunk,
+     * а ответы product-service суммируются в finish().
+     * syncRun (null для XLS) получает ответ каждого chunk'а — отпечатки принятых товаров.
+     */
+    private final class BatchSender implements AutoCloseable {
+
+        private final SyncRun syncRun;
+        private final ImportRun kafkaRun;
+        private final int chunkSize = properties.getImportConfig().getChunkSize();
+        private List<ProductImportItemDto> chunk = new ArrayList<>(chunkSize);
+        /** Позиция начала текущего chunk'а во всём потоке DTO — для сообщений об ошибках */
+        private int offset;
+        private int created, updated, unchanged, failed;
+        private final List<ImportItemResult> errors = new ArrayList<>();
+
+        private BatchSender(SyncRun syncRun) {
+            this.syncRun = syncRun;
+            this.kafkaRun = properties.getImportConfig().getTransport() == ImportTransport.KAFKA
+                    ? kafkaChannel.open(SOURCE)
+                    : null;
+        }
+
+        void add(ProductImportItemDto item) {
+            if (kafkaRun != null) {
+                kafkaRun.send(item);
+                return;
+            }
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) flush();
+        }
 
-        int chunkSize = properties.getImportConfig().getChunkSize();
-        int created = 0, updated = 0, unchanged = 0, failed = 0;
-        List<ImportItemResult> errors = new ArrayList<>();
+        BatchImportResult finish() {
+            if (kafkaRun != null) {
+                kafkaRun.finish().forEach(this::accumulate);
+            } else {
+                flush();
+            }
+            return new BatchImportResult(created, updated, unchanged, failed, errors);
+        }
+
+        @Override
+        public void close() {
+            if (kafkaRun != null) kafkaRun.close();
+        }
 
-        for (int i = 0; i < items.size(); i += chunkSize) {
-            List<ProductImportItemDto> chunk = items.subList(i, Math.min(i + chunkSize, items.size()));
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            int i = offset;
             try {
                 String url = properties.getProductService().getUrl() + BATCH_IMPORT_URI;
                 ResponseEntity<BatchImportResponse> resp = productServiceRestTemplate.postForEntity(
                         url, new BatchImportRequest(chunk), BatchImportResponse.class);
                 BatchImportResponse body = resp.getBody();
-                if (body != null) {
-                    created += body.getCreated();
-                    updated += body.getUpdated();
-                    unchanged += body.getUnchanged();
-                    failed  += body.getFailed();
-                    if (body.getResults() != null) {
-                        body.getResults().stream()
-                                .filter(r -> !r.isSuccess())
-                                .forEach(errors::add);
-                    }
-                }
+                if (body != null) accumulate(body);
             } catch (Exception e) {
                 // Чанк упал целиком (напр. HTTP 500) — тела с постатейными результатами нет,
                 // фиксируем факт падения диапазона как одну не-каскадную ошибку.
@@ -432,9 +545,22 @@ public class FtkImportService {
                 chunkError.setCascade(false);
                 errors.add(chunkError);
             }
+            offset += chunk.size();
+            chunk = new ArrayList<>(chunkSize);
         }
 
-        return new BatchImportResult(created, updated, unchanged, failed, errors);
+        private void accumulate(BatchImportResponse body) {
+            created += body.getCreated();
+            updated += body.getUpdated();
+            unchanged += body.getUnchanged();
+            failed  += body.getFailed();
+            if (body.getResults() != null) {
+                body.getResults().stream()
+                        .filter(r -> !r.isSuccess())
+                        .forEach(errors::add);
+            }
+            if (syncRun != null) syncRun.confirm(body);
+        }
     }
 
     // ══════════════════════════════════════════════════════════════
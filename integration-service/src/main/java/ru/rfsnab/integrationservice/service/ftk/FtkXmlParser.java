@@ -2,16 +2,12 @@ package ru.rfsnab.integrationservice.service.ftk;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 import ru.rfsnab.integrationservice.model.ftk.FtkProduct;
 import ru.rfsnab.integrationservice.model.ftk.FtkProduct.FtkVariant;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
 import java.math.BigDecimal;
@@ -20,17 +16,22 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Парсер CommerceML 3.1 от ФТК.
+ * Парсер CommerceML 3.1 от ФТК. Все файлы читаются потоком (StAX): в память поднимается
+ * только текущий элемент (Товар, Предложение, Классификатор), а не DOM всего файла.
  *
- * Порядок вызовов:
+ * Порядок вызовов при импорте порции:
  *   1. parseClassifier(rootImportStream) → ClassifierData (группы + свойства + единицы измерения)
- *   2. parseProducts(goodsImportStream, classifierData) → Map<productUuid, ProductData>
- *   3. parseOffers(offersStream) → Map<offerUuid, OfferData>
- *   4. parsePrices(pricesStream) → Map<offerUuid, BigDecimal>  (StAX — 125 МБ)
- *   5. parseRests(restsStream) → Map<offerUuid, RestData>
- *   6. assemble(products, offers, prices, rests, classifierData, partNumber) → List<FtkProduct>
+ *   2. parseOffers(offersStream) → Map<offerUuid, OfferData>
+ *   3. parsePrices(pricesStream) → Map<offerUuid, BigDecimal>  (125 МБ)
+ *   4. parseRests(restsStream) → Map<offerUuid, RestData>
+ *   5. PartOffers.of(offers, prices, rests) → индекс вариантов по productUuid
+ *   6. assemblePart(goodsImportStream, classifierData, partOffers, partNumber, sink) — товары
+ *      собираются по одному и сразу отдаются в sink, Map всех товаров порции не строится
+ *
+ * parseProducts / assemble(Map...) — та же логика целиком в памяти (тесты, разбор вручную).
  */
 @Component
 @Slf4j
@@ -38,6 +39,13 @@ public class FtkXmlParser {
 
     private static final String RETAIL_PRICE_UUID = "fdf5831f-8b8c-11e9-80f4-005056912b25";
 
+    /** Пути элементов от корня КоммерческаяИнформация. */
+    private static final List<String> CLASSIFIER_PATH = List.of("Классификатор");
+    private static final List<String> PRODUCT_PATH    = List.of("Каталог", "Товары", "Товар");
+    private static final List<String> OFFER_PATH      = List.of("ПакетПредложений", "Предложения", "Предложение");
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
     // ──────────────────────────────────────────────────────────────────────
     // Модели данных
     // ──────────────────────────────────────────────────────────────────────
@@ -94,6 +102,29 @@ public class FtkXmlParser {
             String countryOfOrigin
     ) {}
 
+    /**
+     * Предложения, цены и остатки одной порции — всё, что нужно для сборки товаров на лету.
+     *
+     * @param offersByProduct productUuid → предложения (варианты) товара
+     * @param prices          offerUuid → розничная цена
+     * @param rests           offerUuid → остаток
+     */
+    public record PartOffers(
+            Map<String, List<OfferData>> offersByProduct,
+            Map<String, BigDecimal> prices,
+            Map<String, RestData> rests
+    ) {
+        public static PartOffers of(Map<String, OfferData> offers,
+                                    Map<String, BigDecimal> prices,
+                                    Map<String, RestData> rests) {
+            Map<String, List<OfferData>> offersByProduct = new HashMap<>();
+            for (OfferData od : offers.values()) {
+                offersByProduct.computeIfAbsent(od.productUuid(), k -> new ArrayList<>()).add(od);
+            }
+            return new PartOffers(offersByProduct, prices, rests);
+        }
+    }
+
     // ──────────────────────────────────────────────────────────────────────
     // 1. Классификатор
     // ──────────────────────────────────────────────────────────────────────
@@ -103,8 +134,12 @@ public class FtkXmlParser {
      * Извлекает: дерево групп, свойства с словарями значений, единицы измерения.
      */
     public ClassifierData parseClassifier(InputStream stream) throws Exception {
-        Document doc = buildDom(stream);
-        Element classifier = firstChild(doc.getDocumentElement(), "Классификатор");
+        Node[] found = new Node[1];
+        forEachElement(stream, CLASSIFIER_PATH, node -> {
+            found[0] = node;
+            return false;
+        });
+        Node classifier = found[0];
         if (classifier == null) {
             log.warn("Классификатор не найден в корневом import");
             return new ClassifierData(Map.of(), Map.of(), Map.of(), Map.of());
@@ -112,7 +147,7 @@ public class FtkXmlParser {
 
         Map<String, String> groupPaths   = new LinkedHashMap<>();
         Map<String, String> groupParents = new HashMap<>();
-        Element groups = firstChild(classifier, "Группы");
+        Node groups = classifier.child("Группы");
         if (groups != null) {
             walkGroups(groups, null, "", groupPaths, groupParents, 0);
         }
@@ -125,48 +160,43 @@ public class FtkXmlParser {
         return new ClassifierData(groupPaths, groupParents, propertyDefs, unitsOfMeasure);
     }
 
-    private void walkGroups(Element groupsEl, String parentUuid, String parentPath,
+    private void walkGroups(Node groupsEl, String parentUuid, String parentPath,
                              Map<String, String> paths, Map<String, String> parents, int depth) {
         if (depth > 10) return;
-        NodeList nodes = groupsEl.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (!(nodes.item(i) instanceof Element g) || !g.getTagName().equals("Группа")) continue;
+        for (Node g : groupsEl.children()) {
+            if (!g.name().equals("Группа")) continue;
 
-            String uuid = text(g, "Ид");
-            String name = text(g, "Наименование");
+            String uuid = g.text("Ид");
+            String name = g.text("Наименование");
             if (uuid == null || uuid.isBlank()) continue;
 
             String path = parentPath.isBlank() ? name : parentPath + " > " + name;
             paths.put(uuid, path);
             parents.put(uuid, parentUuid);
 
-            Element sub = firstChild(g, "Группы");
+            Node sub = g.child("Группы");
             if (sub != null) walkGroups(sub, uuid, path, paths, parents, depth + 1);
         }
     }
 
-    private Map<String, PropertyDef> parsePropertyDefs(Element classifier) {
+    private Map<String, PropertyDef> parsePropertyDefs(Node classifier) {
         Map<String, PropertyDef> result = new HashMap<>();
-        Element свойства = firstChild(classifier, "Свойства");
+        Node свойства = classifier.child("Свойства");
         if (свойства == null) return result;
 
-        NodeList list = свойства.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            if (!(list.item(i) instanceof Element prop)) continue;
-            if (!prop.getTagName().equals("Свойство") && !prop.getTagName().equals("СвойствоНоменклатуры")) continue;
+        for (Node prop : свойства.children()) {
+            if (!prop.name().equals("Свойство") && !prop.name().equals("СвойствоНоменклатуры")) continue;
 
-            String uuid = text(prop, "Ид");
-            String name = text(prop, "Наименование");
+            String uuid = prop.text("Ид");
+            String name = prop.text("Наименование");
             if (uuid == null) continue;
 
             Map<String, String> values = new HashMap<>();
-            Element variants = firstChild(prop, "ВариантыЗначений");
+            Node variants = prop.child("ВариантыЗначений");
             if (variants != null) {
-                NodeList vList = variants.getChildNodes();
-                for (int j = 0; j < vList.getLength(); j++) {
-                    if (!(vList.item(j) instanceof Element v)) continue;
-                    String vid = text(v, "ИдЗначения");
-                    String vval = text(v, "Значение");
+                for (Node v : variants.children()) {
+                    String vid = v.text("ИдЗначения");
+                    String vval = v.text("Значение");
                     if (vid != null && vval != null) values.put(vid, vval);
                 }
             }
@@ -175,17 +205,15 @@ public class FtkXmlParser {
         return result;
     }
 
-    private Map<String, String> parseUnitsOfMeasure(Element classifier) {
+    private Map<String, String> parseUnitsOfMeasure(Node classifier) {
         Map<String, String> result = new HashMap<>();
-        Element units = firstChild(classifier, "ЕдиницыИзмерения");
+        Node units = classifier.child("ЕдиницыИзмерения");
         if (units == null) return result;
 
-        NodeList list = units.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            if (!(list.item(i) instanceof Element u)) continue;
-            String code = text(u, "Код");
-            String name = text(u, "НаименованиеПолное");
-            if (name == null) name = text(u, "Наименование");
+        for (Node u : units.children()) {
+            String code = u.text("Код");
+            String name = u.text("НаименованиеПолное");
+            if (name == null) name = u.text("Наименование");
             if (code != null && name != null) result.put(code, cleanUnitName(name));
         }
         return result;
@@ -208,85 +236,80 @@ public class FtkXmlParser {
      * Для каждого товара извлекает все картинки, единицу измерения и расшифрованные свойства.
      */
     public Map<String, ProductData> parseProducts(InputStream stream, ClassifierData classifier) throws Exception {
-        Document doc = buildDom(stream);
-        Element catalog = firstChild(doc.getDocumentElement(), "Каталог");
-        if (catalog == null) {
-            log.warn("Каталог не найден в goods/1/import");
-            return Map.of();
-        }
-        Element товары = firstChild(catalog, "Товары");
-        if (товары == null) return Map.of();
-
         Map<String, ProductData> result = new LinkedHashMap<>();
-        NodeList товарList = товары.getChildNodes();
-        for (int i = 0; i < товарList.getLength(); i++) {
-            if (!(товарList.item(i) instanceof Element товар) || !товар.getTagName().equals("Товар")) continue;
+        forEachProduct(stream, classifier, pd -> result.put(pd.productUuid(), pd));
+        log.info("Товары: загружено {} позиций", result.size());
+        return result;
+    }
 
-            String uuid    = text(товар, "Ид");
-            String article = text(товар, "Артикул");
-            String name    = text(товар, "Наименование");
-            if (uuid == null || uuid.isBlank()) continue;
+    private void forEachProduct(InputStream stream, ClassifierData classifier,
+                                Consumer<ProductData> sink) throws Exception {
+        forEachElement(stream, PRODUCT_PATH, товар -> {
+            ProductData pd = toProductData(товар, classifier.propertyDefs());
+            if (pd != null) sink.accept(pd);
+            return true;
+        });
+    }
 
-            boolean deletionMark = "true".equalsIgnoreCase(text(товар, "ПометкаУдаления"));
+    private ProductData toProductData(Node товар, Map<String, PropertyDef> propertyDefs) {
+        String uuid    = товар.text("Ид");
+        String article = товар.text("Артикул");
+        String name    = товар.text("Наименование");
+        if (uuid == null || uuid.isBlank()) return null;
 
-            List<String> imagePaths = extractAllImagePaths(товар);
-            String groupUuid        = extractFirstGroupUuid(товар);
-            String unitCode         = extractUnitCode(товар);
-            String description      = text(товар, "Описание");
+        boolean deletionMark = "true".equalsIgnoreCase(товар.text("ПометкаУдаления"));
 
-            Map<String, String> properties = extractProperties(товар, classifier.propertyDefs());
+        List<String> imagePaths = extractAllImagePaths(товар);
+        String groupUuid        = extractFirstGroupUuid(товар);
+        String unitCode         = extractUnitCode(товар);
+        String description      = товар.text("Описание");
 
-            result.put(uuid, new ProductData(uuid, article, name, description,
-                    imagePaths, groupUuid, unitCode, properties, deletionMark));
-        }
-        log.info("Товары: загружено {} позиций", result.size());
-        return result;
+        Map<String, String> properties = extractProperties(товар, propertyDefs);
+
+        return new ProductData(uuid, article, name, description,
+                imagePaths, groupUuid, unitCode, properties, deletionMark);
     }
 
-    private List<String> extractAllImagePaths(Element товар) {
+    private List<String> extractAllImagePaths(Node товар) {
         List<String> paths = new ArrayList<>();
-        NodeList nodes = товар.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (nodes.item(i) instanceof Element el && el.getTagName().equals("Картинка")) {
-                String path = el.getTextContent().trim();
+        for (Node el : товар.children()) {
+            if (el.name().equals("Картинка")) {
+                String path = el.textContent().trim();
                 if (!path.isBlank()) paths.add(path);
             }
         }
         return paths;
     }
 
-    private String extractFirstGroupUuid(Element товар) {
-        Element groups = firstChild(товар, "Группы");
+    private String extractFirstGroupUuid(Node товар) {
+        Node groups = товар.child("Группы");
         if (groups == null) return null;
-        NodeList ids = groups.getChildNodes();
-        for (int i = 0; i < ids.getLength(); i++) {
-            if (ids.item(i) instanceof Element el && el.getTagName().equals("Ид")) {
-                String uuid = el.getTextContent().trim();
+        for (Node el : groups.children()) {
+            if (el.name().equals("Ид")) {
+                String uuid = el.textContent().trim();
                 if (!uuid.isBlank()) return uuid;
             }
         }
         return null;
     }
 
-    private String extractUnitCode(Element товар) {
-        Element base = firstChild(товар, "БазоваяЕдиница");
+    private String extractUnitCode(Node товар) {
+        Node base = товар.child("БазоваяЕдиница");
         if (base == null) return null;
         // Код может быть атрибутом или дочерним тегом
-        String code = base.getAttribute("Код");
-        if (code == null || code.isBlank()) code = base.getTextContent().trim();
+        String code = base.attribute("Код");
+        if (code == null || code.isBlank()) code = base.textContent().trim();
         return (code != null && !code.isBlank()) ? code : null;
     }
 
-    private Map<String, String> extractProperties(Element товар, Map<String, PropertyDef> defs) {
+    private Map<String, String> extractProperties(Node товар, Map<String, PropertyDef> defs) {
         Map<String, String> result = new LinkedHashMap<>();
-        Element значения = firstChild(товар, "ЗначенияСвойств");
+        Node значения = товар.child("ЗначенияСвойств");
         if (значения == null) return result;
 
-        NodeList list = значения.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            if (!(list.item(i) instanceof Element зн)) continue;
-            String propId  = text(зн, "Ид");
-            String valueId = text(зн, "Значение");
+        for (Node зн : значения.children()) {
+            String propId  = зн.text("Ид");
+            String valueId = зн.text("Значение");
             if (propId == null || valueId == null) continue;
 
             PropertyDef def = defs.get(propId);
@@ -309,19 +332,10 @@ public class FtkXmlParser {
      * Парсит offers___.xml. Извлекает barcode (фк_Штрихкод) и countryOfOrigin (фк_СтранаПроизводства).
      */
     public Map<String, OfferData> parseOffers(InputStream stream) throws Exception {
-        Document doc = buildDom(stream);
-        Element packet = firstChild(doc.getDocumentElement(), "ПакетПредложений");
-        if (packet == null) return Map.of();
-        Element предложения = firstChild(packet, "Предложения");
-        if (предложения == null) return Map.of();
-
         Map<String, OfferData> result = new LinkedHashMap<>();
-        NodeList list = предложения.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            if (!(list.item(i) instanceof Element offer) || !offer.getTagName().equals("Предложение")) continue;
-
-            String fullId = text(offer, "Ид");
-            if (fullId == null || fullId.isBlank()) continue;
+        forEachElement(stream, OFFER_PATH, offer -> {
+            String fullId = offer.text("Ид");
+            if (fullId == null || fullId.isBlank()) return true;
 
             String productUuid = fullId.contains("#") ? fullId.split("#")[0] : fullId;
             String article     = extractArticle(offer);
@@ -332,44 +346,39 @@ public class FtkXmlParser {
 
             result.put(fullId, new OfferData(fullId, productUuid, article, vatRate,
                     attributes, barcode, countryOfOrigin));
-        }
+            return true;
+        });
         log.info("Предложения: загружено {} офферов", result.size());
         return result;
     }
 
-    private String extractArticle(Element offer) {
-        Element props = firstChild(offer, "ЗначенияСвойств");
+    private String extractArticle(Node offer) {
+        Node props = offer.child("ЗначенияСвойств");
         if (props == null) return null;
-        NodeList items = props.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element prop)) continue;
-            String id = text(prop, "Ид");
-            if ("FK_CML2_ARTICLE".equals(id)) return text(prop, "Значение");
+        for (Node prop : props.children()) {
+            String id = prop.text("Ид");
+            if ("FK_CML2_ARTICLE".equals(id)) return prop.text("Значение");
         }
         return null;
     }
 
-    private String extractOfferProperty(Element offer, String propId) {
-        Element props = firstChild(offer, "ЗначенияСвойств");
+    private String extractOfferProperty(Node offer, String propId) {
+        Node props = offer.child("ЗначенияСвойств");
         if (props == null) return null;
-        NodeList items = props.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element prop)) continue;
-            String id = text(prop, "Ид");
-            if (propId.equalsIgnoreCase(id)) return text(prop, "Значение");
+        for (Node prop : props.children()) {
+            String id = prop.text("Ид");
+            if (propId.equalsIgnoreCase(id)) return prop.text("Значение");
         }
         return null;
     }
 
-    private Integer extractVatRate(Element offer) {
-        Element taxes = firstChild(offer, "СтавкиНалогов");
+    private Integer extractVatRate(Node offer) {
+        Node taxes = offer.child("СтавкиНалогов");
         if (taxes == null) return null;
-        NodeList items = taxes.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element tax)) continue;
-            String name = text(tax, "Наименование");
+        for (Node tax : taxes.children()) {
+            String name = tax.text("Наименование");
             if ("НДС".equals(name)) {
-                String rate = text(tax, "Ставка");
+                String rate = tax.text("Ставка");
                 if (rate != null && !rate.isBlank()) {
                     try { return Integer.parseInt(rate.trim()); } catch (NumberFormatException ignored) {}
                 }
@@ -378,15 +387,13 @@ public class FtkXmlParser {
         return null;
     }
 
-    private Map<String, String> extractAttributes(Element offer) {
+    private Map<String, String> extractAttributes(Node offer) {
         Map<String, String> attrs = new LinkedHashMap<>();
-        Element chars = firstChild(offer, "ХарактеристикиТовара");
+        Node chars = offer.child("ХарактеристикиТовара");
         if (chars == null) return attrs;
-        NodeList items = chars.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element char_)) continue;
-            String name  = text(char_, "Наименование");
-            String value = text(char_, "Значение");
+        for (Node char_ : chars.children()) {
+            String name  = char_.text("Наименование");
+            String value = char_.text("Значение");
             if (name != null && !name.isBlank() && value != null && !value.isBlank()) {
                 attrs.put(name, value);
             }
@@ -395,17 +402,16 @@ public class FtkXmlParser {
     }
 
     // ──────────────────────────────────────────────────────────────────────
-    // 4. Цены (StAX — 125 МБ)
+    // 4. Цены (125 МБ)
     // ──────────────────────────────────────────────────────────────────────
 
     /**
-     * Парсит prices___.xml потоковым методом (StAX).
+     * Парсит prices___.xml. Самый большой файл порции, поэтому без Node на каждое
+     * предложение — из потока событий сразу берутся Ид и розничная цена.
      */
     public Map<String, BigDecimal> parsePrices(InputStream stream) throws Exception {
         Map<String, BigDecimal> result = new HashMap<>();
-        XMLInputFactory factory = XMLInputFactory.newInstance();
-        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-        XMLStreamReader reader = factory.createXMLStreamReader(stream);
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
 
         String currentOfferId = null;
         boolean insidePrice   = false;
@@ -454,10 +460,6 @@ public class FtkXmlParser {
         return result;
     }
 
-    private String localName(XMLStreamReader reader) {
-        String local = reader.getLocalName();
-        return local != null ? local : reader.getName().getLocalPart();
-    }
 
     // ──────────────────────────────────────────────────────────────────────
     // 5. Остатки (rests)
@@ -467,36 +469,27 @@ public class FtkXmlParser {
      * Парсит rests___.xml. Дополнительно извлекает barcode и countryOfOrigin из реквизитов.
      */
     public Map<String, RestData> parseRests(InputStream stream) throws Exception {
-        Document doc = buildDom(stream);
-        Element packet = firstChild(doc.getDocumentElement(), "ПакетПредложений");
-        if (packet == null) return Map.of();
-        Element предложения = firstChild(packet, "Предложения");
-        if (предложения == null) return Map.of();
-
         Map<String, RestData> result = new HashMap<>();
-        NodeList list = предложения.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            if (!(list.item(i) instanceof Element offer) || !offer.getTagName().equals("Предложение")) continue;
-            String uuid = text(offer, "Ид");
-            if (uuid == null || uuid.isBlank()) continue;
+        forEachElement(stream, OFFER_PATH, offer -> {
+            String uuid = offer.text("Ид");
+            if (uuid == null || uuid.isBlank()) return true;
 
             int qty = extractQuantityInt(offer);
             String barcode         = extractRequisite(offer, "фк_Штрихкод");
             String countryOfOrigin = extractRequisite(offer, "фк_СтранаПроизводства");
 
             result.put(uuid, new RestData(qty, barcode, countryOfOrigin));
-        }
+            return true;
+        });
         log.info("Остатки: загружено {} записей", result.size());
         return result;
     }
 
-    private int extractQuantityInt(Element offer) {
-        Element остатки = firstChild(offer, "Остатки");
+    private int extractQuantityInt(Node offer) {
+        Node остатки = offer.child("Остатки");
         if (остатки == null) return 0;
-        NodeList items = остатки.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element остаток)) continue;
-            String qty = text(остаток, "Количество");
+        for (Node остаток : остатки.children()) {
+            String qty = остаток.text("Количество");
             if (qty != null && !qty.isBlank()) {
                 try { return Integer.parseInt(qty.trim()); } catch (NumberFormatException ignored) {}
             }
@@ -504,14 +497,12 @@ public class FtkXmlParser {
         return 0;
     }
 
-    private String extractRequisite(Element offer, String propId) {
-        Element реквизиты = firstChild(offer, "ЗначенияРеквизитов");
+    private String extractRequisite(Node offer, String propId) {
+        Node реквизиты = offer.child("ЗначенияРеквизитов");
         if (реквизиты == null) return null;
-        NodeList items = реквизиты.getChildNodes();
-        for (int i = 0; i < items.getLength(); i++) {
-            if (!(items.item(i) instanceof Element req)) continue;
-            String name = text(req, "Наименование");
-            if (propId.equalsIgnoreCase(name)) return text(req, "Значение");
+        for (Node req : реквизиты.children()) {
+            String name = req.text("Наименование");
+            if (propId.equalsIgnoreCase(name)) return req.text("Значение");
         }
         return null;
     }
@@ -520,6 +511,31 @@ public class FtkXmlParser {
     // 6. Сборка итогового списка
     // ──────────────────────────────────────────────────────────────────────
 
+    /**
+     * Потоковая сборка порции: товары goods/N/import читаются по одному, собираются
+     * с вариантами из offers и сразу отдаются в sink. Товары без офферов пропускаются.
+     *
+     * @return количество собранных товаров
+     */
+    public int assemblePart(
+            InputStream goodsImportStream,
+            ClassifierData classifier,
+            PartOffers offers,
+            int partNumber,
+            Consumer<FtkProduct> sink
+    ) throws Exception {
+        int[] assembled = {0};
+        forEachProduct(goodsImportStream, classifier, pd -> {
+            FtkProduct product = assembleProduct(pd, offers, classifier, partNumber);
+            if (product != null) {
+                sink.accept(product);
+                assembled[0]++;
+            }
+        });
+        log.info("Сборка: {} товаров с вариантами", assembled[0]);
+        return assembled[0];
+    }
+
     /**
      * Собирает List<FtkProduct> из всех пяти проходов.
      * Товары с ПометкаУдаления=true помечаются как неактивные (isActive=false в FtkVariant).
@@ -532,85 +548,189 @@ public class FtkXmlParser {
             ClassifierData classifier,
             int partNumber
     ) {
-        Map<String, List<OfferData>> offersByProduct = new HashMap<>();
-        for (OfferData od : offers.values()) {
-            offersByProduct.computeIfAbsent(od.productUuid(), k -> new ArrayList<>()).add(od);
-        }
-
+        PartOffers partOffers = PartOffers.of(offers, prices, rests);
         List<FtkProduct> result = new ArrayList<>();
         for (ProductData pd : products.values()) {
-            List<OfferData> productOffers = offersByProduct.getOrDefault(pd.productUuid(), List.of());
-            if (productOffers.isEmpty()) {
-                log.debug("Товар без офферов: uuid={}, article={}", pd.productUuid(), pd.article());
-                continue;
-            }
+            FtkProduct product = assembleProduct(pd, partOffers, classifier, partNumber);
+            if (product != null) result.add(product);
+        }
+        log.info("Сборка: {} товаров с вариантами", result.size());
+        return result;
+    }
 
-            String unitOfMeasure = pd.unitCode() != null ? classifier.unitsOfMeasure().get(pd.unitCode()) : null;
-
-            List<FtkVariant> variants = new ArrayList<>();
-            for (OfferData od : productOffers) {
-                BigDecimal price = prices.get(od.offerUuid());
-                RestData rest    = rests.getOrDefault(od.offerUuid(), new RestData(0, null, null));
-                String article   = od.article() != null ? od.article() : pd.article();
-
-                // barcode и countryOfOrigin: приоритет у rests, fallback — offers
-                String barcode        = rest.barcode()        != null ? rest.barcode()        : od.barcode();
-                String countryOrigin  = rest.countryOfOrigin() != null ? rest.countryOfOrigin() : od.countryOfOrigin();
-
-                variants.add(FtkVariant.builder()
-                        .offerUuid(od.offerUuid())
-                        .article(article)
-                        .price(price)
-                        .stockQuantity(rest.quantity())
-                        .attributes(od.attributes())
-                        .vatRate(od.vatRate())
-                        .barcode(barcode)
-                        .countryOfOrigin(countryOrigin)
-                        .deleted(pd.deletionMark())
-                        .build());
-            }
+    /** Товар + его варианты; null — у товара нет офферов. */
+    private FtkProduct assembleProduct(ProductData pd, PartOffers offers, ClassifierData classifier, int partNumber) {
+        List<OfferData> productOffers = offers.offersByProduct().getOrDefault(pd.productUuid(), List.of());
+        if (productOffers.isEmpty()) {
+            log.debug("Товар без офферов: uuid={}, article={}", pd.productUuid(), pd.article());
+            return null;
+        }
 
-            result.add(FtkProduct.builder()
-                    .productUuid(pd.productUuid())
-                    .article(pd.article())
-                    .name(pd.name())
-                    .description(pd.description())
-                    .imagePaths(pd.imagePaths())
-                    .groupUuid(pd.groupUuid())
-                    .unitOfMeasure(unitOfMeasure)
-                    .partNumber(partNumber)
-                    .properties(pd.properties())
-                    .variants(variants)
+        String unitOfMeasure = pd.unitCode() != null ? classifier.unitsOfMeasure().get(pd.unitCode()) : null;
+
+        List<FtkVariant> variants = new ArrayList<>();
+        for (OfferData od : productOffers) {
+            BigDecimal price = offers.prices().get(od.offerUuid());
+            RestData rest    = offers.rests().getOrDefault(od.offerUuid(), new RestData(0, null, null));
+            String article   = od.article() != null ? od.article() : pd.article();
+
+            // barcode и countryOfOrigin: приоритет у rests, fallback — offers
+            String barcode        = rest.barcode()        != null ? rest.barcode()        : od.barcode();
+            String countryOrigin  = rest.countryOfOrigin() != null ? rest.countryOfOrigin() : od.countryOfOrigin();
+
+            variants.add(FtkVariant.builder()
+                    .offerUuid(od.offerUuid())
+                    .article(article)
+                    .price(price)
+                    .stockQuantity(rest.quantity())
+                    .attributes(od.attributes())
+                    .vatRate(od.vatRate())
+                    .barcode(barcode)
+                    .countryOfOrigin(countryOrigin)
+                    .deleted(pd.deletionMark())
                     .build());
         }
-        log.info("Сборка: {} товаров с вариантами", result.size());
-        return result;
+
+        return FtkProduct.builder()
+                .productUuid(pd.productUuid())
+                .article(pd.article())
+                .name(pd.name())
+                .description(pd.description())
+                .imagePaths(pd.imagePaths())
+                .groupUuid(pd.groupUuid())
+                .unitOfMeasure(unitOfMeasure)
+                .partNumber(partNumber)
+                .properties(pd.properties())
+                .variants(variants)
+                .build();
     }
 
     // ──────────────────────────────────────────────────────────────────────
     // Утилиты
     // ──────────────────────────────────────────────────────────────────────
 
-    private Document buildDom(InputStream stream) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(false);
-        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(stream);
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        // Файлы приходят с внешнего FTP — без DTD и внешних сущностей (XXE)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /** Обработчик элемента из forEachElement; false — дальше файл не читать. */
+    @FunctionalInterface
+    private interface ElementHandler {
+        boolean handle(Node node);
+    }
+
+    /**
+     * Потоковый обход файла: каждый элемент по пути path (от корня, без него самого)
+     * читается в Node и отдаётся handler'у, всё остальное пропускается.
+     * В памяти одновременно только один такой элемент.
+     */
+    private void forEachElement(InputStream stream, List<String> path, ElementHandler handler) throws Exception {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+        try {
+            List<String> current = new ArrayList<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    current.add(localName(reader));
+                    if (matches(current, path)) {
+                        Node node = readNode(reader);
+                        current.removeLast();
+                        if (!handler.handle(node)) return;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    current.removeLast();
+                }
+            }
+        } finally {
+            reader.close();
+        }
     }
 
-    private Element firstChild(Element parent, String tagName) {
-        NodeList nodes = parent.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (nodes.item(i) instanceof Element el && el.getTagName().equals(tagName)) return el;
+    private static boolean matches(List<String> current, List<String> path) {
+        // current[0] — корневой КоммерческаяИнформация
+        if (current.size() != path.size() + 1) return false;
+        for (int i = 0; i < path.size(); i++) {
+            if (!path.get(i).equals(current.get(i + 1))) return false;
         }
-        return null;
+        return true;
     }
 
-    private String text(Element parent, String tagName) {
-        Element child = firstChild(parent, tagName);
-        return child != null ? child.getTextContent().trim() : null;
+    /** Читает поддерево текущего START_ELEMENT; reader остаётся на его END_ELEMENT. */
+    private Node readNode(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> attributes = Map.of();
+        int attributeCount = reader.getAttributeCount();
+        if (attributeCount > 0) {
+            attributes = new HashMap<>(attributeCount);
+            for (int i = 0; i < attributeCount; i++) {
+                attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+        }
+        Node node = new Node(localName(reader), attributes);
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> node.children.add(readNode(reader));
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    // пробельные куски между дочерними тегами не нужны; внутри текста — сохраняются
+                    if (!node.text.isEmpty() || !reader.isWhiteSpace()) node.text.append(reader.getText());
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    return node;
+                }
+                default -> {}
+            }
+        }
+        return node;
+    }
+
+    private String localName(XMLStreamReader reader) {
+        String local = reader.getLocalName();
+        return local != null ? local : reader.getName().getLocalPart();
+    }
+
+    /**
+     * Поддерево одного элемента (Товар, Предложение, Классификатор) —
+     * минимальная замена DOM Element для извлечения полей.
+     */
+    private static final class Node {
+        private final String name;
+        private final Map<String, String> attributes;
+        private final List<Node> children = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+
+        private Node(String name, Map<String, String> attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        String name() { return name; }
+
+        List<Node> children() { return children; }
+
+        String attribute(String attrName) { return attributes.get(attrName); }
+
+        Node child(String tagName) {
+            for (Node child : children) {
+                if (child.name.equals(tagName)) return child;
+            }
+            return null;
+        }
+
+        /** Текст дочернего тега, как text(parent, tag) у DOM-версии. */
+        String text(String tagName) {
+            Node child = child(tagName);
+            return child != null ? child.textContent().trim() : null;
+        }
+
+        String textContent() {
+            if (children.isEmpty()) return text.toString();
+            StringBuilder sb = new StringBuilder(text);
+            for (Node child : children) sb.append(child.textContent());
+            return sb.toString();
+        }
     }
 }
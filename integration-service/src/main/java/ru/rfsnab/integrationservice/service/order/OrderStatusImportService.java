@@ -34,6 +34,7 @@ import java.util.List;
  * <Документ>
  *   <Ид>{UUID документа в 1С}</Ид>
  *   <Номер>{наш orderNumber}</Номер>
+ *   <НомерВерсии>{версия документа в 1С}</НомерВерсии>
  *   <ЗначенияРеквизитов>
  *     <ЗначениеРеквизита>
  *       <Наименование>Статус заказа</Наименование>
@@ -92,7 +93,7 @@ public class OrderStatusImportService {
 
             for (CmlDocument doc : documents) {
                 try {
-                    syncOrderStatus(doc);
+                    syncOrderStatus(doc, commerceInfo.getFormationDate());
                     updated++;
                 } catch (Exception e) {
                     failed++;
@@ -127,8 +128,11 @@ public class OrderStatusImportService {
      * Обновляет статус одного заказа в order-service.
      * 1С шлёт <Номер> = наш orderNumber (AAB...) и <Ид> = свой внутренний UUID,
      * поэтому ищем заказ по orderNumber, а <Ид> сохраняем как externalId 1С.
+     * Ключ идемпотентности — <НомерВерсии> документа; старые конфигурации его не выгружают,
+     * тогда ключом служит ДатаФормирования файла обмена — если в ней есть время: одна дата
+     * совпала бы у всех обменов за день. Без ключа order-service сверяет только текущий статус.
      */
-    private void syncOrderStatus(CmlDocument doc) {
+    private void syncOrderStatus(CmlDocument doc, String formationDate) {
         String orderNumber = doc.getNumber();
         String externalId  = doc.getId(); // UUID документа в 1С
         String russianStatus = extractStatus(doc);
@@ -145,7 +149,10 @@ public class OrderStatusImportService {
         log.debug("Синхронизация заказа: orderNumber={}, externalId={}, status={} → {}",
                 orderNumber, externalId, russianStatus, statusCode);
 
-        OrderSyncRequest request = new OrderSyncRequest(externalId, statusCode);
+        String messageId = doc.getVersion() != null && !doc.getVersion().isBlank()
+                ? doc.getVersion()
+                : formationDate != null && formationDate.contains("T") ? formationDate : null;
+        OrderSyncRequest request = new OrderSyncRequest(externalId, statusCode, messageId);
 
         try {
             orderServiceClient.patch()
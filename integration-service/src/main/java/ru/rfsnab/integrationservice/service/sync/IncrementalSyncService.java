@@ -0,0 +1,240 @@
+package ru.rfsnab.integrationservice.service.sync;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.config.IntegrationProperties.IncrementalSyncProperties;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse.ImportItemResult;
+import ru.rfsnab.integrationservice.dto.ProductImportItemDto;
+import ru.rfsnab.integrationservice.dto.ProductTombstoneRequest;
+import ru.rfsnab.integrationservice.dto.ProductTombstoneResponse;
+import ru.rfsnab.integrationservice.repository.ProductFingerprintRepository;
+import ru.rfsnab.integrationservice.repository.ProductFingerprintRepository.FingerprintView;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Инкрементальная синхронизация каталога (ФТК, 1С) с product-service по отпечаткам содержимого.
+ *
+ * Отпечаток — SHA-256 канонического JSON ProductImportItemDto (поля и ключи Map по алфавиту),
+ * т.е. всё, что уходит в batch-импорт, включая варианты, атрибуты и свойства. Схема работы:
+ * 1. startRun — отпечатки источника из product_fingerprints в память (externalId → hash);
+ * 2. shouldSend — товар с тем же отпечатком пропускается, остальные уходят в product-service;
+ * 3. confirm — по ответу chunk'а сохраняются отпечатки успешно принятых товаров; упавшие
+ *    остаются со старым отпечатком и уйдут снова в следующий раз;
+ * 4. finish — после полной выгрузки: tombstone-проход по известным, но не встреченным товарам.
+ *
+ * Отпечатки старше fullResyncDays не доверяются: изменения в product-service мимо импорта
+ * (ручная правка, восстановление БД) перекрываются не позже чем через этот срок.
+ */
+@Slf4j
+@Service
+public class IncrementalSyncService {
+
+    /** Меняется вместе с маппингом в ProductImportItemDto — все отпечатки разом становятся чужими */
+    static final String FINGERPRINT_VERSION = "v1";
+
+    private static final String TOMBSTONES_URI = "/api/v1/products/import/tombstones";
+    private static final int TOMBSTONE_CHUNK_SIZE = 500;
+    /**
+     * Защита от кривой выгрузки: если «пропало» больше этой доли известных товаров,
+     * tombstone-проход не выполняется — скорее сломан файл, чем снят с продажи весь каталог.
+     */
+    private static final double MAX_TOMBSTONE_SHARE = 0.5;
+    /** Заглушка устаревшего отпечатка: не совпадает ни с одним SHA-256 */
+    private static final String STALE = "";
+
+    private static final ObjectMapper CANONICAL_JSON = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .enable(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN)
+            .build();
+
+    private final ProductFingerprintRepository fingerprintRepository;
+    private final RestTemplate productServiceRestTemplate;
+    private final IntegrationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    public IncrementalSyncService(ProductFingerprintRepository fingerprintRepository,
+                                  RestTemplate productServiceRestTemplate,
+                                  IntegrationProperties properties,
+                                  PlatformTransactionManager transactionManager) {
+        this.fingerprintRepository = fingerprintRepository;
+        this.productServiceRestTemplate = productServiceRestTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Итог синхронизации.
+     * @param skipped   товаров не отправлено — отпечаток не изменился
+     * @param withdrawn товаров и вариантов снято с остатка tombstone-проходом
+     */
+    public record SyncSummary(int skipped, int withdrawn) {}
+
+    /** Начинает прогон импорта источника (FTK, 1C): загружает его отпечатки. */
+    public SyncRun startRun(String source) {
+        IncrementalSyncProperties cfg = properties.getImportConfig().getIncremental();
+        LocalDateTime staleBefore = cfg.getFullResyncDays() > 0
+                ? LocalDateTime.now().minusDays(cfg.getFullResyncDays())
+                : null;
+
+        Map<String, String> known = new HashMap<>();
+        int stale = 0;
+        for (FingerprintView f : fingerprintRepository.findBySource(source)) {
+            if (staleBefore != null && f.getSyncedAt().isBefore(staleBefore)) {
+                known.put(f.getExternalId(), STALE);
+                stale++;
+            } else {
+                known.put(f.getExternalId(), f.getContentHash());
+            }
+        }
+        log.info("Инкрементальный импорт {}: известно {} товаров, из них устарело {}{}",
+                source, known.size(), stale, cfg.isEnabled() ? "" : " (сверка отключена — отправляются все)");
+        return new SyncRun(source, known, cfg);
+    }
+
+    static String fingerprint(ProductImportItemDto item) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(FINGERPRINT_VERSION.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha256.digest(CANONICAL_JSON.writeValueAsBytes(item)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить отпечаток товара " + item.getExternalId(), e);
+        }
+    }
+
+    /**
+     * Прогон импорта одного источника. shouldSend вызывается из потока разбора,
+     * confirm — из потоков отправки chunk'ов, поэтому общее состояние — concurrent-коллекции.
+     */
+    public final class SyncRun {
+
+        private final String source;
+        private final Map<String, String> known;
+        private final IncrementalSyncProperties cfg;
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        /** Отправленные, ещё не подтверждённые ответом product-service: externalId → новый отпечаток */
+        private final Map<String, String> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        private SyncRun(String source, Map<String, String> known, IncrementalSyncProperties cfg) {
+            this.source = source;
+            this.known = known;
+            this.cfg = cfg;
+        }
+
+        /**
+         * @return true — товар новый или изменился и должен уйти в product-service;
+         *         false — отпечаток совпал с последней успешной синхронизацией
+         */
+        public boolean shouldSend(ProductImportItemDto item) {
+            String externalId = item.getExternalId();
+            String hash = fingerprint(item);
+            seen.add(externalId);
+            if (cfg.isEnabled() && hash.equals(known.get(externalId))) {
+                skipped.incrementAndGet();
+                return false;
+            }
+            pending.put(externalId, hash);
+            return true;
+        }
+
+        /**
+         * Ответ product-service по chunk'у: сохраняет отпечатки успешно принятых товаров.
+         * Ошибка записи не ломает импорт — товар просто уйдёт повторно в следующий раз.
+         */
+        public void confirm(BatchImportResponse response) {
+            if (response == null || response.getResults() == null) return;
+
+            Map<String, String> accepted = new HashMap<>();
+            for (ImportItemResult result : response.getResults()) {
+                if (!result.isSuccess()) continue;
+                String hash = pending.remove(result.getExternalId());
+                if (hash != null) accepted.put(result.getExternalId(), hash);
+            }
+            if (accepted.isEmpty()) return;
+
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        accepted.forEach((externalId, hash) -> fingerprintRepository.upsert(source, externalId, hash)));
+            } catch (Exception e) {
+                log.warn("Не удалось сохранить {} отпечатков {}: {}", accepted.size(), source, e.getMessage());
+            }
+        }
+
+        public int skipped() {
+            return skipped.get();
+        }
+
+        /**
+         * Завершает прогон. Tombstone-проход выполняется только для полной выгрузки:
+         * при лимите, пропущенной порции или выгрузке «только изменения» отсутствие товара
+         * ничего не значит.
+         *
+         * @param fullSnapshot в прогоне был весь каталог источника
+         */
+        public SyncSummary finish(boolean fullSnapshot) {
+            int withdrawn = 0;
+            if (fullSnapshot && cfg.isTombstones()) {
+                withdrawn = withdrawMissing();
+            } else if (cfg.isTombstones()) {
+                log.info("Инкрементальный импорт {}: выгрузка неполная — tombstone-проход пропущен", source);
+            }
+            log.info("Инкрементальный импорт {}: без изменений {}, отправлено {}, снято с остатка {}",
+                    source, skipped.get(), seen.size() - skipped.get(), withdrawn);
+            return new SyncSummary(skipped.get(), withdrawn);
+        }
+
+        private int withdrawMissing() {
+            List<String> missing = known.keySet().stream()
+                    .filter(externalId -> !seen.contains(externalId))
+                    .toList();
+            if (missing.isEmpty()) return 0;
+            if (missing.size() > known.size() * MAX_TOMBSTONE_SHARE) {
+                log.warn("Инкрементальный импорт {}: в выгрузке нет {} из {} известных товаров — "
+                        + "похоже на неполный файл, tombstone-проход отменён", source, missing.size(), known.size());
+                return 0;
+            }
+
+            String url = properties.getProductService().getUrl() + TOMBSTONES_URI;
+            int withdrawn = 0;
+            for (int from = 0; from < missing.size(); from += TOMBSTONE_CHUNK_SIZE) {
+                List<String> chunk = new ArrayList<>(missing.subList(from, Math.min(from + TOMBSTONE_CHUNK_SIZE, missing.size())));
+                try {
+                    ProductTombstoneResponse response = productServiceRestTemplate.postForObject(
+                            url, new ProductTombstoneRequest(chunk), ProductTombstoneResponse.class);
+                    if (response != null) withdrawn += response.getWithdrawn();
+                    // Отпечаток выбывшего забывается: вернувшийся товар уйдёт как новый и получит остаток
+                    transactionTemplate.executeWithoutResult(status ->
+                            fingerprintRepository.deleteBySourceAndExternalIdIn(source, chunk));
+                } catch (Exception e) {
+                    // Отпечатки остаются — товары снова попадут в tombstone-проход следующего импорта
+                    log.warn("Tombstone-проход {}: chunk из {} товаров не обработан: {}", source, chunk.size(), e.getMessage());
+                }
+            }
+            return withdrawn;
+        }
+    }
+}
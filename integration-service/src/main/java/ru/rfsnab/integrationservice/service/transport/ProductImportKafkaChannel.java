@@ -0,0 +1,236 @@
+package ru.rfsnab.integrationservice.service.transport;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.config.KafkaTopicsProperties;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse.ImportItemResult;
+import ru.rfsnab.integrationservice.dto.ProductImportItemDto;
+import ru.rfsnab.integrationservice.dto.ProductImportMessage;
+import ru.rfsnab.integrationservice.dto.ProductImportResultEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Потоковая передача товаров в product-service через Kafka — альтернатива HTTP batch-импорту
+ * (integration.import-config.transport=kafka).
+ *
+ * Каждый товар уходит отдельным сообщением в product-import-items (ключ — externalId) сразу
+ * после сборки: импорт не ждёт ответа на chunk, не упирается в HTTP-таймауты и не держит
+ * request-потоки product-service. product-service импортирует товары пачками по выборкам
+ * consumer'а и возвращает постатейные результаты в product-import-results (ключ — runId).
+ * ImportRun.finish() дожидается ответа по каждому отправленному товару — итоги импорта,
+ * import_log и отпечатки (SyncRun.confirm) собираются из тех же BatchImportResponse, что и по HTTP.
+ */
+@Slf4j
+@Service
+public class ProductImportKafkaChannel {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaTopicsProperties kafkaTopics;
+    private final IntegrationProperties properties;
+    /** Ответ — зеркало BatchProductImportResponse: лишние поля (productId, action) не нужны */
+    private final ObjectReader resultReader;
+    private final Map<String, ImportRun> runs = new ConcurrentHashMap<>();
+
+    public ProductImportKafkaChannel(KafkaTemplate<String, Object> kafkaTemplate,
+                                     KafkaTopicsProperties kafkaTopics,
+                                     IntegrationProperties properties,
+                                     ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaTopics = kafkaTopics;
+        this.properties = properties;
+        this.resultReader = objectMapper.readerFor(ProductImportResultEvent.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /** Начинает прогон импорта источника (FTK, 1C): ответы product-service будут копиться в нём. */
+    public ImportRun open(String source) {
+        ImportRun run = new ImportRun(source);
+        runs.put(run.runId, run);
+        return run;
+    }
+
+    /**
+     * Ответы product-service. Consumer-группа своя у каждого экземпляра сервиса: ответ должен
+     * дойти до того экземпляра, чей прогон его ждёт, ответы чужих прогонов отбрасываются.
+     * Группа привязана к HOSTNAME пода, а не к случайному id: рестарт переиспользует её, а не
+     * оставляет в кластере брошенную группу. Ответы прогонов, начатых до рестарта, ждать уже
+     * некому — они дочитываются и отбрасываются; новая группа читает с latest.
+     */
+    @KafkaListener(
+            topics = "${app.kafka.topics.product-import-results}",
+            groupId = "integration-service-import-results-${HOSTNAME:local}",
+            properties = "auto.offset.reset=latest"
+    )
+    public void onResult(String message) {
+        ProductImportResultEvent event;
+        try {
+            event = resultReader.readValue(message);
+        } catch (IOException e) {
+            log.error("Ошибка парсинга сообщения из product-import-results: {}", e.getMessage(), e);
+            return;
+        }
+        ImportRun run = runs.get(event.getRunId());
+        if (run == null) {
+            log.debug("Результат импорта чужого или завершённого прогона пропущен: runId={}", event.getRunId());
+            return;
+        }
+        run.accept(event.getResponse());
+    }
+
+    /**
+     * Прогон импорта. send вызывается из потока разбора, ответы приходят из потока
+     * Kafka-listener'а и из callback'ов producer'а — состояние под монитором прогона.
+     */
+    public final class ImportRun implements AutoCloseable {
+
+        private final String runId = UUID.randomUUID().toString();
+        private final String source;
+        /** Отправленные externalId: повтор товара в выгрузке не отправляется второй раз */
+        private final Set<String> sentIds = new HashSet<>();
+        /** externalId, ждущие ответа */
+        private final Set<String> awaiting = new HashSet<>();
+        private final List<BatchImportResponse> responses = new ArrayList<>();
+        /** Не доставленные в Kafka — в итоге одной ошибкой, а не строкой на товар */
+        private final List<String> unsent = new ArrayList<>();
+        /** Первая ошибка отправки: дальше товары не отправляются, чтобы не ждать max.block.ms на каждом */
+        private volatile Throwable sendError;
+        private long lastProgressAt;
+        private int sent;
+        private int duplicates;
+
+        private ImportRun(String source) {
+            this.source = source;
+        }
+
+        /**
+         * Отправляет товар, не дожидаясь ответа. Повтор externalId в прогоне пропускается: product-service
+         * отвечает по externalId, и второй копии нечем было бы отличить свой ответ от ответа первой.
+         */
+        public void send(ProductImportItemDto item) {
+            String externalId = item.getExternalId();
+            synchronized (this) {
+                if (!sentIds.add(externalId)) {
+                    duplicates++;
+                    return;
+                }
+                awaiting.add(externalId);
+                sent++;
+            }
+            if (sendError != null) {
+                sendFailed(externalId, sendError);
+                return;
+            }
+            try {
+                kafkaTemplate.send(kafkaTopics.getProductImportItems(), externalId, new ProductImportMessage(runId, item))
+                        .whenComplete((result, ex) -> {
+                            if (ex != null) sendFailed(externalId, ex);
+                        });
+            } catch (Exception e) {
+                sendFailed(externalId, e);
+            }
+        }
+
+        /**
+         * Дожидается ответа по всем отправленным товарам. Таймаут считается от последнего
+         * полученного ответа: медленный, но работающий product-service не обрывается,
+         * а товары без ответа за resultTimeoutSec попадают в итог как failed.
+         *
+         * @return ответы product-service в порядке получения
+         */
+        public List<BatchImportResponse> finish() {
+            kafkaTemplate.flush();
+            int timeoutSec = properties.getImportConfig().getResultTimeoutSec();
+            long timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSec);
+            try {
+                synchronized (this) {
+                    // Отсчёт — не раньше конца отправки: разбор большой выгрузки сам может идти дольше таймаута
+                    lastProgressAt = System.nanoTime();
+                    try {
+                        while (!awaiting.isEmpty()) {
+                            long left = lastProgressAt + timeoutNanos - System.nanoTime();
+                            if (left <= 0) break;
+                            TimeUnit.NANOSECONDS.timedWait(this, left);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.warn("Kafka-импорт {}: ожидание ответов прервано, runId={}", source, runId);
+                    }
+                    if (!unsent.isEmpty()) {
+                        responses.add(failed(unsent, "Не отправлено в Kafka: " + sendError.getMessage()));
+                    }
+                    if (duplicates > 0) {
+                        log.warn("Kafka-импорт {}: {} повторов externalId в выгрузке не отправлены, runId={}",
+                                source, duplicates, runId);
+                    }
+                    if (!awaiting.isEmpty()) {
+                        List<String> missing = new ArrayList<>(awaiting);
+                        awaiting.clear();
+                        log.warn("Kafka-импорт {}: нет ответа по {} из {} товаров за {} с, runId={}",
+                                source, missing.size(), sent, timeoutSec, runId);
+                        responses.add(failed(missing, "Нет ответа product-service за " + timeoutSec + " с"));
+                    }
+                    log.info("Kafka-импорт {}: отправлено {} товаров, получено {} ответов, runId={}",
+                            source, sent, responses.size(), runId);
+                    return List.copyOf(responses);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            runs.remove(runId);
+        }
+
+        synchronized void accept(BatchImportResponse response) {
+            if (response == null) return;
+            if (response.getResults() != null) {
+                for (ImportItemResult result : response.getResults()) {
+                    awaiting.remove(result.getExternalId());
+                }
+            }
+            responses.add(response);
+            lastProgressAt = System.nanoTime();
+            notifyAll();
+        }
+
+        private synchronized void sendFailed(String externalId, Throwable e) {
+            if (sendError == null) {
+                sendError = e;
+                log.error("Kafka-импорт {}: ошибка отправки, остальные товары прогона отправлены не будут: {}",
+                        source, e.getMessage(), e);
+            }
+            awaiting.remove(externalId);
+            unsent.add(externalId);
+            notifyAll();
+        }
+
+        private static BatchImportResponse failed(List<String> externalIds, String message) {
+            BatchImportResponse response = new BatchImportResponse();
+            response.setTotalReceived(externalIds.size());
+            response.setFailed(externalIds.size());
+            response.setErrors(List.of(message + " (" + externalIds.size() + " товаров)"));
+            response.setResults(externalIds.stream()
+                    .map(externalId -> new ImportItemResult(externalId, false, message, false))
+                    .toList());
+            return response;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+-- Отпечатки содержимого товаров, успешно переданных в product-service (инкрементальный импорт).
+-- Товар, чей отпечаток не изменился с прошлой синхронизации, повторно не отправляется;
+-- товары источника без отпечатка в новой полной выгрузке проходят tombstone-проход.
+CREATE TABLE product_fingerprints (
+                                      id BIGSERIAL PRIMARY KEY,
+                                      source VARCHAR(20) NOT NULL,                 -- FTK, 1C
+                                      external_id VARCHAR(100) NOT NULL,
+                                      content_hash VARCHAR(64) NOT NULL,           -- SHA-256 (hex) ProductImportItemDto
+                                      synced_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE UNIQUE INDEX idx_product_fingerprints_source_external_id ON product_fingerprints(source, external_id);
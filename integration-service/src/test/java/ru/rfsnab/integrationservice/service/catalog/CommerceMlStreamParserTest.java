@@ -0,0 +1,91 @@
+package ru.rfsnab.integrationservice.service.catalog;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.rfsnab.integrationservice.model.commerceml.Classifier;
+import ru.rfsnab.integrationservice.model.commerceml.CmlProduct;
+import ru.rfsnab.integrationservice.model.commerceml.CommerceInfo;
+import ru.rfsnab.integrationservice.model.commerceml.PriceType;
+import ru.rfsnab.integrationservice.service.catalog.CommerceMlStreamParser.OfferData;
+import ru.rfsnab.integrationservice.service.catalog.CommerceMlStreamParser.OffersIndex;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit-тесты потокового чтения CommerceML (StAX + JAXB по элементам).
+ */
+@DisplayName("CommerceMlStreamParser")
+class CommerceMlStreamParserTest {
+
+    private static CommerceMlStreamParser parser;
+
+    @BeforeAll
+    static void initParser() throws JAXBException {
+        parser = new CommerceMlStreamParser(JAXBContext.newInstance(CommerceInfo.class));
+    }
+
+    private Path resource(String name) throws URISyntaxException {
+        return Path.of(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    @Test
+    @DisplayName("readCatalog: классификатор приходит до товаров, товары — по одному")
+    void shouldStreamClassifierThenProducts() throws Exception {
+        List<String> events = new ArrayList<>();
+        List<CmlProduct> products = new ArrayList<>();
+
+        int count = parser.readCatalog(resource("commerceml/import.xml"), new CommerceMlStreamParser.CatalogHandler() {
+            @Override
+            public void onClassifier(Classifier classifier) {
+                events.add("classifier:" + classifier.getGroups().size());
+            }
+
+            @Override
+            public void onProduct(CmlProduct product) {
+                events.add("product:" + product.getId());
+                products.add(product);
+            }
+        });
+
+        assertThat(count).isEqualTo(2);
+        assertThat(events).containsExactly("classifier:1", "product:ext-001", "product:ext-002");
+        assertThat(products.getFirst().getName()).isEqualTo("Перчатки нитриловые L");
+    }
+
+    @Test
+    @DisplayName("readOffers: типы цен и компактный индекс предложений по Ид")
+    void shouldIndexOffers() throws Exception {
+        OffersIndex index = parser.readOffers(resource("commerceml/offers.xml"));
+
+        assertThat(index.priceTypes()).extracting(PriceType::getName)
+                .containsExactly("Оптовая", "Розничная");
+        assertThat(index.offersById()).containsOnlyKeys("ext-001", "ext-002");
+
+        OfferData gloves = index.offersById().get("ext-001");
+        assertThat(gloves.pricesByType())
+                .containsEntry("price-type-001", "250.50")
+                .containsEntry("price-type-002", "320.00");
+        assertThat(gloves.quantity()).isEqualTo("1000");
+        assertThat(gloves.taxRate().getRate()).isEqualTo("20");
+
+        assertThat(index.offersById().get("ext-002").taxRate().getRate()).isEqualTo("Без НДС");
+    }
+
+    @Test
+    @DisplayName("отсутствующий файл → IllegalStateException")
+    void shouldFailOnMissingFile(@TempDir Path dir) {
+        assertThatThrownBy(() -> parser.readOffers(dir.resolve("offers.xml")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("offers.xml");
+    }
+}
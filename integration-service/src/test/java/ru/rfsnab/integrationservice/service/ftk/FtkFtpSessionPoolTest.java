@@ -0,0 +1,109 @@
+package ru.rfsnab.integrationservice.service.ftk;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("FtkFtpSessionPool")
+class FtkFtpSessionPoolTest {
+
+    private final List<FTPClient> connected = new ArrayList<>();
+
+    private FTPClient connect() {
+        FTPClient ftp = mock(FTPClient.class);
+        when(ftp.isConnected()).thenReturn(true);
+        connected.add(ftp);
+        return ftp;
+    }
+
+    @Test
+    @DisplayName("возвращённая сессия переиспользуется — без повторного connect/login")
+    void shouldReuseReleasedSession() throws Exception {
+        try (FtkFtpSessionPool pool = new FtkFtpSessionPool(2, this::connect)) {
+            FTPClient first = pool.borrow();
+            pool.release(first);
+            FTPClient second = pool.borrow();
+
+            assertThat(second).isSameAs(first);
+            assertThat(pool.openedSessions()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("invalidate закрывает сессию, следующий borrow открывает новую")
+    void shouldReplaceInvalidatedSession() throws Exception {
+        try (FtkFtpSessionPool pool = new FtkFtpSessionPool(1, this::connect)) {
+            FTPClient broken = pool.borrow();
+            pool.invalidate(broken);
+            FTPClient fresh = pool.borrow();
+
+            assertThat(fresh).isNotSameAs(broken);
+            assertThat(pool.openedSessions()).isEqualTo(2);
+            verify(broken).disconnect();
+        }
+    }
+
+    @Test
+    @DisplayName("сессий не больше лимита: borrow ждёт, пока сессию не вернут")
+    void shouldBlockWhenAllSessionsBusy() throws Exception {
+        try (FtkFtpSessionPool pool = new FtkFtpSessionPool(1, this::connect)) {
+            FTPClient busy = pool.borrow();
+            CompletableFuture<FTPClient> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.borrow();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            assertThat(waiting).isNotDone();
+
+            pool.release(busy);
+            assertThat(waiting.get(1, TimeUnit.SECONDS)).isSameAs(busy);
+            assertThat(connected).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("ошибка connect не съедает место в пуле")
+    void shouldReleasePermitWhenConnectFails() throws Exception {
+        boolean[] fail = {true};
+        try (FtkFtpSessionPool pool = new FtkFtpSessionPool(1, () -> {
+            if (fail[0]) throw new IOException("Connection refused");
+            return connect();
+        })) {
+            assertThatThrownBy(pool::borrow).isInstanceOf(IOException.class);
+
+            fail[0] = false;
+            assertThat(pool.borrow()).isNotNull();
+        }
+    }
+
+    @Test
+    @DisplayName("close отключает простаивающие сессии")
+    void shouldDisconnectIdleSessionsOnClose() throws Exception {
+        FtkFtpSessionPool pool = new FtkFtpSessionPool(2, this::connect);
+        FTPClient a = pool.borrow();
+        FTPClient b = pool.borrow();
+        pool.release(a);
+        pool.release(b);
+
+        pool.close();
+
+        verify(a).logout();
+        verify(b).disconnect();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.rfsnab.integrationservice.service.ftk;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,18 +15,27 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageBatchResult;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageJob;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @DisplayName("FtkImageDownloader")
@@ -35,13 +45,22 @@ class FtkImageDownloaderTest {
     @Mock private RestTemplate productServiceRestTemplate;
 
     private IntegrationProperties properties;
+    private SimpleMeterRegistry meterRegistry;
     private FtkImageDownloader downloader;
 
     @BeforeEach
     void setUp() {
         properties = new IntegrationProperties();
         properties.getProductService().setUrl("http://product-service:8083");
-        downloader = new FtkImageDownloader(productServiceRestTemplate, properties);
+        meterRegistry = new SimpleMeterRegistry();
+        downloader = new FtkImageDownloader(productServiceRestTemplate, properties, meterRegistry);
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage img = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", baos);
+        return baos.toByteArray();
     }
 
     @Nested
@@ -187,4 +206,93 @@ class FtkImageDownloaderTest {
             assertThat(webpBytes).isNotEmpty();
         }
     }
+
+    @Nested
+    @DisplayName("downloadAndUploadAll — конвейер download → convert → upload")
+    class PipelineTests {
+
+        private FtkImageDownloader pipeline;
+
+        @BeforeEach
+        void setUp() {
+            properties.getFtk().getImagePipeline().setFtpSessions(3);
+            properties.getFtk().getImagePipeline().setConvertThreads(2);
+            properties.getFtk().getImagePipeline().setUploadConcurrency(2);
+            properties.getFtk().getImagePipeline().setQueueCapacity(2);
+            pipeline = spy(downloader);
+        }
+
+        private List<ImageJob> jobs(int count) {
+            return IntStream.range(0, count)
+                    .mapToObj(i -> new ImageJob("ftp://host/GoodsPictures/p" + i + ".jpg", "FTK-" + i))
+                    .toList();
+        }
+
+        @Test
+        @DisplayName("пустой список — конвейер не запускается")
+        void shouldReturnEmptyForNoJobs() {
+            assertThat(pipeline.downloadAndUploadAll(List.of())).isEqualTo(ImageBatchResult.EMPTY);
+        }
+
+        @Test
+        @DisplayName("все картинки проходят три стадии, очереди меньше числа картинок")
+        void shouldProcessAllJobsThroughStages() throws Exception {
+            byte[] png = png();
+            doAnswer(inv -> png).when(pipeline).download(any(), any());
+
+            ImageBatchResult result = pipeline.downloadAndUploadAll(jobs(20));
+
+            assertThat(result).isEqualTo(new ImageBatchResult(20, 0));
+            verify(productServiceRestTemplate, times(20))
+                    .postForEntity(anyString(), any(HttpEntity.class), eq(Void.class), anyString());
+            verify(productServiceRestTemplate).postForEntity(
+                    anyString(), any(HttpEntity.class), eq(Void.class), eq("FTK-7"));
+        }
+
+        @Test
+        @DisplayName("ошибка на любой стадии — failed, остальные картинки догружаются")
+        void shouldCountFailuresPerImage() throws Exception {
+            byte[] png = png();
+            byte[] unknown = {0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B};
+            AtomicInteger calls = new AtomicInteger();
+            doAnswer(inv -> {
+                ImageJob job = inv.getArgument(0);
+                calls.incrementAndGet();
+                return switch (job.externalId()) {
+                    case "FTK-0" -> throw new IOException("Файл не найден на FTP");
+                    case "FTK-1" -> unknown;
+                    default -> png;
+                };
+            }).when(pipeline).download(any(), any());
+            // Стаб на любой externalId: загрузки идут из пула потоков, и строгий стаб только на FTK-2
+            // ловил бы вызовы для других картинок как PotentialStubbingProblem
+            doAnswer(inv -> {
+                if ("FTK-2".equals(inv.getArgument(3))) {
+                    throw new RestClientException("503");
+                }
+                return null;
+            }).when(productServiceRestTemplate)
+                    .postForEntity(anyString(), any(HttpEntity.class), eq(Void.class), anyString());
+
+            ImageBatchResult result = pipeline.downloadAndUploadAll(jobs(6));
+
+            assertThat(calls.get()).isEqualTo(6);
+            assertThat(result).isEqualTo(new ImageBatchResult(3, 3));
+        }
+
+        @Test
+        @DisplayName("метрика ftk.images.stage: число и исход по каждой стадии")
+        void shouldRecordStageMetrics() throws Exception {
+            byte[] png = png();
+            doAnswer(inv -> png).when(pipeline).download(any(), any());
+
+            pipeline.downloadAndUploadAll(jobs(5));
+
+            for (String stage : List.of("download", "convert", "upload")) {
+                assertThat(meterRegistry.get("ftk.images.stage")
+                        .tag("stage", stage).tag("outcome", "success").timer().count())
+                        .as(stage).isEqualTo(5);
+            }
+        }
+    }
 }
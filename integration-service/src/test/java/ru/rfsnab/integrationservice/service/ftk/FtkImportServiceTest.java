@@ -1,5 +1,6 @@
 package ru.rfsnab.integrationservice.service.ftk;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -11,6 +12,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.client.RestTemplate;
 import ru.rfsnab.integrationservice.config.IntegrationProperties;
 import ru.rfsnab.integrationservice.config.KafkaTopicsProperties;
@@ -21,10 +23,12 @@ import ru.rfsnab.integrationservice.model.ImportLog;
 import ru.rfsnab.integrationservice.model.ftk.FtkProduct;
 import ru.rfsnab.integrationservice.model.ftk.FtkProduct.FtkVariant;
 import ru.rfsnab.integrationservice.repository.ImportLogRepository;
+import ru.rfsnab.integrationservice.repository.ProductFingerprintRepository;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageBatchResult;
+import ru.rfsnab.integrationservice.service.ftk.FtkImageDownloader.ImageJob;
 import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ClassifierData;
-import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.OfferData;
-import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ProductData;
-import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.RestData;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -33,12 +37,14 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -57,6 +63,9 @@ class FtkImportServiceTest {
     @Mock private RestTemplate productServiceRestTemplate;
     @Mock private ImportLogRepository importLogRepository;
     @Mock private KafkaTemplate<String, Object> kafkaTemplate;
+    /** Отпечатков нет (findBySource → пустой список) — все товары считаются новыми и отправляются */
+    @Mock private ProductFingerprintRepository fingerprintRepository;
+    @Mock private PlatformTransactionManager transactionManager;
 
     private IntegrationProperties properties;
     private KafkaTopicsProperties kafkaTopics;
@@ -86,9 +95,16 @@ class FtkImportServiceTest {
                 .when(kafkaTemplate.send(anyString(), anyString(), any()))
                 .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
 
+        // lenient: конвейер картинок вызывается в конце каждого импорта, в т.ч. с пустым списком
+        org.mockito.Mockito.lenient()
+                .when(imageDownloader.downloadAndUploadAll(anyList())).thenReturn(ImageBatchResult.EMPTY);
+
         service = new FtkImportService(
                 xlsParser, xmlParser, ftpClient, categoryMapper, imageDownloader,
-                productServiceRestTemplate, properties, importLogRepository, kafkaTemplate, kafkaTopics
+                productServiceRestTemplate, properties, importLogRepository, kafkaTemplate, kafkaTopics,
+                new IncrementalSyncService(fingerprintRepository, productServiceRestTemplate, properties, transactionManager),
+                // transport по умолчанию HTTP — Kafka-канал в этих тестах не используется
+                new ProductImportKafkaChannel(kafkaTemplate, kafkaTopics, properties, new ObjectMapper())
         );
     }
 
@@ -324,11 +340,12 @@ class FtkImportServiceTest {
             when(categoryMapper.resolveCategory(anyString())).thenReturn(42L);
             when(productServiceRestTemplate.postForEntity(anyString(), any(), eq(BatchImportResponse.class)))
                     .thenReturn(ResponseEntity.ok(okResponse(1, 0)));
-            when(imageDownloader.downloadAndUpload(anyString(), anyString())).thenReturn(true);
+            when(imageDownloader.downloadAndUploadAll(anyList())).thenReturn(new ImageBatchResult(2, 0));
 
             FtkImportService.FtkImportResult result = service.importFromXls(InputStream.nullInputStream());
 
-            verify(imageDownloader, times(2)).downloadAndUpload(anyString(), eq("FTK-111"));
+            assertThat(capturedImageJobs()).containsExactly(
+                    new ImageJob("img/img1.jpg", "FTK-111"), new ImageJob("img/img2.jpg", "FTK-111"));
             assertThat(result.imagesOk()).isEqualTo(2);
             assertThat(result.imagesFailed()).isEqualTo(0);
         }
@@ -344,9 +361,33 @@ class FtkImportServiceTest {
 
             FtkImportService.FtkImportResult result = service.importFromXls(InputStream.nullInputStream());
 
-            verify(imageDownloader, never()).downloadAndUpload(anyString(), anyString());
+            assertThat(capturedImageJobs()).isEmpty();
             assertThat(result.imagesOk()).isEqualTo(0);
         }
+
+        @Test
+        @DisplayName("ошибки конвейера картинок попадают в imagesFailed")
+        void shouldReportFailedImages() throws IOException {
+            FtkProduct p = product("333", "Товар", BigDecimal.ONE,
+                    null, List.of("img/a.jpg", "img/b.jpg", "img/c.jpg"), List.of());
+            when(xlsParser.parse(any())).thenReturn(List.of(p));
+            when(categoryMapper.resolveCategory(anyString())).thenReturn(42L);
+            when(productServiceRestTemplate.postForEntity(anyString(), any(), eq(BatchImportResponse.class)))
+                    .thenReturn(ResponseEntity.ok(okResponse(1, 0)));
+            when(imageDownloader.downloadAndUploadAll(anyList())).thenReturn(new ImageBatchResult(2, 1));
+
+            FtkImportService.FtkImportResult result = service.importFromXls(InputStream.nullInputStream());
+
+            assertThat(result.imagesOk()).isEqualTo(2);
+            assertThat(result.imagesFailed()).isEqualTo(1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ImageJob> capturedImageJobs() {
+        ArgumentCaptor<List<ImageJob>> captor = ArgumentCaptor.forClass(List.class);
+        verify(imageDownloader).downloadAndUploadAll(captor.capture());
+        return captor.getValue();
     }
 
     @Nested
@@ -410,24 +451,32 @@ class FtkImportServiceTest {
                     .build();
         }
 
-        /** Настраивает ftpClient/xmlParser так, чтобы порция part была полностью читаема и собиралась в partProducts. */
-        private void mockFullPart(int part, List<FtkProduct> partProducts) throws Exception {
-            String goodsDir = "/webdata/000000003/goods/" + part + "/";
-            when(ftpClient.getGoodsDir(part)).thenReturn(goodsDir);
-            when(ftpClient.findFileByPrefix(eq(goodsDir), eq("import___"))).thenReturn(goodsDir + "import___1.xml");
-            when(ftpClient.findFileByPrefix(eq(goodsDir), eq("offers___"))).thenReturn(goodsDir + "offers___1.xml");
-            when(ftpClient.findFileByPrefix(eq(goodsDir), eq("prices___"))).thenReturn(goodsDir + "prices___1.xml");
-            when(ftpClient.findFileByPrefix(eq(goodsDir), eq("rests___"))).thenReturn(goodsDir + "rests___1.xml");
-
-            when(ftpClient.openStream(goodsDir + "import___1.xml")).thenReturn(stream());
-            when(ftpClient.openStream(goodsDir + "offers___1.xml")).thenReturn(stream());
-            when(ftpClient.openStream(goodsDir + "rests___1.xml")).thenReturn(stream());
+        private FtkFtpClient.FtpStreamHandle handle() {
             FtkFtpClient.FtpStreamHandle handle = mock(FtkFtpClient.FtpStreamHandle.class);
             when(handle.getStream()).thenReturn(stream());
-            when(ftpClient.openLargeStream(goodsDir + "prices___1.xml")).thenReturn(handle);
+            return handle;
+        }
 
-            when(xmlParser.assemble(any(), any(), any(), any(), eq(classifier), eq(part)))
-                    .thenReturn(partProducts);
+        /**
+         * Настраивает ftpClient/xmlParser так, чтобы порция part была полностью читаема,
+         * а потоковая сборка отдавала в sink товары partProducts.
+         */
+        @SuppressWarnings("unchecked")
+        private void mockFullPart(int part, List<FtkProduct> partProducts) throws Exception {
+            String goodsDir = "/webdata/000000003/goods/" + part + "/";
+            when(ftpClient.getGoodsDir(part)).thenReturn(goodsDir);
+            for (String prefix : List.of("import___", "offers___", "prices___", "rests___")) {
+                String path = goodsDir + prefix + "1.xml";
+                when(ftpClient.findFileByPrefix(eq(goodsDir), eq(prefix))).thenReturn(path);
+                FtkFtpClient.FtpStreamHandle handle = handle();
+                when(ftpClient.openLargeStream(path)).thenReturn(handle);
+            }
+
+            doAnswer(inv -> {
+                Consumer<FtkProduct> sink = inv.getArgument(4);
+                partProducts.forEach(sink);
+                return partProducts.size();
+            }).when(xmlParser).assemblePart(any(), eq(classifier), any(), eq(part), any());
         }
 
         @Test
@@ -450,9 +499,46 @@ class FtkImportServiceTest {
             FtkImportService.FtkImportResult result = service.doImportFromFtp();
 
             assertThat(result.totalProducts()).isEqualTo(4);
-            verify(xmlParser).assemble(any(), any(), any(), any(), eq(classifier), eq(1));
-            verify(xmlParser).assemble(any(), any(), any(), any(), eq(classifier), eq(2));
-            verify(xmlParser).assemble(any(), any(), any(), any(), eq(classifier), eq(3));
+            verify(xmlParser).assemblePart(any(), eq(classifier), any(), eq(1), any());
+            verify(xmlParser).assemblePart(any(), eq(classifier), any(), eq(2), any());
+            verify(xmlParser).assemblePart(any(), eq(classifier), any(), eq(3), any());
+            // товары всех порций уходят одним потоком chunk'ов, а не отдельным batch на порцию
+            ArgumentCaptor<BatchImportRequest> captor = ArgumentCaptor.forClass(BatchImportRequest.class);
+            verify(productServiceRestTemplate).postForEntity(anyString(), captor.capture(), eq(BatchImportResponse.class));
+            assertThat(captor.getValue().getItems()).extracting(ProductImportItemDto::getExternalId)
+                    .containsExactly("FTK-1", "FTK-2", "FTK-3", "FTK-4");
+        }
+
+        @Test
+        @DisplayName("товары отправляются chunk'ами по мере сборки, лимит применяется на лету")
+        void shouldSendChunksWhileAssemblingAndApplyLimit() throws Exception {
+            properties.getImportConfig().setChunkSize(2);
+            properties.getFtk().setImportLimit(3);
+            when(ftpClient.getRootDir()).thenReturn("/webdata/000000003/");
+            when(ftpClient.findFileByPrefix("/webdata/000000003/", "import___"))
+                    .thenReturn("/webdata/000000003/import___1.xml");
+            when(ftpClient.openStream("/webdata/000000003/import___1.xml")).thenReturn(stream());
+            when(xmlParser.parseClassifier(any())).thenReturn(classifier);
+
+            mockFullPart(1, List.of(partProduct("1", 1), partProduct("2", 1)));
+            mockFullPart(2, List.of(partProduct("3", 2), partProduct("4", 2)));
+            mockFullPart(3, List.of(partProduct("5", 3)));
+
+            when(categoryMapper.resolveCategory(anyString())).thenReturn(42L);
+            when(productServiceRestTemplate.postForEntity(anyString(), any(), eq(BatchImportResponse.class)))
+                    .thenReturn(ResponseEntity.ok(okResponse(2, 0)), ResponseEntity.ok(okResponse(1, 0)));
+
+            FtkImportService.FtkImportResult result = service.doImportFromFtp();
+
+            assertThat(result.totalProducts()).isEqualTo(3);
+            assertThat(result.created()).isEqualTo(3);
+            ArgumentCaptor<BatchImportRequest> captor = ArgumentCaptor.forClass(BatchImportRequest.class);
+            verify(productServiceRestTemplate, times(2))
+                    .postForEntity(anyString(), captor.capture(), eq(BatchImportResponse.class));
+            assertThat(captor.getAllValues().get(0).getItems()).extracting(ProductImportItemDto::getExternalId)
+                    .containsExactly("FTK-1", "FTK-2");
+            assertThat(captor.getAllValues().get(1).getItems()).extracting(ProductImportItemDto::getExternalId)
+                    .containsExactly("FTK-3");
         }
 
         @Test
@@ -490,7 +576,7 @@ class FtkImportServiceTest {
 
             FtkImportService.FtkImportResult result = service.doImportFromFtp();
 
-            verify(imageDownloader, never()).downloadAndUpload(anyString(), anyString());
+            assertThat(capturedImageJobs()).isEmpty();
             assertThat(result.imagesSkipped()).isEqualTo(1);
             assertThat(result.imagesOk()).isEqualTo(0);
         }
@@ -555,9 +641,9 @@ class FtkImportServiceTest {
             FtkImportService.FtkImportResult result = service.doImportFromFtp();
 
             assertThat(result.totalProducts()).isEqualTo(2);
-            verify(xmlParser, never()).assemble(any(), any(), any(), any(), eq(classifier), eq(2));
-            verify(xmlParser).assemble(any(), any(), any(), any(), eq(classifier), eq(1));
-            verify(xmlParser).assemble(any(), any(), any(), any(), eq(classifier), eq(3));
+            verify(xmlParser, never()).assemblePart(any(), eq(classifier), any(), eq(2), any());
+            verify(xmlParser).assemblePart(any(), eq(classifier), any(), eq(1), any());
+            verify(xmlParser).assemblePart(any(), eq(classifier), any(), eq(3), any());
         }
     }
 }
@@ -0,0 +1,224 @@
+package ru.rfsnab.integrationservice.service.ftk;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.ClassifierData;
+import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.OfferData;
+import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.PartOffers;
+import ru.rfsnab.integrationservice.service.ftk.FtkXmlParser.RestData;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер потокового FtkXmlParser на синтетической порции ФТК (prices ~ 100+ МБ).
+ * Не входит в обычный прогон: mvn test -Dtest=FtkXmlParserBenchmarkTest -Dftk.benchmark=true
+ * Размер порции — -Dftk.benchmark.products (по умолчанию 30 000 товаров × 3 оффера ≈ 165 МБ prices).
+ * Печатает время и пиковое заполнение heap по фазам; удобно запускать с -Xmx512m,
+ * чтобы убедиться, что порция проходит в урезанной куче.
+ */
+@DisplayName("FtkXmlParser — benchmark")
+@EnabledIfSystemProperty(named = "ftk.benchmark", matches = "true")
+class FtkXmlParserBenchmarkTest {
+
+    private static final String RETAIL_PRICE_UUID = "fdf5831f-8b8c-11e9-80f4-005056912b25";
+    private static final int OFFERS_PER_PRODUCT = 3;
+    private static final String[] OTHER_PRICE_TYPES = {
+            "0a1b2c3d-0000-0000-0000-000000000001",
+            "0a1b2c3d-0000-0000-0000-000000000002",
+            "0a1b2c3d-0000-0000-0000-000000000003",
+            "0a1b2c3d-0000-0000-0000-000000000004"
+    };
+
+    private final FtkXmlParser parser = new FtkXmlParser();
+
+    @Test
+    @DisplayName("порция 100+ МБ: offers/prices/rests + потоковая сборка товаров")
+    void benchmarkPart(@TempDir Path dir) throws Exception {
+        int products = Integer.getInteger("ftk.benchmark.products", 30_000);
+        Path goods  = writeGoods(dir.resolve("import___1.xml"), products);
+        Path offers = writeOffers(dir.resolve("offers___1.xml"), products);
+        Path prices = writePrices(dir.resolve("prices___1.xml"), products);
+        Path rests  = writeRests(dir.resolve("rests___1.xml"), products);
+        report("Файлы", "import=%d МБ, offers=%d МБ, prices=%d МБ, rests=%d МБ",
+                mb(Files.size(goods)), mb(Files.size(offers)), mb(Files.size(prices)), mb(Files.size(rests)));
+
+        ClassifierData classifier = new ClassifierData(Map.of(), Map.of(), Map.of(), Map.of("796", "шт"));
+
+        Phase phase = Phase.start();
+        Map<String, OfferData> offerData;
+        try (InputStream is = Files.newInputStream(offers)) {
+            offerData = parser.parseOffers(is);
+        }
+        phase.report("parseOffers");
+
+        phase = Phase.start();
+        Map<String, BigDecimal> priceData;
+        try (InputStream is = Files.newInputStream(prices)) {
+            priceData = parser.parsePrices(is);
+        }
+        phase.report("parsePrices");
+
+        phase = Phase.start();
+        Map<String, RestData> restData;
+        try (InputStream is = Files.newInputStream(rests)) {
+            restData = parser.parseRests(is);
+        }
+        phase.report("parseRests");
+
+        PartOffers partOffers = PartOffers.of(offerData, priceData, restData);
+        offerData = null;
+
+        phase = Phase.start();
+        AtomicInteger variants = new AtomicInteger();
+        int assembled;
+        try (InputStream is = Files.newInputStream(goods)) {
+            assembled = parser.assemblePart(is, classifier, partOffers, 1,
+                    p -> variants.addAndGet(p.getVariants().size()));
+        }
+        phase.report("assemblePart");
+
+        assertThat(Files.size(prices)).isGreaterThan(100L * 1024 * 1024);
+        assertThat(assembled).isEqualTo(products);
+        assertThat(variants.get()).isEqualTo(products * OFFERS_PER_PRODUCT);
+        assertThat(priceData).hasSize(products * OFFERS_PER_PRODUCT);
+    }
+
+    // ──────────────────────────────────────────────────────────────
+    // Замер фаз
+    // ──────────────────────────────────────────────────────────────
+
+    private record Phase(long startedAt) {
+
+        static Phase start() {
+            System.gc();
+            ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+            return new Phase(System.nanoTime());
+        }
+
+        void report(String name) {
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+            long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                    .sum();
+            FtkXmlParserBenchmarkTest.report(name, "%d мс, пик heap %d МБ", elapsedMs, mb(peakHeap));
+        }
+    }
+
+    private static void report(String name, String format, Object... args) {
+        System.out.printf("[ftk-benchmark] %-13s %s%n", name, String.format(format, args));
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    // ──────────────────────────────────────────────────────────────
+    // Генерация синтетической порции
+    // ──────────────────────────────────────────────────────────────
+
+    private static String productId(int i) {
+        return "prod-%08d-0000-0000-0000-000000000000".formatted(i);
+    }
+
+    private static String offerId(int i, int v) {
+        return productId(i) + "#var-%08d-%d".formatted(i, v);
+    }
+
+    private static Path writeGoods(Path file, int products) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<КоммерческаяИнформация><Каталог><Товары>\n");
+            for (int i = 0; i < products; i++) {
+                w.write("<Товар><Ид>" + productId(i) + "</Ид><Артикул>" + (10_000_000 + i) + "</Артикул>"
+                        + "<Наименование>Костюм рабочий летний модель " + i + "</Наименование>"
+                        + "<Описание>Куртка и полукомбинезон из смесовой ткани, усилительные накладки, "
+                        + "светоотражающие полосы, регулировка по талии. Партия " + i + "</Описание>"
+                        + "<БазоваяЕдиница Код=\"796\"/>"
+                        + "<Картинка>import_files/" + (i % 100) + "/" + productId(i) + ".jpg</Картинка>"
+                        + "<Группы><Ид>grp-0001</Ид></Группы></Товар>\n");
+            }
+            w.write("</Товары></Каталог></КоммерческаяИнформация>\n");
+        }
+        return file;
+    }
+
+    private static Path writeOffers(Path file, int products) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<КоммерческаяИнформация><ПакетПредложений><Предложения>\n");
+            for (int i = 0; i < products; i++) {
+                for (int v = 0; v < OFFERS_PER_PRODUCT; v++) {
+                    w.write("<Предложение><Ид>" + offerId(i, v) + "</Ид>"
+                            + "<ЗначенияСвойств><ЗначениеСвойства><Ид>FK_CML2_ARTICLE</Ид>"
+                            + "<Значение>" + (10_000_000 + i) + ".00" + v + "</Значение></ЗначениеСвойства>"
+                            + "</ЗначенияСвойств>"
+                            + "<СтавкиНалогов><СтавкаНалога><Наименование>НДС</Наименование><Ставка>20</Ставка>"
+                            + "</СтавкаНалога></СтавкиНалогов>"
+                            + "<ХарактеристикиТовара><ХарактеристикаТовара><Наименование>Размер</Наименование>"
+                            + "<Значение>" + (44 + v * 4) + "-" + (46 + v * 4) + "</Значение>"
+                            + "</ХарактеристикаТовара></ХарактеристикиТовара></Предложение>\n");
+                }
+            }
+            w.write("</Предложения></ПакетПредложений></КоммерческаяИнформация>\n");
+        }
+        return file;
+    }
+
+    private static Path writePrices(Path file, int products) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<КоммерческаяИнформация><ПакетПредложений><Предложения>\n");
+            for (int i = 0; i < products; i++) {
+                for (int v = 0; v < OFFERS_PER_PRODUCT; v++) {
+                    w.write("<Предложение><Ид>" + offerId(i, v) + "</Ид><Цены>");
+                    writePrice(w, RETAIL_PRICE_UUID, 1000 + i % 5000);
+                    for (String type : OTHER_PRICE_TYPES) {
+                        writePrice(w, type, 900 + i % 5000);
+                    }
+                    w.write("</Цены></Предложение>\n");
+                }
+            }
+            w.write("</Предложения></ПакетПредложений></КоммерческаяИнформация>\n");
+        }
+        return file;
+    }
+
+    private static void writePrice(BufferedWriter w, String type, int value) throws IOException {
+        w.write("<Цена><Представление>" + value + " RUB за шт</Представление><ИдТипаЦены>" + type
+                + "</ИдТипаЦены><ЦенаЗаЕдиницу>" + value + ".00</ЦенаЗаЕдиницу><Валюта>RUB</Валюта>"
+                + "<Единица>796</Единица><Коэффициент>1</Коэффициент></Цена>");
+    }
+
+    private static Path writeRests(Path file, int products) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<КоммерческаяИнформация><ПакетПредложений><Предложения>\n");
+            for (int i = 0; i < products; i++) {
+                for (int v = 0; v < OFFERS_PER_PRODUCT; v++) {
+                    w.write("<Предложение><Ид>" + offerId(i, v) + "</Ид>"
+                            + "<Остатки><Остаток><Количество>" + (i % 50) + "</Количество></Остаток></Остатки>"
+                            + "<ЗначенияРеквизитов><ЗначениеРеквизита><Наименование>фк_Штрихкод</Наименование>"
+                            + "<Значение>46" + String.format("%011d", i * 10L + v) + "</Значение>"
+                            + "</ЗначениеРеквизита></ЗначенияРеквизитов></Предложение>\n");
+                }
+            }
+            w.write("</Предложения></ПакетПредложений></КоммерческаяИнформация>\n");
+        }
+        return file;
+    }
+}
@@ -18,6 +18,7 @@ import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -402,6 +403,80 @@ class FtkXmlParserTest {
         }
     }
 
+    @Nested
+    @DisplayName("Unit: assemblePart (потоковая сборка)")
+    class AssemblePartUnitTests {
+
+        @Test
+        @DisplayName("отдаёт товары в sink по одному, товары без офферов и вне Каталог/Товары пропускает")
+        void shouldStreamAssembledProducts() throws Exception {
+            ClassifierData classifier = new ClassifierData(Map.of(), Map.of(), Map.of(), Map.of("796", "шт"));
+            String xml = """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <КоммерческаяИнформация>
+                      <Классификатор>
+                        <Товар><Ид>NOT-A-PRODUCT</Ид></Товар>
+                      </Классификатор>
+                      <Каталог>
+                        <Товары>
+                          <Товар>
+                            <Ид>PROD-1</Ид>
+                            <Артикул>111</Артикул>
+                            <Наименование>Куртка</Наименование>
+                            <БазоваяЕдиница Код="796"/>
+                          </Товар>
+                          <Товар>
+                            <Ид>PROD-NO-OFFERS</Ид>
+                            <Артикул>222</Артикул>
+                            <Наименование>Без офферов</Наименование>
+                          </Товар>
+                          <Товар>
+                            <Ид>PROD-2</Ид>
+                            <Артикул>333</Артикул>
+                            <Наименование><![CDATA[Брюки "летние"]]></Наименование>
+                          </Товар>
+                        </Товары>
+                      </Каталог>
+                    </КоммерческаяИнформация>
+                    """;
+            FtkXmlParser.PartOffers offers = FtkXmlParser.PartOffers.of(
+                    Map.of(
+                            "PROD-1#A", new OfferData("PROD-1#A", "PROD-1", "111.001", 20, Map.of(), null, null),
+                            "PROD-1#B", new OfferData("PROD-1#B", "PROD-1", "111.002", 20, Map.of(), null, null),
+                            "PROD-2", new OfferData("PROD-2", "PROD-2", null, null, Map.of(), null, null),
+                            "NOT-A-PRODUCT", new OfferData("NOT-A-PRODUCT", "NOT-A-PRODUCT", null, null, Map.of(), null, null)),
+                    Map.of("PROD-1#A", new BigDecimal("100")),
+                    Map.of("PROD-1#B", new RestData(7, null, null)));
+
+            List<FtkProduct> sink = new ArrayList<>();
+            int assembled = parser.assemblePart(toStream(xml), classifier, offers, 2, sink::add);
+
+            assertThat(assembled).isEqualTo(2);
+            assertThat(sink).extracting(FtkProduct::getProductUuid).containsExactly("PROD-1", "PROD-2");
+
+            FtkProduct jacket = sink.get(0);
+            assertThat(jacket.getPartNumber()).isEqualTo(2);
+            assertThat(jacket.getUnitOfMeasure()).isEqualTo("шт");
+            assertThat(jacket.getVariants()).hasSize(2);
+            assertThat(jacket.getVariants())
+                    .filteredOn(v -> v.getOfferUuid().equals("PROD-1#A"))
+                    .singleElement()
+                    .satisfies(v -> {
+                        assertThat(v.getPrice()).isEqualByComparingTo("100");
+                        assertThat(v.getStockQuantity()).isZero();
+                    });
+            assertThat(jacket.getVariants())
+                    .filteredOn(v -> v.getOfferUuid().equals("PROD-1#B"))
+                    .singleElement()
+                    .satisfies(v -> assertThat(v.getStockQuantity()).isEqualTo(7));
+
+            // артикул варианта берётся у товара, если в оффере его нет; CDATA читается как текст
+            FtkProduct trousers = sink.get(1);
+            assertThat(trousers.getName()).isEqualTo("Брюки \"летние\"");
+            assertThat(trousers.getVariants().get(0).getArticle()).isEqualTo("333");
+        }
+    }
+
     // ──────────────────────────────────────────────────────────────
     // Тесты на реальных файлах ФТК
     // ──────────────────────────────────────────────────────────────
@@ -0,0 +1,259 @@
+package ru.rfsnab.integrationservice.service.sync;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse.ImportItemResult;
+import ru.rfsnab.integrationservice.dto.ProductImportItemDto;
+import ru.rfsnab.integrationservice.dto.ProductTombstoneRequest;
+import ru.rfsnab.integrationservice.dto.ProductTombstoneResponse;
+import ru.rfsnab.integrationservice.repository.ProductFingerprintRepository;
+import ru.rfsnab.integrationservice.repository.ProductFingerprintRepository.FingerprintView;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncRun;
+import ru.rfsnab.integrationservice.service.sync.IncrementalSyncService.SyncSummary;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("IncrementalSyncService")
+@ExtendWith(MockitoExtension.class)
+class IncrementalSyncServiceTest {
+
+    private static final String SOURCE = "FTK";
+    private static final String TOMBSTONES_URL = "http://product-service/api/v1/products/import/tombstones";
+
+    @Mock private ProductFingerprintRepository fingerprintRepository;
+    @Mock private RestTemplate productServiceRestTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private IntegrationProperties properties;
+    private IncrementalSyncService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IntegrationProperties();
+        properties.getProductService().setUrl("http://product-service");
+        service = new IncrementalSyncService(fingerprintRepository, productServiceRestTemplate, properties, transactionManager);
+    }
+
+    private record Fingerprint(String externalId, String contentHash, LocalDateTime syncedAt) implements FingerprintView {
+        @Override public String getExternalId()     { return externalId; }
+        @Override public String getContentHash()    { return contentHash; }
+        @Override public LocalDateTime getSyncedAt() { return syncedAt; }
+    }
+
+    private ProductImportItemDto item(String externalId, String price) {
+        return ProductImportItemDto.builder()
+                .externalId(externalId)
+                .name("Перчатки " + externalId)
+                .price(new BigDecimal(price))
+                .source(SOURCE)
+                .build();
+    }
+
+    private Fingerprint synced(ProductImportItemDto item) {
+        return new Fingerprint(item.getExternalId(), IncrementalSyncService.fingerprint(item), LocalDateTime.now().minusHours(1));
+    }
+
+    private void known(FingerprintView... fingerprints) {
+        when(fingerprintRepository.findBySource(SOURCE)).thenReturn(List.of(fingerprints));
+    }
+
+    private BatchImportResponse response(Map<String, Boolean> successByExternalId) {
+        List<ImportItemResult> results = new ArrayList<>();
+        successByExternalId.forEach((id, ok) -> results.add(new ImportItemResult(id, ok, ok ? null : "ошибка", false)));
+        BatchImportResponse r = new BatchImportResponse();
+        r.setResults(results);
+        return r;
+    }
+
+    @Nested
+    @DisplayName("fingerprint")
+    class FingerprintTests {
+
+        @Test
+        @DisplayName("не зависит от порядка ключей Map")
+        void shouldBeStableForEqualContent() {
+            Map<String, String> ab = new LinkedHashMap<>();
+            ab.put("Бренд", "Ansell");
+            ab.put("Материал", "нитрил");
+            Map<String, String> ba = new LinkedHashMap<>();
+            ba.put("Материал", "нитрил");
+            ba.put("Бренд", "Ansell");
+
+            ProductImportItemDto first = item("FTK-1", "100.50");
+            first.setProperties(ab);
+            ProductImportItemDto second = item("FTK-1", "100.50");
+            second.setProperties(ba);
+
+            assertThat(IncrementalSyncService.fingerprint(first))
+                    .isEqualTo(IncrementalSyncService.fingerprint(second))
+                    .hasSize(64);
+        }
+
+        @Test
+        @DisplayName("меняется при изменении любого поля")
+        void shouldChangeWithContent() {
+            assertThat(IncrementalSyncService.fingerprint(item("FTK-1", "100.50")))
+                    .isNotEqualTo(IncrementalSyncService.fingerprint(item("FTK-1", "100.51")));
+        }
+    }
+
+    @Nested
+    @DisplayName("shouldSend / confirm")
+    class SendTests {
+
+        @Test
+        @DisplayName("неизменившийся товар не отправляется, новый и изменённый — отправляются")
+        void shouldSkipOnlyUnchanged() {
+            ProductImportItemDto same = item("FTK-1", "100");
+            known(synced(same), synced(item("FTK-2", "200")));
+
+            SyncRun run = service.startRun(SOURCE);
+
+            assertThat(run.shouldSend(same)).isFalse();
+            assertThat(run.shouldSend(item("FTK-2", "250"))).isTrue();
+            assertThat(run.shouldSend(item("FTK-3", "300"))).isTrue();
+            assertThat(run.skipped()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("устаревший отпечаток (старше fullResyncDays) не доверяется — товар уходит повторно")
+        void shouldResendStaleFingerprint() {
+            ProductImportItemDto same = item("FTK-1", "100");
+            known(new Fingerprint("FTK-1", IncrementalSyncService.fingerprint(same), LocalDateTime.now().minusDays(8)));
+
+            assertThat(service.startRun(SOURCE).shouldSend(same)).isTrue();
+        }
+
+        @Test
+        @DisplayName("enabled=false — отправляется всё")
+        void shouldSendEverythingWhenDisabled() {
+            properties.getImportConfig().getIncremental().setEnabled(false);
+            ProductImportItemDto same = item("FTK-1", "100");
+            known(synced(same));
+
+            SyncRun run = service.startRun(SOURCE);
+
+            assertThat(run.shouldSend(same)).isTrue();
+            assertThat(run.skipped()).isZero();
+        }
+
+        @Test
+        @DisplayName("confirm сохраняет отпечатки только успешно принятых товаров")
+        void shouldStoreFingerprintsOfAcceptedOnly() {
+            SyncRun run = service.startRun(SOURCE);
+            ProductImportItemDto ok = item("FTK-1", "100");
+            run.shouldSend(ok);
+            run.shouldSend(item("FTK-2", "200"));
+
+            run.confirm(response(Map.of("FTK-1", true, "FTK-2", false)));
+
+            verify(fingerprintRepository).upsert(SOURCE, "FTK-1", IncrementalSyncService.fingerprint(ok));
+            verify(fingerprintRepository, never()).upsert(eq(SOURCE), eq("FTK-2"), anyString());
+        }
+    }
+
+    @Nested
+    @DisplayName("finish — tombstone-проход")
+    class TombstoneTests {
+
+        private SyncRun runWithMissing(String... missing) {
+            List<FingerprintView> fingerprints = new ArrayList<>();
+            List<ProductImportItemDto> present = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                ProductImportItemDto p = item("FTK-KEEP-" + i, "100");
+                present.add(p);
+                fingerprints.add(synced(p));
+            }
+            for (String externalId : missing) {
+                fingerprints.add(synced(item(externalId, "100")));
+            }
+            known(fingerprints.toArray(FingerprintView[]::new));
+
+            SyncRun run = service.startRun(SOURCE);
+            present.forEach(run::shouldSend);
+            return run;
+        }
+
+        @Test
+        @DisplayName("полная выгрузка: пропавшие товары снимаются с остатка, их отпечатки удаляются")
+        void shouldWithdrawMissingOnFullSnapshot() {
+            SyncRun run = runWithMissing("FTK-GONE-1");
+            when(productServiceRestTemplate.postForObject(eq(TOMBSTONES_URL), any(ProductTombstoneRequest.class),
+                    eq(ProductTombstoneResponse.class))).thenReturn(new ProductTombstoneResponse(1, 2));
+
+            SyncSummary summary = run.finish(true);
+
+            ArgumentCaptor<ProductTombstoneRequest> request = ArgumentCaptor.forClass(ProductTombstoneRequest.class);
+            verify(productServiceRestTemplate).postForObject(eq(TOMBSTONES_URL), request.capture(),
+                    eq(ProductTombstoneResponse.class));
+            assertThat(request.getValue().getExternalIds()).containsExactly("FTK-GONE-1");
+            verify(fingerprintRepository).deleteBySourceAndExternalIdIn(SOURCE, List.of("FTK-GONE-1"));
+            assertThat(summary.withdrawn()).isEqualTo(2);
+            assertThat(summary.skipped()).isEqualTo(4);
+        }
+
+        @Test
+        @DisplayName("неполная выгрузка: tombstone-проход не выполняется")
+        void shouldNotWithdrawOnPartialSnapshot() {
+            SyncRun run = runWithMissing("FTK-GONE-1");
+
+            assertThat(run.finish(false).withdrawn()).isZero();
+            verify(productServiceRestTemplate, never()).postForObject(anyString(), any(), any());
+        }
+
+        @Test
+        @DisplayName("пропала больше половины каталога — похоже на битый файл, tombstone-проход отменён")
+        void shouldRefuseMassWithdrawal() {
+            SyncRun run = runWithMissing("FTK-GONE-1", "FTK-GONE-2", "FTK-GONE-3", "FTK-GONE-4", "FTK-GONE-5");
+
+            assertThat(run.finish(true).withdrawn()).isZero();
+            verify(productServiceRestTemplate, never()).postForObject(anyString(), any(), any());
+        }
+
+        @Test
+        @DisplayName("tombstones=false: tombstone-проход не выполняется")
+        void shouldNotWithdrawWhenDisabled() {
+            properties.getImportConfig().getIncremental().setTombstones(false);
+            SyncRun run = runWithMissing("FTK-GONE-1");
+
+            assertThat(run.finish(true).withdrawn()).isZero();
+            verify(productServiceRestTemplate, never()).postForObject(anyString(), any(), any());
+        }
+
+        @Test
+        @DisplayName("product-service недоступен: отпечатки остаются до следующего импорта")
+        void shouldKeepFingerprintsWhenTombstoneFails() {
+            SyncRun run = runWithMissing("FTK-GONE-1");
+            when(productServiceRestTemplate.postForObject(eq(TOMBSTONES_URL), any(ProductTombstoneRequest.class),
+                    eq(ProductTombstoneResponse.class))).thenThrow(new ResourceAccessException("Connection refused"));
+
+            assertThat(run.finish(true).withdrawn()).isZero();
+            verify(fingerprintRepository, never()).deleteBySourceAndExternalIdIn(anyString(), anyCollection());
+        }
+    }
+}
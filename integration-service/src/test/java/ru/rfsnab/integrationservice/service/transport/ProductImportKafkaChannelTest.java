@@ -0,0 +1,158 @@
+package ru.rfsnab.integrationservice.service.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import ru.rfsnab.integrationservice.config.IntegrationProperties;
+import ru.rfsnab.integrationservice.config.KafkaTopicsProperties;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse;
+import ru.rfsnab.integrationservice.dto.BatchImportResponse.ImportItemResult;
+import ru.rfsnab.integrationservice.dto.ProductImportItemDto;
+import ru.rfsnab.integrationservice.dto.ProductImportMessage;
+import ru.rfsnab.integrationservice.service.transport.ProductImportKafkaChannel.ImportRun;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("ProductImportKafkaChannel")
+@ExtendWith(MockitoExtension.class)
+class ProductImportKafkaChannelTest {
+
+    private static final String ITEMS_TOPIC = "product-import-items";
+
+    @Mock private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private IntegrationProperties properties;
+    private ProductImportKafkaChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IntegrationProperties();
+        KafkaTopicsProperties kafkaTopics = new KafkaTopicsProperties();
+        kafkaTopics.setProductImportItems(ITEMS_TOPIC);
+        channel = new ProductImportKafkaChannel(kafkaTemplate, kafkaTopics, properties, new ObjectMapper());
+    }
+
+    private ProductImportItemDto item(String externalId) {
+        return ProductImportItemDto.builder().externalId(externalId).name("Перчатки " + externalId).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void brokerAccepts() {
+        when(kafkaTemplate.send(eq(ITEMS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+    }
+
+    private String sentRunId() {
+        ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, atLeastOnce()).send(eq(ITEMS_TOPIC), anyString(), message.capture());
+        return ((ProductImportMessage) message.getValue()).getRunId();
+    }
+
+    @Test
+    @DisplayName("ответ product-service доходит до своего прогона, лишние поля ответа игнорируются")
+    void shouldRouteResultToRun() {
+        brokerAccepts();
+        ImportRun run = channel.open("FTK");
+        run.send(item("FTK-1"));
+        run.send(item("FTK-2"));
+
+        channel.onResult("""
+                {"runId":"%s","response":{"totalReceived":2,"created":2,
+                 "results":[{"externalId":"FTK-1","success":true,"productId":10,"action":"CREATED"},
+                            {"externalId":"FTK-2","success":true,"productId":11,"action":"CREATED"}]}}
+                """.formatted(sentRunId()));
+        channel.onResult("""
+                {"runId":"чужой","response":{"totalReceived":1,"created":1,"results":[]}}
+                """);
+
+        List<BatchImportResponse> responses = run.finish();
+
+        assertThat(responses).singleElement().satisfies(r -> {
+            assertThat(r.getCreated()).isEqualTo(2);
+            assertThat(r.getResults()).extracting(ImportItemResult::getExternalId).containsExactly("FTK-1", "FTK-2");
+        });
+    }
+
+    @Test
+    @DisplayName("товары без ответа за resultTimeoutSec попадают в итог как failed")
+    void shouldFailMissingResultsOnTimeout() {
+        properties.getImportConfig().setResultTimeoutSec(0);
+        brokerAccepts();
+        ImportRun run = channel.open("FTK");
+        run.send(item("FTK-1"));
+        run.send(item("FTK-2"));
+
+        channel.onResult("""
+                {"runId":"%s","response":{"totalReceived":1,"updated":1,
+                 "results":[{"externalId":"FTK-1","success":true}]}}
+                """.formatted(sentRunId()));
+
+        List<BatchImportResponse> responses = run.finish();
+
+        assertThat(responses).hasSize(2);
+        BatchImportResponse missing = responses.get(1);
+        assertThat(missing.getFailed()).isEqualTo(1);
+        assertThat(missing.getResults()).singleElement().satisfies(r -> {
+            assertThat(r.getExternalId()).isEqualTo("FTK-2");
+            assertThat(r.isSuccess()).isFalse();
+        });
+    }
+
+    @Test
+    @DisplayName("повтор externalId в выгрузке отправляется один раз и не ждёт второго ответа")
+    void shouldSendDuplicateExternalIdOnce() {
+        properties.getImportConfig().setResultTimeoutSec(0);
+        brokerAccepts();
+        ImportRun run = channel.open("FTK");
+        run.send(item("FTK-1"));
+        run.send(item("FTK-1"));
+
+        channel.onResult("""
+                {"runId":"%s","response":{"totalReceived":1,"updated":1,
+                 "results":[{"externalId":"FTK-1","success":true}]}}
+                """.formatted(sentRunId()));
+
+        List<BatchImportResponse> responses = run.finish();
+
+        verify(kafkaTemplate, times(1)).send(eq(ITEMS_TOPIC), eq("FTK-1"), any());
+        assertThat(responses).singleElement().satisfies(r -> assertThat(r.getFailed()).isZero());
+    }
+
+    @Test
+    @DisplayName("Kafka недоступна: после первой ошибки товары не отправляются, в итоге одна ошибка на все")
+    void shouldAggregateUnsentAfterFirstFailure() {
+        when(kafkaTemplate.send(eq(ITEMS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("Broker not available")));
+        ImportRun run = channel.open("1C");
+        run.send(item("1C-1"));
+        run.send(item("1C-2"));
+        run.send(item("1C-3"));
+
+        List<BatchImportResponse> responses = run.finish();
+
+        verify(kafkaTemplate, times(1)).send(eq(ITEMS_TOPIC), anyString(), any());
+        assertThat(responses).singleElement().satisfies(r -> {
+            assertThat(r.getFailed()).isEqualTo(3);
+            assertThat(r.getErrors()).singleElement().asString().contains("Broker not available");
+        });
+    }
+}
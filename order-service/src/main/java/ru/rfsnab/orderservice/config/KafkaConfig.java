@@ -3,26 +3,13 @@ package ru.rfsnab.orderservice.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.apache.kafka.common.serialization.StringSerializer;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import static org.apache.kafka.clients.producer.ProducerConfig.*;
-
 @Configuration
 public class KafkaConfig {
-    @Value("${spring.kafka.bootstrap-servers}")
-    private String bootstrapServers;
-
     @Bean
     public ObjectMapper kafkaObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -31,25 +18,15 @@ public class KafkaConfig {
         return mapper;
     }
 
+    /**
+     * Пул соединений, таймауты и bulkhead подключает http-client-common через RestTemplateBuilder.
+     * Конвертеры — стандартные RestTemplate: kafkaObjectMapper не пропускает неизвестные поля
+     * в ответах соседних сервисов.
+     */
     @Bean
-    public ProducerFactory<String, Object> producerFactory() {
-        Map<String, Object> config = new HashMap<>();
-        config.put(BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        config.put(KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-
-        JsonSerializer<Object> serializer = new JsonSerializer<>(kafkaObjectMapper());
-        serializer.setAddTypeInfo(false);
-
-        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(), serializer);
-    }
-
-    @Bean
-    public KafkaTemplate<String, Object> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
-    }
-
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
+        return restTemplateBuilder
+                .messageConverters(new RestTemplate().getMessageConverters())
+                .build();
     }
 }
@@ -1,5 +1,6 @@
 package ru.rfsnab.orderservice.controller;
 
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Page;
@@ -19,13 +20,22 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.rfsnab.orderservice.mapper.OrderDocumentMapper;
 import ru.rfsnab.orderservice.mapper.OrderMapper;
+import ru.rfsnab.orderservice.models.dto.CursorPage;
+import ru.rfsnab.orderservice.models.dto.order.AdminOrderFilter;
+import ru.rfsnab.orderservice.models.dto.order.CompleteDocumentUploadRequest;
+import ru.rfsnab.orderservice.models.dto.order.DocumentUploadRequest;
 import ru.rfsnab.orderservice.models.dto.order.OrderDocumentDto;
 import ru.rfsnab.orderservice.models.dto.order.OrderDto;
 import ru.rfsnab.orderservice.models.dto.order.OrderSummaryDto;
+import ru.rfsnab.orderservice.models.dto.order.PresignedDownloadDto;
+import ru.rfsnab.orderservice.models.dto.order.PresignedUploadDto;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderDocument;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.enums.OrderDocumentType;
+import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
 import ru.rfsnab.orderservice.service.OrderDocumentService;
 import ru.rfsnab.orderservice.service.OrderService;
 import ru.rfsnab.orderservice.service.WarehousePointService;
@@ -46,20 +56,52 @@ public class AdminOrderController {
     private final WarehousePointService warehousePointService;
     private final OrderDocumentService orderDocumentService;
 
+    /**
+     * Список заказов с любой комбинацией фильтров; orderNumber — подстрока номера.
+     */
     @GetMapping
     public ResponseEntity<Page<OrderSummaryDto>> getAdminOrders(
             @RequestParam(required = false) OrderStatus status,
             @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String inn,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(required = false) PaymentMethod paymentMethod,
+            @RequestParam(required = false) DeliveryMethod deliveryMethod,
+            @RequestParam(required = false) String orderNumber,
             @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
-        Page<Order> orders = orderService.getAdminOrders(status, userId, dateFrom, dateTo, pageable);
+        AdminOrderFilter filter = new AdminOrderFilter(
+                status, userId, inn, dateFrom, dateTo, paymentMethod, deliveryMethod, orderNumber);
+        Page<OrderSummary> orders = orderService.getAdminOrders(filter, pageable);
         List<OrderSummaryDto> content = orders.getContent().stream()
                 .map(OrderMapper::toSummaryDto)
                 .toList();
         return ResponseEntity.ok(new PageImpl<>(content, pageable, orders.getTotalElements()));
     }
 
+    /**
+     * Те же фильтры курсором (новые сверху) — без OFFSET и без обязательного COUNT.
+     * withTotal=true добавляет итог: точный при фильтрах, оценочный для всей таблицы.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<OrderSummaryDto>> scrollAdminOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String inn,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(required = false) PaymentMethod paymentMethod,
+            @RequestParam(required = false) DeliveryMethod deliveryMethod,
+            @RequestParam(required = false) String orderNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        AdminOrderFilter filter = new AdminOrderFilter(
+                status, userId, inn, dateFrom, dateTo, paymentMethod, deliveryMethod, orderNumber);
+        return ResponseEntity.ok(orderService.scrollAdminOrders(filter, cursor, size, withTotal)
+                .map(OrderMapper::toSummaryDto));
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<OrderDto> getAdminOrder(@PathVariable UUID orderId) {
         Order order = orderService.getOrder(orderId);
@@ -79,9 +121,14 @@ public class AdminOrderController {
         return ResponseEntity.ok(Map.of("count", count));
     }
 
+    /**
+     * Смена статуса админом. Idempotency-Key (опционально): повтор запроса с тем же ключом
+     * не меняет заказ и не рассылает уведомления второй раз.
+     */
     @PatchMapping("/{orderId}/status")
     public ResponseEntity<OrderDto> changeOrderStatus(
             @PathVariable UUID orderId,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody Map<String, String> body) {
         String raw = body.get("status");
         if (raw == null || raw.isBlank()) {
@@ -93,7 +140,7 @@ public class AdminOrderController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.<OrderDto>badRequest().build();
         }
-        Order order = orderService.updateStatus(orderId, newStatus);
+        Order order = orderService.updateStatus(orderId, newStatus, idempotencyKey);
         return ResponseEntity.ok(enrichAndMap(order));
     }
 
@@ -109,6 +156,31 @@ public class AdminOrderController {
         return ResponseEntity.status(HttpStatus.CREATED).body(OrderDocumentMapper.toDto(document));
     }
 
+    /**
+     * Прямая загрузка, шаг 1: подписанная ссылка PUT в хранилище — файл не проходит через сервис.
+     */
+    @PostMapping("/{orderId}/documents/uploads")
+    public ResponseEntity<PresignedUploadDto> requestDocumentUpload(
+            @PathVariable UUID orderId,
+            @Valid @RequestBody DocumentUploadRequest request) {
+        OrderDocumentService.UploadTicket ticket = orderDocumentService.requestUpload(
+                orderId, request.fileName(), request.contentType(), request.sizeBytes());
+        return ResponseEntity.ok(OrderDocumentMapper.toPresignedUploadDto(ticket));
+    }
+
+    /**
+     * Прямая загрузка, шаг 2: файл в хранилище — записываем документ заказа.
+     */
+    @PostMapping("/{orderId}/documents/uploads/complete")
+    public ResponseEntity<OrderDocumentDto> completeDocumentUpload(
+            @PathVariable UUID orderId,
+            @Valid @RequestBody CompleteDocumentUploadRequest request,
+            Authentication authentication) {
+        OrderDocument document = orderDocumentService.completeUpload(
+                orderId, request.type(), request.fileKey(), getCurrentUserId(authentication));
+        return ResponseEntity.status(HttpStatus.CREATED).body(OrderDocumentMapper.toDto(document));
+    }
+
     @GetMapping("/{orderId}/documents")
     public ResponseEntity<List<OrderDocumentDto>> listDocuments(@PathVariable UUID orderId) {
         List<OrderDocumentDto> documents = orderDocumentService.listForOrder(orderId).stream()
@@ -125,6 +197,14 @@ public class AdminOrderController {
         return buildDownloadResponse(result);
     }
 
+    @GetMapping("/{orderId}/documents/{docId}/url")
+    public ResponseEntity<PresignedDownloadDto> getDocumentDownloadUrl(
+            @PathVariable UUID orderId,
+            @PathVariable UUID docId) {
+        return ResponseEntity.ok(OrderDocumentMapper.toPresignedDownloadDto(
+                orderDocumentService.downloadUrl(orderId, docId)));
+    }
+
     @DeleteMapping("/{orderId}/documents/{docId}")
     public ResponseEntity<Void> deleteDocument(
             @PathVariable UUID orderId,
@@ -24,6 +24,7 @@ import ru.rfsnab.orderservice.models.dto.order.*;
 import ru.rfsnab.orderservice.models.dto.payment.PaymentInitiationResponse;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderDocument;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.WarehousePoint;
 import ru.rfsnab.orderservice.service.OrderDocumentService;
 import ru.rfsnab.orderservice.service.OrderService;
@@ -70,10 +71,7 @@ public class OrderController {
             Authentication authentication,
             @PageableDefault(size = 20, sort = "createdAt")
             @Parameter(hidden = true) Pageable pageable) {
-//        Page<OrderSummaryDto> page = orderService.getUserOrders(getCurrentUserId(authentication), pageable)
-//                .map(OrderMapper::toSummaryDto);
-//        return ResponseEntity.ok(page);
-        Page<Order> orders = orderService.getUserOrders(getCurrentUserId(authentication), pageable);
+        Page<OrderSummary> orders = orderService.getUserOrders(getCurrentUserId(authentication), pageable);
         List<OrderSummaryDto> content = orders.getContent().stream()
                 .map(OrderMapper::toSummaryDto)
                 .toList();
@@ -126,6 +124,14 @@ public class OrderController {
         return ResponseEntity.ok(orderService.pay(orderId, getCurrentUserId(authentication)));
     }
 
+    @GetMapping("/{orderId}/checkout")
+    @Operation(summary = "Ход оформления заказа (резерв товара и подготовка оплаты идут асинхронно)")
+    public ResponseEntity<CheckoutStatusDto> getCheckoutStatus(
+            Authentication authentication,
+            @PathVariable UUID orderId) {
+        return ResponseEntity.ok(orderService.getCheckoutStatus(orderId, getCurrentUserId(authentication)));
+    }
+
     @GetMapping("/{orderId}/pay/status")
     @Operation(summary = "Получить статус платежа (фронт вызывает при возврате с redirectUrl)")
     public ResponseEntity<Map<String, String>> getPaymentStatus(
@@ -167,7 +173,7 @@ public class OrderController {
     public ResponseEntity<OrderDto> syncFrom1C(@PathVariable(name = "orderId") UUID orderId,
                                                @Valid @RequestBody OrderSyncRequest request){
         return ResponseEntity.ok(OrderMapper.toDto(
-                orderService.syncFrom1C(orderId, request.externalId(), request.newStatus())));
+                orderService.syncFrom1C(orderId, request.externalId(), request.newStatus(), request.messageId())));
     }
 
     @PatchMapping("/by-number/{orderNumber}/1c-sync")
@@ -175,7 +181,7 @@ public class OrderController {
     public ResponseEntity<OrderDto> syncFrom1CByOrderNumber(@PathVariable(name = "orderNumber") String orderNumber,
                                                             @Valid @RequestBody OrderSyncRequest request){
         return ResponseEntity.ok(OrderMapper.toDto(
-                orderService.syncFrom1CByOrderNumber(orderNumber, request.externalId(), request.newStatus())));
+                orderService.syncFrom1CByOrderNumber(orderNumber, request.externalId(), request.newStatus(), request.messageId())));
     }
 
     @GetMapping("/{orderId}/documents")
@@ -213,6 +219,16 @@ public class OrderController {
                 .body(new InputStreamResource(result.stream()));
     }
 
+    @GetMapping("/{orderId}/documents/{docId}/url")
+    @Operation(summary = "Ссылка на скачивание документа своего заказа напрямую из хранилища")
+    public ResponseEntity<PresignedDownloadDto> getDocumentDownloadUrl(
+            Authentication authentication,
+            @PathVariable UUID orderId,
+            @PathVariable UUID docId) {
+        return ResponseEntity.ok(OrderDocumentMapper.toPresignedDownloadDto(
+                orderDocumentService.downloadUrlForUser(orderId, docId, getCurrentUserId(authentication))));
+    }
+
     /**
      * Обогащение Order данными WarehousePoint и маппинг в DTO.
      * Для PICKUP заказов подгружает информацию о точке самовывоза.
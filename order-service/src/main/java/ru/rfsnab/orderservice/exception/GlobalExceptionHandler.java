@@ -2,6 +2,7 @@ package ru.rfsnab.orderservice.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -124,6 +125,25 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.CONFLICT, "Insufficient Stock", ex.getMessage(), request);
     }
 
+    /**
+     * Ключ идемпотентности уже занят командой для другого заказа.
+     */
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyConflict(
+            IdempotencyKeyConflictException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, "Idempotency Key Conflict", ex.getMessage(), request);
+    }
+
+    /**
+     * Заказ изменён параллельно (Order.version) — клиент перечитывает заказ и повторяет действие.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLock(
+            OptimisticLockingFailureException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, "Concurrent Modification",
+                "Заказ был изменён параллельно, обновите данные и повторите действие", request);
+    }
+
     // ==================== 503 Service Unavailable ====================
 
     /**
@@ -141,6 +161,15 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, "Payment Method Not Available", ex.getMessage(), request);
     }
 
+    /**
+     * Прочие нарушения бизнес-правил и некорректные параметры запроса (например, курсор прокрутки).
+     */
+    @ExceptionHandler(BusinessException.class)
+    public ResponseEntity<ErrorResponse> handleBusiness(
+            BusinessException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, "Bad Request", ex.getMessage(), request);
+    }
+
     // ==================== 403 Forbidden ====================
 
     @ExceptionHandler(AccessDeniedException.class)
@@ -0,0 +1,10 @@
+package ru.rfsnab.orderservice.exception;
+
+/**
+ * Исключение: ключ идемпотентности уже использован командой для другого заказа.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.rfsnab.orderservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.orderservice.models.dto.event.PaymentInitiationReply;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationReply;
+import ru.rfsnab.orderservice.service.CheckoutSagaService;
+
+/**
+ * Ответы участников саги оформления (product-service, payment-service) → CheckoutSagaService.
+ * Нечитаемый ответ пропускается — сагу закроет таймаут. Ошибки обработки не глотаются:
+ * они уходят в error handler контейнера, и сообщение доставляется повторно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutReplyConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final CheckoutSagaService checkoutSaga;
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.checkout-stock-replies}",
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    public void onStockReply(ConsumerRecord<String, String> record) {
+        StockReservationReply reply;
+        try {
+            reply = objectMapper.readValue(record.value(), StockReservationReply.class);
+        } catch (JsonProcessingException e) {
+            log.error("Unparseable stock reply skipped: {}", record.value(), e);
+            return;
+        }
+        log.info("Stock reply received: orderId={}, status={}", reply.orderId(), reply.status());
+        checkoutSaga.onStockReply(reply);
+    }
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.checkout-payment-replies}",
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    public void onPaymentReply(ConsumerRecord<String, String> record) {
+        PaymentInitiationReply reply;
+        try {
+            reply = objectMapper.readValue(record.value(), PaymentInitiationReply.class);
+        } catch (JsonProcessingException e) {
+            log.error("Unparseable payment reply skipped: {}", record.value(), e);
+            return;
+        }
+        log.info("Payment reply received: orderId={}, status={}", reply.orderId(), reply.status());
+        checkoutSaga.onPaymentReply(reply);
+    }
+}
@@ -12,4 +12,7 @@ import org.springframework.stereotype.Component;
 public class KafkaTopicsProperties {
     private String orderEvents;
     private String order1cExport;
+    private String orderStockEvents;
+    private String checkoutStockCommands;
+    private String checkoutPaymentCommands;
 }
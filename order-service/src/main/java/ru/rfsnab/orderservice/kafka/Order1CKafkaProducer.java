@@ -2,8 +2,8 @@ package ru.rfsnab.orderservice.kafka;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import ru.rfsnab.common.outbox.OutboxService;
 import ru.rfsnab.orderservice.models.dto.event.Order1CExportEvent;
 import ru.rfsnab.orderservice.models.entity.DeliveryAddress;
 import ru.rfsnab.orderservice.models.entity.Order;
@@ -16,6 +16,7 @@ import java.util.List;
 /**
  * Отправка полного заказа в Kafka для выгрузки в 1С.
  * Топик "order-1c-export" — отдельный от "order-events" (уведомления).
+ * Событие пишется в outbox в транзакции подтверждения заказа (см. OutboxRelay).
  */
 @Slf4j
 @Component
@@ -23,18 +24,18 @@ import java.util.List;
 public class Order1CKafkaProducer {
 
     private final KafkaTopicsProperties topics;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
     private final WarehousePointRepository warehousePointRepository;
 
     /**
      * Отправляет полные данные заказа для 1С.
-     * Вызывается из OrderService.createOrder() после сохранения.
+     * Вызывается из OrderService.confirmOrder() после сохранения.
      */
     public void sendOrderFor1C(Order order) {
         DeliveryAddress address = order.getDeliveryAddress();
         boolean isPickup = address == null;
 
-        log.info("Sending order to 1C: orderId={}", order.getId());
+        log.info("Queueing order for 1C: orderId={}", order.getId());
 
         Order1CExportEvent event = Order1CExportEvent.builder()
                 .orderId(order.getId())
@@ -62,15 +63,7 @@ public class Order1CKafkaProducer {
                 .items(mapItems(order))
                 .build();
 
-        kafkaTemplate.send(topics.getOrder1cExport(), order.getId().toString(), event)
-                .whenComplete((result, ex) -> {
-            if (ex == null) {
-                log.info("Order sent to 1C: orderId={}, topic={}, offset={}",
-                        order.getId(), topics.getOrder1cExport(), result.getRecordMetadata().offset());
-            } else {
-                log.error("Failed to send order to 1C: orderId={}", order.getId(), ex);
-            }
-        });
+        outboxService.enqueue(topics.getOrder1cExport(), order.getId().toString(), event);
     }
 
     /**
@@ -1,25 +1,40 @@
 package ru.rfsnab.orderservice.kafka;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import ru.rfsnab.common.outbox.OutboxService;
 import ru.rfsnab.orderservice.models.dto.event.OrderEvent;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationEvent;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.WarehousePoint;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 import ru.rfsnab.orderservice.repository.WarehousePointRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 /**
- * Отправка Kafka events для заказов.
+ * Kafka events для заказов. События пишутся в outbox в транзакции изменения заказа
+ * и уходят в Kafka асинхронно (OutboxRelay) — сервис не ждёт брокер.
  */
 @Component
 @RequiredArgsConstructor
 public class OrderKafkaProducer {
     private final KafkaTopicsProperties topics;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
     private final WarehousePointRepository warehousePointRepository;
 
+    /**
+     * Пункты самовывоза по id: событие заказа шлётся на каждую смену статуса, а пунктов единицы
+     * и этот сервис их не меняет — правка пункта в БД доходит до событий не позже чем через TTL.
+     */
+    private final Cache<Long, OrderEvent.PickupPointDto> pickupPoints = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
     private void send(String eventType, Order order){
         send(eventType, order, null, null);
     }
@@ -60,17 +75,20 @@ public class OrderKafkaProducer {
                 .documentFileName(documentFileName)
                 .build();
 
-        kafkaTemplate.send(topics.getOrderEvents(), order.getId().toString(), event);
+        outboxService.enqueue(topics.getOrderEvents(), order.getId().toString(), event);
     }
 
+    /** Пункт из локального кэша; отсутствующий пункт не кэшируется и перечитывается в следующий раз. */
     private OrderEvent.PickupPointDto buildPickupPoint(Order order) {
         if (order.getWarehousePointId() == null) {
             return null;
         }
-        WarehousePoint point = warehousePointRepository.findById(order.getWarehousePointId()).orElse(null);
-        if (point == null) {
-            return null;
-        }
+        return pickupPoints.get(order.getWarehousePointId(), id -> warehousePointRepository.findById(id)
+                .map(OrderKafkaProducer::toPickupPoint)
+                .orElse(null));
+    }
+
+    private static OrderEvent.PickupPointDto toPickupPoint(WarehousePoint point) {
         return new OrderEvent.PickupPointDto(point.getName(), point.getCity(), point.getStreet(),
                 point.getBuilding(), point.getPostalCode(), point.getPhoneNumber(), point.getWorkingHours());
     }
@@ -81,14 +99,49 @@ public class OrderKafkaProducer {
 
     public void sendOrderPaid(Order order) {
         send("ORDER_PAID", order);
+        sendStockEvent(order);
     }
 
     public void sendOrderCancelled(Order order) {
         send("ORDER_CANCELLED", order);
+        sendStockEvent(order);
     }
 
     public void sendOrderStatusChanged(Order order) {
         send("ORDER_STATUS_CHANGED", order);
+        sendStockEvent(order);
+    }
+
+    /**
+     * Судьба резерва остатков в product-service по текущему статусу заказа.
+     * Отдельный топик с кодом действия — product-service не разбирает displayName статусов.
+     * Для CREATED ничего не шлём: резерв уже создан и живёт по TTL — о его истечении product-service
+     * сообщает ответом EXPIRED, и заказ отменяется (CheckoutSagaService.onStockReply).
+     * Для PAYMENT_FAILED тоже: заказ можно оплатить повторно, поэтому резерв держится
+     * до отмены заказа (CANCELLED → RELEASE), а не до истечения срока.
+     */
+    public void sendStockEvent(Order order) {
+        String action = stockAction(order.getStatus());
+        if (action == null) {
+            return;
+        }
+        outboxService.enqueue(topics.getOrderStockEvents(), order.getId().toString(),
+                new StockReservationEvent(order.getId(), action));
+    }
+
+    /**
+     * @return действие с резервом для статуса; null — резерв заказа ещё ограничен сроком
+     */
+    public static String stockAction(OrderStatus status) {
+        // Без default: новый статус не скомпилируется, пока для него не выбрано действие
+        return switch (status) {
+            case CREATED, PAYMENT_FAILED -> null;
+            case PROCESSING, INVOICE_SENT, PENDING_PAYMENT, AWAITING_CONFIRMATION,
+                 PAID, PARTIALLY_PAID -> "COMMIT";
+            // Товар отгружен — остаток ушёл со склада и дальше учитывается выгрузкой ERP
+            case SHIPPED, IN_TRANSIT, DELIVERED, COMPLETED -> "FULFILL";
+            case CANCELLED, REFUNDED -> "RELEASE";
+        };
     }
 
     public void sendOrderDocumentAdded(Order order, String documentTypeName, String fileName) {
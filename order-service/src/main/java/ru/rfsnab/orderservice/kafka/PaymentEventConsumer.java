@@ -6,12 +6,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
+import ru.rfsnab.orderservice.exception.OrderNotFoundException;
 import ru.rfsnab.orderservice.models.dto.event.PaymentEvent;
-import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 import ru.rfsnab.orderservice.repository.OrderRepository;
+import ru.rfsnab.orderservice.service.OrderStatusTransitionService;
 
+/**
+ * События платежей → статус заказа через OrderStatusTransitionService.
+ * Без собственной транзакции: движок открывает её сам и повторяет попытку при конфликте версий.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -20,12 +25,12 @@ public class PaymentEventConsumer {
     private final OrderRepository orderRepository;
     private final ObjectMapper objectMapper;
     private final OrderKafkaProducer kafkaProducer;
+    private final OrderStatusTransitionService statusTransitions;
 
     @KafkaListener(
             topics = "${app.kafka.topics.payment-processed}",
             groupId = "${spring.kafka.consumer.group-id}"
     )
-    @Transactional
     public void onPaymentEvent(ConsumerRecord<String, String> record) {
         try {
             PaymentEvent event = objectMapper.readValue(record.value(), PaymentEvent.class);
@@ -37,12 +42,6 @@ public class PaymentEventConsumer {
     }
 
     private void processPaymentEvent(PaymentEvent event) {
-        Order order = orderRepository.findById(event.orderId()).orElse(null);
-        if (order == null) {
-            log.warn("Order not found for payment event: orderId={}", event.orderId());
-            return;
-        }
-
         OrderStatus newStatus = switch (event.status()) {
             case "APPROVED" -> OrderStatus.PAID;
             case "FAILED"   -> OrderStatus.PAYMENT_FAILED;
@@ -57,9 +56,24 @@ public class PaymentEventConsumer {
             return;
         }
 
-        order.setStatus(newStatus);
-        orderRepository.save(order);
-        kafkaProducer.sendOrderStatusChanged(order);
-        log.info("Order status updated from payment event: orderId={}, newStatus={}", event.orderId(), newStatus);
+        // Операция платежа: повторная доставка того же события (at-least-once) заказ не меняет.
+        // События без paymentId (выпущены до его появления) дедуплицируются только по текущему статусу.
+        String idempotencyKey = event.paymentId() == null
+                ? null
+                : "payment:" + event.paymentId() + ":" + event.status();
+        try {
+            statusTransitions.transition(
+                    () -> orderRepository.findById(event.orderId())
+                            .orElseThrow(() -> new OrderNotFoundException("Заказ не найден: " + event.orderId())),
+                    newStatus,
+                    OrderStatusTransitionService.Source.PAYMENT,
+                    idempotencyKey,
+                    kafkaProducer::sendOrderStatusChanged);
+        } catch (OrderNotFoundException e) {
+            log.warn("Order not found for payment event: orderId={}", event.orderId());
+        } catch (InvalidOrderStateException e) {
+            log.warn("Payment event ignored: orderId={}, status={}: {}",
+                    event.orderId(), event.status(), e.getMessage());
+        }
     }
 }
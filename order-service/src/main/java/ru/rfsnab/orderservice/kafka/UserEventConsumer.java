@@ -0,0 +1,45 @@
+package ru.rfsnab.orderservice.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.orderservice.service.client.ProfileCompletenessCache;
+
+/**
+ * События user-service → сброс закэшированной заполненности профиля.
+ * Кэш локальный для каждой реплики, поэтому у каждой своя группа потребителей
+ * (случайный суффикс) и чтение только новых событий: нужен каждой реплике каждый сброс.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserEventConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final ProfileCompletenessCache profileCache;
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.user-events}",
+            groupId = "${spring.kafka.consumer.group-id}-profile-cache-${random.uuid}",
+            properties = "auto.offset.reset=latest"
+    )
+    public void onUserEvent(ConsumerRecord<String, String> record) {
+        try {
+            JsonNode event = objectMapper.readTree(record.value());
+            JsonNode userId = event.get("userId");
+            if (userId == null || !userId.canConvertToLong()) {
+                return;
+            }
+            // Любое событие пользователя — повод перечитать профиль: сброс дешевле, чем разбор типов
+            profileCache.evict(userId.asLong());
+            log.debug("Profile completeness evicted: userId={}, eventType={}",
+                    userId.asLong(), event.path("eventType").asText());
+        } catch (Exception e) {
+            log.error("Failed to process user event: {}", record.value(), e);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package ru.rfsnab.orderservice.mapper;
 
 import ru.rfsnab.orderservice.models.dto.order.OrderDocumentDto;
+import ru.rfsnab.orderservice.models.dto.order.PresignedDownloadDto;
+import ru.rfsnab.orderservice.models.dto.order.PresignedUploadDto;
 import ru.rfsnab.orderservice.models.entity.OrderDocument;
+import ru.rfsnab.orderservice.service.OrderDocumentService;
+import ru.rfsnab.orderservice.service.OrderDocumentStorage;
 
 public class OrderDocumentMapper {
 
@@ -16,4 +20,19 @@ public class OrderDocumentMapper {
                 document.getUploadedAt()
         );
     }
+
+    public static PresignedUploadDto toPresignedUploadDto(OrderDocumentService.UploadTicket ticket) {
+        OrderDocumentStorage.PresignedRequest request = ticket.request();
+        return new PresignedUploadDto(
+                ticket.fileKey(),
+                request.url().toString(),
+                "PUT",
+                request.headers(),
+                request.expiresAt()
+        );
+    }
+
+    public static PresignedDownloadDto toPresignedDownloadDto(OrderDocumentStorage.PresignedRequest request) {
+        return new PresignedDownloadDto(request.url().toString(), request.expiresAt());
+    }
 }
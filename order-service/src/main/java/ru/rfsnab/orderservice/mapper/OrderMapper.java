@@ -4,6 +4,7 @@ import ru.rfsnab.orderservice.models.dto.order.CreateOrderRequest;
 import ru.rfsnab.orderservice.models.dto.order.OrderDto;
 import ru.rfsnab.orderservice.models.dto.order.OrderSummaryDto;
 import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.WarehousePoint;
 import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
@@ -55,16 +56,18 @@ public class OrderMapper {
     }
 
     /**
-     * Order → OrderSummaryDto (для списков с пагинацией).
+     * OrderSummary → OrderSummaryDto (для списков с пагинацией).
+     * Число позиций и первая позиция — денормализованные колонки, order_items не читаются.
      */
-    public static OrderSummaryDto toSummaryDto(Order order) {
+    public static OrderSummaryDto toSummaryDto(OrderSummary order) {
         return new OrderSummaryDto(
                 order.getId(),
                 order.getOrderNumber(),
                 order.getExternalId(),
                 order.getStatus(),
                 order.getCustomerType(),
-                order.getItems().size(),
+                order.getItemsCount(),
+                order.getFirstItemName(),
                 order.getTotalAmount(),
                 order.getCustomerEmail(),
                 order.getCustomerName(),
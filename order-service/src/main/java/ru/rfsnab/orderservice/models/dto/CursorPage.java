@@ -0,0 +1,18 @@
+package ru.rfsnab.orderservice.models.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Порция листинга для прокрутки курсором (список заказов в админке).
+ *
+ * @param nextCursor    непрозрачный курсор следующей порции; null — это последняя порция
+ * @param totalElements общее число строк — только если запрошено (withTotal), иначе null;
+ *                      без фильтров — оценка по статистике PostgreSQL, а не точный COUNT
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext, Long totalElements) {
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, hasNext, totalElements);
+    }
+}
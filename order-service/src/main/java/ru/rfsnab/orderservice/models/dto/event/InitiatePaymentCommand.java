@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.dto.event;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Команда саги оформления для payment-service: заранее создать платёж и ссылку на оплату.
+ * Поля те же, что у синхронного POST /api/v1/payments (CreatePaymentClientRequest).
+ */
+public record InitiatePaymentCommand(
+        UUID orderId,
+        BigDecimal amount,
+        String orderNumber,
+        String customerEmail,
+        String paymentMode
+) {
+}
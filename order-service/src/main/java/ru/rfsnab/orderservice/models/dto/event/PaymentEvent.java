@@ -1,9 +1,12 @@
 package ru.rfsnab.orderservice.models.dto.event;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public record PaymentEvent(
         String eventType,   // "PAYMENT_STATUS_CHANGED"
         UUID orderId,
@@ -11,5 +14,6 @@ public record PaymentEvent(
         BigDecimal amount,
         String paymentMode,
         String customerEmail,
-        LocalDateTime timestamp
+        LocalDateTime timestamp,
+        UUID paymentId      // операция платежа — ключ идемпотентности; null у событий старого формата
 ) {}
@@ -0,0 +1,19 @@
+package ru.rfsnab.orderservice.models.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.UUID;
+
+/**
+ * Ответ payment-service на InitiatePaymentCommand.
+ *
+ * @param status CREATED — платёж создан, paymentLink заполнен; FAILED — Точка недоступна,
+ *               ссылка будет запрошена синхронно при оплате
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PaymentInitiationReply(UUID orderId, String status, String paymentLink, String reason) {
+
+    public boolean created() {
+        return "CREATED".equals(status) && paymentLink != null;
+    }
+}
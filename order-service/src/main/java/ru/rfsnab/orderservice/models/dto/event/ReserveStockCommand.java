@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.dto.event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Команда саги оформления для product-service: зарезервировать позиции заказа.
+ *
+ * @param deadline после этого момента заказ уже отменён по таймауту — product-service
+ *                 команду не исполняет и отвечает отказом
+ */
+public record ReserveStockCommand(UUID orderId, List<Line> lines, LocalDateTime deadline) {
+
+    public record Line(Long productId, Integer quantity) {
+    }
+}
@@ -0,0 +1,13 @@
+package ru.rfsnab.orderservice.models.dto.event;
+
+import java.util.UUID;
+
+/**
+ * Kafka event для product-service: что делать с резервом остатков заказа.
+ *
+ * @param action COMMIT — заказ подтверждён, резерв бессрочный;
+ *               FULFILL — заказ отгружен, резерв закрыть без возврата остатка;
+ *               RELEASE — заказ отменён/возвращён, остаток вернуть
+ */
+public record StockReservationEvent(UUID orderId, String action) {
+}
@@ -0,0 +1,30 @@
+package ru.rfsnab.orderservice.models.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.UUID;
+
+/**
+ * Ответ product-service на ReserveStockCommand и уведомления о потере резерва.
+ *
+ * @param status RESERVED — все позиции зарезервированы; REJECTED — не хватило остатка
+ *               или команда опоздала, reason — текст для клиента;
+ *               EXPIRED — неподтверждённый резерв истёк, остаток возвращён;
+ *               LOST — подтверждение пришло после истечения резерва, а товара уже не хватает
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record StockReservationReply(UUID orderId, String status, String reason) {
+
+    public boolean reserved() {
+        return "RESERVED".equals(status);
+    }
+
+    public boolean expired() {
+        return "EXPIRED".equals(status);
+    }
+
+    /** Резерва у заказа больше нет: истёк (EXPIRED) или не восстановлен при подтверждении (LOST). */
+    public boolean holdLost() {
+        return expired() || "LOST".equals(status);
+    }
+}
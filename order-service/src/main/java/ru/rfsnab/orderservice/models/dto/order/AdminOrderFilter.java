@@ -0,0 +1,39 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фильтры списка заказов в админке. Любое поле может быть null — тогда фильтр не применяется,
+ * заданные фильтры объединяются через AND.
+ *
+ * @param orderNumber подстрока номера заказа без учёта регистра
+ */
+public record AdminOrderFilter(
+        OrderStatus status,
+        Long userId,
+        String inn,
+        LocalDateTime dateFrom,
+        LocalDateTime dateTo,
+        PaymentMethod paymentMethod,
+        DeliveryMethod deliveryMethod,
+        String orderNumber
+) {
+
+    public static AdminOrderFilter empty() {
+        return new AdminOrderFilter(null, null, null, null, null, null, null, null);
+    }
+
+    /** Ни одного фильтра — листинг всей таблицы. */
+    public boolean isEmpty() {
+        return status == null && userId == null && isBlank(inn) && dateFrom == null && dateTo == null
+                && paymentMethod == null && deliveryMethod == null && isBlank(orderNumber);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
+
+import java.util.UUID;
+
+/**
+ * Ход оформления заказа: фронт опрашивает его после создания заказа, прежде чем подтверждать.
+ *
+ * @param failureReason заполнено для FAILED — почему заказ не оформлен
+ */
+public record CheckoutStatusDto(
+        UUID orderId,
+        CheckoutSagaStatus status,
+        String failureReason
+) {
+}
@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import ru.rfsnab.orderservice.models.entity.enums.OrderDocumentType;
+
+/**
+ * Подтверждение прямой загрузки: ключ из PresignedUploadDto и тип документа.
+ */
+public record CompleteDocumentUploadRequest(
+        @NotBlank(message = "Ключ файла обязателен")
+        String fileKey,
+
+        @NotNull(message = "Тип документа обязателен")
+        OrderDocumentType type
+) {
+}
@@ -0,0 +1,18 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Запрос ссылки на прямую загрузку документа в хранилище.
+ */
+public record DocumentUploadRequest(
+        @NotBlank(message = "Имя файла обязательно")
+        String fileName,
+
+        String contentType,
+
+        @Positive(message = "Размер файла должен быть больше нуля")
+        long sizeBytes
+) {
+}
@@ -17,6 +17,7 @@ public record OrderSummaryDto(
         OrderStatus status,
         CustomerType customerType,
         int itemsCount,
+        String firstItemName,
         BigDecimal totalAmount,
         String customerEmail,
         String customerName,
@@ -2,8 +2,13 @@ package ru.rfsnab.orderservice.models.dto.order;
 
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 
+/**
+ * @param messageId версия документа 1С (или идентификатор обмена, если версии нет) —
+ *                  ключ идемпотентности команды; null — идемпотентность только по текущему статусу
+ */
 public record OrderSyncRequest(
         String externalId,
-        OrderStatus newStatus
+        OrderStatus newStatus,
+        String messageId
 ) {
 }
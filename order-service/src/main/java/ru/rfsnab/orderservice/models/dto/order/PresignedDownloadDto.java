@@ -0,0 +1,12 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import java.time.Instant;
+
+/**
+ * Ссылка на скачивание документа напрямую из хранилища (поддерживает Range и условные запросы).
+ */
+public record PresignedDownloadDto(
+        String url,
+        Instant expiresAt
+) {
+}
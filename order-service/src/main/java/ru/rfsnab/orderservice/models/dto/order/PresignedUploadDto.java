@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.dto.order;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Ссылка на прямую загрузку в хранилище: PUT на url с заголовками headers,
+ * затем подтверждение с fileKey.
+ */
+public record PresignedUploadDto(
+        String fileKey,
+        String url,
+        String method,
+        Map<String, String> headers,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,46 @@
+package ru.rfsnab.orderservice.models.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Состояние оформления заказа: резерв остатков и подготовка оплаты идут командами
+ * через Kafka, а не синхронными вызовами в HTTP-запросе (CheckoutSagaService).
+ * Одна строка на заказ; deadline — до какого момента ждём ответ текущего шага.
+ */
+@Entity
+@Table(name = "checkout_sagas")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckoutSaga {
+
+    @Id
+    @Column(name = "order_id")
+    private UUID orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private CheckoutSagaStatus status;
+
+    @Column(name = "payment_link", length = 1000)
+    private String paymentLink;
+
+    @Column(name = "failure_reason", length = 1000)
+    private String failureReason;
+
+    @Column(nullable = false)
+    private LocalDateTime deadline;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
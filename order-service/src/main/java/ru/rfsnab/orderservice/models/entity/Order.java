@@ -2,6 +2,7 @@ package ru.rfsnab.orderservice.models.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -52,7 +53,16 @@ public class Order {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal totalAmount;
 
+    /** Денормализация для списков заказов ({@link OrderSummary}): число позиций, см. {@link #refreshSummary()}. */
+    @Column(name = "items_count", nullable = false)
+    private int itemsCount;
+
+    /** Денормализация для списков заказов: наименование первой позиции. */
+    @Column(name = "first_item_name")
+    private String firstItemName;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("lineNumber")
     @Builder.Default
     @BatchSize(size = 50)
     private List<OrderItem> items = new ArrayList<>();
@@ -98,4 +108,26 @@ public class Order {
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+
+    /** Оптимистическая блокировка: конкурентная запись заказа падает с конфликтом, а не затирает чужую. */
+    @Version
+    private Long version;
+
+    /**
+     * Пересчёт денормализованных полей сводки по items. Вызывается при каждой замене позиций —
+     * списки заказов читают сводку из строки orders, не поднимая order_items.
+     * При вставке пересчитывается автоматически. Позиции нумеруются в порядке items: первая
+     * в сводке — та же, что первой читается из БД (@OrderBy lineNumber).
+     */
+    @PrePersist
+    public void refreshSummary() {
+        if (!Hibernate.isInitialized(items)) {
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).setLineNumber(i);
+        }
+        itemsCount = items.size();
+        firstItemName = items.isEmpty() ? null : items.getFirst().getProductName();
+    }
 }
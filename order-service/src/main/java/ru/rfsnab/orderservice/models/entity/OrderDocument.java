@@ -30,7 +30,7 @@ public class OrderDocument {
     @Column(name = "original_file_name", nullable = false, length = 255)
     private String originalFileName;
 
-    @Column(name = "file_key", nullable = false, length = 512)
+    @Column(name = "file_key", nullable = false, unique = true, length = 512)
     private String fileKey;
 
     @Column(name = "content_type", length = 100)
@@ -55,4 +55,8 @@ public class OrderItem {
 
     @Column(name = "variant_attributes", length = 500)
     private String variantAttributes;
+
+    /** Номер позиции в заказе с нуля, проставляется Order.refreshSummary. */
+    @Column(name = "line_number", nullable = false)
+    private int lineNumber;
 }
@@ -0,0 +1,34 @@
+package ru.rfsnab.orderservice.models.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Обработанная команда смены статуса заказа по ключу идемпотентности
+ * (операция платежа, документ 1С, Idempotency-Key админки).
+ * Повтор команды с тем же ключом заказ не меняет и событий не шлёт.
+ */
+@Entity
+@Table(name = "order_status_commands")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusCommand {
+
+    @Id
+    @Column(name = "idempotency_key", length = 200)
+    private String idempotencyKey;
+
+    @Column(name = "order_id", nullable = false)
+    private UUID orderId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,86 @@
+package ru.rfsnab.orderservice.models.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import ru.rfsnab.orderservice.models.entity.enums.CustomerType;
+import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-модель заказа для списков (история пользователя, админка): только колонки строки orders,
+ * включая денормализованные items_count / first_item_name, которые {@link Order} пересчитывает при записи.
+ * Без связей и без order_items — страница истории читается одним запросом по индексу.
+ * Только чтение: запись заказа идёт через {@link Order}.
+ */
+@Entity
+@Immutable
+@Table(name = "orders")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderSummary {
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String orderNumber;
+
+    @Column(name = "external_id", length = 50)
+    private String externalId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentMethod paymentMethod;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DeliveryMethod deliveryMethod;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "items_count", nullable = false)
+    private int itemsCount;
+
+    @Column(name = "first_item_name")
+    private String firstItemName;
+
+    @Column(name = "customer_email", nullable = false)
+    private String customerEmail;
+
+    @Column(name = "customer_name", length = 255)
+    private String customerName;
+
+    @Column(name = "customer_phone", length = 30)
+    private String customerPhone;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "customer_type", nullable = false, length = 10)
+    private CustomerType customerType;
+
+    @Column(name = "company_name", length = 255)
+    private String companyName;
+
+    @Column(name = "inn", length = 12)
+    private String inn;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+}
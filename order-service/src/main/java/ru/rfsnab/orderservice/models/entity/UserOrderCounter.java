@@ -0,0 +1,27 @@
+package ru.rfsnab.orderservice.models.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+
+/**
+ * Последний выданный порядковый номер заказа пользователя (часть номера заказа после префикса).
+ * Строка на пользователя: номера разных пользователей выдаются без общей точки конкуренции.
+ */
+@Entity
+@Table(name = "user_order_counters")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserOrderCounter {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "last_number", nullable = false)
+    private Long lastNumber;
+}
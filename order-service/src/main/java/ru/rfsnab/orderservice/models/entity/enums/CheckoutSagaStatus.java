@@ -0,0 +1,17 @@
+package ru.rfsnab.orderservice.models.entity.enums;
+
+/**
+ * Шаг оформления заказа (CheckoutSaga).
+ */
+public enum CheckoutSagaStatus {
+    /** Заказ принят, ждём резерв остатков от product-service */
+    STOCK_PENDING,
+    /** Товар зарезервирован, payment-service готовит ссылку на оплату */
+    PAYMENT_PENDING,
+    /** Оформление завершено */
+    COMPLETED,
+    /** Резерв не удался или не пришёл вовремя — заказ отменяется; не завершённую отмену повторит таймаут */
+    COMPENSATING,
+    /** Резерв не удался или не пришёл вовремя — заказ отменён */
+    FAILED
+}
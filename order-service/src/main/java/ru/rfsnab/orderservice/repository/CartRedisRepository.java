@@ -1,49 +1,106 @@
 package ru.rfsnab.orderservice.repository;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
+/**
+ * Корзина в Redis: hash cart:{userId}, поле — productId, значение — количество десятичной строкой
+ * (HINCRBY работает с ним напрямую; значения, записанные прежним JSON-сериализатором, имеют тот же вид).
+ * <p>
+ * Изменения выполняются Lua-скриптом за один round trip и атомарно: изменение + продление TTL +
+ * новое содержимое корзины в ответе. Если корзины в Redis нет, скрипт ничего не меняет и сообщает
+ * об этом — тогда снимок из PostgreSQL передаётся в следующий вызов и восстанавливается тем же скриптом
+ * вместе с изменением.
+ */
 @Repository
 @RequiredArgsConstructor
 public class CartRedisRepository {
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate redisTemplate;
 
     private static final String CART_KEY_PREFIX = "cart:";
     private static final Duration CART_TTL = Duration.ofDays(7);
 
+    /**
+     * KEYS[1] — корзина; ARGV: операция (incr/set/del/get), товар, значение, TTL в секундах,
+     * '1' — приложен снимок из БД, далее пары товар/количество снимка.
+     * Ответ: nil — корзины нет и снимок не приложен; иначе HGETALL после изменения.
+     */
+    private static final RedisScript<List> MUTATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                if ARGV[5] ~= '1' then
+                    return false
+                end
+                for i = 6, #ARGV, 2 do
+                    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+                end
+            end
+            local op = ARGV[1]
+            if op == 'incr' then
+                redis.call('HINCRBY', KEYS[1], ARGV[2], ARGV[3])
+            elseif op == 'set' then
+                if tonumber(ARGV[3]) > 0 then
+                    redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+                else
+                    redis.call('HDEL', KEYS[1], ARGV[2])
+                end
+            elseif op == 'del' then
+                redis.call('HDEL', KEYS[1], ARGV[2])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[4])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
     private String getKey(Long userId){
         return CART_KEY_PREFIX + userId;
     }
 
-    public void addItem(Long userId, Long productId, int quantity) {
-        String key = getKey(userId);
-        redisTemplate.opsForHash().put(key, productId.toString(), quantity);
-        redisTemplate.expire(key, CART_TTL);
+    /**
+     * Атомарно увеличить количество товара (HINCRBY): параллельные добавления (двойной клик)
+     * складываются, а не перезаписывают друг друга.
+     *
+     * @param snapshot содержимое корзины из БД — запрашивается, только если корзины нет в Redis
+     * @return корзина после изменения
+     */
+    public Map<Long, Integer> incrementItem(Long userId, Long productId, int delta,
+                                            Supplier<Map<Long, Integer>> snapshot) {
+        return mutate(userId, "incr", productId, delta, snapshot);
     }
 
-    public void updateItemQuantity(Long userId, Long productId, int quantity) {
-        String key = getKey(userId);
-        if (quantity <= 0) {
-            redisTemplate.opsForHash().delete(key, productId.toString());
-        } else {
-            redisTemplate.opsForHash().put(key, productId.toString(), quantity);
-            redisTemplate.expire(key, CART_TTL);
-        }
+    /** Установить количество; quantity <= 0 удаляет товар. */
+    public Map<Long, Integer> updateItemQuantity(Long userId, Long productId, int quantity,
+                                                 Supplier<Map<Long, Integer>> snapshot) {
+        return mutate(userId, "set", productId, quantity, snapshot);
+    }
+
+    public Map<Long, Integer> removeItem(Long userId, Long productId, Supplier<Map<Long, Integer>> snapshot) {
+        return mutate(userId, "del", productId, 0, snapshot);
     }
 
-    public void removeItem(Long userId, Long productId) {
-        redisTemplate.opsForHash().delete(getKey(userId), productId.toString());
+    /**
+     * Восстановить корзину из снимка БД одним вызовом (все позиции + TTL).
+     * Если корзина уже появилась в Redis (параллельный запрос), она не перезаписывается.
+     *
+     * @return содержимое корзины в Redis после вызова
+     */
+    public Map<Long, Integer> restore(Long userId, Map<Long, Integer> items) {
+        List<String> args = args("get", 0L, 0, items);
+        return toCart(redisTemplate.execute(MUTATE_SCRIPT, List.of(getKey(userId)), args.toArray()));
     }
 
     public Map<Long, Integer> getCart(Long userId) {
         Map<Object, Object> entries = redisTemplate.opsForHash().entries(getKey(userId));
         Map<Long, Integer> cart = new HashMap<>();
-        entries.forEach((k, v) -> cart.put(Long.valueOf(k.toString()), (Integer) v));
+        entries.forEach((k, v) -> cart.put(Long.valueOf(k.toString()), Integer.valueOf(v.toString())));
         return cart;
     }
 
@@ -59,4 +116,44 @@ public class CartRedisRepository {
         Long ttl = redisTemplate.getExpire(getKey(userId));
         return ttl != null ? ttl : -1;
     }
+
+    private Map<Long, Integer> mutate(Long userId, String op, Long productId, int value,
+                                      Supplier<Map<Long, Integer>> snapshot) {
+        List<String> keys = List.of(getKey(userId));
+        List<?> result = redisTemplate.execute(MUTATE_SCRIPT, keys, args(op, productId, value, null).toArray());
+        if (result == null) {
+            // Корзины нет в Redis — повторяем с её снимком из БД (восстановление + изменение атомарно)
+            result = redisTemplate.execute(MUTATE_SCRIPT, keys,
+                    args(op, productId, value, snapshot.get()).toArray());
+        }
+        return toCart(result);
+    }
+
+    private static List<String> args(String op, Long productId, int value, Map<Long, Integer> snapshot) {
+        List<String> args = new ArrayList<>();
+        args.add(op);
+        args.add(productId.toString());
+        args.add(Integer.toString(value));
+        args.add(Long.toString(CART_TTL.toSeconds()));
+        args.add(snapshot != null ? "1" : "0");
+        if (snapshot != null) {
+            snapshot.forEach((id, quantity) -> {
+                args.add(id.toString());
+                args.add(quantity.toString());
+            });
+        }
+        return args;
+    }
+
+    /** Плоский ответ HGETALL [поле, значение, ...] → productId → количество. */
+    private static Map<Long, Integer> toCart(List<?> flat) {
+        Map<Long, Integer> cart = new HashMap<>();
+        if (flat == null) {
+            return cart;
+        }
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            cart.put(Long.valueOf(flat.get(i).toString()), Integer.valueOf(flat.get(i + 1).toString()));
+        }
+        return cart;
+    }
 }
@@ -0,0 +1,32 @@
+package ru.rfsnab.orderservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.rfsnab.orderservice.models.entity.CheckoutSaga;
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CheckoutSagaRepository extends JpaRepository<CheckoutSaga, UUID> {
+
+    /**
+     * Сага под блокировкой строки: ответ участника, повторная доставка того же ответа
+     * и таймаут с другой реплики обрабатываются строго по очереди.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CheckoutSaga s WHERE s.orderId = :orderId")
+    Optional<CheckoutSaga> findForUpdate(@Param("orderId") UUID orderId);
+
+    @Query("SELECT s.orderId FROM CheckoutSaga s WHERE s.status IN :statuses AND s.deadline < :now ORDER BY s.deadline ASC")
+    List<UUID> findOverdue(@Param("statuses") Collection<CheckoutSagaStatus> statuses,
+                           @Param("now") LocalDateTime now,
+                           Pageable pageable);
+}
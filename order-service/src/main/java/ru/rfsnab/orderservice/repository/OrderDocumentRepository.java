@@ -12,4 +12,6 @@ public interface OrderDocumentRepository extends JpaRepository<OrderDocument, UU
     List<OrderDocument> findByOrderIdOrderByUploadedAtDesc(UUID orderId);
 
     Optional<OrderDocument> findByIdAndOrderId(UUID id, UUID orderId);
+
+    Optional<OrderDocument> findByFileKey(String fileKey);
 }
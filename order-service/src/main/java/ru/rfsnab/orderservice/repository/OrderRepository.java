@@ -1,51 +1,39 @@
 package ru.rfsnab.orderservice.repository;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, UUID> {
+public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order> {
 
     @EntityGraph(attributePaths = "items")
     Optional<Order> findByOrderNumber(String orderNumber);
 
-    Page<Order> findByUserId(Long userId, Pageable pageable);
-
     List<Order> findByUserIdAndStatus(Long userId, OrderStatus status);
 
     boolean existsByOrderNumber(String orderNumber);
 
-    long countByUserId(Long userId);
-
     long countByUserIdAndStatusNotIn(Long userId, List<OrderStatus> excludedStatuses);
 
     long countByInnAndStatusNotIn(String inn, List<OrderStatus> excludedStatuses);
 
-    Page<Order> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
-
-    Page<Order> findAllByOrderByCreatedAtDesc(Pageable pageable);
-
-    Page<Order> findByStatusOrderByCreatedAtDesc(OrderStatus status, Pageable pageable);
-
     @EntityGraph(attributePaths = "items")
     Optional<Order> findWithItemsById(UUID id);
 
-    @Query("SELECT o FROM Order o WHERE o.createdAt >= :from AND o.createdAt <= :to ORDER BY o.createdAt DESC")
-    Page<Order> findByCreatedAtBetween(
-            @Param("from") LocalDateTime from,
-            @Param("to") LocalDateTime to,
-            Pageable pageable
-    );
+    /**
+     * Оценка числа строк orders по статистике планировщика (обновляется autovacuum/ANALYZE) —
+     * без полного прохода таблицы, как у COUNT(*). -1 — таблица ещё ни разу не анализировалась.
+     */
+    @Query(value = "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE oid = CAST('orders' AS regclass)",
+            nativeQuery = true)
+    long estimateCount();
 }
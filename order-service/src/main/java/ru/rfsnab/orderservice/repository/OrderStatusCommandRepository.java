@@ -0,0 +1,38 @@
+package ru.rfsnab.orderservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rfsnab.orderservice.models.entity.OrderStatusCommand;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface OrderStatusCommandRepository extends JpaRepository<OrderStatusCommand, String> {
+
+    /**
+     * Занять ключ команды: 1 — ключ новый, 0 — команда уже обработана.
+     * Параллельная команда с тем же ключом ждёт на вставке до конца первой транзакции;
+     * откат транзакции освобождает ключ.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO order_status_commands (idempotency_key, order_id, processed_at)
+            VALUES (:key, :orderId, now())
+            ON CONFLICT (idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("orderId") UUID orderId);
+
+    /** Удалить пачку ключей команд, обработанных раньше before. */
+    @Modifying
+    @Query(value = """
+            DELETE FROM order_status_commands
+            WHERE idempotency_key IN (SELECT idempotency_key FROM order_status_commands
+                                      WHERE processed_at < :before
+                                      LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteProcessedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,20 @@
+package ru.rfsnab.orderservice.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.stereotype.Repository;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
+
+import java.util.UUID;
+
+/**
+ * Списки заказов по read-модели {@link OrderSummary}: одна строка orders на заказ, без order_items.
+ */
+@Repository
+public interface OrderSummaryRepository extends JpaRepository<OrderSummary, UUID>, JpaSpecificationExecutor<OrderSummary> {
+
+    /** История заказов пользователя: индекс idx_orders_user_id_created_at (user_id, created_at DESC, id DESC). */
+    Page<OrderSummary> findByUserIdOrderByCreatedAtDescIdDesc(Long userId, Pageable pageable);
+}
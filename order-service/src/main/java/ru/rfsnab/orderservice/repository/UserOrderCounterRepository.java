@@ -0,0 +1,23 @@
+package ru.rfsnab.orderservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rfsnab.orderservice.models.entity.UserOrderCounter;
+
+@Repository
+public interface UserOrderCounterRepository extends JpaRepository<UserOrderCounter, Long> {
+
+    /**
+     * Выдать следующий номер заказа пользователя одним оператором (upsert + RETURNING).
+     * Строка счётчика блокируется до конца транзакции заказа: параллельные checkout'ы
+     * одного пользователя получают разные номера, откат заказа возвращает номер.
+     */
+    @Query(value = """
+            INSERT INTO user_order_counters (user_id, last_number) VALUES (:userId, 1)
+            ON CONFLICT (user_id) DO UPDATE SET last_number = user_order_counters.last_number + 1
+            RETURNING last_number
+            """, nativeQuery = true)
+    long allocateNext(@Param("userId") Long userId);
+}
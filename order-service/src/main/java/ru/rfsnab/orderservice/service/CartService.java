@@ -64,28 +64,25 @@ public class CartService {
             throw new ProductNotFoundException("Product is not available " + productId);
         }
 
-        ensureCartInRedis(userId);
-
-        Map<Long, Integer> currentCart = cartRedisRepository.getCart(userId);
-        int currentQuantity = currentCart.getOrDefault(productId, 0);
-        int newQuantity = currentQuantity + quantity;
-
-        cartRedisRepository.addItem(userId, productId, newQuantity);
-        log.debug("Товар {} добавлен в корзину пользователя {}, количество: {}", productId, userId, newQuantity);
-        return getCart(userId);
+        Map<Long, Integer> items = cartRedisRepository.incrementItem(
+                userId, productId, quantity, () -> databaseSnapshot(userId));
+        log.debug("Товар {} добавлен в корзину пользователя {}, количество: {}",
+                productId, userId, items.get(productId));
+        return buildCartFromRedis(userId, items);
     }
 
     public Cart updateItemQuantity(Long userId, Long productId, int quantity) {
         if (quantity > 0) {
             productServiceClient.getProduct(productId);
         }
-        cartRedisRepository.updateItemQuantity(userId, productId, quantity);
-        return getCart(userId);
+        Map<Long, Integer> items = cartRedisRepository.updateItemQuantity(
+                userId, productId, quantity, () -> databaseSnapshot(userId));
+        return buildCartFromRedis(userId, items);
     }
 
     public Cart removeItem(Long userId, Long productId) {
-        cartRedisRepository.removeItem(userId, productId);
-        return getCart(userId);
+        Map<Long, Integer> items = cartRedisRepository.removeItem(userId, productId, () -> databaseSnapshot(userId));
+        return buildCartFromRedis(userId, items);
     }
 
     @Transactional
@@ -130,8 +127,7 @@ public class CartService {
     private Cart loadFromDatabaseOrEmpty(Long userId) {
         return cartRepository.findByUserId(userId)
                 .map(cart -> {
-                    cart.getItems().forEach(item ->
-                            cartRedisRepository.addItem(userId, item.getProductId(), item.getQuantity()));
+                    cartRedisRepository.restore(userId, toQuantities(cart));
                     log.debug("Корзина пользователя {} восстановлена из БД в Redis ({} позиций)",
                             userId, cart.getItems().size());
                     return cart;
@@ -139,10 +135,16 @@ public class CartService {
                 .orElseGet(() -> emptyCart(userId));
     }
 
-    private void ensureCartInRedis(Long userId) {
-        if (!cartRedisRepository.exists(userId)) {
-            loadFromDatabaseOrEmpty(userId);
-        }
+    /** Снимок корзины из БД для восстановления в Redis вместе с изменением. */
+    private Map<Long, Integer> databaseSnapshot(Long userId) {
+        return cartRepository.findByUserId(userId)
+                .map(CartService::toQuantities)
+                .orElse(Map.of());
+    }
+
+    private static Map<Long, Integer> toQuantities(Cart cart) {
+        return cart.getItems().stream()
+                .collect(Collectors.toMap(CartItem::getProductId, CartItem::getQuantity, Integer::sum));
     }
 
     private Cart buildCartFromRedis(Long userId, Map<Long, Integer> items) {
@@ -0,0 +1,433 @@
+package ru.rfsnab.orderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
+import ru.rfsnab.orderservice.exception.OrderNotFoundException;
+import ru.rfsnab.orderservice.kafka.KafkaTopicsProperties;
+import ru.rfsnab.orderservice.kafka.OrderKafkaProducer;
+import ru.rfsnab.orderservice.models.dto.event.InitiatePaymentCommand;
+import ru.rfsnab.orderservice.models.dto.event.PaymentInitiationReply;
+import ru.rfsnab.orderservice.models.dto.event.ReserveStockCommand;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationEvent;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationReply;
+import ru.rfsnab.orderservice.models.dto.payment.CreatePaymentClientRequest;
+import ru.rfsnab.orderservice.models.dto.payment.PaymentMethodSettingsDto;
+import ru.rfsnab.orderservice.models.entity.CheckoutSaga;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
+import ru.rfsnab.orderservice.models.entity.enums.CustomerType;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
+import ru.rfsnab.orderservice.repository.CheckoutSagaRepository;
+import ru.rfsnab.orderservice.repository.OrderRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Сага оформления заказа.
+ * <p>
+ * HTTP-запрос создания заказа только сохраняет заказ (CREATED) и сагу и в той же транзакции
+ * кладёт в outbox команду резерва для product-service. Дальше по ответам участников:
+ * <ul>
+ *   <li>RESERVED — корзина очищается, уходит ORDER_CREATED; для онлайн-оплаты B2C
+ *       payment-service заранее готовит ссылку (InitiatePaymentCommand);</li>
+ *   <li>REJECTED — компенсация: заказ отменяется движком статусов (CANCELLED + RELEASE резерва),
+ *       корзина остаётся;</li>
+ *   <li>нет ответа до deadline — та же компенсация; RELEASE вернёт резерв, если команда
+ *       всё же исполнится позже. Ссылку на оплату не ждём: pay() запросит её синхронно.</li>
+ * </ul>
+ * Тот же канал приносит уведомления о потере резерва (EXPIRED/LOST) — и для заказов без саги:
+ * заказ без резерва отменяется, см. onStockHoldLost.
+ * <p>
+ * Ответы приходят at-least-once: сага читается под блокировкой строки, и ответ,
+ * не соответствующий текущему шагу, игнорируется. Отмена заказа при компенсации идёт через
+ * OrderStatusTransitionService уже после коммита шага саги — движку нужна собственная транзакция.
+ */
+@Slf4j
+@Service
+public class CheckoutSagaService {
+
+    private static final Set<CheckoutSagaStatus> IN_PROGRESS =
+            EnumSet.of(CheckoutSagaStatus.STOCK_PENDING, CheckoutSagaStatus.PAYMENT_PENDING,
+                    CheckoutSagaStatus.COMPENSATING);
+
+    private static final int TIMEOUT_BATCH_SIZE = 100;
+
+    static final String STOCK_TIMEOUT_REASON = "Не удалось зарезервировать товар, попробуйте оформить заказ ещё раз";
+
+    private final CheckoutSagaRepository sagaRepository;
+    private final OrderRepository orderRepository;
+    private final CartService cartService;
+    private final OutboxService outboxService;
+    private final OrderKafkaProducer kafkaProducer;
+    private final OrderStatusTransitionService statusTransitions;
+    private final KafkaTopicsProperties topics;
+    private final PaymentMethodSettingsService paymentMethodSettingsService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration stockTimeout;
+    private final Duration paymentTimeout;
+
+    public CheckoutSagaService(CheckoutSagaRepository sagaRepository,
+                               OrderRepository orderRepository,
+                               CartService cartService,
+                               OutboxService outboxService,
+                               OrderKafkaProducer kafkaProducer,
+                               OrderStatusTransitionService statusTransitions,
+                               KafkaTopicsProperties topics,
+                               PaymentMethodSettingsService paymentMethodSettingsService,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${app.checkout.saga.enabled:false}") boolean enabled,
+                               @Value("${app.checkout.saga.stock-timeout:30s}") Duration stockTimeout,
+                               @Value("${app.checkout.saga.payment-timeout:30s}") Duration paymentTimeout) {
+        this.sagaRepository = sagaRepository;
+        this.orderRepository = orderRepository;
+        this.cartService = cartService;
+        this.outboxService = outboxService;
+        this.kafkaProducer = kafkaProducer;
+        this.statusTransitions = statusTransitions;
+        this.topics = topics;
+        this.paymentMethodSettingsService = paymentMethodSettingsService;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.stockTimeout = stockTimeout;
+        this.paymentTimeout = paymentTimeout;
+    }
+
+    /** false — резерв синхронным вызовом product-service, как до саги. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Старт саги в транзакции создания заказа: откат заказа откатывает и команду резерва.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void start(Order order) {
+        LocalDateTime now = LocalDateTime.now();
+        CheckoutSaga saga = sagaRepository.save(CheckoutSaga.builder()
+                .orderId(order.getId())
+                .status(CheckoutSagaStatus.STOCK_PENDING)
+                .deadline(now.plus(stockTimeout))
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+
+        List<ReserveStockCommand.Line> lines = order.getItems().stream()
+                .collect(Collectors.toMap(OrderItem::getProductId, OrderItem::getQuantity, Integer::sum))
+                .entrySet().stream()
+                .map(e -> new ReserveStockCommand.Line(e.getKey(), e.getValue()))
+                .toList();
+        outboxService.enqueue(topics.getCheckoutStockCommands(), order.getId().toString(),
+                new ReserveStockCommand(order.getId(), lines, saga.getDeadline()));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<CheckoutSaga> find(UUID orderId) {
+        return sagaRepository.findById(orderId);
+    }
+
+    /**
+     * Заказ, товар которого ещё не зарезервирован, нельзя подтверждать и оплачивать.
+     * Заказы без саги (созданы синхронно) проверку проходят.
+     */
+    @Transactional(readOnly = true)
+    public void requireStockReserved(UUID orderId) {
+        sagaRepository.findById(orderId).ifPresent(saga -> {
+            switch (saga.getStatus()) {
+                case STOCK_PENDING -> throw new InvalidOrderStateException(
+                        "Заказ ещё оформляется: резервируем товар на складе");
+                case COMPENSATING, FAILED -> throw new InvalidOrderStateException(
+                        saga.getFailureReason() != null ? saga.getFailureReason() : "Заказ не оформлен");
+                default -> {
+                }
+            }
+        });
+    }
+
+    /** Ссылка на оплату, подготовленная сагой; пусто — запрашивать у payment-service. */
+    @Transactional(readOnly = true)
+    public Optional<String> preparedPaymentLink(UUID orderId) {
+        return sagaRepository.findById(orderId).map(CheckoutSaga::getPaymentLink);
+    }
+
+    /**
+     * Заказ отредактирован: подготовленная ссылка выписана на прежние сумму и способ оплаты.
+     * Ссылка забывается, а ещё не пришедший ответ payment-service больше не ждём —
+     * pay() запросит оплату синхронно, и payment-service переоформит её на новую сумму.
+     */
+    @Transactional
+    public void discardPreparedPayment(UUID orderId) {
+        sagaRepository.findForUpdate(orderId).ifPresent(saga -> {
+            if (saga.getStatus() == CheckoutSagaStatus.PAYMENT_PENDING) {
+                advance(saga, CheckoutSagaStatus.COMPLETED, saga.getDeadline());
+            }
+            saga.setPaymentLink(null);
+            saga.setUpdatedAt(LocalDateTime.now());
+        });
+    }
+
+    public void onStockReply(StockReservationReply reply) {
+        if (reply.holdLost()) {
+            onStockHoldLost(reply);
+            return;
+        }
+        if (Boolean.TRUE.equals(transactionTemplate.execute(tx -> applyStockReply(reply)))) {
+            compensate(reply.orderId());
+        }
+    }
+
+    /**
+     * @return true — резерв не удался, заказ нужно отменить (compensate)
+     */
+    private boolean applyStockReply(StockReservationReply reply) {
+        CheckoutSaga saga = sagaRepository.findForUpdate(reply.orderId()).orElse(null);
+        if (saga == null) {
+            log.warn("Stock reply for unknown checkout: orderId={}", reply.orderId());
+            return false;
+        }
+        if (saga.getStatus() != CheckoutSagaStatus.STOCK_PENDING) {
+            if (isCompensated(saga) && reply.reserved()) {
+                // Резерв исполнился после компенсации по таймауту — вернуть остаток
+                releaseStock(saga.getOrderId());
+            }
+            log.debug("Stock reply ignored: orderId={}, saga status={}", reply.orderId(), saga.getStatus());
+            return false;
+        }
+        if (!reply.reserved()) {
+            startCompensation(saga, reply.reason());
+            return true;
+        }
+
+        Order order = loadOrder(saga.getOrderId());
+        if (order.getStatus() == OrderStatus.CANCELLED) {
+            // Клиент отменил заказ, пока шёл резерв: RELEASE отмены мог опередить резерв
+            releaseStock(order.getId());
+            fail(saga, "Заказ отменён");
+            return false;
+        }
+
+        cartService.clearCart(order.getUserId());
+        kafkaProducer.sendOrderCreated(order);
+        log.info("Заказ оформлен: {}, товар зарезервирован", order.getOrderNumber());
+
+        if (requiresPaymentLink(order)) {
+            outboxService.enqueue(topics.getCheckoutPaymentCommands(), order.getId().toString(),
+                    initiatePaymentCommand(order));
+            advance(saga, CheckoutSagaStatus.PAYMENT_PENDING, LocalDateTime.now().plus(paymentTimeout));
+        } else {
+            advance(saga, CheckoutSagaStatus.COMPLETED, saga.getDeadline());
+        }
+        return false;
+    }
+
+    /**
+     * product-service вернул остаток заказа: EXPIRED — заказ не подтвердили за срок резерва,
+     * LOST — подтверждение опоздало к истечению, а товара уже не хватает. Заказ без резерва не должен
+     * дойти до оплаты и отгрузки: он отменяется движком статусов, сага (если есть) закрывается как FAILED —
+     * подтверждение и оплата получат причину. EXPIRED уже подтверждённого заказа не отменяет:
+     * его COMMIT в пути и зарезервирует товар заново (или product-service ответит LOST).
+     */
+    private void onStockHoldLost(StockReservationReply reply) {
+        UUID orderId = reply.orderId();
+        AtomicBoolean commitInFlight = new AtomicBoolean();
+        try {
+            statusTransitions.transition(
+                    () -> {
+                        Order order = loadOrder(orderId);
+                        if (reply.expired() && OrderKafkaProducer.stockAction(order.getStatus()) != null) {
+                            commitInFlight.set(true);
+                            throw new InvalidOrderStateException(String.format(
+                                    "Заказ %s уже подтверждён — резерв восстановит COMMIT", order.getOrderNumber()));
+                        }
+                        return order;
+                    },
+                    OrderStatus.CANCELLED,
+                    OrderStatusTransitionService.Source.SAGA,
+                    "saga:" + orderId + ":stock-" + reply.status().toLowerCase(),
+                    kafkaProducer::sendOrderCancelled);
+        } catch (InvalidOrderStateException e) {
+            if (commitInFlight.get()) {
+                log.info("Stock hold expired after confirmation: {}", e.getMessage());
+                return;
+            }
+            // Например, заказ уже оплачен: отменить его нельзя, нужен разбор вручную
+            log.error("Stock hold lost, order not cancelled: orderId={}, reason={}: {}",
+                    orderId, reply.reason(), e.getMessage());
+        }
+
+        transactionTemplate.executeWithoutResult(tx -> sagaRepository.findForUpdate(orderId).ifPresent(saga -> {
+            saga.setPaymentLink(null);
+            fail(saga, reply.reason());
+        }));
+        log.warn("Stock hold lost: orderId={}, status={}, reason={}", orderId, reply.status(), reply.reason());
+    }
+
+    @Transactional
+    public void onPaymentReply(PaymentInitiationReply reply) {
+        CheckoutSaga saga = sagaRepository.findForUpdate(reply.orderId()).orElse(null);
+        if (saga == null || saga.getStatus() != CheckoutSagaStatus.PAYMENT_PENDING) {
+            log.debug("Payment reply ignored: orderId={}", reply.orderId());
+            return;
+        }
+        if (reply.created()) {
+            saga.setPaymentLink(reply.paymentLink());
+        } else {
+            // Не компенсируем: заказ оформлен, ссылку запросит pay()
+            log.warn("Payment link not prepared: orderId={}, reason={}", reply.orderId(), reply.reason());
+        }
+        advance(saga, CheckoutSagaStatus.COMPLETED, saga.getDeadline());
+    }
+
+    /**
+     * Шаги, не получившие ответа до deadline, и прерванные компенсации. Каждая сага — в своей транзакции
+     * под блокировкой: ответ, пришедший одновременно с таймаутом, применяется либо до, либо вместо него.
+     */
+    @Scheduled(fixedDelayString = "${app.checkout.saga.timeout-check-interval-ms:5000}")
+    public void expireOverdue() {
+        if (!enabled) {
+            return;
+        }
+        List<UUID> overdue = sagaRepository.findOverdue(IN_PROGRESS, LocalDateTime.now(),
+                PageRequest.of(0, TIMEOUT_BATCH_SIZE));
+        for (UUID orderId : overdue) {
+            try {
+                expire(orderId);
+            } catch (RuntimeException e) {
+                log.error("Checkout timeout failed: orderId={}", orderId, e);
+            }
+        }
+    }
+
+    void expire(UUID orderId) {
+        if (Boolean.TRUE.equals(transactionTemplate.execute(tx -> expireStep(orderId)))) {
+            compensate(orderId);
+        }
+    }
+
+    /**
+     * @return true — заказ нужно отменить: резерв не пришёл вовремя или прошлая компенсация прервана
+     */
+    private boolean expireStep(UUID orderId) {
+        CheckoutSaga saga = sagaRepository.findForUpdate(orderId).orElse(null);
+        if (saga == null || !IN_PROGRESS.contains(saga.getStatus())
+                || saga.getDeadline().isAfter(LocalDateTime.now())) {
+            return false;
+        }
+        if (saga.getStatus() == CheckoutSagaStatus.STOCK_PENDING) {
+            log.warn("Stock reservation timed out: orderId={}", orderId);
+            startCompensation(saga, STOCK_TIMEOUT_REASON);
+            return true;
+        }
+        if (saga.getStatus() == CheckoutSagaStatus.COMPENSATING) {
+            log.warn("Checkout compensation retried: orderId={}", orderId);
+            advance(saga, CheckoutSagaStatus.COMPENSATING, LocalDateTime.now().plus(stockTimeout));
+            return true;
+        }
+        log.warn("Payment link preparation timed out: orderId={}", orderId);
+        advance(saga, CheckoutSagaStatus.COMPLETED, saga.getDeadline());
+        return false;
+    }
+
+    /**
+     * Сага переходит в COMPENSATING в той же транзакции, где принято решение: поздний ответ
+     * резерва уже не завершит оформление, а deadline — срок, после которого таймаут повторит компенсацию.
+     */
+    private void startCompensation(CheckoutSaga saga, String reason) {
+        saga.setFailureReason(reason);
+        advance(saga, CheckoutSagaStatus.COMPENSATING, LocalDateTime.now().plus(stockTimeout));
+    }
+
+    /**
+     * Компенсация неудавшегося резерва: заказ отменяется движком статусов (ретрай конфликта версий,
+     * ключ идемпотентности шага саги, событие отмены с RELEASE резерва, если он всё-таки был создан),
+     * затем сага закрывается как FAILED. Сбой между шагами безопасен: сага остаётся COMPENSATING,
+     * и таймаут повторит компенсацию с тем же ключом.
+     */
+    private void compensate(UUID orderId) {
+        AtomicBoolean cancelledHere = new AtomicBoolean();
+        try {
+            statusTransitions.transition(
+                    () -> loadOrder(orderId),
+                    OrderStatus.CANCELLED,
+                    OrderStatusTransitionService.Source.SAGA,
+                    "saga:" + orderId + ":cancel",
+                    order -> {
+                        cancelledHere.set(true);
+                        kafkaProducer.sendOrderCancelled(order);
+                    });
+        } catch (InvalidOrderStateException e) {
+            // Заказ уже ушёл дальше (например, админом) — отменять нечего, сага всё равно не оформила его
+            log.error("Checkout compensation skipped: orderId={}: {}", orderId, e.getMessage());
+        }
+
+        transactionTemplate.executeWithoutResult(tx -> sagaRepository.findForUpdate(orderId)
+                .filter(saga -> saga.getStatus() == CheckoutSagaStatus.COMPENSATING)
+                .ifPresent(saga -> {
+                    if (!cancelledHere.get()) {
+                        // Заказ отменён раньше (клиентом или прерванной компенсацией):
+                        // RELEASE той отмены мог опередить резерв
+                        releaseStock(orderId);
+                    }
+                    log.info("Заказ {} не оформлен: {}", orderId, saga.getFailureReason());
+                    advance(saga, CheckoutSagaStatus.FAILED, saga.getDeadline());
+                }));
+    }
+
+    private static boolean isCompensated(CheckoutSaga saga) {
+        return saga.getStatus() == CheckoutSagaStatus.COMPENSATING || saga.getStatus() == CheckoutSagaStatus.FAILED;
+    }
+
+    private void releaseStock(UUID orderId) {
+        outboxService.enqueue(topics.getOrderStockEvents(), orderId.toString(),
+                new StockReservationEvent(orderId, "RELEASE"));
+    }
+
+    private boolean requiresPaymentLink(Order order) {
+        if (order.getCustomerType() != CustomerType.B2C) {
+            return false;
+        }
+        PaymentMethodSettingsDto settings = paymentMethodSettingsService.getSettings();
+        return (order.getPaymentMethod() == PaymentMethod.CARD && settings.cardEnabled())
+                || (order.getPaymentMethod() == PaymentMethod.SBP && settings.sbpEnabled());
+    }
+
+    private static InitiatePaymentCommand initiatePaymentCommand(Order order) {
+        CreatePaymentClientRequest request = CreatePaymentClientRequest.from(order);
+        return new InitiatePaymentCommand(request.orderId(), request.amount(), request.orderNumber(),
+                request.customerEmail(), request.paymentMode());
+    }
+
+    private Order loadOrder(UUID orderId) {
+        return orderRepository.findWithItemsById(orderId)
+                .orElseThrow(() -> new OrderNotFoundException("Заказ не найден: " + orderId));
+    }
+
+    private void advance(CheckoutSaga saga, CheckoutSagaStatus status, LocalDateTime deadline) {
+        saga.setStatus(status);
+        saga.setDeadline(deadline);
+        saga.setUpdatedAt(LocalDateTime.now());
+    }
+
+    private void fail(CheckoutSaga saga, String reason) {
+        saga.setFailureReason(reason);
+        advance(saga, CheckoutSagaStatus.FAILED, saga.getDeadline());
+    }
+}
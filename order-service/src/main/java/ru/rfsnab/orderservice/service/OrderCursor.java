@@ -0,0 +1,47 @@
+package ru.rfsnab.orderservice.service;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import ru.rfsnab.orderservice.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Курсор keyset-прокрутки заказов в админке. Порядок фиксирован — новые сверху
+ * (createdAt DESC, id DESC), поэтому в курсоре только значения ключа последней выданной строки.
+ * Наружу уходит непрозрачной base64url-строкой "createdAt|id".
+ */
+final class OrderCursor {
+
+    static final Sort SORT = Sort.by(Sort.Direction.DESC, "createdAt")
+            .and(Sort.by(Sort.Direction.DESC, "id"));
+
+    private OrderCursor() {}
+
+    static KeysetScrollPosition decode(String token) {
+        if (token == null || token.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return ScrollPosition.forward(Map.of(
+                    "createdAt", LocalDateTime.parse(raw.substring(0, separator)),
+                    "id", UUID.fromString(raw.substring(separator + 1))));
+        } catch (RuntimeException e) {
+            throw new BusinessException("Некорректный курсор");
+        }
+    }
+
+    /** Курсор порции, следующей за строкой с позицией last (Window.positionAt). */
+    static String encodeAfter(ScrollPosition last) {
+        Map<String, ?> keys = ((KeysetScrollPosition) last).getKeys();
+        String raw = keys.get("createdAt") + "|" + keys.get("id");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,8 +2,10 @@ package ru.rfsnab.orderservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import ru.rfsnab.orderservice.exception.InvalidDocumentException;
 import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
@@ -15,10 +17,14 @@ import ru.rfsnab.orderservice.models.entity.enums.OrderDocumentType;
 import ru.rfsnab.orderservice.repository.OrderDocumentRepository;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 /**
@@ -32,17 +38,33 @@ public class OrderDocumentService {
 
     private static final long MAX_FILE_SIZE_BYTES = 20L * 1024 * 1024;
 
-    private static final Set<String> ALLOWED_EXTENSIONS = Set.of(
-            "pdf", "jpg", "jpeg", "png", "xlsx", "docx");
+    /** Разрешённые расширения и Content-Type, с которым файл такого типа кладётся в хранилище. */
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "pdf", "application/pdf",
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+
+    private static final Set<String> ALLOWED_EXTENSIONS = new TreeSet<>(CONTENT_TYPES.keySet());
 
     private final OrderDocumentRepository orderDocumentRepository;
     private final OrderDocumentStorage orderDocumentStorage;
     private final OrderService orderService;
     private final OrderKafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
 
     public record DownloadResult(ResponseInputStream<GetObjectResponse> stream, OrderDocument document) {
     }
 
+    public record UploadTicket(String fileKey, OrderDocumentStorage.PresignedRequest request) {
+    }
+
+    /**
+     * Загрузка через сервис (multipart): файл целиком проходит через поток запроса.
+     * Для больших файлов — {@link #requestUpload} / {@link #completeUpload}.
+     */
     @Transactional
     public OrderDocument upload(UUID orderId, OrderDocumentType type, MultipartFile file, Long adminUserId) {
         validateFile(file);
@@ -50,7 +72,7 @@ public class OrderDocumentService {
         Order order = orderService.getOrder(orderId);
 
         String sanitizedName = sanitizeFileName(file.getOriginalFilename());
-        String fileKey = "orders/" + orderId + "/" + UUID.randomUUID() + "_" + sanitizedName;
+        String fileKey = buildFileKey(orderId, sanitizedName);
 
         OrderDocument document = OrderDocument.builder()
                 .orderId(orderId)
@@ -74,6 +96,78 @@ public class OrderDocumentService {
         return document;
     }
 
+    /**
+     * Шаг 1 прямой загрузки: проверка файла и подписанная ссылка PUT в бакет.
+     * Content-Type входит в подпись и отдаётся хранилищем при скачивании, поэтому он обязан
+     * соответствовать расширению файла.
+     * В БД ничего не пишется — документ появляется только после {@link #completeUpload}.
+     * Незавершённые загрузки остаются в бакете без ссылки из БД, как и файлы-сироты при сбое удаления.
+     *
+     * @return ключ файла (передаётся обратно в completeUpload) и подписанный запрос
+     */
+    public UploadTicket requestUpload(UUID orderId, String fileName, String contentType, long sizeBytes) {
+        validateFile(fileName, sizeBytes);
+        String expectedContentType = CONTENT_TYPES.get(extractExtension(fileName));
+        if (contentType == null || !expectedContentType.equalsIgnoreCase(contentType.strip())) {
+            throw new InvalidDocumentException(
+                    "Тип содержимого " + contentType + " не соответствует файлу: ожидается " + expectedContentType);
+        }
+        orderService.getOrder(orderId);
+
+        String fileKey = buildFileKey(orderId, sanitizeFileName(fileName));
+        return new UploadTicket(fileKey, orderDocumentStorage.presignUpload(fileKey, contentType, sizeBytes));
+    }
+
+    /**
+     * Шаг 2 прямой загрузки: клиент сообщает, что файл в бакете. Размер и тип берутся из
+     * метаданных объекта в хранилище, а не со слов клиента. Повторный вызов с тем же ключом
+     * возвращает уже записанный документ — в том числе параллельный: проигравший на уникальном
+     * file_key перечитывает документ победителя в новой транзакции (своя после ошибки вставки откачена).
+     */
+    public OrderDocument completeUpload(UUID orderId, OrderDocumentType type, String fileKey, Long adminUserId) {
+        try {
+            return transactionTemplate.execute(status -> recordUpload(orderId, type, fileKey, adminUserId));
+        } catch (DataIntegrityViolationException e) {
+            return orderDocumentRepository.findByFileKey(fileKey).orElseThrow(() -> e);
+        }
+    }
+
+    private OrderDocument recordUpload(UUID orderId, OrderDocumentType type, String fileKey, Long adminUserId) {
+        Order order = orderService.getOrder(orderId);
+        String fileName = fileNameFromKey(orderId, fileKey);
+
+        Optional<OrderDocument> existing = orderDocumentRepository.findByFileKey(fileKey);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        HeadObjectResponse object = orderDocumentStorage.head(fileKey)
+                .orElseThrow(() -> new InvalidDocumentException("Файл не найден в хранилище: загрузка не завершена"));
+        if (object.contentLength() > MAX_FILE_SIZE_BYTES) {
+            orderDocumentStorage.delete(fileKey);
+            throw new InvalidDocumentException(
+                    "Размер файла превышает максимально допустимый: " + (MAX_FILE_SIZE_BYTES / 1024 / 1024) + " MB");
+        }
+
+        // flush здесь: нарушение уникальности file_key всплывает до события, а не при коммите
+        OrderDocument document = orderDocumentRepository.saveAndFlush(OrderDocument.builder()
+                .orderId(orderId)
+                .type(type)
+                .originalFileName(fileName)
+                .fileKey(fileKey)
+                .contentType(object.contentType())
+                .sizeBytes(object.contentLength())
+                .uploadedAt(LocalDateTime.now())
+                .uploadedByUserId(adminUserId)
+                .build());
+        log.info("Документ '{}' ({}) загружен напрямую в хранилище для заказа {}",
+                fileName, type, order.getOrderNumber());
+
+        kafkaProducer.sendOrderDocumentAdded(order, type.getDisplayName(), fileName);
+
+        return document;
+    }
+
     @Transactional(readOnly = true)
     public List<OrderDocument> listForOrder(UUID orderId) {
         orderService.getOrder(orderId);
@@ -100,6 +194,26 @@ public class OrderDocumentService {
         return new DownloadResult(orderDocumentStorage.downloadStream(document.getFileKey()), document);
     }
 
+    /**
+     * Подписанная ссылка на скачивание напрямую из хранилища (Range и условные GET — на стороне хранилища).
+     */
+    @Transactional(readOnly = true)
+    public OrderDocumentStorage.PresignedRequest downloadUrl(UUID orderId, UUID documentId) {
+        orderService.getOrder(orderId);
+        return presignDownload(getDocumentOrThrow(documentId, orderId));
+    }
+
+    @Transactional(readOnly = true)
+    public OrderDocumentStorage.PresignedRequest downloadUrlForUser(UUID orderId, UUID documentId, Long userId) {
+        requireOwnedOrder(orderId, userId);
+        return presignDownload(getDocumentOrThrow(documentId, orderId));
+    }
+
+    private OrderDocumentStorage.PresignedRequest presignDownload(OrderDocument document) {
+        return orderDocumentStorage.presignDownload(
+                document.getFileKey(), document.getOriginalFileName(), document.getContentType());
+    }
+
     /**
      * Проверка владельца заказа для клиентских (не админских) файловых эндпоинтов.
      * getOrderByIdAndUser на чужом заказе бросает InvalidOrderStateException (400) —
@@ -136,18 +250,55 @@ public class OrderDocumentService {
         if (file == null || file.isEmpty()) {
             throw new InvalidDocumentException("Файл не может быть пустым");
         }
-        if (file.getSize() > MAX_FILE_SIZE_BYTES) {
+        validateFile(file.getOriginalFilename(), file.getSize());
+    }
+
+    private void validateFile(String fileName, long sizeBytes) {
+        if (sizeBytes <= 0) {
+            throw new InvalidDocumentException("Файл не может быть пустым");
+        }
+        if (sizeBytes > MAX_FILE_SIZE_BYTES) {
             throw new InvalidDocumentException(
                     "Размер файла превышает максимально допустимый: " + (MAX_FILE_SIZE_BYTES / 1024 / 1024) + " MB");
         }
 
-        String extension = extractExtension(file.getOriginalFilename());
+        String extension = extractExtension(fileName);
         if (extension == null || !ALLOWED_EXTENSIONS.contains(extension)) {
             throw new InvalidDocumentException(
                     "Неподдерживаемый тип файла. Разрешены: " + ALLOWED_EXTENSIONS);
         }
     }
 
+    private static String buildFileKey(UUID orderId, String sanitizedName) {
+        return "orders/" + orderId + "/" + UUID.randomUUID() + "_" + sanitizedName;
+    }
+
+    /**
+     * Имя файла из ключа, выданного {@link #requestUpload}: orders/{orderId}/{uuid}_{имя}.
+     * Ключ приходит от клиента — всё, что не похоже на выданный для этого заказа ключ, отклоняется.
+     */
+    private String fileNameFromKey(UUID orderId, String fileKey) {
+        String prefix = "orders/" + orderId + "/";
+        String rest = fileKey != null && fileKey.startsWith(prefix) ? fileKey.substring(prefix.length()) : "";
+        int separator = rest.indexOf('_');
+        String fileName = separator > 0 ? rest.substring(separator + 1) : "";
+        if (separator != 36 || !isUuid(rest.substring(0, separator))
+                || !fileName.equals(sanitizeFileName(fileName))) {
+            throw new InvalidDocumentException("Некорректный ключ файла: " + fileKey);
+        }
+        validateFile(fileName, 1);
+        return fileName;
+    }
+
+    private static boolean isUuid(String value) {
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     private String extractExtension(String fileName) {
         if (fileName == null) {
             return null;
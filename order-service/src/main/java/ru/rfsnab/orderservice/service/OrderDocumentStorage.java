@@ -1,6 +1,8 @@
 package ru.rfsnab.orderservice.service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import ru.rfsnab.orderservice.exception.DocumentStorageException;
@@ -10,10 +12,24 @@ import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
 import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Тонкая обёртка над S3Client для хранения документов заказов
@@ -22,13 +38,33 @@ import java.io.IOException;
 @Service
 public class OrderDocumentStorage {
 
+    /** Заголовки, которые браузер выставляет сам и которые клиенту передавать незачем. */
+    private static final Set<String> IMPLICIT_HEADERS = Set.of("host", "content-length");
+
     private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
     private final String bucketName;
+    private final Duration uploadUrlTtl;
+    private final Duration downloadUrlTtl;
+
+    /**
+     * Подписанный запрос к бакету.
+     *
+     * @param headers заголовки, которые клиент обязан отправить вместе с запросом (входят в подпись)
+     */
+    public record PresignedRequest(URL url, Map<String, String> headers, Instant expiresAt) {
+    }
 
     public OrderDocumentStorage(S3Client s3Client,
-                                @Value("${yandex.storage.bucket-name}") String bucketName) {
+                                S3Presigner s3Presigner,
+                                @Value("${yandex.storage.bucket-name}") String bucketName,
+                                @Value("${yandex.storage.presign.upload-ttl:15m}") Duration uploadUrlTtl,
+                                @Value("${yandex.storage.presign.download-ttl:5m}") Duration downloadUrlTtl) {
         this.s3Client = s3Client;
+        this.s3Presigner = s3Presigner;
         this.bucketName = bucketName;
+        this.uploadUrlTtl = uploadUrlTtl;
+        this.downloadUrlTtl = downloadUrlTtl;
     }
 
     public void upload(MultipartFile file, String fileKey) {
@@ -47,6 +83,64 @@ public class OrderDocumentStorage {
         }
     }
 
+    /**
+     * Ссылка для прямой загрузки файла в бакет (PUT). Тип и размер входят в подпись —
+     * хранилище отклонит файл другого размера, поэтому лимит размера не обойти.
+     */
+    public PresignedRequest presignUpload(String fileKey, String contentType, long sizeBytes) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .contentType(contentType)
+                .contentLength(sizeBytes)
+                .build();
+
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(builder -> builder
+                .signatureDuration(uploadUrlTtl)
+                .putObjectRequest(request));
+        return new PresignedRequest(presigned.url(), clientHeaders(presigned.signedHeaders()), presigned.expiration());
+    }
+
+    /**
+     * Ссылка для прямого скачивания (GET) с именем файла в Content-Disposition.
+     * Range и условные запросы (If-None-Match / If-Modified-Since) обслуживает само хранилище:
+     * эти заголовки в подпись не входят.
+     */
+    public PresignedRequest presignDownload(String fileKey, String fileName, String contentType) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .responseContentDisposition(ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build().toString())
+                .responseContentType(contentType)
+                .build();
+
+        PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(builder -> builder
+                .signatureDuration(downloadUrlTtl)
+                .getObjectRequest(request));
+        return new PresignedRequest(presigned.url(), clientHeaders(presigned.signedHeaders()), presigned.expiration());
+    }
+
+    /**
+     * Метаданные объекта; пусто — объекта в бакете нет.
+     */
+    public Optional<HeadObjectResponse> head(String fileKey) {
+        try {
+            HeadObjectRequest request = HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileKey)
+                    .build();
+
+            return Optional.of(s3Client.headObject(request));
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                return Optional.empty();
+            }
+            throw new DocumentStorageException("Ошибка S3 при проверке документа: " + e.getMessage(), e);
+        }
+    }
+
     public ResponseInputStream<GetObjectResponse> downloadStream(String fileKey) {
         try {
             GetObjectRequest request = GetObjectRequest.builder()
@@ -72,4 +166,14 @@ public class OrderDocumentStorage {
             throw new DocumentStorageException("Ошибка S3 при удалении документа: " + e.getMessage(), e);
         }
     }
+
+    private static Map<String, String> clientHeaders(Map<String, List<String>> signedHeaders) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        signedHeaders.forEach((name, values) -> {
+            if (!IMPLICIT_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return headers;
+    }
 }
@@ -2,8 +2,13 @@ package ru.rfsnab.orderservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.rfsnab.orderservice.exception.*;
@@ -11,27 +16,33 @@ import ru.rfsnab.orderservice.kafka.Order1CKafkaProducer;
 import ru.rfsnab.orderservice.kafka.OrderKafkaProducer;
 import ru.rfsnab.orderservice.mapper.AddressMapper;
 import ru.rfsnab.orderservice.mapper.OrderMapper;
+import ru.rfsnab.orderservice.models.dto.CursorPage;
+import ru.rfsnab.orderservice.models.dto.order.AdminOrderFilter;
+import ru.rfsnab.orderservice.models.dto.order.CheckoutStatusDto;
 import ru.rfsnab.orderservice.models.dto.order.CreateOrderRequest;
 import ru.rfsnab.orderservice.models.dto.order.HasDeliveryInfo;
 import ru.rfsnab.orderservice.models.dto.order.OrderItemDto;
 import ru.rfsnab.orderservice.models.dto.order.UpdateOrderRequest;
 import ru.rfsnab.orderservice.models.dto.payment.PaymentInitiationResponse;
 import ru.rfsnab.orderservice.models.dto.payment.PaymentMethodSettingsDto;
-import ru.rfsnab.orderservice.models.dto.payment.PaymentLinkResponse;
 import ru.rfsnab.orderservice.models.dto.product.ProductDto;
 import ru.rfsnab.orderservice.models.entity.*;
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
 import ru.rfsnab.orderservice.models.entity.enums.CustomerType;
 import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
 import ru.rfsnab.orderservice.repository.OrderRepository;
+import ru.rfsnab.orderservice.repository.OrderSummaryRepository;
+import ru.rfsnab.orderservice.repository.UserOrderCounterRepository;
 import ru.rfsnab.orderservice.service.client.PaymentServiceClient;
 import ru.rfsnab.orderservice.service.client.ProductServiceClient;
 import ru.rfsnab.orderservice.service.client.UserServiceClient;
+import ru.rfsnab.orderservice.spec.OrderSpecifications;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -51,6 +62,8 @@ import java.util.stream.Collectors;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final UserOrderCounterRepository orderCounterRepository;
     private final CartService cartService;
     private final WarehousePointService warehousePointService;
     private final ProductServiceClient productServiceClient;
@@ -59,27 +72,11 @@ public class OrderService {
     private final OrderKafkaProducer kafkaProducer;
     private final Order1CKafkaProducer order1CKafkaProducer;
     private final PaymentMethodSettingsService paymentMethodSettingsService;
+    private final OrderStatusTransitionService statusTransitions;
+    private final CheckoutSagaService checkoutSaga;
 
-    /** Допустимые переходы между статусами */
-    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED_TRANSITIONS;
-
-    static {
-        Map<OrderStatus, Set<OrderStatus>> t = new java.util.EnumMap<>(OrderStatus.class);
-        t.put(OrderStatus.CREATED,               Set.of(OrderStatus.PROCESSING, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
-        t.put(OrderStatus.PROCESSING,            Set.of(OrderStatus.INVOICE_SENT, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
-        t.put(OrderStatus.INVOICE_SENT,          Set.of(OrderStatus.PENDING_PAYMENT, OrderStatus.AWAITING_CONFIRMATION, OrderStatus.CANCELLED));
-        t.put(OrderStatus.PENDING_PAYMENT,       Set.of(OrderStatus.PAID, OrderStatus.PARTIALLY_PAID, OrderStatus.PAYMENT_FAILED, OrderStatus.CANCELLED));
-        t.put(OrderStatus.PAYMENT_FAILED,        Set.of(OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
-        t.put(OrderStatus.AWAITING_CONFIRMATION, Set.of(OrderStatus.SHIPPED, OrderStatus.CANCELLED));
-        t.put(OrderStatus.PAID,                  Set.of(OrderStatus.SHIPPED, OrderStatus.REFUNDED, OrderStatus.COMPLETED));
-        t.put(OrderStatus.PARTIALLY_PAID,        Set.of(OrderStatus.SHIPPED, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
-        t.put(OrderStatus.SHIPPED,               Set.of(OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED));
-        t.put(OrderStatus.IN_TRANSIT,            Set.of(OrderStatus.DELIVERED));
-        t.put(OrderStatus.DELIVERED,             Set.of(OrderStatus.PAID, OrderStatus.PENDING_PAYMENT, OrderStatus.COMPLETED));
-        t.put(OrderStatus.CANCELLED,             Set.of(OrderStatus.REFUNDED, OrderStatus.COMPLETED));
-        t.put(OrderStatus.REFUNDED,              Set.of(OrderStatus.COMPLETED));
-        ALLOWED_TRANSITIONS = java.util.Collections.unmodifiableMap(t);
-    }
+    /** Максимальный размер порции при прокрутке курсором. */
+    private static final int MAX_SCROLL_SIZE = 100;
 
     /** Статусы, в которых клиент может отменить заказ самостоятельно */
     private static final Set<OrderStatus> CANCELLABLE_STATUSES = Set.of(
@@ -112,6 +109,9 @@ public class OrderService {
      * 4. Обогащаем items данными из product-service + считаем totalAmount
      * 5. Очищаем корзину
      * 6. Отправляем Kafka event
+     *
+     * С включённой сагой оформления (CheckoutSagaService) запрос завершается на шаге 4:
+     * резерв, очистка корзины и событие — по ответу product-service.
      */
     @Transactional
     public Order createOrder(Long userId, String customerEmail, String clientType, CreateOrderRequest request) {
@@ -150,6 +150,15 @@ public class OrderService {
 
         order = orderRepository.save(order);
         orderRepository.flush();
+
+        if (checkoutSaga.isEnabled()) {
+            checkoutSaga.start(order);
+            log.info("Заказ принят: {} для пользователя {}, ожидает резерва", order.getOrderNumber(), userId);
+            return order;
+        }
+
+        // Резерв остатков: при нехватке транзакция заказа откатится, корзина останется
+        productServiceClient.reserveStock(order.getId(), quantitiesOf(order));
         log.info("Заказ создан: {} для пользователя {}", order.getOrderNumber(), userId);
 
         // 5. Очищаем корзину
@@ -168,6 +177,7 @@ public class OrderService {
     @Transactional
     public Order confirmOrder(UUID orderId, Long userId) {
         Order order = getOrderAndValidateOwner(orderId, userId);
+        checkoutSaga.requireStockReserved(orderId);
 
         if (order.getCustomerType() == CustomerType.B2C) {
             PaymentMethodSettingsDto settings = paymentMethodSettingsService.getSettings();
@@ -205,6 +215,8 @@ public class OrderService {
                     String.format("Редактирование заказа %s невозможно в статусе %s",
                             order.getOrderNumber(), order.getStatus().getDisplayName()));
         }
+        // Резерв по команде саги ещё не исполнен — синхронный резерв нового состава разошёлся бы с ним
+        checkoutSaga.requireStockReserved(orderId);
 
         // Валидация доставки — единый метод через HasDeliveryInfo
         validateDeliveryInfo(request);
@@ -234,8 +246,12 @@ public class OrderService {
         order.getItems().clear();
         BigDecimal totalAmount = addItemsFromDto(order, request.items(), products, order.getCustomerType());
         order.setTotalAmount(totalAmount);
+        order.refreshSummary();
 
         order = orderRepository.save(order);
+        productServiceClient.reserveStock(order.getId(), quantitiesOf(order));
+        // Ссылка саги выписана на старые сумму и способ оплаты
+        checkoutSaga.discardPreparedPayment(order.getId());
         log.info("Заказ обновлён: {}", order.getOrderNumber());
 
         return order;
@@ -303,6 +319,7 @@ public class OrderService {
         newOrder.setTotalAmount(totalAmount);
 
         newOrder = orderRepository.save(newOrder);
+        productServiceClient.reserveStock(newOrder.getId(), quantitiesOf(newOrder));
         log.info("Повторный заказ создан: {} на основе {}",
                 newOrder.getOrderNumber(), sourceOrder.getOrderNumber());
 
@@ -338,34 +355,62 @@ public class OrderService {
     }
 
     /**
-     * Получение заказов пользователя с пагинацией.
+     * История заказов пользователя с пагинацией — по read-модели OrderSummary, без order_items.
      */
     @Transactional(readOnly = true)
-    public Page<Order> getUserOrders(Long userId, Pageable pageable) {
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+    public Page<OrderSummary> getUserOrders(Long userId, Pageable pageable) {
+        return orderSummaryRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, pageable);
     }
 
     /**
-     * Получение всех заказов для админа с опциональными фильтрами.
-     * Приоритет: dateFrom+dateTo > status > userId > все заказы.
+     * Заказы для админа: любая комбинация фильтров (см. OrderSpecifications.adminSearch).
+     * К сортировке добавляется id — без уникального тайбрейкера заказы с одинаковым createdAt
+     * могут пропадать или дублироваться на соседних страницах.
      */
     @Transactional(readOnly = true)
-    public Page<Order> getAdminOrders(
-            OrderStatus status,
-            Long userId,
-            LocalDateTime dateFrom,
-            LocalDateTime dateTo,
-            Pageable pageable) {
-        if (dateFrom != null && dateTo != null) {
-            return orderRepository.findByCreatedAtBetween(dateFrom, dateTo, pageable);
-        }
-        if (status != null) {
-            return orderRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
-        }
-        if (userId != null) {
-            return orderRepository.findByUserId(userId, pageable);
+    public Page<OrderSummary> getAdminOrders(AdminOrderFilter filter, Pageable pageable) {
+        Pageable ordered = pageable.getSort().getOrderFor("id") != null
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                        pageable.getSort().and(Sort.by(Sort.Direction.DESC, "id")));
+        return orderSummaryRepository.findAll(OrderSpecifications.adminSearch(filter), ordered);
+    }
+
+    /**
+     * Заказы для админа курсором (новые сверху): порция продолжает с последней выданной строки
+     * по ключу (createdAt, id) через составные индексы — без OFFSET, стоимость не растёт с глубиной.
+     * Итог считается только по запросу (withTotal): с фильтрами — точный COUNT,
+     * без фильтров — оценка по статистике PostgreSQL вместо прохода всей таблицы.
+     *
+     * @param cursor курсор из предыдущей порции; null — первая порция
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<OrderSummary> scrollAdminOrders(AdminOrderFilter filter, String cursor, int size,
+                                                      boolean withTotal) {
+        KeysetScrollPosition position = OrderCursor.decode(cursor);
+        Specification<OrderSummary> spec = OrderSpecifications.adminSearch(filter);
+        int limit = Math.min(Math.max(size, 1), MAX_SCROLL_SIZE);
+
+        Window<OrderSummary> window = orderSummaryRepository.findBy(spec, q -> q
+                .sortBy(OrderCursor.SORT)
+                .limit(limit)
+                .scroll(position));
+
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? OrderCursor.encodeAfter(window.positionAt(window.size() - 1))
+                : null;
+        Long total = withTotal ? countAdminOrders(filter, spec) : null;
+        return new CursorPage<>(window.getContent(), nextCursor, nextCursor != null, total);
+    }
+
+    private long countAdminOrders(AdminOrderFilter filter, Specification<OrderSummary> spec) {
+        if (filter.isEmpty()) {
+            long estimate = orderRepository.estimateCount();
+            if (estimate >= 0) {
+                return estimate;
+            }
         }
-        return orderRepository.findAllByOrderByCreatedAtDesc(pageable);
+        return orderSummaryRepository.count(spec);
     }
 
     /**
@@ -433,37 +478,61 @@ public class OrderService {
     /**
      * Обновление статуса заказа (для админов).
      */
-    @Transactional
     public Order updateStatus(UUID orderId, OrderStatus newStatus) {
-        Order order = getOrder(orderId);
-        changeStatus(order, newStatus);
-        order = orderRepository.save(order);
-        kafkaProducer.sendOrderStatusChanged(order);
-        return order;
+        return updateStatus(orderId, newStatus, null);
+    }
+
+    /**
+     * Обновление статуса заказа админом через движок переходов.
+     *
+     * @param idempotencyKey заголовок Idempotency-Key: повтор запроса (двойной клик, ретрай прокси)
+     *                       не меняет заказ второй раз; null — без ключа. Ключ действует в пределах заказа:
+     *                       тот же ключ для другого заказа — отдельная команда
+     */
+    public Order updateStatus(UUID orderId, OrderStatus newStatus, String idempotencyKey) {
+        return statusTransitions.transition(
+                () -> getOrder(orderId),
+                newStatus,
+                OrderStatusTransitionService.Source.ADMIN,
+                idempotencyKey == null || idempotencyKey.isBlank() ? null : "admin:" + orderId + ":" + idempotencyKey,
+                kafkaProducer::sendOrderStatusChanged);
     }
 
     /**
      * Обновление статусов заказа для обмена с 1С
      */
-    @Transactional
-    public Order syncFrom1C(UUID orderId, String externalId, OrderStatus newStatus) {
-        Order order = getOrder(orderId);
-        order.setExternalId(externalId);
-        order.setStatus(newStatus);
-        return orderRepository.save(order);
+    public Order syncFrom1C(UUID orderId, String externalId, OrderStatus newStatus, String messageId) {
+        return syncFrom1C(() -> getOrder(orderId), externalId, newStatus, messageId);
     }
 
     /**
      * То же, что syncFrom1C, но ищет заказ по orderNumber (на сайте это AAB32389-NNNNN).
      * Используется при импорте статусов из 1С — 1С шлёт <Номер>, а свой UUID в <Ид>.
      */
-    @Transactional
-    public Order syncFrom1CByOrderNumber(String orderNumber, String externalId, OrderStatus newStatus) {
-        Order order = orderRepository.findByOrderNumber(orderNumber)
-                .orElseThrow(() -> new OrderNotFoundException("Заказ не найден по номеру: " + orderNumber));
-        order.setExternalId(externalId);
-        order.setStatus(newStatus);
-        return orderRepository.save(order);
+    public Order syncFrom1CByOrderNumber(String orderNumber, String externalId, OrderStatus newStatus,
+                                         String messageId) {
+        return syncFrom1C(() -> orderRepository.findByOrderNumber(orderNumber)
+                        .orElseThrow(() -> new OrderNotFoundException("Заказ не найден по номеру: " + orderNumber)),
+                externalId, newStatus, messageId);
+    }
+
+    /**
+     * 1С выгружает документы заказов целиком при каждом обмене: ключ (документ 1С, версия документа)
+     * отсекает повторную выгрузку уже применённой версии — в том числе устаревшую,
+     * пришедшую после более свежей смены статуса в админке или от платежа.
+     * Новая версия документа применяется, даже если возвращает заказ в статус, который уже был.
+     */
+    private Order syncFrom1C(Supplier<Order> loader, String externalId, OrderStatus newStatus, String messageId) {
+        String idempotencyKey = externalId == null || externalId.isBlank() || messageId == null || messageId.isBlank()
+                ? null
+                : "1c:" + externalId + ":" + messageId;
+        return statusTransitions.transition(
+                loader,
+                newStatus,
+                OrderStatusTransitionService.Source.ONE_C,
+                idempotencyKey,
+                order -> order.setExternalId(externalId),
+                kafkaProducer::sendStockEvent);
     }
 
     /**
@@ -500,6 +569,20 @@ public class OrderService {
         };
     }
 
+    /**
+     * Ход оформления заказа. Заказ без саги оформлен синхронно — сразу COMPLETED.
+     */
+    @Transactional(readOnly = true)
+    public CheckoutStatusDto getCheckoutStatus(UUID orderId, Long userId) {
+        getOrderByIdAndUser(orderId, userId);
+        return checkoutSaga.find(orderId)
+                // Компенсация для клиента — уже отказ: заказ отменяется
+                .map(saga -> new CheckoutStatusDto(orderId,
+                        saga.getStatus() == CheckoutSagaStatus.COMPENSATING ? CheckoutSagaStatus.FAILED : saga.getStatus(),
+                        saga.getFailureReason()))
+                .orElseGet(() -> new CheckoutStatusDto(orderId, CheckoutSagaStatus.COMPLETED, null));
+    }
+
     public String getPaymentStatus(UUID orderId, Long userId) {
         getOrderByIdAndUser(orderId, userId);
         var response = paymentServiceClient.getPaymentStatus(orderId);
@@ -545,10 +628,14 @@ public class OrderService {
             order = orderRepository.save(order);
             kafkaProducer.sendOrderStatusChanged(order);
         }
-        PaymentLinkResponse resp = paymentServiceClient.createPayment(order);
+        // Ссылку заранее подготовила сага оформления; иначе — синхронный вызов payment-service
+        Optional<String> prepared = checkoutSaga.preparedPaymentLink(order.getId());
+        String paymentLink = prepared.isPresent()
+                ? prepared.get()
+                : paymentServiceClient.createPayment(order).paymentLink();
         log.info("Online payment initiated: orderId={}, mode={}, link={}",
-                order.getId(), order.getPaymentMethod(), resp.paymentLink());
-        return new PaymentInitiationResponse(resp.paymentLink(), order.getPaymentMethod(), order.getStatus());
+                order.getId(), order.getPaymentMethod(), paymentLink);
+        return new PaymentInitiationResponse(paymentLink, order.getPaymentMethod(), order.getStatus());
     }
 
     private PaymentInitiationResponse recordCashOnDeliveryIntent(Order order) {
@@ -753,31 +840,29 @@ public class OrderService {
                 .build();
     }
 
+    /** Количества по товарам для резерва в product-service (дубли позиций суммируются). */
+    private static Map<Long, Integer> quantitiesOf(Order order) {
+        return order.getItems().stream()
+                .collect(Collectors.toMap(OrderItem::getProductId, OrderItem::getQuantity, Integer::sum));
+    }
+
     /**
      * Генерация номера заказа.
-     * Формат: {UUID-prefix}-{порядковый номер клиента}
+     * Формат: {UUID-prefix}-{порядковый номер клиента}.
+     * Порядковый номер — из счётчика пользователя (user_order_counters), а не COUNT его заказов.
      */
     private String generateOrderNumber(Long userId) {
         String prefix = UUID.nameUUIDFromBytes(userId.toString().getBytes())
                 .toString().substring(0, 8).toUpperCase();
-        long orderCount = orderRepository.countByUserId(userId) + 1;
-        return prefix + "-" + String.format("%05d", orderCount);
+        long orderNumber = orderCounterRepository.allocateNext(userId);
+        return prefix + "-" + String.format("%05d", orderNumber);
     }
 
     /**
-     * Валидация статусного перехода.
+     * Валидация статусного перехода (граф — в OrderStatusTransitionService).
      */
     private void changeStatus(Order order, OrderStatus newStatus) {
-        Set<OrderStatus> allowed = ALLOWED_TRANSITIONS.getOrDefault(order.getStatus(), Set.of());
-
-        if (!allowed.contains(newStatus)) {
-            throw new InvalidOrderStateException(
-                    String.format("Недопустимый переход: %s → %s для заказа %s",
-                            order.getStatus().getDisplayName(),
-                            newStatus.getDisplayName(),
-                            order.getOrderNumber()));
-        }
-
+        OrderStatusTransitionService.checkAllowed(order, newStatus);
         order.setStatus(newStatus);
     }
 
@@ -0,0 +1,194 @@
+package ru.rfsnab.orderservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rfsnab.orderservice.exception.IdempotencyKeyConflictException;
+import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderStatusCommand;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.repository.OrderRepository;
+import ru.rfsnab.orderservice.repository.OrderStatusCommandRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Единый движок смены статуса заказа.
+ * <p>
+ * Граф допустимых переходов проверяется здесь и для клиентских сценариев OrderService (changeStatus),
+ * и для внешних команд — смена статуса админом, события платежей, обмен с 1С.
+ * Внешняя команда выполняется как read-modify-write в собственной транзакции:
+ * <ul>
+ *   <li>ключ идемпотентности (операция платежа, документ 1С, Idempotency-Key, шаг саги) обрабатывается один раз;
+ *       ключ, уже занятый другим заказом, — конфликт, а не молчаливый пропуск;</li>
+ *   <li>переход в текущий статус — без записи и без событий (дубль вебхука, повторная выгрузка 1С);</li>
+ *   <li>конфликт версии заказа (Order.version) — заказ перечитывается и команда применяется заново
+ *       к свежему состоянию, вместо "побеждает последний записавший".</li>
+ * </ul>
+ * Вызывается вне транзакции: повтор после конфликта возможен только в новой транзакции.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStatusTransitionService {
+
+    /** Попыток применить команду при конфликте версий. */
+    static final int MAX_ATTEMPTS = 3;
+
+    /** Ключей команд за одну транзакцию чистки. */
+    static final int PURGE_BATCH_SIZE = 1000;
+
+    /** Допустимые переходы между статусами */
+    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED_TRANSITIONS;
+
+    static {
+        Map<OrderStatus, Set<OrderStatus>> t = new EnumMap<>(OrderStatus.class);
+        t.put(OrderStatus.CREATED,               Set.of(OrderStatus.PROCESSING, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
+        t.put(OrderStatus.PROCESSING,            Set.of(OrderStatus.INVOICE_SENT, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
+        t.put(OrderStatus.INVOICE_SENT,          Set.of(OrderStatus.PENDING_PAYMENT, OrderStatus.AWAITING_CONFIRMATION, OrderStatus.CANCELLED));
+        t.put(OrderStatus.PENDING_PAYMENT,       Set.of(OrderStatus.PAID, OrderStatus.PARTIALLY_PAID, OrderStatus.PAYMENT_FAILED, OrderStatus.CANCELLED));
+        t.put(OrderStatus.PAYMENT_FAILED,        Set.of(OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
+        t.put(OrderStatus.AWAITING_CONFIRMATION, Set.of(OrderStatus.SHIPPED, OrderStatus.CANCELLED));
+        t.put(OrderStatus.PAID,                  Set.of(OrderStatus.SHIPPED, OrderStatus.REFUNDED, OrderStatus.COMPLETED));
+        t.put(OrderStatus.PARTIALLY_PAID,        Set.of(OrderStatus.SHIPPED, OrderStatus.PENDING_PAYMENT, OrderStatus.CANCELLED));
+        t.put(OrderStatus.SHIPPED,               Set.of(OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED));
+        t.put(OrderStatus.IN_TRANSIT,            Set.of(OrderStatus.DELIVERED));
+        t.put(OrderStatus.DELIVERED,             Set.of(OrderStatus.PAID, OrderStatus.PENDING_PAYMENT, OrderStatus.COMPLETED));
+        t.put(OrderStatus.CANCELLED,             Set.of(OrderStatus.REFUNDED, OrderStatus.COMPLETED));
+        t.put(OrderStatus.REFUNDED,              Set.of(OrderStatus.COMPLETED));
+        ALLOWED_TRANSITIONS = Collections.unmodifiableMap(t);
+    }
+
+    /** Источник команды смены статуса. */
+    public enum Source {
+        ADMIN(true),
+        PAYMENT(true),
+        /** Сага оформления: отмена заказа, товар которого не удалось зарезервировать. */
+        SAGA(true),
+        /** 1С — учётная система-источник истины: её статус применяется в обход графа переходов. */
+        ONE_C(false);
+
+        private final boolean validated;
+
+        Source(boolean validated) {
+            this.validated = validated;
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final OrderStatusCommandRepository commandRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.order-status-commands.retention-days:30}")
+    private int commandRetentionDays;
+
+    /**
+     * Валидация статусного перехода.
+     */
+    static void checkAllowed(Order order, OrderStatus newStatus) {
+        Set<OrderStatus> allowed = ALLOWED_TRANSITIONS.getOrDefault(order.getStatus(), Set.of());
+
+        if (!allowed.contains(newStatus)) {
+            throw new InvalidOrderStateException(
+                    String.format("Недопустимый переход: %s → %s для заказа %s",
+                            order.getStatus().getDisplayName(),
+                            newStatus.getDisplayName(),
+                            order.getOrderNumber()));
+        }
+    }
+
+    public Order transition(Supplier<Order> loader, OrderStatus target, Source source, String idempotencyKey,
+                            Consumer<Order> onChanged) {
+        return transition(loader, target, source, idempotencyKey, order -> { }, onChanged);
+    }
+
+    /**
+     * Применить команду смены статуса.
+     *
+     * @param loader         чтение заказа (в транзакции попытки)
+     * @param idempotencyKey ключ команды; null — идемпотентность только по текущему статусу
+     * @param mutation       сопутствующие изменения заказа (например, externalId от 1С)
+     * @param onChanged      события о смене статуса — в той же транзакции (outbox), только при реальной смене
+     * @return заказ после команды
+     */
+    public Order transition(Supplier<Order> loader, OrderStatus target, Source source, String idempotencyKey,
+                            Consumer<Order> mutation, Consumer<Order> onChanged) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(tx ->
+                        apply(loader, target, source, idempotencyKey, mutation, onChanged));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Конфликт версий заказа при переходе в {} ({}), попытка {}/{} — повторяем",
+                        target, source, attempt, MAX_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * Ежедневная чистка ключей идемпотентности: повтор команды (ретрай вебхука, повторная выгрузка 1С)
+     * приходит в пределах часов, поэтому ключи старше срока хранения удаляются пачками —
+     * таблица не растёт вместе с числом заказов.
+     */
+    @Scheduled(cron = "${app.order-status-commands.cleanup-cron:0 45 3 * * *}")
+    public void purgeProcessedCommands() {
+        LocalDateTime before = LocalDateTime.now().minusDays(commandRetentionDays);
+        int total = 0;
+        int purged;
+        do {
+            purged = Objects.requireNonNullElse(transactionTemplate.execute(
+                    status -> commandRepository.deleteProcessedBefore(before, PURGE_BATCH_SIZE)), 0);
+            total += purged;
+        } while (purged > 0);
+        if (total > 0) {
+            log.info("Удалено обработанных команд смены статуса: {}", total);
+        }
+    }
+
+    private Order apply(Supplier<Order> loader, OrderStatus target, Source source, String idempotencyKey,
+                        Consumer<Order> mutation, Consumer<Order> onChanged) {
+        Order order = loader.get();
+        if (idempotencyKey != null && commandRepository.claim(idempotencyKey, order.getId()) == 0) {
+            UUID claimedFor = commandRepository.findById(idempotencyKey)
+                    .map(OrderStatusCommand::getOrderId)
+                    .orElse(order.getId());
+            if (!claimedFor.equals(order.getId())) {
+                throw new IdempotencyKeyConflictException(String.format(
+                        "Ключ %s уже использован для другого заказа", idempotencyKey));
+            }
+            log.info("Команда {} для заказа {} уже обработана — пропуск", idempotencyKey, order.getOrderNumber());
+            return order;
+        }
+
+        mutation.accept(order);
+        if (order.getStatus() == target) {
+            // Сопутствующие изменения сохраняются, статус и события — нет
+            return orderRepository.saveAndFlush(order);
+        }
+        if (source.validated) {
+            checkAllowed(order, target);
+        }
+        OrderStatus previous = order.getStatus();
+        order.setStatus(target);
+        // flush внутри попытки: конфликт версии всплывает здесь, а не при коммите
+        Order saved = orderRepository.saveAndFlush(order);
+        onChanged.accept(saved);
+        log.info("Статус заказа {}: {} → {} ({})", saved.getOrderNumber(), previous, target, source);
+        return saved;
+    }
+}
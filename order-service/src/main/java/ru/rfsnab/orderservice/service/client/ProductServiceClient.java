@@ -1,21 +1,29 @@
 package ru.rfsnab.orderservice.service.client;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import ru.rfsnab.common.http.VirtualThreadFanOut;
+import ru.rfsnab.orderservice.exception.InsufficientStockException;
 import ru.rfsnab.orderservice.exception.ProductNotFoundException;
 import ru.rfsnab.orderservice.exception.ServiceUnavailableException;
 import ru.rfsnab.orderservice.models.dto.product.ProductDto;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 
 /**
@@ -26,13 +34,24 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductServiceClient {
 
+    /** Не больше лимита product-service на один запрос снимков (ProductService.MAX_SNAPSHOT_IDS). */
+    static final int SNAPSHOT_BATCH_SIZE = 500;
+
+    private static final ObjectMapper ERROR_BODY_MAPPER = new ObjectMapper();
+
     private final RestTemplate restTemplate;
+    private final VirtualThreadFanOut fanOut;
     private final String productServiceUrl;
+    private final String internalSecret;
 
     public ProductServiceClient(RestTemplate restTemplate,
-                                @Value("${services.product.url}") String productServiceUrl) {
+                                VirtualThreadFanOut fanOut,
+                                @Value("${services.product.url}") String productServiceUrl,
+                                @Value("${internal.secret}") String internalSecret) {
         this.restTemplate = restTemplate;
+        this.fanOut = fanOut;
         this.productServiceUrl = productServiceUrl;
+        this.internalSecret = internalSecret;
     }
 
     public ProductDto getProduct(Long productId) {
@@ -50,24 +69,91 @@ public class ProductServiceClient {
         }
     }
 
+    /**
+     * Снимки цены/остатка/активности товаров одним запросом на каждые {@link #SNAPSHOT_BATCH_SIZE} id;
+     * пачки запрашиваются параллельно на виртуальных потоках. Несуществующие товары в результат не попадают.
+     */
     public Map<Long, ProductDto> getProducts(Set<Long> productIds) {
         if (productIds.isEmpty()) {
             return Map.of();
         }
 
-        List<CompletableFuture<ProductDto>> futures = productIds.stream()
-                .map(id -> CompletableFuture.supplyAsync(() -> {
-                    try {
-                        return getProduct(id);
-                    } catch (ProductNotFoundException e) {
-                        return null;
-                    }
-                }))
+        List<Long> ids = List.copyOf(productIds);
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += SNAPSHOT_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + SNAPSHOT_BATCH_SIZE, ids.size())));
+        }
+
+        Map<Long, ProductDto> result = new HashMap<>(ids.size() * 2);
+        for (List<ProductDto> snapshots : fanOut.map(batches, this::fetchSnapshots)) {
+            for (ProductDto product : snapshots) {
+                result.put(product.id(), product);
+            }
+        }
+        return result;
+    }
+
+    private List<ProductDto> fetchSnapshots(List<Long> ids) {
+        try {
+            ProductDto[] body = restTemplate.postForObject(
+                    productServiceUrl + "/api/v1/products/stock-snapshot",
+                    new HttpEntity<>(ids, internalHeaders()),
+                    ProductDto[].class
+            );
+            return body != null ? Arrays.asList(body) : List.of();
+        } catch (Exception e) {
+            log.error("Product service unavailable: {}", e.getMessage());
+            throw new ServiceUnavailableException("Product service unavailable");
+        }
+    }
+
+    /**
+     * Зарезервировать остатки под заказ (атомарно по всем позициям). Повторный вызов для того же
+     * заказа заменяет резерв новым составом, с тем же составом — ничего не меняет.
+     *
+     * @param quantities productId → количество
+     * @throws InsufficientStockException если какой-то позиции не хватает (product-service ответил 409)
+     */
+    public void reserveStock(UUID orderId, Map<Long, Integer> quantities) {
+        List<Map<String, Object>> lines = quantities.entrySet().stream()
+                .map(e -> Map.<String, Object>of("productId", e.getKey(), "quantity", e.getValue()))
                 .toList();
+        try {
+            restTemplate.exchange(
+                    productServiceUrl + "/api/v1/products/reservations/{orderId}",
+                    HttpMethod.PUT,
+                    new HttpEntity<>(Map.of("lines", lines), internalHeaders()),
+                    Void.class,
+                    orderId
+            );
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new InsufficientStockException(conflictMessage(e));
+        } catch (Exception e) {
+            log.error("Product service unavailable: {}", e.getMessage());
+            throw new ServiceUnavailableException("Product service unavailable");
+        }
+    }
+
+    /**
+     * Текст отказа из тела ErrorResponse product-service. Тело читается напрямую:
+     * getResponseBodyAs работает только для исключений, созданных обработчиком ошибок RestTemplate.
+     */
+    private static String conflictMessage(HttpClientErrorException e) {
+        try {
+            JsonNode message = ERROR_BODY_MAPPER.readTree(e.getResponseBodyAsByteArray()).path("message");
+            if (message.isTextual()) {
+                return message.asText();
+            }
+        } catch (java.io.IOException ignored) {
+            // тело не JSON — отдаём общий текст
+        }
+        return "Недостаточно товара на складе";
+    }
 
-        return futures.stream()
-                .map(CompletableFuture::join)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(ProductDto::id, Function.identity()));
+    private HttpHeaders internalHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Internal-Token", internalSecret);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
     }
 }
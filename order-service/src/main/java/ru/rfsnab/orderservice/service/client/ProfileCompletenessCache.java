@@ -0,0 +1,113 @@
+package ru.rfsnab.orderservice.service.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.orderservice.exception.ServiceUnavailableException;
+import ru.rfsnab.orderservice.models.dto.user.ProfileCompletenessDto;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Локальный кэш заполненности профиля (user-service) по userId — проверка стоит
+ * на каждом добавлении в корзину и создании заказа.
+ * <p>
+ * Заполненный профиль считается актуальным ttl, незаполненный (негативный кэш) — negative-ttl:
+ * пользователь, только что дозаполнивший профиль, не должен ждать долго, даже если событие
+ * об изменении ещё не дошло. Сброс по событиям user-service — {@link #evict(Long)}.
+ * <p>
+ * Если user-service недоступен, заполненный профиль из кэша обслуживается ещё stale-if-error:
+ * сбой соседнего сервиса не блокирует корзины уже проверенных пользователей.
+ * Незаполненный или неизвестный профиль при сбое по-прежнему не пропускается.
+ */
+@Slf4j
+@Component
+public class ProfileCompletenessCache {
+
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final Cache<Long, Entry> entries;
+
+    // Растёт на каждой инвалидации: ответ, запрос которого начался до неё, в кэш не кладётся
+    private final AtomicLong modCount = new AtomicLong();
+
+    record Entry(ProfileCompletenessDto completeness, long loadedAtNanos) {
+    }
+
+    public ProfileCompletenessCache(@Value("${app.profile-cache.ttl-seconds:60}") long ttlSeconds,
+                                    @Value("${app.profile-cache.negative-ttl-seconds:10}") long negativeTtlSeconds,
+                                    @Value("${app.profile-cache.stale-if-error-minutes:30}") long staleIfErrorMinutes,
+                                    @Value("${app.profile-cache.max-size:10000}") long maxSize) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        long completeLifetime = Math.max(ttl.toNanos(), Duration.ofMinutes(staleIfErrorMinutes).toNanos());
+        long incompleteLifetime = negativeTtl.toNanos();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Long key, Entry entry, long currentTime) {
+                        return entry.completeness().complete() ? completeLifetime : incompleteLifetime;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Заполненность профиля: из кэша, пока запись актуальна, иначе loader (REST в user-service).
+     *
+     * @throws ServiceUnavailableException user-service недоступен и в кэше нет заполненного профиля
+     */
+    public ProfileCompletenessDto get(Long userId, Supplier<ProfileCompletenessDto> loader) {
+        Entry cached = entries.getIfPresent(userId);
+        if (cached != null && isFresh(cached)) {
+            return cached.completeness();
+        }
+
+        long stamp = modCount.get();
+        ProfileCompletenessDto loaded;
+        try {
+            loaded = loader.get();
+        } catch (ServiceUnavailableException e) {
+            if (cached != null && cached.completeness().complete()) {
+                log.warn("User service unavailable, using cached profile completeness for userId={}", userId);
+                return cached.completeness();
+            }
+            throw e;
+        }
+
+        if (loaded != null) {
+            entries.put(userId, new Entry(loaded, System.nanoTime()));
+            if (stamp != modCount.get()) {
+                // Профиль изменился, пока шёл запрос, — ответ мог устареть
+                entries.invalidate(userId);
+            }
+        }
+        return loaded;
+    }
+
+    public void evict(Long userId) {
+        modCount.incrementAndGet();
+        entries.invalidate(userId);
+    }
+
+    private boolean isFresh(Entry entry) {
+        Duration lifetime = entry.completeness().complete() ? ttl : negativeTtl;
+        return System.nanoTime() - entry.loadedAtNanos() < lifetime.toNanos();
+    }
+}
@@ -13,25 +13,40 @@ import ru.rfsnab.orderservice.models.dto.user.ProfileCompletenessDto;
 
 /**
  * Клиент для взаимодействия с user-service.
- * Проверяет заполненность профиля перед добавлением в корзину и созданием заказа.
+ * Проверяет заполненность профиля перед добавлением в корзину и созданием заказа;
+ * ответы кэшируются локально ({@link ProfileCompletenessCache}).
  */
 @Service
 @Slf4j
 public class UserServiceClient {
 
     private final RestTemplate restTemplate;
+    private final ProfileCompletenessCache profileCache;
     private final String userServiceUrl;
     private final String internalSecret;
 
     public UserServiceClient(RestTemplate restTemplate,
+                              ProfileCompletenessCache profileCache,
                               @Value("${services.user.url}") String userServiceUrl,
                               @Value("${internal.secret}") String internalSecret) {
         this.restTemplate = restTemplate;
+        this.profileCache = profileCache;
         this.userServiceUrl = userServiceUrl;
         this.internalSecret = internalSecret;
     }
 
     public ProfileCompletenessDto getProfileCompleteness(Long userId) {
+        return profileCache.get(userId, () -> fetchProfileCompleteness(userId));
+    }
+
+    public void requireCompleteProfile(Long userId) {
+        ProfileCompletenessDto completeness = getProfileCompleteness(userId);
+        if (!completeness.complete()) {
+            throw new ProfileIncompleteException(completeness.missing());
+        }
+    }
+
+    private ProfileCompletenessDto fetchProfileCompleteness(Long userId) {
         try {
             return restTemplate.exchange(
                     userServiceUrl + "/v1/users/{id}/profile-completeness",
@@ -46,13 +61,6 @@ public class UserServiceClient {
         }
     }
 
-    public void requireCompleteProfile(Long userId) {
-        ProfileCompletenessDto completeness = getProfileCompleteness(userId);
-        if (!completeness.complete()) {
-            throw new ProfileIncompleteException(completeness.missing());
-        }
-    }
-
     private HttpHeaders internalHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.set("X-Internal-Token", internalSecret);
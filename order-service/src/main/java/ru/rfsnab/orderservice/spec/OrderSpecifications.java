@@ -0,0 +1,56 @@
+package ru.rfsnab.orderservice.spec;
+
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import ru.rfsnab.orderservice.models.dto.order.AdminOrderFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OrderSpecifications {
+
+    private OrderSpecifications() {}
+
+    /**
+     * Поиск заказов в админке: все заданные фильтры через AND.
+     * Равенства по status/user_id/inn и диапазон created_at обслуживаются составными индексами
+     * (..., created_at DESC, id DESC), подстрока номера — триграммным индексом по LOWER(order_number)
+     * (V20261018170000__add_admin_order_search_indexes).
+     * Применима к любой сущности поверх таблицы orders — Order или read-модели OrderSummary.
+     */
+    public static <T> Specification<T> adminSearch(AdminOrderFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.status() != null) {
+                predicates.add(cb.equal(root.get("status"), filter.status()));
+            }
+            if (filter.userId() != null) {
+                predicates.add(cb.equal(root.get("userId"), filter.userId()));
+            }
+            if (filter.inn() != null && !filter.inn().isBlank()) {
+                predicates.add(cb.equal(root.get("inn"), filter.inn().trim()));
+            }
+            if (filter.dateFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.dateFrom()));
+            }
+            if (filter.dateTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), filter.dateTo()));
+            }
+            if (filter.paymentMethod() != null) {
+                predicates.add(cb.equal(root.get("paymentMethod"), filter.paymentMethod()));
+            }
+            if (filter.deliveryMethod() != null) {
+                predicates.add(cb.equal(root.get("deliveryMethod"), filter.deliveryMethod()));
+            }
+            if (filter.orderNumber() != null && !filter.orderNumber().isBlank()) {
+                String pattern = "%" + escapeLike(filter.orderNumber().trim().toLowerCase()) + "%";
+                predicates.add(cb.like(cb.lower(root.get("orderNumber")), pattern, '\\'));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
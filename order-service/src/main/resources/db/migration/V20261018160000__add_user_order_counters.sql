@@ -0,0 +1,13 @@
+-- Счётчик номеров заказов на пользователя вместо COUNT(*) по заказам при каждом checkout
+CREATE TABLE user_order_counters (
+    user_id     BIGINT PRIMARY KEY,
+    last_number BIGINT NOT NULL
+);
+
+-- Продолжаем нумерацию существующих заказов: максимум из числа заказов и суффикса номера
+-- (заказы могли удаляться — тогда COUNT меньше уже выданного номера)
+INSERT INTO user_order_counters (user_id, last_number)
+SELECT user_id,
+       GREATEST(COUNT(*), COALESCE(MAX(CAST(SUBSTRING(order_number FROM '-(\d+)$') AS BIGINT)), 0))
+FROM orders
+GROUP BY user_id;
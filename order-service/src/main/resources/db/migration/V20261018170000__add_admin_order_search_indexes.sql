@@ -0,0 +1,32 @@
+-- Поиск заказов в админке (OrderSpecifications.adminSearch): любая комбинация фильтров,
+-- сортировка created_at DESC, id DESC, keyset-прокрутка по тому же ключу.
+-- Каждый индекс заканчивается ключом сортировки — выборка идёт в порядке индекса без Sort
+-- и останавливается на LIMIT, сколько бы заказов ни подходило под фильтр.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Без фильтров и с фильтром только по периоду (заменяет одноколоночный idx_orders_created_at)
+CREATE INDEX IF NOT EXISTS idx_orders_created_at_id
+    ON orders (created_at DESC, id DESC);
+DROP INDEX IF EXISTS idx_orders_created_at;
+
+-- Статус (+ период): самый частый фильтр менеджеров
+CREATE INDEX IF NOT EXISTS idx_orders_status_created_at
+    ON orders (status, created_at DESC, id DESC);
+
+-- Заказы пользователя (+ период); заменяет idx_orders_user_id — ведущая колонка та же
+CREATE INDEX IF NOT EXISTS idx_orders_user_id_created_at
+    ON orders (user_id, created_at DESC, id DESC);
+DROP INDEX IF EXISTS idx_orders_user_id;
+
+-- Заказы юрлица по ИНН; у B2C ИНН нет — частичный индекс
+CREATE INDEX IF NOT EXISTS idx_orders_inn_created_at
+    ON orders (inn, created_at DESC, id DESC)
+    WHERE inn IS NOT NULL;
+
+-- Подстрока номера заказа (LOWER(order_number) LIKE '%q%')
+CREATE INDEX IF NOT EXISTS idx_orders_order_number_trgm
+    ON orders USING GIN (LOWER(order_number) gin_trgm_ops);
+
+-- Способы оплаты/доставки — несколько значений на всю таблицу, отдельный индекс планировщик
+-- не выберет: они дофильтровываются поверх индексов выше.
@@ -0,0 +1,12 @@
+-- Оптимистическая блокировка заказа (Order.version): параллельные смены статуса
+-- (вебхуки платежей, админка, обмен с 1С) больше не затирают друг друга
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Ключи идемпотентности обработанных команд смены статуса (OrderStatusTransitionService)
+CREATE TABLE order_status_commands (
+    idempotency_key VARCHAR(200) PRIMARY KEY,
+    order_id        UUID      NOT NULL,
+    processed_at    TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_order_status_commands_order_id ON order_status_commands (order_id);
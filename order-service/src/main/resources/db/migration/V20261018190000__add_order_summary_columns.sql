@@ -0,0 +1,18 @@
+-- Read-модель списков заказов (OrderSummary): число позиций и первая позиция хранятся в строке orders
+-- и пересчитываются при записи заказа (Order.refreshSummary). История пользователя и списки админки
+-- читают только orders по индексам (user_id | status | inn, created_at DESC, id DESC) — без order_items.
+
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS items_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS first_item_name VARCHAR(255);
+
+-- Заполнение для существующих заказов. Порядок позиций в старых заказах не сохранён —
+-- первой считается позиция с наименьшим наименованием.
+UPDATE orders o
+SET items_count     = s.items_count,
+    first_item_name = s.first_item_name
+FROM (SELECT order_id,
+             COUNT(*)          AS items_count,
+             MIN(product_name) AS first_item_name
+      FROM order_items
+      GROUP BY order_id) s
+WHERE s.order_id = o.id;
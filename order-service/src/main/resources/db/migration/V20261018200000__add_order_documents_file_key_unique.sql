@@ -0,0 +1,3 @@
+-- Прямая загрузка документов в хранилище: запись создаётся по ключу файла после подтверждения клиентом.
+-- Уникальный ключ делает подтверждение идемпотентным — повтор не создаёт второй документ на тот же объект.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_order_documents_file_key ON order_documents (file_key);
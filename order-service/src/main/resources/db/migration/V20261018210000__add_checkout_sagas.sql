@@ -0,0 +1,15 @@
+-- Сага оформления заказа (CheckoutSagaService): шаг, дедлайн ответа участника,
+-- подготовленная ссылка на оплату и причина отказа
+CREATE TABLE checkout_sagas (
+    order_id       UUID PRIMARY KEY REFERENCES orders (id) ON DELETE CASCADE,
+    status         VARCHAR(30)   NOT NULL,
+    payment_link   VARCHAR(1000),
+    failure_reason VARCHAR(1000),
+    deadline       TIMESTAMP     NOT NULL,
+    created_at     TIMESTAMP     NOT NULL DEFAULT now(),
+    updated_at     TIMESTAMP     NOT NULL DEFAULT now()
+);
+
+-- Поиск просроченных шагов: в индексе только незавершённые саги
+CREATE INDEX idx_checkout_sagas_pending_deadline ON checkout_sagas (deadline)
+    WHERE status IN ('STOCK_PENDING', 'PAYMENT_PENDING');
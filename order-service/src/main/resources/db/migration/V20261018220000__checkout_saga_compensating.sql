@@ -0,0 +1,5 @@
+-- Компенсация саги (COMPENSATING) тоже имеет deadline: прерванную отмену заказа повторяет таймаут
+DROP INDEX IF EXISTS idx_checkout_sagas_pending_deadline;
+
+CREATE INDEX idx_checkout_sagas_pending_deadline ON checkout_sagas (deadline)
+    WHERE status IN ('STOCK_PENDING', 'PAYMENT_PENDING', 'COMPENSATING');
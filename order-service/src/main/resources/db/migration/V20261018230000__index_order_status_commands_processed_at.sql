@@ -0,0 +1,2 @@
+-- Чистка ключей идемпотентности старше срока хранения (OrderStatusTransitionService.purgeProcessedCommands)
+CREATE INDEX idx_order_status_commands_processed_at ON order_status_commands (processed_at);
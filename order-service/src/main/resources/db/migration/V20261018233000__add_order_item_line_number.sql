@@ -0,0 +1,19 @@
+-- Порядок позиций заказа (OrderItem.lineNumber, Order.items @OrderBy): сводка first_item_name
+-- и позиции заказа показывают одну и ту же первую позицию. id позиций — случайные UUID
+-- и порядка не задают.
+ALTER TABLE order_items ADD COLUMN IF NOT EXISTS line_number INTEGER NOT NULL DEFAULT 0;
+
+-- Старые заказы порядок позиций не хранили — нумеруем по id позиции
+UPDATE order_items i
+SET line_number = s.rn - 1
+FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY order_id ORDER BY id) AS rn
+      FROM order_items) s
+WHERE s.id = i.id;
+
+-- Перезаполнение сводки: первая позиция — line_number = 0 (позиция с наименьшим id),
+-- а не наименьшее наименование, как в V20261018190000
+UPDATE orders o
+SET first_item_name = i.product_name
+FROM order_items i
+WHERE i.order_id = o.id
+  AND i.line_number = 0;
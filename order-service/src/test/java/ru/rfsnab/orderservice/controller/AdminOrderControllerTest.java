@@ -15,8 +15,12 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.RequestPostProcessor;
 import ru.rfsnab.orderservice.BaseIntegrationTest;
+import ru.rfsnab.orderservice.exception.BusinessException;
+import ru.rfsnab.orderservice.models.dto.CursorPage;
+import ru.rfsnab.orderservice.models.dto.order.AdminOrderFilter;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
 import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
@@ -32,6 +36,7 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -65,18 +70,77 @@ class AdminOrderControllerTest extends BaseIntegrationTest {
         @Test
         @DisplayName("200 OK — возвращает страницу заявок для ADMIN")
         void shouldReturnOrdersForAdmin() throws Exception {
-            Order order = buildOrder();
-            when(orderService.getAdminOrders(any(), any(), any(), any(), any(Pageable.class)))
-                    .thenReturn(new PageImpl<>(List.of(order)));
+            when(orderService.getAdminOrders(any(AdminOrderFilter.class), any(Pageable.class)))
+                    .thenReturn(new PageImpl<>(List.of(buildSummary())));
 
             mockMvc.perform(get("/api/v1/admin/orders")
                             .with(jwtAdmin()).with(csrf()))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.content").isArray())
                     .andExpect(jsonPath("$.content[0].orderNumber").value("RF-00001"))
-                    .andExpect(jsonPath("$.content[0].status.code").value("CREATED"));
+                    .andExpect(jsonPath("$.content[0].status.code").value("CREATED"))
+                    .andExpect(jsonPath("$.content[0].itemsCount").value(1))
+                    .andExpect(jsonPath("$.content[0].firstItemName").value("Труба стальная"));
+
+            verify(orderService).getAdminOrders(any(AdminOrderFilter.class), any(Pageable.class));
+        }
+
+        @Test
+        @DisplayName("200 OK — все фильтры передаются в сервис одним AdminOrderFilter")
+        void shouldPassAllFilters() throws Exception {
+            when(orderService.getAdminOrders(any(AdminOrderFilter.class), any(Pageable.class)))
+                    .thenReturn(new PageImpl<>(List.of()));
+
+            mockMvc.perform(get("/api/v1/admin/orders")
+                            .param("status", "CREATED")
+                            .param("inn", "7701234567")
+                            .param("paymentMethod", "INVOICE")
+                            .param("deliveryMethod", "PICKUP")
+                            .param("orderNumber", "RF-0")
+                            .with(jwtAdmin()).with(csrf()))
+                    .andExpect(status().isOk());
+
+            verify(orderService).getAdminOrders(
+                    eq(new AdminOrderFilter(OrderStatus.CREATED, null, "7701234567", null, null,
+                            PaymentMethod.INVOICE, DeliveryMethod.PICKUP, "RF-0")),
+                    any(Pageable.class));
+        }
+    }
+
+    // ==================== GET /api/v1/admin/orders/scroll ====================
+
+    @Nested
+    @DisplayName("GET /api/v1/admin/orders/scroll — прокрутка курсором")
+    class ScrollAdminOrdersTests {
+
+        @Test
+        @DisplayName("200 OK — порция с курсором следующей")
+        void shouldReturnCursorPage() throws Exception {
+            when(orderService.scrollAdminOrders(any(AdminOrderFilter.class), eq("abc"), eq(50), eq(true)))
+                    .thenReturn(new CursorPage<>(List.of(buildSummary()), "next", true, 120L));
+
+            mockMvc.perform(get("/api/v1/admin/orders/scroll")
+                            .param("cursor", "abc")
+                            .param("size", "50")
+                            .param("withTotal", "true")
+                            .with(jwtAdmin()).with(csrf()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].orderNumber").value("RF-00001"))
+                    .andExpect(jsonPath("$.nextCursor").value("next"))
+                    .andExpect(jsonPath("$.hasNext").value(true))
+                    .andExpect(jsonPath("$.totalElements").value(120));
+        }
+
+        @Test
+        @DisplayName("400 Bad Request — некорректный курсор")
+        void shouldReturn400ForMalformedCursor() throws Exception {
+            when(orderService.scrollAdminOrders(any(AdminOrderFilter.class), eq("broken"), eq(20), eq(false)))
+                    .thenThrow(new BusinessException("Некорректный курсор"));
 
-            verify(orderService).getAdminOrders(any(), any(), any(), any(), any(Pageable.class));
+            mockMvc.perform(get("/api/v1/admin/orders/scroll")
+                            .param("cursor", "broken")
+                            .with(jwtAdmin()).with(csrf()))
+                    .andExpect(status().isBadRequest());
         }
 
         @Test
@@ -134,7 +198,7 @@ class AdminOrderControllerTest extends BaseIntegrationTest {
         void shouldChangeStatus() throws Exception {
             Order order = buildOrder();
             order.setStatus(OrderStatus.PROCESSING);
-            when(orderService.updateStatus(eq(ORDER_ID), eq(OrderStatus.PROCESSING))).thenReturn(order);
+            when(orderService.updateStatus(eq(ORDER_ID), eq(OrderStatus.PROCESSING), isNull())).thenReturn(order);
 
             mockMvc.perform(patch("/api/v1/admin/orders/{id}/status", ORDER_ID)
                             .with(jwtAdmin()).with(csrf())
@@ -143,7 +207,24 @@ class AdminOrderControllerTest extends BaseIntegrationTest {
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.status.code").value("PROCESSING"));
 
-            verify(orderService).updateStatus(ORDER_ID, OrderStatus.PROCESSING);
+            verify(orderService).updateStatus(ORDER_ID, OrderStatus.PROCESSING, null);
+        }
+
+        @Test
+        @DisplayName("200 OK — Idempotency-Key передаётся в сервис")
+        void shouldPassIdempotencyKey() throws Exception {
+            Order order = buildOrder();
+            order.setStatus(OrderStatus.PROCESSING);
+            when(orderService.updateStatus(ORDER_ID, OrderStatus.PROCESSING, "req-1")).thenReturn(order);
+
+            mockMvc.perform(patch("/api/v1/admin/orders/{id}/status", ORDER_ID)
+                            .with(jwtAdmin()).with(csrf())
+                            .header("Idempotency-Key", "req-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"status\": \"PROCESSING\"}"))
+                    .andExpect(status().isOk());
+
+            verify(orderService).updateStatus(ORDER_ID, OrderStatus.PROCESSING, "req-1");
         }
 
         @Test
@@ -241,6 +322,22 @@ class AdminOrderControllerTest extends BaseIntegrationTest {
 
     // ==================== Test data builders ====================
 
+    private OrderSummary buildSummary() {
+        return OrderSummary.builder()
+                .id(ORDER_ID)
+                .userId(42L)
+                .orderNumber("RF-00001")
+                .status(OrderStatus.CREATED)
+                .paymentMethod(PaymentMethod.CARD)
+                .deliveryMethod(DeliveryMethod.SUPPLIER_DELIVERY)
+                .totalAmount(new BigDecimal("12000.00"))
+                .itemsCount(1)
+                .firstItemName("Труба стальная")
+                .customerEmail("client@company.ru")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
     private Order buildOrder() {
         Order order = Order.builder()
                 .id(ORDER_ID)
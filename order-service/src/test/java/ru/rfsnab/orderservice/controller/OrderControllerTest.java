@@ -23,6 +23,7 @@ import ru.rfsnab.orderservice.models.dto.payment.PaymentInitiationResponse;
 import ru.rfsnab.orderservice.models.entity.DeliveryAddress;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.WarehousePoint;
 import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
@@ -169,8 +170,18 @@ class OrderControllerTest extends BaseIntegrationTest {
         @Test
         @DisplayName("200 OK — возвращает страницу с заказами")
         void shouldReturnPageOfOrders() throws Exception {
-            Order order = buildDeliveryOrder();
-            Page<Order> page = new PageImpl<>(List.of(order), PageRequest.of(0, 20), 0);
+            OrderSummary summary = OrderSummary.builder()
+                    .id(ORDER_ID)
+                    .userId(USER_ID)
+                    .orderNumber("ABC-00001")
+                    .status(OrderStatus.CREATED)
+                    .totalAmount(new BigDecimal("15000.00"))
+                    .itemsCount(1)
+                    .firstItemName("Доска обрезная")
+                    .customerEmail(USER_EMAIL)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            Page<OrderSummary> page = new PageImpl<>(List.of(summary), PageRequest.of(0, 20), 0);
             when(orderService.getUserOrders(eq(USER_ID), any(Pageable.class)))
                     .thenReturn(page);
 
@@ -180,7 +191,8 @@ class OrderControllerTest extends BaseIntegrationTest {
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.content", hasSize(1)))
                     .andExpect(jsonPath("$.content[0].orderNumber").value("ABC-00001"))
-                    .andExpect(jsonPath("$.content[0].status.code").value("CREATED"));
+                    .andExpect(jsonPath("$.content[0].status.code").value("CREATED"))
+                    .andExpect(jsonPath("$.content[0].firstItemName").value("Доска обрезная"));
         }
 
         @Test
@@ -381,13 +393,14 @@ class OrderControllerTest extends BaseIntegrationTest {
             Order order = buildDeliveryOrder();
             order.setExternalId("РФ-000123");
             order.setStatus(OrderStatus.PROCESSING);
-            when(orderService.syncFrom1C(eq(ORDER_ID), eq("РФ-000123"), eq(OrderStatus.PROCESSING)))
+            when(orderService.syncFrom1C(eq(ORDER_ID), eq("РФ-000123"), eq(OrderStatus.PROCESSING), eq("17")))
                     .thenReturn(order);
 
             String json = """
                 {
                     "externalId": "РФ-000123",
-                    "newStatus": "PROCESSING"
+                    "newStatus": "PROCESSING",
+                    "messageId": "17"
                 }
                 """;
 
@@ -400,7 +413,7 @@ class OrderControllerTest extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.externalId").value("РФ-000123"))
                     .andExpect(jsonPath("$.status.code").value("PROCESSING"));
 
-            verify(orderService).syncFrom1C(ORDER_ID, "РФ-000123", OrderStatus.PROCESSING);
+            verify(orderService).syncFrom1C(ORDER_ID, "РФ-000123", OrderStatus.PROCESSING, "17");
         }
 
         @Test
@@ -0,0 +1,70 @@
+package ru.rfsnab.orderservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import ru.rfsnab.orderservice.models.dto.event.PaymentInitiationReply;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationReply;
+import ru.rfsnab.orderservice.service.CheckoutSagaService;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CheckoutReplyConsumer")
+class CheckoutReplyConsumerTest {
+
+    @Mock
+    private CheckoutSagaService checkoutSaga;
+
+    private CheckoutReplyConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new CheckoutReplyConsumer(new ObjectMapper(), checkoutSaga);
+    }
+
+    @Test
+    @DisplayName("нечитаемый ответ пропускается без повторной доставки")
+    void unparseableReply_Skipped() {
+        consumer.onStockReply(record("not-json"));
+
+        verifyNoInteractions(checkoutSaga);
+    }
+
+    @Test
+    @DisplayName("ответ передаётся саге")
+    void stockReply_PassedToSaga() {
+        UUID orderId = UUID.randomUUID();
+
+        consumer.onStockReply(record("{\"orderId\":\"" + orderId + "\",\"status\":\"RESERVED\"}"));
+
+        verify(checkoutSaga).onStockReply(new StockReservationReply(orderId, "RESERVED", null));
+    }
+
+    @Test
+    @DisplayName("ошибка обработки уходит в error handler контейнера — сообщение будет доставлено повторно")
+    void processingFailure_Propagates() {
+        doThrow(new CannotAcquireLockException("lock timeout")).when(checkoutSaga).onPaymentReply(any());
+
+        assertThatThrownBy(() -> consumer.onPaymentReply(
+                record("{\"orderId\":\"" + UUID.randomUUID() + "\",\"status\":\"CREATED\",\"paymentLink\":\"https://pay\"}")))
+                .isInstanceOf(CannotAcquireLockException.class);
+        verify(checkoutSaga).onPaymentReply(any(PaymentInitiationReply.class));
+    }
+
+    private static ConsumerRecord<String, String> record(String value) {
+        return new ConsumerRecord<>("checkout-replies", 0, 0L, "key", value);
+    }
+}
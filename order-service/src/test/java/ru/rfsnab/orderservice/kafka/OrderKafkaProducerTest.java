@@ -0,0 +1,87 @@
+package ru.rfsnab.orderservice.kafka;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.orderservice.models.dto.event.OrderEvent;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.WarehousePoint;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.repository.WarehousePointRepository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("OrderKafkaProducer")
+class OrderKafkaProducerTest {
+
+    @ParameterizedTest
+    @EnumSource(value = OrderStatus.class, names = {"CREATED", "PAYMENT_FAILED"})
+    @DisplayName("резерв не трогается: CREATED живёт по TTL, после ошибки оплаты заказ можно оплатить повторно")
+    void keepsReservation(OrderStatus status) {
+        assertThat(OrderKafkaProducer.stockAction(status)).isNull();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OrderStatus.class,
+            names = {"PROCESSING", "INVOICE_SENT", "PENDING_PAYMENT", "AWAITING_CONFIRMATION", "PAID", "PARTIALLY_PAID"})
+    void commitsReservation(OrderStatus status) {
+        assertThat(OrderKafkaProducer.stockAction(status)).isEqualTo("COMMIT");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OrderStatus.class, names = {"SHIPPED", "IN_TRANSIT", "DELIVERED", "COMPLETED"})
+    void fulfillsReservation(OrderStatus status) {
+        assertThat(OrderKafkaProducer.stockAction(status)).isEqualTo("FULFILL");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OrderStatus.class, names = {"CANCELLED", "REFUNDED"})
+    void releasesReservation(OrderStatus status) {
+        assertThat(OrderKafkaProducer.stockAction(status)).isEqualTo("RELEASE");
+    }
+
+    @Nested
+    @DisplayName("пункт самовывоза в событии")
+    class PickupPointTests {
+
+        private final OutboxService outboxService = mock(OutboxService.class);
+        private final WarehousePointRepository warehousePointRepository = mock(WarehousePointRepository.class);
+        private final OrderKafkaProducer producer =
+                new OrderKafkaProducer(new KafkaTopicsProperties(), outboxService, warehousePointRepository);
+
+        private Order pickupOrder() {
+            return Order.builder().id(UUID.randomUUID()).orderNumber("RF-00001")
+                    .status(OrderStatus.PROCESSING).warehousePointId(3L).build();
+        }
+
+        @Test
+        @DisplayName("пункт читается из БД один раз на несколько событий")
+        void pickupPointLoadedOnce() {
+            when(warehousePointRepository.findById(3L)).thenReturn(Optional.of(
+                    WarehousePoint.builder().id(3L).name("Склад на Литейном").city("Москва").build()));
+
+            producer.sendOrderCreated(pickupOrder());
+            producer.sendOrderStatusChanged(pickupOrder());
+
+            verify(warehousePointRepository, times(1)).findById(3L);
+            ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+            verify(outboxService, atLeast(2)).enqueue(any(), any(), events.capture());
+            assertThat(events.getAllValues()).filteredOn(OrderEvent.class::isInstance)
+                    .extracting(e -> ((OrderEvent) e).pickupPoint().name())
+                    .containsOnly("Склад на Литейном");
+        }
+    }
+}
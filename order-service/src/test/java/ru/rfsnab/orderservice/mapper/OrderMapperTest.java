@@ -10,6 +10,7 @@ import ru.rfsnab.orderservice.models.dto.order.OrderSummaryDto;
 import ru.rfsnab.orderservice.models.entity.DeliveryAddress;
 import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
 import ru.rfsnab.orderservice.models.entity.WarehousePoint;
 import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
 import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
@@ -93,18 +94,46 @@ class OrderMapperTest {
     class ToSummaryDtoTests {
 
         @Test
-        @DisplayName("маппит Order в OrderSummaryDto")
+        @DisplayName("маппит OrderSummary в OrderSummaryDto")
         void shouldMapToSummaryDto() {
-            Order order = buildDeliveryOrder();
-
-            OrderSummaryDto dto = OrderMapper.toSummaryDto(order);
-
-            assertThat(dto.id()).isEqualTo(order.getId());
+            OrderSummary summary = OrderSummary.builder()
+                    .id(UUID.randomUUID())
+                    .orderNumber("ABC-00001")
+                    .status(OrderStatus.CREATED)
+                    .totalAmount(new BigDecimal("15000.00"))
+                    .itemsCount(3)
+                    .firstItemName("Доска обрезная")
+                    .createdAt(LocalDateTime.now())
+                    .build();
+
+            OrderSummaryDto dto = OrderMapper.toSummaryDto(summary);
+
+            assertThat(dto.id()).isEqualTo(summary.getId());
             assertThat(dto.orderNumber()).isEqualTo("ABC-00001");
             assertThat(dto.status()).isEqualTo(OrderStatus.CREATED);
-            assertThat(dto.itemsCount()).isEqualTo(1);
+            assertThat(dto.itemsCount()).isEqualTo(3);
+            assertThat(dto.firstItemName()).isEqualTo("Доска обрезная");
             assertThat(dto.totalAmount()).isEqualByComparingTo("15000.00");
         }
+
+        @Test
+        @DisplayName("Order.refreshSummary — число позиций и первая позиция из items")
+        void shouldRefreshDenormalizedSummary() {
+            Order order = buildDeliveryOrder();
+            order.getItems().add(OrderItem.builder().order(order).productName("Брус").lineNumber(5).build());
+
+            order.refreshSummary();
+
+            assertThat(order.getItemsCount()).isEqualTo(2);
+            assertThat(order.getFirstItemName()).isEqualTo("Доска обрезная");
+            assertThat(order.getItems()).extracting(OrderItem::getLineNumber).containsExactly(0, 1);
+
+            order.getItems().clear();
+            order.refreshSummary();
+
+            assertThat(order.getItemsCount()).isZero();
+            assertThat(order.getFirstItemName()).isNull();
+        }
     }
 
     @Nested
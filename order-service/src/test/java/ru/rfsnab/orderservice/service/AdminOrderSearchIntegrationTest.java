@@ -0,0 +1,167 @@
+package ru.rfsnab.orderservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.rfsnab.orderservice.BaseServiceIntegrationTest;
+import ru.rfsnab.orderservice.exception.BusinessException;
+import ru.rfsnab.orderservice.models.dto.CursorPage;
+import ru.rfsnab.orderservice.models.dto.order.AdminOrderFilter;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.OrderSummary;
+import ru.rfsnab.orderservice.models.entity.enums.CustomerType;
+import ru.rfsnab.orderservice.models.entity.enums.DeliveryMethod;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
+import ru.rfsnab.orderservice.repository.OrderRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Интеграционные тесты поиска заказов в админке (фильтры + keyset-прокрутка).
+ */
+@DisplayName("OrderService — поиск заказов в админке")
+class AdminOrderSearchIntegrationTest extends BaseServiceIntegrationTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository.deleteAll();
+        save(1L, "AB-00001", OrderStatus.CREATED, PaymentMethod.CARD, DeliveryMethod.PICKUP, null);
+        save(1L, "AB-00002", OrderStatus.PAID, PaymentMethod.SBP, DeliveryMethod.SUPPLIER_DELIVERY, null);
+        save(2L, "CD-00001", OrderStatus.CREATED, PaymentMethod.INVOICE, DeliveryMethod.SUPPLIER_DELIVERY, "7701234567");
+        save(2L, "CD-00002", OrderStatus.CREATED, PaymentMethod.INVOICE, DeliveryMethod.PICKUP, "7701234567");
+        save(3L, "EF-00001", OrderStatus.CANCELLED, PaymentMethod.CARD, DeliveryMethod.PICKUP, null);
+    }
+
+    @Test
+    @DisplayName("фильтры комбинируются через AND")
+    void shouldCombineFilters() {
+        AdminOrderFilter filter = new AdminOrderFilter(OrderStatus.CREATED, null, "7701234567",
+                null, null, PaymentMethod.INVOICE, DeliveryMethod.PICKUP, null);
+
+        Page<OrderSummary> result = orderService.getAdminOrders(filter, PageRequest.of(0, 20, Sort.by("createdAt")));
+
+        assertThat(result.getContent()).extracting(OrderSummary::getOrderNumber).containsExactly("CD-00002");
+    }
+
+    @Test
+    @DisplayName("номер заказа ищется подстрокой без учёта регистра, спецсимволы LIKE экранируются")
+    void shouldMatchOrderNumberSubstring() {
+        Page<OrderSummary> byPrefix = orderService.getAdminOrders(filterByNumber("ab-"), PageRequest.of(0, 20));
+        Page<OrderSummary> wildcard = orderService.getAdminOrders(filterByNumber("%"), PageRequest.of(0, 20));
+
+        assertThat(byPrefix.getContent()).extracting(OrderSummary::getOrderNumber)
+                .containsExactlyInAnyOrder("AB-00001", "AB-00002");
+        assertThat(wildcard.getContent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("прокрутка курсором проходит все заказы без пропусков и дублей")
+    void shouldScrollThroughAllOrders() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<OrderSummary> page = orderService.scrollAdminOrders(AdminOrderFilter.empty(), cursor, 2, false);
+            page.content().forEach(order -> seen.add(order.getOrderNumber()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(5).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("итог по запросу: с фильтром — точный COUNT")
+    void shouldReturnExactTotalForFilter() {
+        AdminOrderFilter filter = new AdminOrderFilter(null, 2L, null, null, null, null, null, null);
+
+        CursorPage<OrderSummary> page = orderService.scrollAdminOrders(filter, null, 1, true);
+
+        assertThat(page.content()).hasSize(1);
+        assertThat(page.hasNext()).isTrue();
+        assertThat(page.totalElements()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("история пользователя — сводка по позициям из денормализованных колонок")
+    void shouldReturnUserHistoryWithItemSummary() {
+        Order order = Order.builder()
+                .userId(3L)
+                .orderNumber("EF-00002")
+                .status(OrderStatus.CREATED)
+                .paymentMethod(PaymentMethod.CARD)
+                .deliveryMethod(DeliveryMethod.PICKUP)
+                .totalAmount(new BigDecimal("1000.00"))
+                .customerEmail("client@company.ru")
+                .customerType(CustomerType.B2C)
+                .build();
+        order.getItems().add(item(order, "Труба стальная"));
+        order.getItems().add(item(order, "Уголок"));
+        orderRepository.save(order);
+
+        Page<OrderSummary> history = orderService.getUserOrders(3L, PageRequest.of(0, 20));
+        Page<OrderSummary> other = orderService.getUserOrders(1L, PageRequest.of(0, 20));
+
+        assertThat(history.getContent())
+                .filteredOn(summary -> summary.getOrderNumber().equals("EF-00002"))
+                .singleElement()
+                .satisfies(summary -> {
+                    assertThat(summary.getItemsCount()).isEqualTo(2);
+                    assertThat(summary.getFirstItemName()).isEqualTo("Труба стальная");
+                });
+        assertThat(history.getContent()).hasSize(2);
+        assertThat(other.getContent()).extracting(OrderSummary::getOrderNumber)
+                .containsExactlyInAnyOrder("AB-00001", "AB-00002");
+    }
+
+    @Test
+    @DisplayName("некорректный курсор — BusinessException")
+    void shouldRejectMalformedCursor() {
+        assertThatThrownBy(() -> orderService.scrollAdminOrders(AdminOrderFilter.empty(), "not-a-cursor", 20, false))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    private static AdminOrderFilter filterByNumber(String orderNumber) {
+        return new AdminOrderFilter(null, null, null, null, null, null, null, orderNumber);
+    }
+
+    private static OrderItem item(Order order, String productName) {
+        return OrderItem.builder()
+                .order(order)
+                .productId(1L)
+                .productName(productName)
+                .quantity(1)
+                .price(new BigDecimal("500.00"))
+                .build();
+    }
+
+    private void save(Long userId, String orderNumber, OrderStatus status, PaymentMethod paymentMethod,
+                      DeliveryMethod deliveryMethod, String inn) {
+        orderRepository.save(Order.builder()
+                .userId(userId)
+                .orderNumber(orderNumber)
+                .status(status)
+                .paymentMethod(paymentMethod)
+                .deliveryMethod(deliveryMethod)
+                .totalAmount(new BigDecimal("1000.00"))
+                .customerEmail("client@company.ru")
+                .customerType(inn == null ? CustomerType.B2C : CustomerType.B2B)
+                .inn(inn)
+                .build());
+    }
+}
@@ -17,10 +17,14 @@ import ru.rfsnab.orderservice.repository.CartRedisRepository;
 import ru.rfsnab.orderservice.repository.CartRepository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -74,8 +78,8 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @Test
         @DisplayName("возвращает корзину из Redis")
         void shouldReturnCartFromRedis() {
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_2, 5);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_2, 5, Map::of);
 
             Cart cart = cartService.getCart(USER_ID);
 
@@ -151,7 +155,7 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @DisplayName("увеличивает количество существующего товара")
         void shouldIncrementExistingItemQuantity() {
             mockProduct(PRODUCT_ID_1, "Доска", "1500.00", 100, "ext-001");
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
 
             Cart cart = cartService.addItemToCart(USER_ID, PRODUCT_ID_1, 5);
 
@@ -178,6 +182,39 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
             assertThat(cart.getItems()).hasSize(2);
         }
 
+        @Test
+        @DisplayName("параллельные добавления одного товара не теряются (двойной клик)")
+        void shouldNotLoseConcurrentIncrements() throws Exception {
+            mockProduct(PRODUCT_ID_1, "Доска", "1500.00", 100, "ext-001");
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 1, Map::of);
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+                List<Future<Cart>> results = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    results.add(executor.submit(() -> cartService.addItemToCart(USER_ID, PRODUCT_ID_1, 1)));
+                }
+                for (Future<Cart> result : results) {
+                    result.get();
+                }
+            }
+
+            assertThat(cartRedisRepository.getCart(USER_ID)).containsEntry(PRODUCT_ID_1, 21);
+        }
+
+        @Test
+        @DisplayName("восстановление из БД и добавление — с сохранением количества из БД и TTL")
+        void shouldRestoreAndIncrementInOneCall() {
+            mockProduct(PRODUCT_ID_1, "Доска", "1500.00", 100, "ext-001");
+            Cart dbCart = Cart.builder().userId(USER_ID).build();
+            dbCart.getItems().add(CartItem.builder().cart(dbCart).productId(PRODUCT_ID_1).quantity(3).build());
+            cartRepository.save(dbCart);
+
+            Cart cart = cartService.addItemToCart(USER_ID, PRODUCT_ID_1, 2);
+
+            assertThat(cart.getItems().getFirst().getQuantity()).isEqualTo(5);
+            assertThat(cartRedisRepository.getTtl(USER_ID)).isPositive();
+        }
+
         @Test
         @DisplayName("бросает ProductNotFoundException для неактивного товара")
         void shouldThrowWhenProductInactive() {
@@ -219,7 +256,7 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @DisplayName("обновляет количество товара")
         void shouldUpdateQuantity() {
             mockProduct(PRODUCT_ID_1, "Доска", "1500.00", 100, "ext-001");
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
 
             Cart cart = cartService.updateItemQuantity(USER_ID, PRODUCT_ID_1, 20);
 
@@ -230,7 +267,7 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @Test
         @DisplayName("quantity=0 удаляет товар из корзины")
         void shouldRemoveItemWhenQuantityZero() {
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
 
             Cart cart = cartService.updateItemQuantity(USER_ID, PRODUCT_ID_1, 0);
 
@@ -248,8 +285,8 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @Test
         @DisplayName("удаляет товар, оставляя другие")
         void shouldRemoveSpecificItem() {
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_2, 5);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_2, 5, Map::of);
 
             Cart cart = cartService.removeItem(USER_ID, PRODUCT_ID_1);
 
@@ -268,7 +305,7 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @DisplayName("очищает Redis и PostgreSQL")
         void shouldClearBothRedisAndDatabase() {
             // Данные в Redis
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
             // Данные в PostgreSQL
             Cart dbCart = Cart.builder().userId(USER_ID).build();
             CartItem item = CartItem.builder()
@@ -292,8 +329,8 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
         @Test
         @DisplayName("сохраняет корзину из Redis в PostgreSQL и очищает Redis")
         void shouldPersistCartAndClearRedis() {
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_1, 10);
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_2, 5);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_1, 10, Map::of);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_2, 5, Map::of);
 
             cartService.saveCartToDB(USER_ID);
 
@@ -316,7 +353,7 @@ class CartServiceIntegrationTest extends BaseServiceIntegrationTest {
             cartRepository.save(dbCart);
 
             // Новая корзина в Redis
-            cartRedisRepository.addItem(USER_ID, PRODUCT_ID_2, 7);
+            cartRedisRepository.updateItemQuantity(USER_ID, PRODUCT_ID_2, 7, Map::of);
 
             cartService.saveCartToDB(USER_ID);
 
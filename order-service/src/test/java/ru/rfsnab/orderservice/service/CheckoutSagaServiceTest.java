@@ -0,0 +1,471 @@
+package ru.rfsnab.orderservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
+import ru.rfsnab.orderservice.kafka.KafkaTopicsProperties;
+import ru.rfsnab.orderservice.kafka.OrderKafkaProducer;
+import ru.rfsnab.orderservice.models.dto.event.InitiatePaymentCommand;
+import ru.rfsnab.orderservice.models.dto.event.PaymentInitiationReply;
+import ru.rfsnab.orderservice.models.dto.event.ReserveStockCommand;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationEvent;
+import ru.rfsnab.orderservice.models.dto.event.StockReservationReply;
+import ru.rfsnab.orderservice.models.dto.payment.PaymentMethodSettingsDto;
+import ru.rfsnab.orderservice.models.entity.CheckoutSaga;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderItem;
+import ru.rfsnab.orderservice.models.entity.enums.CheckoutSagaStatus;
+import ru.rfsnab.orderservice.models.entity.enums.CustomerType;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.models.entity.enums.PaymentMethod;
+import ru.rfsnab.orderservice.repository.CheckoutSagaRepository;
+import ru.rfsnab.orderservice.repository.OrderRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CheckoutSagaService")
+class CheckoutSagaServiceTest {
+
+    private static final UUID ORDER_ID = UUID.randomUUID();
+    private static final Long USER_ID = 7L;
+
+    @Mock private CheckoutSagaRepository sagaRepository;
+    @Mock private OrderRepository orderRepository;
+    @Mock private CartService cartService;
+    @Mock private OutboxService outboxService;
+    @Mock private OrderKafkaProducer kafkaProducer;
+    @Mock private OrderStatusTransitionService statusTransitions;
+    @Mock private PaymentMethodSettingsService paymentMethodSettingsService;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    private CheckoutSagaService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        KafkaTopicsProperties topics = new KafkaTopicsProperties();
+        topics.setOrderStockEvents("order-stock-events");
+        topics.setCheckoutStockCommands("checkout-stock-commands");
+        topics.setCheckoutPaymentCommands("checkout-payment-commands");
+        service = new CheckoutSagaService(sagaRepository, orderRepository, cartService, outboxService,
+                kafkaProducer, statusTransitions, topics, paymentMethodSettingsService, transactionTemplate,
+                true, Duration.ofSeconds(30), Duration.ofSeconds(30));
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+        lenient().doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private static Order order(OrderStatus status, CustomerType customerType, PaymentMethod paymentMethod) {
+        Order order = Order.builder()
+                .id(ORDER_ID)
+                .userId(USER_ID)
+                .orderNumber("RF-00001")
+                .status(status)
+                .customerType(customerType)
+                .paymentMethod(paymentMethod)
+                .totalAmount(new BigDecimal("300.00"))
+                .customerEmail("buyer@test.com")
+                .items(new ArrayList<>())
+                .build();
+        order.getItems().add(OrderItem.builder().order(order).productId(1L).quantity(2).build());
+        order.getItems().add(OrderItem.builder().order(order).productId(1L).quantity(1).build());
+        order.getItems().add(OrderItem.builder().order(order).productId(2L).quantity(5).build());
+        return order;
+    }
+
+    private static CheckoutSaga saga(CheckoutSagaStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        return CheckoutSaga.builder()
+                .orderId(ORDER_ID)
+                .status(status)
+                .deadline(now.plusSeconds(30))
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    private void givenSaga(CheckoutSaga saga) {
+        when(sagaRepository.findForUpdate(ORDER_ID)).thenReturn(Optional.of(saga));
+    }
+
+    private void givenOrder(Order order) {
+        when(orderRepository.findWithItemsById(ORDER_ID)).thenReturn(Optional.of(order));
+    }
+
+    /** Движок статусов отменяет заказ: читает его загрузчиком саги и публикует событие, если статус сменился. */
+    private void givenCancellationApplies() {
+        givenCancellationApplies("saga:" + ORDER_ID + ":cancel");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenCancellationApplies(String idempotencyKey) {
+        when(statusTransitions.transition(any(), eq(OrderStatus.CANCELLED),
+                eq(OrderStatusTransitionService.Source.SAGA), eq(idempotencyKey), any()))
+                .thenAnswer(inv -> {
+                    Order order = ((Supplier<Order>) inv.getArgument(0)).get();
+                    if (order.getStatus() != OrderStatus.CANCELLED) {
+                        order.setStatus(OrderStatus.CANCELLED);
+                        ((Consumer<Order>) inv.getArgument(4)).accept(order);
+                    }
+                    return order;
+                });
+    }
+
+    @Test
+    @DisplayName("start — сага STOCK_PENDING и команда резерва со схлопнутыми позициями в outbox")
+    void start_SavesSagaAndEnqueuesReserveCommand() {
+        when(sagaRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        service.start(order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.CARD));
+
+        ArgumentCaptor<CheckoutSaga> sagaCaptor = ArgumentCaptor.forClass(CheckoutSaga.class);
+        verify(sagaRepository).save(sagaCaptor.capture());
+        assertThat(sagaCaptor.getValue().getStatus()).isEqualTo(CheckoutSagaStatus.STOCK_PENDING);
+
+        ArgumentCaptor<ReserveStockCommand> commandCaptor = ArgumentCaptor.forClass(ReserveStockCommand.class);
+        verify(outboxService).enqueue(eq("checkout-stock-commands"), eq(ORDER_ID.toString()), commandCaptor.capture());
+        assertThat(commandCaptor.getValue().lines()).containsExactlyInAnyOrder(
+                new ReserveStockCommand.Line(1L, 3), new ReserveStockCommand.Line(2L, 5));
+        assertThat(commandCaptor.getValue().deadline()).isEqualTo(sagaCaptor.getValue().getDeadline());
+    }
+
+    @Nested
+    @DisplayName("Ответ product-service")
+    class StockReplyTests {
+
+        @Test
+        @DisplayName("RESERVED, онлайн-оплата B2C — корзина очищается, команда на ссылку оплаты")
+        void reserved_OnlinePayment_RequestsPaymentLink() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            Order order = order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.SBP);
+            givenSaga(saga);
+            givenOrder(order);
+            when(paymentMethodSettingsService.getSettings()).thenReturn(new PaymentMethodSettingsDto(true, true));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "RESERVED", null));
+
+            verify(cartService).clearCart(USER_ID);
+            verify(kafkaProducer).sendOrderCreated(order);
+            ArgumentCaptor<InitiatePaymentCommand> captor = ArgumentCaptor.forClass(InitiatePaymentCommand.class);
+            verify(outboxService).enqueue(eq("checkout-payment-commands"), eq(ORDER_ID.toString()), captor.capture());
+            assertThat(captor.getValue().paymentMode()).isEqualTo("SBP");
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.PAYMENT_PENDING);
+        }
+
+        @Test
+        @DisplayName("RESERVED, B2B — оформление завершено без платёжного шага")
+        void reserved_B2B_Completes() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            givenSaga(saga);
+            givenOrder(order(OrderStatus.CREATED, CustomerType.B2B, PaymentMethod.INVOICE));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "RESERVED", null));
+
+            verify(cartService).clearCart(USER_ID);
+            verify(outboxService, never()).enqueue(anyString(), anyString(), any());
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+        }
+
+        @Test
+        @DisplayName("REJECTED — компенсация движком статусов: заказ отменён, корзина не тронута")
+        void rejected_CancelsOrderKeepsCart() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            Order order = order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.CARD);
+            givenSaga(saga);
+            givenOrder(order);
+            givenCancellationApplies();
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "REJECTED", "Недостаточно товара"));
+
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            verify(kafkaProducer).sendOrderCancelled(order);
+            verify(orderRepository, never()).save(any());
+            verify(outboxService, never()).enqueue(anyString(), anyString(), any());
+            verifyNoInteractions(cartService);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+            assertThat(saga.getFailureReason()).isEqualTo("Недостаточно товара");
+        }
+
+        @Test
+        @DisplayName("RESERVED, а клиент уже отменил заказ — резерв возвращается")
+        void reserved_OrderCancelledMeanwhile_ReleasesStock() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            givenSaga(saga);
+            givenOrder(order(OrderStatus.CANCELLED, CustomerType.B2C, PaymentMethod.CARD));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "RESERVED", null));
+
+            verify(outboxService).enqueue("order-stock-events", ORDER_ID.toString(),
+                    new StockReservationEvent(ORDER_ID, "RELEASE"));
+            verifyNoInteractions(cartService);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+        }
+
+        @Test
+        @DisplayName("REJECTED, а клиент уже отменил заказ — сага закрывается, RELEASE повторяется")
+        void rejected_OrderAlreadyCancelled_ReleasesStock() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            givenSaga(saga);
+            givenOrder(order(OrderStatus.CANCELLED, CustomerType.B2C, PaymentMethod.CARD));
+            givenCancellationApplies();
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "REJECTED", "Недостаточно товара"));
+
+            verify(kafkaProducer, never()).sendOrderCancelled(any());
+            verify(outboxService).enqueue("order-stock-events", ORDER_ID.toString(),
+                    new StockReservationEvent(ORDER_ID, "RELEASE"));
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+        }
+
+        @Test
+        @DisplayName("повторная доставка ответа — сага уже на следующем шаге, ничего не делается")
+        void duplicateReply_Ignored() {
+            givenSaga(saga(CheckoutSagaStatus.COMPLETED));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "RESERVED", null));
+
+            verifyNoInteractions(orderRepository, cartService, kafkaProducer, outboxService);
+        }
+
+        @Test
+        @DisplayName("RESERVED после компенсации по таймауту — резерв возвращается")
+        void lateReservation_AfterTimeout_ReleasesStock() {
+            givenSaga(saga(CheckoutSagaStatus.FAILED));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "RESERVED", null));
+
+            verify(outboxService).enqueue("order-stock-events", ORDER_ID.toString(),
+                    new StockReservationEvent(ORDER_ID, "RELEASE"));
+            verifyNoInteractions(orderRepository, cartService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Потеря резерва")
+    class StockHoldLostTests {
+
+        @Test
+        @DisplayName("EXPIRED неподтверждённого заказа — заказ отменяется, сага закрывается с причиной")
+        void expired_CreatedOrder_Cancelled() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.COMPLETED);
+            saga.setPaymentLink("https://pay/link");
+            Order order = order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.CARD);
+            givenSaga(saga);
+            givenOrder(order);
+            givenCancellationApplies("saga:" + ORDER_ID + ":stock-expired");
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "EXPIRED", "Резерв снят"));
+
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            verify(kafkaProducer).sendOrderCancelled(order);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+            assertThat(saga.getFailureReason()).isEqualTo("Резерв снят");
+            assertThat(saga.getPaymentLink()).isNull();
+        }
+
+        @Test
+        @DisplayName("EXPIRED уже подтверждённого заказа — не отменяется: COMMIT восстановит резерв")
+        void expired_ConfirmedOrder_Ignored() {
+            Order order = order(OrderStatus.PROCESSING, CustomerType.B2B, PaymentMethod.INVOICE);
+            givenOrder(order);
+            givenCancellationApplies("saga:" + ORDER_ID + ":stock-expired");
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "EXPIRED", "Резерв снят"));
+
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.PROCESSING);
+            verify(kafkaProducer, never()).sendOrderCancelled(any());
+            verify(sagaRepository, never()).findForUpdate(any());
+        }
+
+        @Test
+        @DisplayName("LOST оплаченного заказа — отменить нельзя, сага закрывается, ответ не падает")
+        void lost_PaidOrder_SagaFailed() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.COMPLETED);
+            givenSaga(saga);
+            when(statusTransitions.transition(any(), eq(OrderStatus.CANCELLED),
+                    eq(OrderStatusTransitionService.Source.SAGA), eq("saga:" + ORDER_ID + ":stock-lost"), any()))
+                    .thenThrow(new InvalidOrderStateException("Недопустимый переход: Оплачен → Отменён"));
+
+            service.onStockReply(new StockReservationReply(ORDER_ID, "LOST", "Товара уже не хватает"));
+
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+            assertThat(saga.getFailureReason()).isEqualTo("Товара уже не хватает");
+        }
+    }
+
+    @Nested
+    @DisplayName("Ответ payment-service")
+    class PaymentReplyTests {
+
+        @Test
+        @DisplayName("CREATED — ссылка сохраняется, оформление завершено")
+        void created_StoresLink() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.PAYMENT_PENDING);
+            givenSaga(saga);
+
+            service.onPaymentReply(new PaymentInitiationReply(ORDER_ID, "CREATED", "https://pay/link", null));
+
+            assertThat(saga.getPaymentLink()).isEqualTo("https://pay/link");
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+        }
+
+        @Test
+        @DisplayName("FAILED — заказ не отменяется, ссылка будет запрошена при оплате")
+        void failed_CompletesWithoutLink() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.PAYMENT_PENDING);
+            givenSaga(saga);
+
+            service.onPaymentReply(new PaymentInitiationReply(ORDER_ID, "FAILED", null, "Tochka API unavailable"));
+
+            assertThat(saga.getPaymentLink()).isNull();
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+            verifyNoInteractions(orderRepository, kafkaProducer);
+        }
+    }
+
+    @Nested
+    @DisplayName("Редактирование заказа")
+    class DiscardPreparedPaymentTests {
+
+        @Test
+        @DisplayName("подготовленная ссылка забывается — pay() запросит оплату на новую сумму")
+        void completed_ClearsLink() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.COMPLETED);
+            saga.setPaymentLink("https://pay/old-amount");
+            givenSaga(saga);
+
+            service.discardPreparedPayment(ORDER_ID);
+
+            assertThat(saga.getPaymentLink()).isNull();
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+        }
+
+        @Test
+        @DisplayName("ссылка ещё готовится — поздний ответ payment-service игнорируется")
+        void paymentPending_LateReplyIgnored() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.PAYMENT_PENDING);
+            givenSaga(saga);
+
+            service.discardPreparedPayment(ORDER_ID);
+            service.onPaymentReply(new PaymentInitiationReply(ORDER_ID, "CREATED", "https://pay/old-amount", null));
+
+            assertThat(saga.getPaymentLink()).isNull();
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+        }
+    }
+
+    @Nested
+    @DisplayName("Таймауты")
+    class TimeoutTests {
+
+        @Test
+        @DisplayName("резерв не пришёл до deadline — заказ отменяется")
+        void stockTimeout_CancelsOrder() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.STOCK_PENDING);
+            saga.setDeadline(LocalDateTime.now().minusSeconds(1));
+            Order order = order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.CARD);
+            givenSaga(saga);
+            givenOrder(order);
+            givenCancellationApplies();
+
+            service.expire(ORDER_ID);
+
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            verify(kafkaProducer).sendOrderCancelled(order);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+            assertThat(saga.getFailureReason()).isEqualTo(CheckoutSagaService.STOCK_TIMEOUT_REASON);
+        }
+
+        @Test
+        @DisplayName("компенсация прервана до закрытия саги — таймаут повторяет её с тем же ключом")
+        void interruptedCompensation_Retried() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.COMPENSATING);
+            saga.setFailureReason("Недостаточно товара");
+            saga.setDeadline(LocalDateTime.now().minusSeconds(1));
+            Order order = order(OrderStatus.CREATED, CustomerType.B2C, PaymentMethod.CARD);
+            givenSaga(saga);
+            givenOrder(order);
+            givenCancellationApplies();
+
+            service.expire(ORDER_ID);
+
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            verify(kafkaProducer).sendOrderCancelled(order);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+            assertThat(saga.getFailureReason()).isEqualTo("Недостаточно товара");
+        }
+
+        @Test
+        @DisplayName("ссылка на оплату не пришла до deadline — оформление завершено без неё")
+        void paymentTimeout_Completes() {
+            CheckoutSaga saga = saga(CheckoutSagaStatus.PAYMENT_PENDING);
+            saga.setDeadline(LocalDateTime.now().minusSeconds(1));
+            givenSaga(saga);
+
+            service.expire(ORDER_ID);
+
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+            verifyNoInteractions(orderRepository, kafkaProducer);
+        }
+
+        @Test
+        @DisplayName("ответ успел до таймаута другой реплики — таймаут ничего не делает")
+        void deadlineNotReached_NoOp() {
+            givenSaga(saga(CheckoutSagaStatus.STOCK_PENDING));
+
+            service.expire(ORDER_ID);
+
+            verifyNoInteractions(orderRepository, kafkaProducer, outboxService);
+        }
+    }
+
+    @Test
+    @DisplayName("подтверждение заказа до резерва — InvalidOrderStateException")
+    void requireStockReserved_StockPending_Throws() {
+        when(sagaRepository.findById(ORDER_ID)).thenReturn(Optional.of(saga(CheckoutSagaStatus.STOCK_PENDING)));
+
+        assertThatThrownBy(() -> service.requireStockReserved(ORDER_ID))
+                .isInstanceOf(InvalidOrderStateException.class);
+    }
+
+    @Test
+    @DisplayName("заказ без саги (синхронное оформление) — проверку проходит")
+    void requireStockReserved_NoSaga_Passes() {
+        when(sagaRepository.findById(ORDER_ID)).thenReturn(Optional.empty());
+
+        service.requireStockReserved(ORDER_ID);
+    }
+}
@@ -7,7 +7,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.rfsnab.orderservice.exception.InvalidDocumentException;
 import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
 import ru.rfsnab.orderservice.exception.OrderDocumentNotFoundException;
@@ -16,16 +19,23 @@ import ru.rfsnab.orderservice.models.entity.Order;
 import ru.rfsnab.orderservice.models.entity.OrderDocument;
 import ru.rfsnab.orderservice.models.entity.enums.OrderDocumentType;
 import ru.rfsnab.orderservice.repository.OrderDocumentRepository;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -47,6 +57,9 @@ class OrderDocumentServiceTest {
     @Mock
     private OrderKafkaProducer kafkaProducer;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     private OrderDocumentService orderDocumentService;
 
     private static final UUID ORDER_ID = UUID.randomUUID();
@@ -57,7 +70,7 @@ class OrderDocumentServiceTest {
     @BeforeEach
     void setUp() {
         orderDocumentService = new OrderDocumentService(
-                orderDocumentRepository, orderDocumentStorage, orderService, kafkaProducer);
+                orderDocumentRepository, orderDocumentStorage, orderService, kafkaProducer, transactionTemplate);
     }
 
     private Order buildOrder() {
@@ -127,6 +140,145 @@ class OrderDocumentServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Прямая загрузка в хранилище")
+    class DirectUploadTests {
+
+        @BeforeEach
+        @SuppressWarnings("unchecked")
+        void runCompletionInTransaction() {
+            lenient().when(transactionTemplate.execute(any())).thenAnswer(
+                    inv -> ((TransactionCallback<OrderDocument>) inv.getArgument(0)).doInTransaction(null));
+        }
+
+        private OrderDocumentStorage.PresignedRequest presigned() throws Exception {
+            return new OrderDocumentStorage.PresignedRequest(
+                    URI.create("https://storage.example/bucket/key?X-Amz-Signature=abc").toURL(),
+                    Map.of("Content-Type", "application/pdf"), Instant.now().plusSeconds(900));
+        }
+
+        @Test
+        @DisplayName("requestUpload выдаёт ключ в каталоге заказа и подписанную ссылку, в БД ничего не пишет")
+        void shouldIssuePresignedUploadWithoutPersisting() throws Exception {
+            when(orderService.getOrder(ORDER_ID)).thenReturn(buildOrder());
+            when(orderDocumentStorage.presignUpload(anyString(), eq("application/pdf"), eq(1024L)))
+                    .thenReturn(presigned());
+
+            OrderDocumentService.UploadTicket ticket =
+                    orderDocumentService.requestUpload(ORDER_ID, "../docs/invoice 1.pdf", "application/pdf", 1024L);
+
+            assertThat(ticket.fileKey()).startsWith("orders/" + ORDER_ID + "/").endsWith("_invoice_1.pdf");
+            verify(orderDocumentRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("requestUpload отклоняет Content-Type, не соответствующий расширению")
+        void shouldRejectMismatchedContentType() {
+            assertThatThrownBy(() -> orderDocumentService.requestUpload(
+                    ORDER_ID, "invoice.pdf", "text/html", 1024L))
+                    .isInstanceOf(InvalidDocumentException.class);
+
+            verify(orderDocumentStorage, never()).presignUpload(anyString(), any(), anyLong());
+        }
+
+        @Test
+        @DisplayName("requestUpload отклоняет файл больше 20 МБ до выдачи ссылки")
+        void shouldRejectOversizedUploadRequest() {
+            assertThatThrownBy(() -> orderDocumentService.requestUpload(
+                    ORDER_ID, "scan.pdf", "application/pdf", 21L * 1024 * 1024))
+                    .isInstanceOf(InvalidDocumentException.class);
+
+            verify(orderDocumentStorage, never()).presignUpload(anyString(), any(), anyLong());
+        }
+
+        @Test
+        @DisplayName("completeUpload записывает документ по метаданным объекта в хранилище")
+        void shouldRecordDocumentFromStoredObject() {
+            Order order = buildOrder();
+            String fileKey = "orders/" + ORDER_ID + "/" + UUID.randomUUID() + "_invoice.pdf";
+            when(orderService.getOrder(ORDER_ID)).thenReturn(order);
+            when(orderDocumentRepository.findByFileKey(fileKey)).thenReturn(Optional.empty());
+            when(orderDocumentStorage.head(fileKey)).thenReturn(Optional.of(HeadObjectResponse.builder()
+                    .contentLength(2048L).contentType("application/pdf").build()));
+            when(orderDocumentRepository.saveAndFlush(any(OrderDocument.class)))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+
+            OrderDocument result = orderDocumentService.completeUpload(
+                    ORDER_ID, OrderDocumentType.INVOICE, fileKey, ADMIN_USER_ID);
+
+            assertThat(result.getOriginalFileName()).isEqualTo("invoice.pdf");
+            assertThat(result.getSizeBytes()).isEqualTo(2048L);
+            assertThat(result.getContentType()).isEqualTo("application/pdf");
+            verify(kafkaProducer).sendOrderDocumentAdded(
+                    eq(order), eq(OrderDocumentType.INVOICE.getDisplayName()), eq("invoice.pdf"));
+        }
+
+        @Test
+        @DisplayName("completeUpload повторно с тем же ключом возвращает уже записанный документ")
+        void shouldBeIdempotentOnRepeatedCompletion() {
+            String fileKey = "orders/" + ORDER_ID + "/" + UUID.randomUUID() + "_invoice.pdf";
+            OrderDocument existing = OrderDocument.builder().id(UUID.randomUUID()).fileKey(fileKey).build();
+            when(orderService.getOrder(ORDER_ID)).thenReturn(buildOrder());
+            when(orderDocumentRepository.findByFileKey(fileKey)).thenReturn(Optional.of(existing));
+
+            OrderDocument result = orderDocumentService.completeUpload(
+                    ORDER_ID, OrderDocumentType.INVOICE, fileKey, ADMIN_USER_ID);
+
+            assertThat(result).isSameAs(existing);
+            verify(orderDocumentStorage, never()).head(anyString());
+            verify(kafkaProducer, never()).sendOrderDocumentAdded(any(), anyString(), anyString());
+        }
+
+        @Test
+        @DisplayName("completeUpload параллельно с тем же ключом возвращает документ, записанный первым")
+        void shouldReturnWinnerOnConcurrentCompletion() {
+            String fileKey = "orders/" + ORDER_ID + "/" + UUID.randomUUID() + "_invoice.pdf";
+            OrderDocument winner = OrderDocument.builder().id(UUID.randomUUID()).fileKey(fileKey).build();
+            when(orderService.getOrder(ORDER_ID)).thenReturn(buildOrder());
+            when(orderDocumentRepository.findByFileKey(fileKey))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(winner));
+            when(orderDocumentStorage.head(fileKey)).thenReturn(Optional.of(HeadObjectResponse.builder()
+                    .contentLength(2048L).contentType("application/pdf").build()));
+            when(orderDocumentRepository.saveAndFlush(any(OrderDocument.class)))
+                    .thenThrow(new DataIntegrityViolationException("uq_order_documents_file_key"));
+
+            OrderDocument result = orderDocumentService.completeUpload(
+                    ORDER_ID, OrderDocumentType.INVOICE, fileKey, ADMIN_USER_ID);
+
+            assertThat(result).isSameAs(winner);
+            verify(kafkaProducer, never()).sendOrderDocumentAdded(any(), anyString(), anyString());
+        }
+
+        @Test
+        @DisplayName("completeUpload отклоняет ключ из каталога другого заказа")
+        void shouldRejectForeignFileKey() {
+            when(orderService.getOrder(ORDER_ID)).thenReturn(buildOrder());
+            String foreignKey = "orders/" + UUID.randomUUID() + "/" + UUID.randomUUID() + "_invoice.pdf";
+
+            assertThatThrownBy(() -> orderDocumentService.completeUpload(
+                    ORDER_ID, OrderDocumentType.INVOICE, foreignKey, ADMIN_USER_ID))
+                    .isInstanceOf(InvalidDocumentException.class);
+
+            verify(orderDocumentRepository, never()).saveAndFlush(any());
+        }
+
+        @Test
+        @DisplayName("completeUpload без объекта в хранилище — InvalidDocumentException")
+        void shouldRejectCompletionWhenObjectMissing() {
+            String fileKey = "orders/" + ORDER_ID + "/" + UUID.randomUUID() + "_invoice.pdf";
+            when(orderService.getOrder(ORDER_ID)).thenReturn(buildOrder());
+            when(orderDocumentRepository.findByFileKey(fileKey)).thenReturn(Optional.empty());
+            when(orderDocumentStorage.head(fileKey)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> orderDocumentService.completeUpload(
+                    ORDER_ID, OrderDocumentType.INVOICE, fileKey, ADMIN_USER_ID))
+                    .isInstanceOf(InvalidDocumentException.class);
+
+            verify(orderDocumentRepository, never()).saveAndFlush(any());
+        }
+    }
+
     @Nested
     @DisplayName("Доступ к чужому заказу")
     class OwnershipTests {
@@ -158,6 +310,18 @@ class OrderDocumentServiceTest {
             verify(orderDocumentStorage, never()).downloadStream(anyString());
         }
 
+        @Test
+        @DisplayName("downloadUrlForUser с чужим заказом приводит к 404, ссылка не подписывается")
+        void shouldDenyDownloadUrlForUserOnForeignOrder() {
+            when(orderService.getOrderByIdAndUser(ORDER_ID, OTHER_USER_ID))
+                    .thenThrow(new InvalidOrderStateException("Нет доступа к заказу: " + ORDER_ID));
+
+            assertThatThrownBy(() -> orderDocumentService.downloadUrlForUser(ORDER_ID, UUID.randomUUID(), OTHER_USER_ID))
+                    .isInstanceOf(OrderDocumentNotFoundException.class);
+
+            verify(orderDocumentStorage, never()).presignDownload(anyString(), anyString(), any());
+        }
+
         @Test
         @DisplayName("listForUser для владельца возвращает документы заказа")
         void shouldReturnDocumentsForOwner() {
@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import ru.rfsnab.orderservice.BaseServiceIntegrationTest;
 import ru.rfsnab.orderservice.exception.CartEmptyException;
+import ru.rfsnab.orderservice.exception.InsufficientStockException;
 import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
 import ru.rfsnab.orderservice.exception.ProfileIncompleteException;
 import ru.rfsnab.orderservice.models.dto.event.OrderEvent;
@@ -42,8 +43,12 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -187,6 +192,52 @@ class OrderServiceIntegrationTest extends BaseServiceIntegrationTest {
             assertThat(order.getPickupRecipientPhone()).isEqualTo("+79001112233");
         }
 
+        @Test
+        @DisplayName("номер заказа берётся из счётчика пользователя и не повторяется после удаления заказов")
+        void shouldAllocateOrderNumberFromUserCounter() {
+            Order first = createTestOrder();
+            orderRepository.deleteAll();
+
+            Order second = createTestOrder();
+
+            String prefix = first.getOrderNumber().substring(0, first.getOrderNumber().indexOf('-'));
+            assertThat(second.getOrderNumber()).startsWith(prefix + "-");
+            assertThat(second.getOrderNumber()).isNotEqualTo(first.getOrderNumber());
+            assertThat(Long.parseLong(second.getOrderNumber().substring(prefix.length() + 1)))
+                    .isEqualTo(Long.parseLong(first.getOrderNumber().substring(prefix.length() + 1)) + 1);
+        }
+
+        @Test
+        @DisplayName("резервирует остатки всех позиций заказа в product-service")
+        void shouldReserveStockForOrder() {
+            addItemsToCart();
+
+            CreateOrderRequest request = new CreateOrderRequest(
+                    PaymentMethod.CARD, DeliveryMethod.SUPPLIER_DELIVERY,
+                    buildAddressDto(), null, null, null, null, null, null, null, null);
+
+            Order order = orderService.createOrder(USER_ID, USER_EMAIL, "B2C", request);
+
+            verify(productServiceClient).reserveStock(order.getId(), Map.of(PRODUCT_ID_1, 10, PRODUCT_ID_2, 10));
+        }
+
+        @Test
+        @DisplayName("нехватка при резерве: заказ не создаётся, корзина сохраняется")
+        void shouldKeepCartWhenReservationFails() {
+            addItemsToCart();
+            doThrow(new InsufficientStockException("Недостаточно товара на складе"))
+                    .when(productServiceClient).reserveStock(any(), anyMap());
+
+            CreateOrderRequest request = new CreateOrderRequest(
+                    PaymentMethod.CARD, DeliveryMethod.SUPPLIER_DELIVERY,
+                    buildAddressDto(), null, null, null, null, null, null, null, null);
+
+            assertThatThrownBy(() -> orderService.createOrder(USER_ID, USER_EMAIL, "B2C", request))
+                    .isInstanceOf(InsufficientStockException.class);
+            assertThat(orderRepository.findAll()).isEmpty();
+            assertThat(cartService.getCart(USER_ID).getItems()).hasSize(2);
+        }
+
         @Test
         @DisplayName("выбрасывает CartEmptyException при пустой корзине")
         void shouldThrowWhenCartEmpty() {
@@ -734,7 +785,7 @@ class OrderServiceIntegrationTest extends BaseServiceIntegrationTest {
             assertThat(order.getExternalId()).isNull();
 
             // Первый ответ от 1С: присваивает свой номер + ставит "В обработке"
-            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING);
+            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "1");
 
             assertThat(synced.getExternalId()).isEqualTo("РФ-000123");
             assertThat(synced.getStatus()).isEqualTo(OrderStatus.PROCESSING);
@@ -749,22 +800,50 @@ class OrderServiceIntegrationTest extends BaseServiceIntegrationTest {
         @DisplayName("обновляет статус при повторной синхронизации")
         void shouldUpdateStatusOnReSync() {
             Order order = createTestOrder();
-            orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING);
+            orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "1");
 
             // Повторный вызов: 1С обновила статус
-            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.SHIPPED);
+            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.SHIPPED, "2");
 
             assertThat(synced.getStatus()).isEqualTo(OrderStatus.SHIPPED);
             assertThat(synced.getExternalId()).isEqualTo("РФ-000123");
         }
 
+        @Test
+        @DisplayName("повторная выгрузка того же документа не откатывает более свежий статус")
+        void shouldIgnoreStaleResendOfSameDocument() {
+            Order order = createTestOrder();
+            orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "1");
+            orderService.updateStatus(order.getId(), OrderStatus.INVOICE_SENT);
+
+            // Следующий обмен: 1С снова прислала ту же версию документа со старым статусом
+            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "1");
+
+            assertThat(synced.getStatus()).isEqualTo(OrderStatus.INVOICE_SENT);
+            assertThat(orderRepository.findById(order.getId()).orElseThrow().getStatus())
+                    .isEqualTo(OrderStatus.INVOICE_SENT);
+        }
+
+        @Test
+        @DisplayName("новая версия документа возвращает заказ в уже бывший статус")
+        void shouldApplyNewVersionWithPreviouslySeenStatus() {
+            Order order = createTestOrder();
+            orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "1");
+            orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.INVOICE_SENT, "2");
+
+            // В 1С счёт отозвали: документ снова "В работе", но это новая версия
+            Order synced = orderService.syncFrom1C(order.getId(), "РФ-000123", OrderStatus.PROCESSING, "3");
+
+            assertThat(synced.getStatus()).isEqualTo(OrderStatus.PROCESSING);
+        }
+
         @Test
         @DisplayName("выбрасывает исключение для несуществующего заказа")
         void shouldThrowForNonExistentOrder() {
             UUID fakeId = UUID.randomUUID();
 
             assertThatThrownBy(() ->
-                    orderService.syncFrom1C(fakeId, "РФ-000999", OrderStatus.PROCESSING))
+                    orderService.syncFrom1C(fakeId, "РФ-000999", OrderStatus.PROCESSING, "1"))
                     .isInstanceOf(Exception.class);
         }
     }
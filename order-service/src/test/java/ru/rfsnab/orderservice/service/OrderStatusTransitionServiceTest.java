@@ -0,0 +1,177 @@
+package ru.rfsnab.orderservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.rfsnab.orderservice.exception.IdempotencyKeyConflictException;
+import ru.rfsnab.orderservice.exception.InvalidOrderStateException;
+import ru.rfsnab.orderservice.models.entity.Order;
+import ru.rfsnab.orderservice.models.entity.OrderStatusCommand;
+import ru.rfsnab.orderservice.models.entity.enums.OrderStatus;
+import ru.rfsnab.orderservice.repository.OrderRepository;
+import ru.rfsnab.orderservice.repository.OrderStatusCommandRepository;
+import ru.rfsnab.orderservice.service.OrderStatusTransitionService.Source;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderStatusTransitionService")
+class OrderStatusTransitionServiceTest {
+
+    private static final UUID ORDER_ID = UUID.randomUUID();
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderStatusCommandRepository commandRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OrderStatusTransitionService service;
+    private final List<Order> published = new ArrayList<>();
+    private final Consumer<Order> onChanged = published::add;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new OrderStatusTransitionService(orderRepository, commandRepository, transactionTemplate);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<Order>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    private static Order order(OrderStatus status) {
+        return Order.builder().id(ORDER_ID).orderNumber("RF-00001").status(status).build();
+    }
+
+    @Test
+    @DisplayName("допустимый переход сохраняется и публикует событие")
+    void transition_Allowed_SavesAndPublishes() {
+        when(orderRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        Order result = service.transition(() -> order(OrderStatus.PENDING_PAYMENT), OrderStatus.PAID,
+                Source.PAYMENT, null, onChanged);
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.PAID);
+        assertThat(published).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("переход в текущий статус — без событий")
+    void transition_SameStatus_NoEvents() {
+        when(orderRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        service.transition(() -> order(OrderStatus.PAID), OrderStatus.PAID, Source.PAYMENT, null, onChanged);
+
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    @DisplayName("повтор команды с тем же ключом — заказ не меняется")
+    void transition_DuplicateKey_Skipped() {
+        when(commandRepository.claim("payment:p1:APPROVED", ORDER_ID)).thenReturn(0);
+        when(commandRepository.findById("payment:p1:APPROVED")).thenReturn(Optional.of(
+                new OrderStatusCommand("payment:p1:APPROVED", ORDER_ID, LocalDateTime.now())));
+
+        Order result = service.transition(() -> order(OrderStatus.PENDING_PAYMENT), OrderStatus.PAID,
+                Source.PAYMENT, "payment:p1:APPROVED", onChanged);
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.PENDING_PAYMENT);
+        assertThat(published).isEmpty();
+        verify(orderRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("ключ уже занят другим заказом — конфликт, заказ не меняется")
+    void transition_KeyOfAnotherOrder_Conflict() {
+        when(commandRepository.claim("admin:req-1", ORDER_ID)).thenReturn(0);
+        when(commandRepository.findById("admin:req-1")).thenReturn(Optional.of(
+                new OrderStatusCommand("admin:req-1", UUID.randomUUID(), LocalDateTime.now())));
+
+        assertThatThrownBy(() -> service.transition(() -> order(OrderStatus.CREATED), OrderStatus.PROCESSING,
+                Source.ADMIN, "admin:req-1", onChanged))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+        assertThat(published).isEmpty();
+        verify(orderRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("конфликт версий — заказ перечитывается и команда применяется заново")
+    void transition_VersionConflict_Retries() {
+        when(orderRepository.saveAndFlush(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Order.class, ORDER_ID))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        Order result = service.transition(() -> order(OrderStatus.SHIPPED), OrderStatus.DELIVERED,
+                Source.ADMIN, null, onChanged);
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.DELIVERED);
+        verify(transactionTemplate, times(2)).execute(any());
+        assertThat(published).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("конфликт на каждой попытке — исключение после MAX_ATTEMPTS")
+    void transition_PersistentConflict_Throws() {
+        when(orderRepository.saveAndFlush(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Order.class, ORDER_ID));
+
+        assertThatThrownBy(() -> service.transition(() -> order(OrderStatus.SHIPPED), OrderStatus.DELIVERED,
+                Source.ADMIN, null, onChanged))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(transactionTemplate, times(OrderStatusTransitionService.MAX_ATTEMPTS)).execute(any());
+    }
+
+    @Test
+    @DisplayName("недопустимый переход от платежа отклоняется")
+    void transition_InvalidForPayment_Throws() {
+        assertThatThrownBy(() -> service.transition(() -> order(OrderStatus.CANCELLED), OrderStatus.PAID,
+                Source.PAYMENT, null, onChanged))
+                .isInstanceOf(InvalidOrderStateException.class);
+        verify(orderRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("1С применяет статус в обход графа переходов")
+    void transition_OneC_BypassesGraph() {
+        when(orderRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        Order result = service.transition(() -> order(OrderStatus.PROCESSING), OrderStatus.SHIPPED,
+                Source.ONE_C, null, onChanged);
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.SHIPPED);
+    }
+
+    @Test
+    @DisplayName("чистка ключей команд идёт пачками, пока есть что удалять")
+    void purgeProcessedCommands_DeletesInBatches() {
+        when(commandRepository.deleteProcessedBefore(any(), eq(OrderStatusTransitionService.PURGE_BATCH_SIZE)))
+                .thenReturn(OrderStatusTransitionService.PURGE_BATCH_SIZE, 7, 0);
+
+        service.purgeProcessedCommands();
+
+        verify(commandRepository, times(3)).deleteProcessedBefore(any(), eq(OrderStatusTransitionService.PURGE_BATCH_SIZE));
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+}
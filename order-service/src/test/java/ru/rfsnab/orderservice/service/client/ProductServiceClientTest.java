@@ -0,0 +1,145 @@
+package ru.rfsnab.orderservice.service.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import ru.rfsnab.common.http.VirtualThreadFanOut;
+import ru.rfsnab.orderservice.exception.InsufficientStockException;
+import ru.rfsnab.orderservice.exception.ServiceUnavailableException;
+import ru.rfsnab.orderservice.models.dto.product.ProductDto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductServiceClient")
+class ProductServiceClientTest {
+
+    private static final String PRODUCT_SERVICE_URL = "http://localhost:8083";
+    private static final String SNAPSHOT_URL = PRODUCT_SERVICE_URL + "/api/v1/products/stock-snapshot";
+    private static final String INTERNAL_SECRET = "test-secret";
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private ProductServiceClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new ProductServiceClient(restTemplate, new VirtualThreadFanOut(), PRODUCT_SERVICE_URL, INTERNAL_SECRET);
+    }
+
+    private static ProductDto product(long id) {
+        return new ProductDto(id, "Товар " + id, new BigDecimal("100.00"), null, 5, true,
+                null, "ART-" + id, "шт", null, null);
+    }
+
+    /** Отвечает снимками ровно тех id, что пришли в теле запроса. */
+    private void answerWithRequestedIds() {
+        when(restTemplate.postForObject(eq(SNAPSHOT_URL), any(HttpEntity.class), eq(ProductDto[].class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<List<Long>> entity = invocation.getArgument(1);
+                    return entity.getBody().stream().map(ProductServiceClientTest::product).toArray(ProductDto[]::new);
+                });
+    }
+
+    @Test
+    @DisplayName("getProducts — вся корзина одним запросом с X-Internal-Token")
+    void getProducts_singleRequestWithInternalToken() {
+        when(restTemplate.postForObject(eq(SNAPSHOT_URL), any(HttpEntity.class), eq(ProductDto[].class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<List<Long>> entity = invocation.getArgument(1);
+                    assertThat(entity.getHeaders().getFirst("X-Internal-Token")).isEqualTo(INTERNAL_SECRET);
+                    assertThat(entity.getBody()).containsExactlyInAnyOrder(1L, 2L, 3L);
+                    // товара 3 в каталоге нет — его просто нет в ответе
+                    return new ProductDto[]{product(1L), product(2L)};
+                });
+
+        Map<Long, ProductDto> products = client.getProducts(Set.of(1L, 2L, 3L));
+
+        assertThat(products).containsOnlyKeys(1L, 2L);
+        verify(restTemplate, times(1)).postForObject(eq(SNAPSHOT_URL), any(HttpEntity.class), eq(ProductDto[].class));
+    }
+
+    @Test
+    @DisplayName("getProducts — корзина больше лимита product-service делится на пачки")
+    void getProducts_largeCart_splitIntoBatches() {
+        answerWithRequestedIds();
+        Set<Long> ids = LongStream.rangeClosed(1, ProductServiceClient.SNAPSHOT_BATCH_SIZE + 1)
+                .boxed().collect(Collectors.toSet());
+
+        Map<Long, ProductDto> products = client.getProducts(ids);
+
+        assertThat(products).hasSize(ids.size());
+        verify(restTemplate, times(2)).postForObject(eq(SNAPSHOT_URL), any(HttpEntity.class), eq(ProductDto[].class));
+    }
+
+    @Test
+    @DisplayName("getProducts — пустой набор id не ходит в product-service")
+    void getProducts_empty_noRequest() {
+        assertThat(client.getProducts(Set.of())).isEmpty();
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    @DisplayName("getProducts — product-service недоступен → ServiceUnavailableException")
+    void getProducts_serviceUnavailable_throwsServiceUnavailable() {
+        when(restTemplate.postForObject(eq(SNAPSHOT_URL), any(HttpEntity.class), eq(ProductDto[].class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        assertThatThrownBy(() -> client.getProducts(Set.of(1L)))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    @DisplayName("reserveStock — 409 от product-service → InsufficientStockException с его сообщением")
+    void reserveStock_conflict_throwsInsufficientStock() {
+        UUID orderId = UUID.randomUUID();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = "{\"message\":\"Недостаточно товара на складе: товар 1\"}".getBytes(StandardCharsets.UTF_8);
+        when(restTemplate.exchange(any(String.class), eq(HttpMethod.PUT), any(HttpEntity.class), eq(Void.class), eq(orderId)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", headers, body, StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> client.reserveStock(orderId, Map.of(1L, 5)))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("товар 1");
+    }
+
+    @Test
+    @DisplayName("reserveStock — product-service недоступен → ServiceUnavailableException")
+    void reserveStock_serviceUnavailable_throwsServiceUnavailable() {
+        UUID orderId = UUID.randomUUID();
+        when(restTemplate.exchange(any(String.class), eq(HttpMethod.PUT), any(HttpEntity.class), eq(Void.class), eq(orderId)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        assertThatThrownBy(() -> client.reserveStock(orderId, Map.of(1L, 5)))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+}
@@ -0,0 +1,114 @@
+package ru.rfsnab.orderservice.service.client;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.rfsnab.orderservice.exception.ServiceUnavailableException;
+import ru.rfsnab.orderservice.models.dto.user.ProfileCompletenessDto;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ProfileCompletenessCache")
+class ProfileCompletenessCacheTest {
+
+    private static final Long USER_ID = 1L;
+    private static final ProfileCompletenessDto COMPLETE = new ProfileCompletenessDto(true, List.of());
+    private static final ProfileCompletenessDto INCOMPLETE = new ProfileCompletenessDto(false, List.of("Телефон"));
+
+    private static Supplier<ProfileCompletenessDto> counting(AtomicInteger loads, ProfileCompletenessDto dto) {
+        return () -> {
+            loads.incrementAndGet();
+            return dto;
+        };
+    }
+
+    private static Supplier<ProfileCompletenessDto> unavailable() {
+        return () -> {
+            throw new ServiceUnavailableException("User service unavailable");
+        };
+    }
+
+    @Test
+    @DisplayName("заполненный профиль в пределах ttl — без повторного запроса")
+    void get_Complete_ServedFromCache() {
+        ProfileCompletenessCache cache = new ProfileCompletenessCache(60, 10, 30, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(USER_ID, counting(loads, COMPLETE));
+        ProfileCompletenessDto result = cache.get(USER_ID, counting(loads, COMPLETE));
+
+        assertThat(result.complete()).isTrue();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("негативный кэш: незаполненный профиль кэшируется на negative-ttl")
+    void get_Incomplete_CachedForNegativeTtl() {
+        ProfileCompletenessCache cached = new ProfileCompletenessCache(60, 10, 30, 100);
+        ProfileCompletenessCache expired = new ProfileCompletenessCache(60, 0, 30, 100);
+        AtomicInteger cachedLoads = new AtomicInteger();
+        AtomicInteger expiredLoads = new AtomicInteger();
+
+        cached.get(USER_ID, counting(cachedLoads, INCOMPLETE));
+        cached.get(USER_ID, counting(cachedLoads, INCOMPLETE));
+        expired.get(USER_ID, counting(expiredLoads, INCOMPLETE));
+        expired.get(USER_ID, counting(expiredLoads, INCOMPLETE));
+
+        assertThat(cachedLoads).hasValue(1);
+        assertThat(expiredLoads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("evict — следующий запрос идёт в user-service")
+    void evict_ReloadsProfile() {
+        ProfileCompletenessCache cache = new ProfileCompletenessCache(60, 10, 30, 100);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(USER_ID, counting(loads, INCOMPLETE));
+
+        cache.evict(USER_ID);
+        ProfileCompletenessDto result = cache.get(USER_ID, counting(loads, COMPLETE));
+
+        assertThat(result.complete()).isTrue();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("evict во время запроса — ответ в кэш не кладётся")
+    void get_EvictedWhileLoading_ResultNotCached() {
+        ProfileCompletenessCache cache = new ProfileCompletenessCache(60, 10, 30, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(USER_ID, () -> {
+            loads.incrementAndGet();
+            cache.evict(USER_ID);
+            return INCOMPLETE;
+        });
+        cache.get(USER_ID, counting(loads, COMPLETE));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("user-service недоступен — устаревший заполненный профиль обслуживается из кэша")
+    void get_ServiceUnavailable_ServesStaleCompleteProfile() {
+        ProfileCompletenessCache cache = new ProfileCompletenessCache(0, 0, 30, 100);
+        cache.get(USER_ID, () -> COMPLETE);
+
+        ProfileCompletenessDto result = cache.get(USER_ID, unavailable());
+
+        assertThat(result.complete()).isTrue();
+    }
+
+    @Test
+    @DisplayName("user-service недоступен и профиль не проверен — ServiceUnavailableException (fail-closed)")
+    void get_ServiceUnavailable_NoCompleteEntry_Throws() {
+        ProfileCompletenessCache cache = new ProfileCompletenessCache(0, 0, 30, 100);
+
+        assertThatThrownBy(() -> cache.get(USER_ID, unavailable()))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+}
@@ -21,6 +21,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,7 +40,8 @@ class UserServiceClientTest {
 
     @BeforeEach
     void setUp() {
-        client = new UserServiceClient(restTemplate, USER_SERVICE_URL, INTERNAL_SECRET);
+        client = new UserServiceClient(restTemplate, new ProfileCompletenessCache(60, 10, 30, 100),
+                USER_SERVICE_URL, INTERNAL_SECRET);
     }
 
     @Test
@@ -120,4 +123,27 @@ class UserServiceClientTest {
 
         client.getProfileCompleteness(USER_ID);
     }
+
+    @Test
+    @DisplayName("requireCompleteProfile — повторная проверка обслуживается из кэша без запроса в user-service")
+    void requireCompleteProfile_repeated_servedFromCache() {
+        ProfileCompletenessDto dto = new ProfileCompletenessDto(true, List.of());
+        when(restTemplate.exchange(
+                eq(USER_SERVICE_URL + "/v1/users/{id}/profile-completeness"),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                eq(ProfileCompletenessDto.class),
+                eq(USER_ID)
+        )).thenReturn(ResponseEntity.ok(dto));
+
+        client.requireCompleteProfile(USER_ID);
+        client.requireCompleteProfile(USER_ID);
+
+        verify(restTemplate, times(1)).exchange(
+                eq(USER_SERVICE_URL + "/v1/users/{id}/profile-completeness"),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                eq(ProfileCompletenessDto.class),
+                eq(USER_ID));
+    }
 }
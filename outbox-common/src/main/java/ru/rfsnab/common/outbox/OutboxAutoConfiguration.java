@@ -0,0 +1,107 @@
+package ru.rfsnab.common.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.flywaydb.core.api.Location;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.apache.kafka.clients.producer.ProducerConfig.*;
+
+/**
+ * Transactional outbox для Kafka-событий сервиса.
+ * <p>
+ * Сервис пишет событие через {@link OutboxService} в своей транзакции, {@link OutboxRelay}
+ * перекладывает таблицу outbox_events в Kafka транзакционным продюсером. Сущность и репозиторий
+ * регистрируются пакетом этой автоконфигурации, миграция таблицы (classpath:db/outbox)
+ * добавляется к локациям Flyway сервиса. Планировщик включает сам сервис (@EnableScheduling).
+ */
+@AutoConfiguration(before = {HibernateJpaAutoConfiguration.class, FlywayAutoConfiguration.class},
+        after = KafkaAutoConfiguration.class)
+@AutoConfigurationPackage
+@ConditionalOnClass({KafkaTemplate.class, TransactionTemplate.class})
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxAutoConfiguration {
+
+    static final String MIGRATION_LOCATION = "classpath:db/outbox";
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboxService outboxService(OutboxEventRepository outboxEventRepository) {
+        // Тот же маппер, что у JsonSerializer продюсера: формат сообщений как при прямой отправке
+        return new OutboxService(outboxEventRepository, JacksonUtils.enhancedObjectMapper());
+    }
+
+    /**
+     * Продюсер релея: payload уже сериализован в JSON при записи в outbox.
+     * Транзакционный — пачка событий уходит одной транзакцией Kafka.
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "outboxProducerFactory")
+    public ProducerFactory<String, String> outboxProducerFactory(KafkaProperties kafkaProperties,
+                                                                 OutboxProperties properties) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(BOOTSTRAP_SERVERS_CONFIG, kafkaProperties.getBootstrapServers());
+        config.put(ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ACKS_CONFIG, "all");
+        config.put(LINGER_MS_CONFIG, properties.getLingerMs());
+
+        DefaultKafkaProducerFactory<String, String> factory =
+                new DefaultKafkaProducerFactory<>(config, new StringSerializer(), new StringSerializer());
+        factory.setTransactionIdPrefix(properties.getTransactionIdPrefix());
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "outboxKafkaTemplate")
+    public KafkaTemplate<String, String> outboxKafkaTemplate(
+            @Qualifier("outboxProducerFactory") ProducerFactory<String, String> outboxProducerFactory) {
+        return new KafkaTemplate<>(outboxProducerFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+    public OutboxRelay outboxRelay(OutboxEventRepository outboxEventRepository,
+                                   @Qualifier("outboxKafkaTemplate") KafkaTemplate<String, String> outboxKafkaTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   OutboxProperties properties) {
+        return new OutboxRelay(outboxEventRepository, outboxKafkaTemplate, transactionTemplate, meterRegistry,
+                properties.getRelay().getBatchSize());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.flywaydb.core.Flyway")
+    static class OutboxFlywayConfiguration {
+
+        @Bean
+        public FlywayConfigurationCustomizer outboxFlywayLocation() {
+            return configuration -> configuration.locations(Stream.concat(
+                            Stream.of(configuration.getLocations()),
+                            Stream.of(new Location(MIGRATION_LOCATION)))
+                    .toArray(Location[]::new));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.rfsnab.common.outbox;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Событие, ожидающее отправки в Kafka (transactional outbox).
+ * Пишется в той же транзакции, что и изменение сущности сервиса (заказа, платежа, пользователя);
+ * отправляет и удаляет его OutboxRelay.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String topic;
+
+    @Column(name = "message_key", length = 100)
+    private String messageKey;
+
+    /** Готовое JSON-тело сообщения — в Kafka уходит как есть. */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,25 @@
+package ru.rfsnab.common.outbox;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Очередная пачка в порядке записи. Строки блокируются до конца транзакции релея:
+     * релей другой реплики ждёт, а не забирает следующие события, — порядок событий
+     * одной сущности сохраняется.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OutboxEvent e ORDER BY e.id ASC")
+    List<OutboxEvent> findBatch(Pageable pageable);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -0,0 +1,36 @@
+package ru.rfsnab.common.outbox;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки transactional outbox (app.outbox.*).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.outbox")
+public class OutboxProperties {
+
+    /** Префикс transactional.id продюсера релея — уникален для реплики (HOSTNAME пода). */
+    private String transactionIdPrefix = "outbox-";
+
+    /** linger.ms продюсера релея: 0 — пачка уходит сразу. */
+    private int lingerMs = 0;
+
+    private Relay relay = new Relay();
+
+    @Getter
+    @Setter
+    public static class Relay {
+
+        /** false — события копятся в outbox_events (тесты без Kafka). */
+        private boolean enabled = true;
+
+        /** Пауза между циклами релея; читается в @Scheduled как app.outbox.relay.interval-ms. */
+        private long intervalMs = 500;
+
+        /** Событий в одной транзакции Kafka. */
+        private int batchSize = 200;
+    }
+}
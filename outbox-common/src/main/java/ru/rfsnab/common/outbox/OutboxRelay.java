@@ -0,0 +1,92 @@
+package ru.rfsnab.common.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Перекладывает события из outbox в Kafka пачками.
+ *
+ * Пачка читается под блокировкой строк и уходит одной транзакцией Kafka-продюсера;
+ * строки удаляются в той же транзакции БД только после коммита в Kafka. Упавшая отправка
+ * откатывает обе транзакции — пачка уйдёт на следующем цикле. Падение между коммитом Kafka
+ * и коммитом БД даёт повтор пачки, поэтому потребители должны быть идемпотентны.
+ *
+ * Метрики: outbox.pending — неотправленные события, outbox.lag — возраст самого старого
+ * из них в секундах, outbox.published — отправленные события.
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> outboxKafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter published;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, String> outboxKafkaTemplate,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       int batchSize) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxKafkaTemplate = outboxKafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        Gauge.builder("outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("outbox.lag", lagSeconds, AtomicLong::get).baseUnit("seconds").register(meterRegistry);
+        this.published = Counter.builder("outbox.published").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.interval-ms:500}")
+    public void relay() {
+        try {
+            Integer sent;
+            do {
+                sent = transactionTemplate.execute(status -> publishBatch());
+            } while (sent != null && sent == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed, batch will be retried: {}", e.getMessage(), e);
+        } finally {
+            refreshLag();
+        }
+    }
+
+    int publishBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findBatch(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        outboxKafkaTemplate.executeInTransaction(operations -> {
+            batch.forEach(event -> operations.send(event.getTopic(), event.getMessageKey(), event.getPayload()));
+            return null;
+        });
+        outboxEventRepository.deleteAllInBatch(batch);
+        published.increment(batch.size());
+        log.debug("Outbox relay: published {} events", batch.size());
+        return batch.size();
+    }
+
+    private void refreshLag() {
+        try {
+            pending.set(outboxEventRepository.count());
+            LocalDateTime oldest = outboxEventRepository.findOldestCreatedAt();
+            lagSeconds.set(oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toSeconds());
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh outbox lag: {}", e.getMessage());
+        }
+    }
+}
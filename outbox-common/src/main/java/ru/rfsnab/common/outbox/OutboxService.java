@@ -0,0 +1,34 @@
+package ru.rfsnab.common.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись событий в outbox вместо прямой отправки в Kafka.
+ * Событие сохраняется в транзакции вызывающего метода: откат изменения откатывает и событие,
+ * а закоммиченное событие гарантированно уйдёт в Kafka (OutboxRelay), даже если узел упадёт.
+ */
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional
+    public void enqueue(String topic, String key, Object event) {
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .messageKey(key)
+                    .payload(objectMapper.writeValueAsString(event))
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие для " + topic, e);
+        }
+    }
+}
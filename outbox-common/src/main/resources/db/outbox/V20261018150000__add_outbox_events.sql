@@ -0,0 +1,9 @@
+-- Transactional outbox: события пишутся в одной транзакции с изменением сущности сервиса
+-- и отправляются в Kafka релеем (OutboxRelay), отправленные строки удаляются
+CREATE TABLE outbox_events (
+    id          BIGSERIAL PRIMARY KEY,
+    topic       VARCHAR(100) NOT NULL,
+    message_key VARCHAR(100),
+    payload     TEXT NOT NULL,
+    created_at  TIMESTAMP NOT NULL
+);
@@ -0,0 +1,107 @@
+package ru.rfsnab.common.outbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OutboxRelay")
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate, transactionTemplate, meterRegistry, 2);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<Integer>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void kafkaCommits() {
+        when(kafkaTemplate.executeInTransaction(any()))
+                .thenAnswer(inv -> ((KafkaOperations.OperationsCallback<String, String, Object>) inv.getArgument(0))
+                        .doInOperations(kafkaTemplate));
+    }
+
+    private static OutboxEvent event(long id) {
+        return OutboxEvent.builder()
+                .id(id).topic("order-events").messageKey("order-" + id)
+                .payload("{\"id\":" + id + "}").createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("пачка уходит одной транзакцией Kafka и удаляется; полная пачка — читаем следующую")
+    void relay_PublishesBatchesUntilShortOne() {
+        kafkaCommits();
+        List<OutboxEvent> first = List.of(event(1), event(2));
+        List<OutboxEvent> second = List.of(event(3));
+        when(outboxEventRepository.findBatch(any())).thenReturn(first, second);
+
+        relay.relay();
+
+        verify(kafkaTemplate, times(2)).executeInTransaction(any());
+        verify(kafkaTemplate).send("order-events", "order-1", "{\"id\":1}");
+        verify(kafkaTemplate).send("order-events", "order-3", "{\"id\":3}");
+        verify(outboxEventRepository).deleteAllInBatch(first);
+        verify(outboxEventRepository).deleteAllInBatch(second);
+        assertThat(meterRegistry.counter("outbox.published").count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("ошибка Kafka — строки не удаляются, lag обновляется")
+    void relay_KafkaFailure_KeepsEvents() {
+        when(outboxEventRepository.findBatch(any())).thenReturn(List.of(event(1)));
+        when(kafkaTemplate.executeInTransaction(any())).thenThrow(new KafkaException("broker down"));
+        when(outboxEventRepository.count()).thenReturn(1L);
+        when(outboxEventRepository.findOldestCreatedAt()).thenReturn(LocalDateTime.now().minusSeconds(30));
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).deleteAllInBatch(any());
+        assertThat(meterRegistry.get("outbox.pending").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("outbox.lag").gauge().value()).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("пустой outbox — в Kafka ничего не отправляется")
+    void relay_Empty_NoKafkaTransaction() {
+        when(outboxEventRepository.findBatch(any())).thenReturn(List.of());
+
+        relay.relay();
+
+        verify(kafkaTemplate, never()).executeInTransaction(any());
+    }
+}
@@ -9,6 +9,9 @@ import org.springframework.kafka.config.TopicBuilder;
 public class KafkaConfig {
 
     public static final String PAYMENT_PROCESSED_TOPIC = "payment.processed";
+    /** Сага оформления order-service: команды на создание платежа и ответы на них. */
+    public static final String CHECKOUT_PAYMENT_COMMANDS_TOPIC = "checkout-payment-commands";
+    public static final String CHECKOUT_PAYMENT_REPLIES_TOPIC = "checkout-payment-replies";
 
     @Bean
     public NewTopic paymentProcessedTopic() {
@@ -17,4 +20,20 @@ public class KafkaConfig {
                 .replicas(1)
                 .build();
     }
+
+    @Bean
+    public NewTopic checkoutPaymentCommandsTopic() {
+        return TopicBuilder.name(CHECKOUT_PAYMENT_COMMANDS_TOPIC)
+                .partitions(1)
+                .replicas(1)
+                .build();
+    }
+
+    @Bean
+    public NewTopic checkoutPaymentRepliesTopic() {
+        return TopicBuilder.name(CHECKOUT_PAYMENT_REPLIES_TOPIC)
+                .partitions(1)
+                .replicas(1)
+                .build();
+    }
 }
@@ -0,0 +1,53 @@
+package ru.rfsnab.paymentservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.paymentservice.config.KafkaConfig;
+import ru.rfsnab.paymentservice.exception.TochkaApiException;
+import ru.rfsnab.paymentservice.models.dto.PaymentResponse;
+import ru.rfsnab.paymentservice.models.dto.event.InitiatePaymentCommand;
+import ru.rfsnab.paymentservice.models.dto.event.PaymentInitiationReply;
+import ru.rfsnab.paymentservice.service.PaymentService;
+
+/**
+ * Команды саги оформления order-service: создать платёж и ответить ссылкой на оплату.
+ * createPayment идемпотентен (возвращает действующий PENDING-платёж заказа), поэтому
+ * повторная доставка команды даёт тот же ответ, а не второй платёж в Точке.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutPaymentCommandConsumer {
+
+    private static final ObjectMapper MAPPER = JacksonUtils.enhancedObjectMapper();
+
+    private final PaymentService paymentService;
+    private final OutboxService outboxService;
+
+    @KafkaListener(
+            topics = KafkaConfig.CHECKOUT_PAYMENT_COMMANDS_TOPIC,
+            groupId = "${app.kafka.consumer.checkout-group-id}"
+    )
+    public void onInitiatePaymentCommand(ConsumerRecord<String, String> record) throws JsonProcessingException {
+        InitiatePaymentCommand command = MAPPER.readValue(record.value(), InitiatePaymentCommand.class);
+        log.info("InitiatePaymentCommand received: orderId={}, mode={}", command.orderId(), command.paymentMode());
+
+        PaymentInitiationReply reply;
+        try {
+            PaymentResponse payment = paymentService.createPayment(command.toRequest());
+            reply = PaymentInitiationReply.created(command.orderId(), payment.paymentLink());
+        } catch (TochkaApiException e) {
+            // Заказ от этого не отменяется: order-service запросит ссылку синхронно при оплате
+            log.warn("Payment not prepared for checkout: orderId={}: {}", command.orderId(), e.getMessage());
+            reply = PaymentInitiationReply.failed(command.orderId(), e.getMessage());
+        }
+        outboxService.enqueue(KafkaConfig.CHECKOUT_PAYMENT_REPLIES_TOPIC, command.orderId().toString(), reply);
+    }
+}
@@ -2,8 +2,8 @@ package ru.rfsnab.paymentservice.kafka;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import ru.rfsnab.common.outbox.OutboxService;
 import ru.rfsnab.paymentservice.config.KafkaConfig;
 import ru.rfsnab.paymentservice.models.dto.event.PaymentEvent;
 import ru.rfsnab.paymentservice.models.entity.Payment;
@@ -11,12 +11,16 @@ import ru.rfsnab.paymentservice.models.entity.enums.PaymentStatus;
 
 import java.time.LocalDateTime;
 
+/**
+ * События платежей для order-service. Пишутся в outbox в транзакции изменения платежа
+ * и уходят в Kafka релеем (OutboxRelay).
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class PaymentKafkaProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
 
     public void sendPaymentEvent(Payment payment, PaymentStatus status) {
         PaymentEvent event = new PaymentEvent(
@@ -26,9 +30,10 @@ public class PaymentKafkaProducer {
                 payment.getAmount(),
                 payment.getPaymentMode(),
                 payment.getCustomerEmail(),
-                LocalDateTime.now()
+                LocalDateTime.now(),
+                payment.getId()
         );
-        kafkaTemplate.send(KafkaConfig.PAYMENT_PROCESSED_TOPIC, payment.getOrderId().toString(), event);
-        log.info("PaymentEvent sent: orderId={}, status={}", payment.getOrderId(), status);
+        outboxService.enqueue(KafkaConfig.PAYMENT_PROCESSED_TOPIC, payment.getOrderId().toString(), event);
+        log.info("PaymentEvent queued: orderId={}, status={}", payment.getOrderId(), status);
     }
 }
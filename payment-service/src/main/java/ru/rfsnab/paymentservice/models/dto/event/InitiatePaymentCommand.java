@@ -0,0 +1,24 @@
+package ru.rfsnab.paymentservice.models.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import ru.rfsnab.paymentservice.models.dto.CreatePaymentRequest;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Команда саги оформления order-service: заранее создать платёж, чтобы ссылка на оплату
+ * была готова к моменту, когда клиент нажмёт «Оплатить».
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record InitiatePaymentCommand(
+        UUID orderId,
+        BigDecimal amount,
+        String orderNumber,
+        String customerEmail,
+        String paymentMode
+) {
+    public CreatePaymentRequest toRequest() {
+        return new CreatePaymentRequest(orderId, amount, orderNumber, customerEmail, paymentMode);
+    }
+}
@@ -14,5 +14,6 @@ public record PaymentEvent(
         BigDecimal amount,
         PaymentMode paymentMode,
         String customerEmail,
-        LocalDateTime timestamp
+        LocalDateTime timestamp,
+        UUID paymentId          // ключ идемпотентности смены статуса заказа в order-service
 ) {}
@@ -0,0 +1,19 @@
+package ru.rfsnab.paymentservice.models.dto.event;
+
+import java.util.UUID;
+
+/**
+ * Ответ на InitiatePaymentCommand для order-service.
+ *
+ * @param status CREATED — платёж создан, paymentLink заполнен; FAILED — Точка отказала, reason — почему
+ */
+public record PaymentInitiationReply(UUID orderId, String status, String paymentLink, String reason) {
+
+    public static PaymentInitiationReply created(UUID orderId, String paymentLink) {
+        return new PaymentInitiationReply(orderId, "CREATED", paymentLink, null);
+    }
+
+    public static PaymentInitiationReply failed(UUID orderId, String reason) {
+        return new PaymentInitiationReply(orderId, "FAILED", null, reason);
+    }
+}
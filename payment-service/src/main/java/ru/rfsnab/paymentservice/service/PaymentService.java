@@ -28,32 +28,25 @@ public class PaymentService {
     private final PaymentKafkaProducer kafkaProducer;
     private final TochkaProperties tochkaProperties;
 
+    /**
+     * Идемпотентно: действующий PENDING-платёж заказа с той же суммой и способом возвращается как есть.
+     * Если заказ изменили после подготовки оплаты, прежняя ссылка выписана на старые сумму
+     * или способ — платёж переоформляется новой операцией в Точке.
+     */
     @Transactional
     public PaymentResponse createPayment(CreatePaymentRequest request) {
         return paymentRepository.findByOrderId(request.orderId())
                 .filter(p -> p.getStatus() == PaymentStatus.PENDING)
-                .map(existing -> new PaymentResponse(
-                        existing.getOrderId(), existing.getPaymentLink(),
-                        existing.getOperationId(), existing.getStatus()))
+                .map(existing -> matches(existing, request)
+                        ? new PaymentResponse(
+                                existing.getOrderId(), existing.getPaymentLink(),
+                                existing.getOperationId(), existing.getStatus())
+                        : reinitiatePayment(existing, request))
                 .orElseGet(() -> doCreatePayment(request));
     }
 
     private PaymentResponse doCreatePayment(CreatePaymentRequest request) {
-        String orderId = request.orderId().toString();
-        var tochkaRequest = new TochkaCreateRequest(
-                new TochkaCreateRequest.Data(
-                        tochkaProperties.getCustomerCode(),
-                        request.amount(),
-                        "Заказ #" + request.orderNumber(),
-                        "SBP".equals(request.paymentMode()) ? List.of("sbp") : List.of("card"),
-                        tochkaProperties.getMerchantId(),
-                        tochkaProperties.getRedirectUrl() + "?orderId=" + orderId,
-                        tochkaProperties.getFailRedirectUrl() + "?orderId=" + orderId,
-                        orderId
-                )
-        );
-
-        TochkaCreateResponse tochkaResponse = tochkaApiClient.createPayment(tochkaRequest);
+        TochkaCreateResponse tochkaResponse = tochkaApiClient.createPayment(tochkaCreateRequest(request));
 
         Payment payment = Payment.builder()
                 .orderId(request.orderId())
@@ -61,7 +54,7 @@ public class PaymentService {
                 .paymentLink(tochkaResponse.data().paymentUrl())
                 .amount(request.amount())
                 .status(PaymentStatus.PENDING)
-                .paymentMode("SBP".equals(request.paymentMode()) ? PaymentMode.SBP : PaymentMode.CARD)
+                .paymentMode(paymentMode(request))
                 .customerEmail(request.customerEmail())
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -73,6 +66,50 @@ public class PaymentService {
                 payment.getOperationId(), payment.getStatus());
     }
 
+    private PaymentResponse reinitiatePayment(Payment payment, CreatePaymentRequest request) {
+        String previousOperationId = payment.getOperationId();
+        TochkaCreateResponse tochkaResponse = tochkaApiClient.createPayment(tochkaCreateRequest(request));
+
+        payment.setOperationId(tochkaResponse.data().operationId());
+        payment.setPaymentLink(tochkaResponse.data().paymentUrl());
+        payment.setAmount(request.amount());
+        payment.setPaymentMode(paymentMode(request));
+        payment.setCustomerEmail(request.customerEmail());
+        payment.setUpdatedAt(LocalDateTime.now());
+        paymentRepository.save(payment);
+        log.info("Payment re-initiated after order change: orderId={}, operationId={} (was {})",
+                request.orderId(), payment.getOperationId(), previousOperationId);
+
+        return new PaymentResponse(payment.getOrderId(), payment.getPaymentLink(),
+                payment.getOperationId(), payment.getStatus());
+    }
+
+    private static boolean matches(Payment payment, CreatePaymentRequest request) {
+        return payment.getAmount() != null
+                && payment.getAmount().compareTo(request.amount()) == 0
+                && payment.getPaymentMode() == paymentMode(request);
+    }
+
+    private static PaymentMode paymentMode(CreatePaymentRequest request) {
+        return "SBP".equals(request.paymentMode()) ? PaymentMode.SBP : PaymentMode.CARD;
+    }
+
+    private TochkaCreateRequest tochkaCreateRequest(CreatePaymentRequest request) {
+        String orderId = request.orderId().toString();
+        return new TochkaCreateRequest(
+                new TochkaCreateRequest.Data(
+                        tochkaProperties.getCustomerCode(),
+                        request.amount(),
+                        "Заказ #" + request.orderNumber(),
+                        "SBP".equals(request.paymentMode()) ? List.of("sbp") : List.of("card"),
+                        tochkaProperties.getMerchantId(),
+                        tochkaProperties.getRedirectUrl() + "?orderId=" + orderId,
+                        tochkaProperties.getFailRedirectUrl() + "?orderId=" + orderId,
+                        orderId
+                )
+        );
+    }
+
     @Transactional
     public PaymentStatusResponse getStatus(UUID orderId) {
         Payment payment = findByOrderId(orderId);
@@ -115,6 +152,7 @@ public class PaymentService {
         log.info("Payment refunded: orderId={}", orderId);
     }
 
+    @Transactional
     public void updateStatusFromTochka(Payment payment) {
         TochkaStatusResponse tochkaStatus = tochkaApiClient.getPaymentStatus(payment.getOperationId());
         var operations = tochkaStatus.data() != null ? tochkaStatus.data().operation() : null;
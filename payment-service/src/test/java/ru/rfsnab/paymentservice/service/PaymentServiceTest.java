@@ -107,6 +107,7 @@ class PaymentServiceTest {
                 .operationId("op-existing")
                 .status(PaymentStatus.PENDING)
                 .amount(BigDecimal.valueOf(5000))
+                .paymentMode(PaymentMode.CARD)
                 .createdAt(LocalDateTime.now())
                 .build();
 
@@ -119,6 +120,33 @@ class PaymentServiceTest {
         verify(paymentRepository, never()).save(any());
     }
 
+    @Test
+    void createPayment_orderChanged_reinitiatesPendingPayment() {
+        UUID orderId = UUID.randomUUID();
+        var request = new CreatePaymentRequest(orderId, BigDecimal.valueOf(7500), "ORD-00001", "user@test.com", "SBP");
+        var existing = Payment.builder()
+                .orderId(orderId)
+                .paymentLink("https://existing.link")
+                .operationId("op-existing")
+                .status(PaymentStatus.PENDING)
+                .amount(BigDecimal.valueOf(5000))
+                .paymentMode(PaymentMode.CARD)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(existing));
+        when(tochkaApiClient.createPayment(any())).thenReturn(
+                new TochkaCreateResponse(new TochkaCreateResponse.Data("op-new", "https://pay.link/new")));
+
+        PaymentResponse result = paymentService.createPayment(request);
+
+        assertThat(result.paymentLink()).isEqualTo("https://pay.link/new");
+        assertThat(result.operationId()).isEqualTo("op-new");
+        verify(paymentRepository).save(existing);
+        assertThat(existing.getAmount()).isEqualByComparingTo("7500");
+        assertThat(existing.getPaymentMode()).isEqualTo(PaymentMode.SBP);
+    }
+
     @Test
     void updateStatusFromTochka_approved_publishesKafkaEvent() {
         UUID orderId = UUID.randomUUID();
@@ -10,15 +10,12 @@ import org.springframework.context.annotation.Configuration;
 /**
  * Кэш — это ускорение чтения, он не должен ронять бизнес-операции.
  * Если Redis недоступен, ошибки кэша (get/put/evict/clear) логируются и гасятся:
- * фасеты в этом случае просто считаются из БД, а импорт/листинг не падают.
+ * данные в этом случае просто читаются из БД, а импорт/листинг не падают.
  */
 @Slf4j
 @Configuration
 @EnableCaching
 public class CacheConfig implements CachingConfigurer {
-    /** Имя кэша списка фасетов по категории. */
-    public static final String FACETS_CACHE = "facets";
-
     @Override
     public CacheErrorHandler errorHandler() {
         return new CacheErrorHandler() {
@@ -32,7 +32,10 @@ public class InternalTokenFilter extends OncePerRequestFilter {
 
     private static final List<String> INTERNAL_PATHS = List.of(
             "/api/v1/products/import/batch",
+            "/api/v1/products/import/tombstones",
             "/api/v1/products/external/**",
+            "/api/v1/products/stock-snapshot",
+            "/api/v1/products/reservations/**",
             "/api/v1/categories/upsert-by-external-id"
     );
 
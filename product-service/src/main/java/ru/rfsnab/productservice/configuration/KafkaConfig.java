@@ -3,6 +3,7 @@ package ru.rfsnab.productservice.configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -10,6 +11,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
@@ -21,6 +23,9 @@ import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.util.backoff.FixedBackOff;
 import ru.rfsnab.productservice.dto.PriceListRequested;
+import ru.rfsnab.productservice.dto.ProductImportMessage;
+import ru.rfsnab.productservice.dto.ReserveStockCommand;
+import ru.rfsnab.productservice.dto.StockReservationEvent;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -40,6 +45,27 @@ public class KafkaConfig {
     @Value("${app.kafka.consumer.group-id}")
     private String consumerGroupId;
 
+    @Value("${app.kafka.consumer.stock-group-id}")
+    private String stockConsumerGroupId;
+
+    @Value("${app.kafka.consumer.import-group-id}")
+    private String importConsumerGroupId;
+
+    @Value("${app.kafka.consumer.import-max-poll-records}")
+    private int importMaxPollRecords;
+
+    @Value("${app.kafka.consumer.import-concurrency}")
+    private int importConcurrency;
+
+    @Value("${app.kafka.topic.product-import-items}")
+    private String productImportItemsTopic;
+
+    @Value("${app.kafka.topic.product-import-results}")
+    private String productImportResultsTopic;
+
+    @Value("${app.kafka.topic.product-import-partitions}")
+    private int productImportPartitions;
+
     @Bean
     public ObjectMapper kafkaObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -89,4 +115,107 @@ public class KafkaConfig {
                 new FixedBackOff(ERROR_HANDLER_RETRY_INTERVAL_MS, ERROR_HANDLER_MAX_ATTEMPTS)));
         return factory;
     }
+
+    @Bean
+    public ConsumerFactory<String, StockReservationEvent> stockReservationConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, stockConsumerGroupId);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, StockReservationEvent.class.getName());
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, StockReservationEvent> stockReservationListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, StockReservationEvent> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(stockReservationConsumerFactory());
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                new FixedBackOff(ERROR_HANDLER_RETRY_INTERVAL_MS, ERROR_HANDLER_MAX_ATTEMPTS)));
+        return factory;
+    }
+
+    @Bean
+    public ConsumerFactory<String, ReserveStockCommand> checkoutStockCommandConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, stockConsumerGroupId);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, ReserveStockCommand.class.getName());
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ReserveStockCommand> checkoutStockCommandListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ReserveStockCommand> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(checkoutStockCommandConsumerFactory());
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                new FixedBackOff(ERROR_HANDLER_RETRY_INTERVAL_MS, ERROR_HANDLER_MAX_ATTEMPTS)));
+        return factory;
+    }
+
+    /**
+     * Потоковый импорт товаров: число партиций — потолок параллельности consumer'ов
+     * импорта (import-concurrency на всех репликах), ключ сообщения — externalId товара.
+     */
+    @Bean
+    public NewTopic productImportItemsTopic() {
+        return TopicBuilder.name(productImportItemsTopic)
+                .partitions(productImportPartitions)
+                .build();
+    }
+
+    @Bean
+    public NewTopic productImportResultsTopic() {
+        return TopicBuilder.name(productImportResultsTopic)
+                .partitions(1)
+                .build();
+    }
+
+    @Bean
+    public ConsumerFactory<String, ProductImportMessage> productImportConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, importConsumerGroupId);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, importMaxPollRecords);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, ProductImportMessage.class.getName());
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    /**
+     * Пакетный слушатель: выборка импортируется целиком, offset'ы коммитятся после
+     * отправки результатов (AckMode.BATCH по умолчанию).
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ProductImportMessage> productImportListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ProductImportMessage> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(productImportConsumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(importConcurrency);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                new FixedBackOff(ERROR_HANDLER_RETRY_INTERVAL_MS, ERROR_HANDLER_MAX_ATTEMPTS)));
+        return factory;
+    }
 }
@@ -0,0 +1,41 @@
+package ru.rfsnab.productservice.configuration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import ru.rfsnab.productservice.service.CategoryTreeSyncListener;
+import ru.rfsnab.productservice.service.CategoryTreeVersions;
+import ru.rfsnab.productservice.service.ProductDetailCache;
+import ru.rfsnab.productservice.service.ProductFacetIndex;
+
+/**
+ * Подписки на Redis pub/sub для согласования in-memory кэшей между репликами сервиса:
+ * дерево категорий, L1 кэша карточек товаров и индекс фасетов.
+ */
+@Configuration
+@ConditionalOnExpression("${product-service.category-tree.sync.enabled:true} or ${product-service.product-cache.redis.enabled:true}"
+        + " or ${product-service.facets.sync.enabled:true}")
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       ObjectProvider<CategoryTreeSyncListener> categoryTreeSyncListener,
+                                                                       ProductDetailCache productDetailCache,
+                                                                       ProductFacetIndex productFacetIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        categoryTreeSyncListener.ifAvailable(listener ->
+                container.addMessageListener(listener, new ChannelTopic(CategoryTreeVersions.CHANNEL)));
+        if (productDetailCache.isRedisEnabled()) {
+            container.addMessageListener(productDetailCache, new ChannelTopic(ProductDetailCache.CHANNEL));
+        }
+        if (productFacetIndex.isSyncEnabled()) {
+            container.addMessageListener(productFacetIndex, new ChannelTopic(ProductFacetIndex.CHANNEL));
+        }
+        return container;
+    }
+}
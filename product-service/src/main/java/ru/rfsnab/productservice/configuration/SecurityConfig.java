@@ -44,7 +44,10 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/v1/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/products/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/v1/products/import/batch").hasRole("INTERNAL")
+                        .requestMatchers(HttpMethod.POST, "/api/v1/products/import/tombstones").hasRole("INTERNAL")
                         .requestMatchers(HttpMethod.POST, "/api/v1/products/external/**").hasRole("INTERNAL")
+                        .requestMatchers(HttpMethod.POST, "/api/v1/products/stock-snapshot").hasRole("INTERNAL")
+                        .requestMatchers(HttpMethod.PUT, "/api/v1/products/reservations/**").hasRole("INTERNAL")
                         .requestMatchers(HttpMethod.POST, "/api/v1/categories/upsert-by-external-id").hasRole("INTERNAL")
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
                         .requestMatchers("/swagger-ui/**", "/api-docs/**", "/swagger-ui.html").permitAll()
@@ -6,12 +6,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.rfsnab.productservice.dto.AvailableCountResponse;
+import ru.rfsnab.productservice.dto.CursorPage;
 import ru.rfsnab.productservice.dto.FacetDto;
 import ru.rfsnab.productservice.dto.ProductRequest;
 import ru.rfsnab.productservice.dto.ProductResponse;
+import ru.rfsnab.productservice.dto.ProductStockSnapshot;
 import ru.rfsnab.productservice.mapper.ProductMapper;
 import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.service.ProductService;
@@ -41,6 +44,19 @@ public class ProductController {
                 productsPage, parentIds, productService.getSaleMarkupsFor(productsPage.getContent())));
     }
 
+    /**
+     * Лента активных товаров курсором (бесконечная прокрутка): cursor из предыдущего ответа
+     * задаёт продолжение и сортировку, sort учитывается только для первой порции.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ProductResponse>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Sort sort) {
+        return ResponseEntity.ok(mapCursorPage(productService.scrollProducts(cursor, sort, size, withTotal)));
+    }
+
     /**
      * Получить рекомендуемые товары ("хиты витрины") с пагинацией
      */
@@ -85,15 +101,32 @@ public class ProductController {
                         productService.getSaleMarkupFor(p))));
     }
 
+    /**
+     * Товары для админки курсором — массовое редактирование без OFFSET и без обязательного COUNT
+     */
+    @GetMapping("/admin/scroll")
+    public ResponseEntity<CursorPage<ProductResponse>> scrollProductsAdmin(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Boolean isActive,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @SortDefault(sort = "name", direction = Sort.Direction.ASC) Sort sort) {
+        CursorPage<Product> page = productService.scrollProductsAdmin(
+                categoryId, isActive, cursor, sort, size, withTotal);
+        Map<Long, List<Product>> childrenByParent = productService.getChildrenForParents(
+                page.content().stream().map(Product::getId).toList());
+        return ResponseEntity.ok(page.map(p ->
+                ProductMapper.mapForAdmin(p, childrenByParent.getOrDefault(p.getId(), List.of()),
+                        productService.getSaleMarkupFor(p))));
+    }
+
     /**
      * Получить товар по ID (с дочерними вариантами если есть)
      */
     @GetMapping("/{id}")
     public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id){
-        Product product = productService.getProductById(id);
-        List<Product> children = productService.getChildren(id);
-        return ResponseEntity.ok(ProductMapper.mapToResponse(
-                product, children, productService.getSaleMarkupFor(product)));
+        return ResponseEntity.ok(productService.getProductResponse(id));
     }
 
     /**
@@ -101,10 +134,7 @@ public class ProductController {
      */
     @GetMapping("/slug/{slug}")
     public ResponseEntity<ProductResponse> getProductBySlug(@PathVariable String slug){
-        Product product = productService.getProductBySlug(slug);
-        List<Product> children = productService.getChildren(product.getId());
-        return ResponseEntity.ok(ProductMapper.mapToResponse(
-                product, children, productService.getSaleMarkupFor(product)));
+        return ResponseEntity.ok(productService.getProductResponseBySlug(slug));
     }
 
     /**
@@ -157,11 +187,31 @@ public class ProductController {
     }
 
     /**
-     * Фасеты каталога для категории (свойства и их значения, без счётчиков)
+     * Товары категории курсором (те же фильтры attr и q, что и у постраничного листинга)
+     */
+    @GetMapping("/category/{categoryId}/scroll")
+    public ResponseEntity<CursorPage<ProductResponse>> scrollProductsByCategory(
+            @PathVariable Long categoryId,
+            @RequestParam(name = "attr", required = false) List<String> attr,
+            @RequestParam(name = "q", required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @SortDefault(sort = "displayOrder", direction = Sort.Direction.ASC) Sort sort) {
+        CursorPage<Product> page = productService.scrollProductsByCategory(
+                categoryId, ProductService.parseAttrFilters(attr), q, cursor, sort, size, withTotal);
+        return ResponseEntity.ok(mapCursorPage(page));
+    }
+
+    /**
+     * Фасеты каталога для категории: свойства, значения и счётчики товаров.
+     * Выбранные фильтры attr=Имя:Значение сужают счётчики остальных свойств.
      */
     @GetMapping("/facets")
-    public ResponseEntity<List<FacetDto>> getFacets(@RequestParam Long categoryId) {
-        return ResponseEntity.ok(productService.getFacets(categoryId));
+    public ResponseEntity<List<FacetDto>> getFacets(
+            @RequestParam Long categoryId,
+            @RequestParam(name = "attr", required = false) List<String> attr) {
+        return ResponseEntity.ok(productService.getFacets(categoryId, ProductService.parseAttrFilters(attr)));
     }
 
     /**
@@ -172,6 +222,21 @@ public class ProductController {
         return ResponseEntity.ok(new AvailableCountResponse(productService.countAvailableProducts()));
     }
 
+    /**
+     * Снимки цены/остатка/активности товаров по списку id (service-to-service, для order-service):
+     * корзина и оформление заказа получают все позиции одним запросом.
+     * Несуществующие id в ответ не попадают.
+     */
+    @PostMapping("/stock-snapshot")
+    public ResponseEntity<List<ProductStockSnapshot>> getStockSnapshots(@RequestBody List<Long> ids) {
+        List<Product> products = productService.getProductsForSnapshot(ids);
+        Map<Long, BigDecimal> markups = productService.getSaleMarkupsFor(products);
+        return ResponseEntity.ok(products.stream()
+                .map(p -> ProductMapper.mapToStockSnapshot(
+                        p, p.getCategory() != null ? markups.get(p.getCategory().getId()) : null))
+                .toList());
+    }
+
     /**
      * Поиск товаров по названию
      */
@@ -319,4 +384,11 @@ public class ProductController {
         productService.batchDelete(productIds);
         return ResponseEntity.noContent().build();
     }
+
+    private CursorPage<ProductResponse> mapCursorPage(CursorPage<Product> page) {
+        var parentIds = productService.findParentIdsWithActiveChildren(
+                page.content().stream().map(Product::getId).toList());
+        return ProductMapper.mapCursorPageWithHasVariants(
+                page, parentIds, productService.getSaleMarkupsFor(page.content()));
+    }
 }
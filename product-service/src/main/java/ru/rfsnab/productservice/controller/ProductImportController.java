@@ -9,6 +9,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.rfsnab.productservice.dto.BatchProductImportRequest;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse;
+import ru.rfsnab.productservice.dto.ProductTombstoneRequest;
+import ru.rfsnab.productservice.dto.ProductTombstoneResponse;
 import ru.rfsnab.productservice.service.ProductImportService;
 
 /**
@@ -29,4 +31,13 @@ public class ProductImportController {
         BatchProductImportResponse response = productImportService.importBatch(request);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Tombstone-проход после полной выгрузки: выбывшие товары снимаются с остатка.
+     */
+    @PostMapping("/import/tombstones")
+    public ResponseEntity<ProductTombstoneResponse> withdrawMissing(
+            @Valid @RequestBody ProductTombstoneRequest request) {
+        return ResponseEntity.ok(productImportService.withdrawMissing(request));
+    }
 }
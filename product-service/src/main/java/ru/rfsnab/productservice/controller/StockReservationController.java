@@ -0,0 +1,34 @@
+package ru.rfsnab.productservice.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.rfsnab.productservice.dto.StockReservationRequest;
+import ru.rfsnab.productservice.service.StockReservationService;
+
+import java.util.UUID;
+
+/**
+ * Резерв остатков под заказ. Вызывается order-service (service-to-service, X-Internal-Token)
+ * при создании, редактировании и повторе заказа. Нехватка товара — 409 с перечнем позиций.
+ */
+@RestController
+@RequestMapping("/api/v1/products/reservations")
+@RequiredArgsConstructor
+public class StockReservationController {
+
+    private final StockReservationService reservationService;
+
+    @PutMapping("/{orderId}")
+    public ResponseEntity<Void> reserve(
+            @PathVariable UUID orderId,
+            @Valid @RequestBody StockReservationRequest request) {
+        reservationService.reserve(orderId, request.lines());
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.rfsnab.productservice.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Порция листинга для прокрутки курсором (бесконечная лента, массовое редактирование в админке).
+ *
+ * @param nextCursor    непрозрачный курсор следующей порции; null — это последняя порция
+ * @param totalElements общее число строк — только если запрошено (withTotal), иначе null
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext, Long totalElements) {
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, hasNext, totalElements);
+    }
+}
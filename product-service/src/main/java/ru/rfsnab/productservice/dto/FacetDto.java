@@ -1,6 +1,10 @@
 package ru.rfsnab.productservice.dto;
 
 import java.util.List;
+import java.util.Map;
 
-/** Фасет каталога: свойство и его различные значения (без счётчиков). */
-public record FacetDto(String name, List<String> values) {}
+/**
+ * Фасет каталога: свойство, его различные значения и число товаров по каждому значению
+ * (с учётом выбранных фильтров по другим свойствам).
+ */
+public record FacetDto(String name, List<String> values, Map<String, Integer> counts) {}
@@ -0,0 +1,18 @@
+package ru.rfsnab.productservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Строка прайс-листа — проекция товара без загрузки сущности в persistence context.
+ * displayOrder и id — ключ keyset-пагинации внутри категории.
+ */
+public record PriceListRow(
+        Long id,
+        Integer displayOrder,
+        String sku,
+        String name,
+        String unitOfMeasure,
+        BigDecimal price,
+        BigDecimal wholesalePrice
+) {
+}
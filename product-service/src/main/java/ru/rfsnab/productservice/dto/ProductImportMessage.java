@@ -0,0 +1,9 @@
+package ru.rfsnab.productservice.dto;
+
+/**
+ * Товар из потока импорта integration-service (топик product-import-items, ключ — externalId).
+ *
+ * @param runId прогон импорта: по нему integration-service собирает ответы своего прогона
+ */
+public record ProductImportMessage(String runId, ProductImportItem item) {
+}
@@ -0,0 +1,7 @@
+package ru.rfsnab.productservice.dto;
+
+/**
+ * Постатейный результат импорта пачки товаров одного прогона (топик product-import-results, ключ — runId).
+ */
+public record ProductImportResultEvent(String runId, BatchProductImportResponse response) {
+}
@@ -0,0 +1,23 @@
+package ru.rfsnab.productservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Краткий снимок товара для корзины и оформления заказа в order-service:
+ * цена (уже с учётом акции), остаток и активность — без картинок, атрибутов и описаний.
+ * Поля совпадают с ProductDto order-service.
+ */
+public record ProductStockSnapshot(
+        Long id,
+        String name,
+        BigDecimal price,
+        BigDecimal wholesalePrice,
+        Integer stockQuantity,
+        Boolean isActive,
+        String externalId,
+        String sku,
+        String unitOfMeasure,
+        String categoryExternalId,
+        Long parentProductId
+) {
+}
@@ -0,0 +1,23 @@
+package ru.rfsnab.productservice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Товары, выбывшие из полной выгрузки поставщика (1С / ФТК).
+ * Присылается integration-service после импорта, externalId — ключ матчинга, как в batch-импорте.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductTombstoneRequest {
+
+    @NotEmpty(message = "Список externalId не может быть пустым")
+    @Size(max = 1000, message = "Максимум 1000 товаров за 1 запрос")
+    private List<String> externalIds;
+}
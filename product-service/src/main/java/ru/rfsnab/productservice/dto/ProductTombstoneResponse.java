@@ -0,0 +1,18 @@
+package ru.rfsnab.productservice.dto;
+
+import lombok.*;
+
+/**
+ * Результат tombstone-прохода импорта.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductTombstoneResponse {
+    /** Сколько externalId прислано */
+    private int requested;
+    /** Сколько товаров и вариантов снято с остатка */
+    private int withdrawn;
+}
@@ -0,0 +1,13 @@
+package ru.rfsnab.productservice.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Команда саги оформления order-service: зарезервировать позиции заказа.
+ *
+ * @param deadline после него order-service уже отменил заказ по таймауту — команда не исполняется
+ */
+public record ReserveStockCommand(UUID orderId, List<StockReservationRequest.Line> lines, LocalDateTime deadline) {
+}
@@ -0,0 +1,13 @@
+package ru.rfsnab.productservice.dto;
+
+import java.util.UUID;
+
+/**
+ * Kafka-событие order-service о судьбе резерва заказа.
+ *
+ * @param action COMMIT — заказ подтверждён/оплачен, резерв бессрочный;
+ *               FULFILL — заказ отгружен, резерв закрывается без возврата остатка;
+ *               RELEASE — заказ отменён, остаток возвращается
+ */
+public record StockReservationEvent(UUID orderId, String action) {
+}
@@ -0,0 +1,29 @@
+package ru.rfsnab.productservice.dto;
+
+import java.util.UUID;
+
+/**
+ * Ответ на ReserveStockCommand для order-service и уведомления о потере резерва.
+ *
+ * @param status RESERVED — все позиции зарезервированы; REJECTED — резерва нет, reason — почему;
+ *               EXPIRED — неподтверждённый резерв истёк, остаток возвращён;
+ *               LOST — подтверждение пришло после истечения резерва, а товара уже не хватает
+ */
+public record StockReservationReply(UUID orderId, String status, String reason) {
+
+    public static StockReservationReply reserved(UUID orderId) {
+        return new StockReservationReply(orderId, "RESERVED", null);
+    }
+
+    public static StockReservationReply rejected(UUID orderId, String reason) {
+        return new StockReservationReply(orderId, "REJECTED", reason);
+    }
+
+    public static StockReservationReply expired(UUID orderId, String reason) {
+        return new StockReservationReply(orderId, "EXPIRED", reason);
+    }
+
+    public static StockReservationReply lost(UUID orderId, String reason) {
+        return new StockReservationReply(orderId, "LOST", reason);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.rfsnab.productservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+/**
+ * Резерв остатков под все позиции заказа (order-service).
+ */
+public record StockReservationRequest(
+        @NotEmpty(message = "Список позиций не может быть пустым")
+        List<@Valid Line> lines
+) {
+    public record Line(
+            @NotNull Long productId,
+            @NotNull @Positive Integer quantity
+    ) {
+    }
+}
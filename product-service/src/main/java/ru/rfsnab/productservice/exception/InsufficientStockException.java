@@ -0,0 +1,10 @@
+package ru.rfsnab.productservice.exception;
+
+/**
+ * Остатка не хватает для резерва под заказ.
+ */
+public class InsufficientStockException extends RuntimeException {
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -1,9 +1,11 @@
 package ru.rfsnab.productservice.mapper;
 
 import org.springframework.data.domain.Page;
+import ru.rfsnab.productservice.dto.CursorPage;
 import ru.rfsnab.productservice.dto.ProductDocumentDto;
 import ru.rfsnab.productservice.dto.ProductRequest;
 import ru.rfsnab.productservice.dto.ProductResponse;
+import ru.rfsnab.productservice.dto.ProductStockSnapshot;
 import ru.rfsnab.productservice.model.Category;
 import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.model.ProductDocument;
@@ -148,6 +150,25 @@ public class ProductMapper {
         return builder.build();
     }
 
+    /**
+     * Снимок для order-service: цены те же, что отдаёт витрина (с акцией), без вложенных коллекций.
+     */
+    public static ProductStockSnapshot mapToStockSnapshot(Product product, BigDecimal categoryMarkup) {
+        BigDecimal markup = SalePriceCalculator.resolveMarkup(product, categoryMarkup);
+        return new ProductStockSnapshot(
+                product.getId(),
+                product.getName(),
+                SalePriceCalculator.apply(product.getPrice(), markup),
+                SalePriceCalculator.apply(product.getWholesalePrice(), markup),
+                product.getStockQuantity(),
+                product.getIsActive(),
+                product.getExternalId(),
+                product.getSku(),
+                product.getUnitOfMeasure(),
+                product.getCategory() != null ? product.getCategory().getExternalId() : null,
+                product.getParentProductId());
+    }
+
     public static Page<ProductResponse> mapPageWithHasVariants(Page<Product> page, Set<Long> parentIdsWithChildren) {
         return mapPageWithHasVariants(page, parentIdsWithChildren, Map.of());
     }
@@ -158,14 +179,24 @@ public class ProductMapper {
     public static Page<ProductResponse> mapPageWithHasVariants(Page<Product> page,
                                                                Set<Long> parentIdsWithChildren,
                                                                Map<Long, BigDecimal> categoryMarkups) {
-        return page.map(p -> {
-            BigDecimal categoryMarkup = p.getCategory() != null
-                    ? categoryMarkups.get(p.getCategory().getId())
-                    : null;
-            ProductResponse response = mapWithSale(p, categoryMarkup);
-            response.setHasVariants(parentIdsWithChildren.contains(p.getId()));
-            return response;
-        });
+        return page.map(p -> mapWithHasVariants(p, parentIdsWithChildren, categoryMarkups));
+    }
+
+    /** То же для порции прокрутки курсором. */
+    public static CursorPage<ProductResponse> mapCursorPageWithHasVariants(CursorPage<Product> page,
+                                                                           Set<Long> parentIdsWithChildren,
+                                                                           Map<Long, BigDecimal> categoryMarkups) {
+        return page.map(p -> mapWithHasVariants(p, parentIdsWithChildren, categoryMarkups));
+    }
+
+    private static ProductResponse mapWithHasVariants(Product product, Set<Long> parentIdsWithChildren,
+                                                      Map<Long, BigDecimal> categoryMarkups) {
+        BigDecimal categoryMarkup = product.getCategory() != null
+                ? categoryMarkups.get(product.getCategory().getId())
+                : null;
+        ProductResponse response = mapWithSale(product, categoryMarkup);
+        response.setHasVariants(parentIdsWithChildren.contains(product.getId()));
+        return response;
     }
 
     public static ProductDocumentDto mapDocumentToDto(ProductDocument document) {
@@ -38,6 +38,12 @@ public class PriceListRequest {
     @Column(name = "file_key", length = 500)
     private String fileKey;
 
+    /**
+     * Отпечаток содержимого (SHA-256): одинаковые запросы при неизменном каталоге получают уже готовый файл.
+     */
+    @Column(name = "content_key", length = 64)
+    private String contentKey;
+
     @Column(name = "row_count")
     private Integer rowCount;
 
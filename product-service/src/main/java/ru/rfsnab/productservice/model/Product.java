@@ -2,6 +2,7 @@ package ru.rfsnab.productservice.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -19,8 +20,13 @@ import java.util.List;
 @Builder
 public class Product {
 
+    /**
+     * Sequence (а не IDENTITY), чтобы Hibernate мог отправлять INSERT'ы пакетами при импорте;
+     * allocationSize совпадает с INCREMENT BY последовательности (V20261018120000).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -108,23 +114,29 @@ public class Product {
     @Column(name = "sale_markup_percent", precision = 5, scale = 2)
     private BigDecimal saleMarkupPercent;
 
+    // Листинги маппят коллекции каждого товара страницы: @BatchSize грузит их
+    // одним запросом на коллекцию для всей страницы вместо запроса на строку (N+1)
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("displayOrder ASC")
     @Builder.Default
+    @BatchSize(size = 50)
     private List<ProductImage> images = new ArrayList<>();
 
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
+    @BatchSize(size = 50)
     private List<ProductAttribute> attributes = new ArrayList<>();
 
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("displayOrder ASC")
     @Builder.Default
+    @BatchSize(size = 50)
     private List<ProductVideo> videos = new ArrayList<>();
 
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("displayOrder ASC")
     @Builder.Default
+    @BatchSize(size = 50)
     private List<ProductDocument> documents = new ArrayList<>();
 
     @CreationTimestamp
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @Builder
 public class ProductAttribute {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_attributes_seq")
+    @SequenceGenerator(name = "product_attributes_seq", sequenceName = "product_attributes_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,17 @@
+package ru.rfsnab.productservice.model;
+
+/**
+ * RESERVED — остаток списан под заказ, резерв истекает по expiresAt;
+ * COMMITTED — заказ подтверждён/оплачен, резерв держится до отмены;
+ * FULFILLED — заказ отгружен: товар ушёл со склада, остаток не возвращается и резерв больше не держит его;
+ * RELEASED — остаток возвращён (отмена, замена состава заказа);
+ * EXPIRED — остаток возвращён по истечении срока: order-service получает ответ EXPIRED,
+ * а опоздавший к истечению COMMIT резервирует товар заново.
+ */
+public enum StockReservationStatus {
+    RESERVED,
+    COMMITTED,
+    FULFILLED,
+    RELEASED,
+    EXPIRED
+}
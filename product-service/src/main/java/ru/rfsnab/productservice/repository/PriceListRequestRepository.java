@@ -7,6 +7,7 @@ import ru.rfsnab.productservice.model.PriceListStatus;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PriceListRequestRepository extends JpaRepository<PriceListRequest, Long> {
@@ -15,4 +16,11 @@ public interface PriceListRequestRepository extends JpaRepository<PriceListReque
     boolean existsByUserIdAndStatus(Long userId, PriceListStatus status);
 
     List<PriceListRequest> findByStatusAndCreatedAtBefore(PriceListStatus status, LocalDateTime createdAtBefore);
+
+    /** Готовый прайс с тем же содержимым (тип клиента + категории + версия каталога + дата). */
+    Optional<PriceListRequest> findFirstByContentKeyAndStatusOrderByCreatedAtDesc(String contentKey,
+                                                                                  PriceListStatus status);
+
+    /** Файл используется другим действующим запросом (переиспользование одинаковых прайсов). */
+    boolean existsByFileKeyAndStatusAndIdNot(String fileKey, PriceListStatus status, Long id);
 }
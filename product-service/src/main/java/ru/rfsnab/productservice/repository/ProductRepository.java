@@ -2,13 +2,19 @@ package ru.rfsnab.productservice.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.rfsnab.productservice.dto.PriceListRow;
 import ru.rfsnab.productservice.model.Product;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,8 +31,24 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
     @Query("SELECT p FROM Product p WHERE p.isActive = true ORDER BY p.createdAt DESC")
     List<Product> findAllActive();
 
-    @Query("""
+    /**
+     * Переносимый (H2/PostgreSQL) поиск по вхождению в название, артикул или внешние коды.
+     * Точное совпадение артикула/кода поднимается в начало выдачи.
+     */
+    @Query(value = """
             SELECT p FROM Product p
+            WHERE (LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))
+                OR LOWER(p.sku) LIKE LOWER(CONCAT('%', :query, '%'))
+                OR LOWER(p.externalCode) LIKE LOWER(CONCAT('%', :query, '%'))
+                OR LOWER(p.externalId) LIKE LOWER(CONCAT('%', :query, '%')))
+              AND p.isActive = true AND p.isVariantChild = false
+            ORDER BY CASE WHEN LOWER(p.sku) = LOWER(:query)
+                            OR LOWER(p.externalCode) = LOWER(:query)
+                            OR LOWER(p.externalId) = LOWER(:query) THEN 0 ELSE 1 END,
+                     p.name ASC, p.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(p) FROM Product p
             WHERE (LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))
                 OR LOWER(p.sku) LIKE LOWER(CONCAT('%', :query, '%'))
                 OR LOWER(p.externalCode) LIKE LOWER(CONCAT('%', :query, '%'))
@@ -35,6 +57,49 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
             """)
     Page<Product> searchByNameOrArticle(@Param("query") String query, Pageable pageable);
 
+    /**
+     * Ранжированный поиск PostgreSQL (индексы V20261018100000__add_product_search_index):
+     * совпадение по search_vector (русская морфология) ИЛИ подстрока по триграммным индексам.
+     * Порядок: точный артикул/код → ts_rank → похожесть названия → id.
+     *
+     * @param term    запрос в нижнем регистре без крайних пробелов
+     * @param pattern term для LIKE, см. {@link #containsPattern(String)}
+     */
+    @Query(value = """
+            SELECT p.* FROM products p
+            WHERE p.is_active = true AND p.is_variant_child = false
+              AND (p.search_vector @@ plainto_tsquery('russian', :term)
+                   OR LOWER(p.name) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.sku) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.external_code) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.external_id) LIKE :pattern ESCAPE '\\')
+            ORDER BY CASE WHEN LOWER(p.sku) = :term
+                            OR LOWER(p.external_code) = :term
+                            OR LOWER(p.external_id) = :term THEN 0 ELSE 1 END,
+                     ts_rank_cd(p.search_vector, plainto_tsquery('russian', :term)) DESC,
+                     similarity(LOWER(p.name), :term) DESC,
+                     p.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(*) FROM products p
+            WHERE p.is_active = true AND p.is_variant_child = false
+              AND (p.search_vector @@ plainto_tsquery('russian', :term)
+                   OR LOWER(p.name) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.sku) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.external_code) LIKE :pattern ESCAPE '\\'
+                   OR LOWER(p.external_id) LIKE :pattern ESCAPE '\\')
+            """,
+            nativeQuery = true)
+    Page<Product> fullTextSearch(@Param("term") String term, @Param("pattern") String pattern, Pageable pageable);
+
+    /**
+     * '%term%' для LIKE в {@link #fullTextSearch}: '%', '_' и '\' из запроса экранируются
+     * и совпадают буквально, а не как шаблон (ESCAPE '\').
+     */
+    static String containsPattern(String term) {
+        return "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
     @Query("SELECT p FROM Product p WHERE p.isFeatured = true AND p.isActive = true")
     List<Product> findFeatured();
 
@@ -46,27 +111,45 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
 
     List<Product> findByExternalIdIn(List<String> externalIds);
 
-    @Query("SELECT p.slug FROM Product p")
-    List<String> findAllSlugs();
+    @Query("SELECT DISTINCT p.category.id FROM Product p WHERE p.id IN :ids AND p.category IS NOT NULL")
+    List<Long> findCategoryIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.slug FROM Product p WHERE p.slug IN :slugs")
+    List<String> findSlugsIn(@Param("slugs") Collection<String> slugs);
+
+    /** Slug'и вида base-N (суффиксы уникальности SlugGeneratorService.makeUnique). */
+    @Query("SELECT p.slug FROM Product p WHERE p.slug LIKE CONCAT(:base, '-%')")
+    List<String> findSlugsWithSuffix(@Param("base") String base);
 
     @Query("SELECT p FROM Product p LEFT JOIN FETCH p.attributes WHERE p.parentProductId = :parentId AND p.isActive = true ORDER BY p.name ASC")
     List<Product> findChildrenWithAttributes(@Param("parentId") Long parentId);
 
+    /** Родители указанных вариантов (их карточки содержат варианты). */
+    @Query("SELECT DISTINCT p.parentProductId FROM Product p WHERE p.id IN :ids AND p.parentProductId IS NOT NULL")
+    List<Long> findParentProductIdsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT DISTINCT p.parentProductId FROM Product p WHERE p.parentProductId IN :ids AND p.isActive = true")
     List<Long> findParentIdsWithActiveChildren(@Param("ids") List<Long> ids);
 
     List<Product> findByParentProductId(Long parentProductId);
 
+    /**
+     * Листинги витрины: категория подтягивается join'ом в запросе страницы
+     * (ManyToOne не ломает LIMIT/OFFSET), коллекции товаров — батчами (@BatchSize в Product).
+     */
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByIsActiveTrueAndIsVariantChildFalse(Pageable pageable);
 
     Page<Product> findByCategoryIdAndIsActiveTrueAndIsVariantChildFalse(Long categoryId, Pageable pageable);
 
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByCategoryIdInAndIsActiveTrueAndIsVariantChildFalse(List<Long> categoryIds, Pageable pageable);
 
     Page<Product> findByCategoryIdInAndIsActiveTrue(List<Long> categoryIds, Pageable pageable);
 
     Page<Product> findByIsActive(Boolean isActive, Pageable pageable);
 
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByIsFeaturedTrueAndIsActiveTrueAndIsVariantChildFalse(Pageable pageable);
 
     Page<Product> findByCategoryIdAndIsActive(Long categoryId, Boolean isActive, Pageable pageable);
@@ -94,4 +177,91 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
                  WHERE c.parentProductId = p.id AND c.isActive = true), 0)) > 0
             """)
     long countAvailableProducts();
+
+    /**
+     * Атомарное списание остатка: строка меняется, только если товара хватает.
+     * 0 — товара нет или остатка недостаточно. Проверка и запись в одном операторе,
+     * поэтому параллельные списания не теряют обновления и не уводят остаток в минус.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity
+            WHERE p.id = :id AND p.stockQuantity >= :quantity
+            """)
+    int decreaseStockIfAvailable(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity WHERE p.id = :id")
+    int increaseStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+    Optional<Integer> findStockQuantityById(@Param("id") Long id);
+
+    /**
+     * Блокирует строки импортируемых товаров до конца транзакции — в порядке id, как и резервирование,
+     * поэтому встречные импорт и резерв не взаимоблокируются. Пока строки заблокированы,
+     * новый резерв не спишет остаток между чтением действующих резервов и записью остатка импортом.
+     */
+    @Query(value = "SELECT id FROM products WHERE external_id IN (:externalIds) ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockByExternalIdIn(@Param("externalIds") Collection<String> externalIds);
+
+    /**
+     * Блокирует выбывшие из выгрузки товары (по externalId) и их варианты в порядке id, как и
+     * lockByExternalIdIn: резерв не спишет остаток между снятием резервов и обнулением tombstone-проходом.
+     */
+    @Query(value = """
+            SELECT id FROM products
+            WHERE external_id IN (:externalIds)
+               OR parent_product_id IN (SELECT id FROM products WHERE external_id IN (:externalIds))
+            ORDER BY id FOR UPDATE
+            """, nativeQuery = true)
+    List<Long> lockByExternalIdOrParent(@Param("externalIds") Collection<String> externalIds);
+
+    /**
+     * Товары с ненулевым остатком среди выбывших из выгрузки поставщика (по externalId)
+     * и их вариантов — кандидаты на обнуление остатка (tombstone-проход импорта).
+     */
+    @Query("""
+            SELECT p.id FROM Product p
+            WHERE p.stockQuantity > 0
+              AND (p.externalId IN :externalIds
+                   OR p.parentProductId IN (SELECT q.id FROM Product q WHERE q.externalId IN :externalIds))
+            """)
+    List<Long> findIdsInStockByExternalIdOrParent(@Param("externalIds") Collection<String> externalIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = 0 WHERE p.id IN :ids")
+    int zeroStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset-страница строк прайс-листа категории в порядке (displayOrder, id): каждая следующая
+     * страница продолжает с последней прочитанной строки по индексу idx_products_price_list,
+     * без OFFSET и без сущностей в persistence context.
+     */
+    @Query("""
+            SELECT new ru.rfsnab.productservice.dto.PriceListRow(
+                p.id, p.displayOrder, p.sku, p.name, p.unitOfMeasure, p.price, p.wholesalePrice)
+            FROM Product p
+            WHERE p.category.id = :categoryId AND p.isActive = true
+              AND (p.displayOrder > :afterOrder OR (p.displayOrder = :afterOrder AND p.id > :afterId))
+            ORDER BY p.displayOrder ASC, p.id ASC
+            """)
+    List<PriceListRow> findPriceListRows(@Param("categoryId") Long categoryId,
+                                         @Param("afterOrder") int afterOrder,
+                                         @Param("afterId") long afterId,
+                                         Pageable pageable);
+
+    /** Последнее изменение каталога — часть версии содержимого прайс-листа. */
+    @Query("SELECT MAX(p.updatedAt) FROM Product p")
+    LocalDateTime findLastUpdatedAt();
+
+    /** Снимки цены/остатка для order-service: категория нужна для акции и categoryExternalId. */
+    @EntityGraph(attributePaths = "category")
+    List<Product> findAllByIdIn(Collection<Long> ids);
+
+    /** Листинги по спецификациям (акции, фильтр по атрибутам) — с категорией в том же запросе. */
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Page<Product> findAll(Specification<Product> spec, Pageable pageable);
 }
@@ -0,0 +1,130 @@
+package ru.rfsnab.productservice.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.rfsnab.productservice.model.StockReservation;
+import ru.rfsnab.productservice.model.StockReservationStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    /** Сколько единиц товара удерживают действующие резервы */
+    interface HeldStock {
+        Long getProductId();
+        Long getQuantity();
+    }
+
+    List<StockReservation> findByOrderIdAndStatusInOrderByProductIdAsc(UUID orderId,
+                                                                        Collection<StockReservationStatus> statuses);
+
+    boolean existsByOrderIdAndStatusIn(UUID orderId, Collection<StockReservationStatus> statuses);
+
+    @Query("""
+            SELECT r FROM StockReservation r
+            WHERE r.status = ru.rfsnab.productservice.model.StockReservationStatus.RESERVED
+            AND r.expiresAt < :now
+            ORDER BY r.expiresAt ASC
+            """)
+    List<StockReservation> findExpired(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("""
+            SELECT r.productId AS productId, SUM(r.quantity) AS quantity FROM StockReservation r
+            WHERE r.productId IN :productIds
+            AND r.status IN (ru.rfsnab.productservice.model.StockReservationStatus.RESERVED,
+                             ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED)
+            GROUP BY r.productId
+            """)
+    List<HeldStock> sumHeldByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Перевести резерв в RELEASED, если он ещё действует. 1 — перевели мы и должны вернуть остаток,
+     * 0 — резерв уже освобождён или закрыт отгрузкой (повторное событие, гонка с планировщиком).
+     */
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.RELEASED, r.updatedAt = :now
+            WHERE r.id = :id
+            AND r.status IN (ru.rfsnab.productservice.model.StockReservationStatus.RESERVED,
+                             ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED)
+            """)
+    int markReleased(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /** Как markReleased, но для истёкшего неподтверждённого резерва: 1 — остаток возвращаем мы. */
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.EXPIRED, r.updatedAt = :now
+            WHERE r.id = :id
+            AND r.status = ru.rfsnab.productservice.model.StockReservationStatus.RESERVED
+            """)
+    int markExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /** Истёкший резерв снова действует: товар под опоздавшее подтверждение списан заново. */
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED,
+                r.expiresAt = NULL, r.updatedAt = :now
+            WHERE r.id = :id
+            AND r.status = ru.rfsnab.productservice.model.StockReservationStatus.EXPIRED
+            """)
+    int recommitExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Снять действующие резервы выведенных из продажи товаров без возврата остатка: обнулённый
+     * товар не должен получить его обратно при отмене заказа или истечении резерва.
+     */
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.RELEASED,
+                r.expiresAt = NULL, r.updatedAt = :now
+            WHERE r.productId IN :productIds
+            AND r.status IN (ru.rfsnab.productservice.model.StockReservationStatus.RESERVED,
+                             ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED)
+            """)
+    int releaseWithoutRestockByProductIdIn(@Param("productIds") Collection<Long> productIds,
+                                           @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED,
+                r.expiresAt = NULL, r.updatedAt = :now
+            WHERE r.orderId = :orderId
+            AND r.status = ru.rfsnab.productservice.model.StockReservationStatus.RESERVED
+            """)
+    int commitByOrderId(@Param("orderId") UUID orderId, @Param("now") LocalDateTime now);
+
+    /** Закрыть действующие резервы отгруженного заказа: остаток не возвращается. */
+    @Modifying
+    @Query("""
+            UPDATE StockReservation r
+            SET r.status = ru.rfsnab.productservice.model.StockReservationStatus.FULFILLED,
+                r.expiresAt = NULL, r.updatedAt = :now
+            WHERE r.orderId = :orderId
+            AND r.status IN (ru.rfsnab.productservice.model.StockReservationStatus.RESERVED,
+                             ru.rfsnab.productservice.model.StockReservationStatus.COMMITTED)
+            """)
+    int fulfillByOrderId(@Param("orderId") UUID orderId, @Param("now") LocalDateTime now);
+
+    /** Удалить пачку закрытых резервов (RELEASED, FULFILLED, EXPIRED), не менявшихся с before. */
+    @Modifying
+    @Query(value = """
+            DELETE FROM stock_reservation
+            WHERE id IN (SELECT id FROM stock_reservation
+                         WHERE status IN ('RELEASED', 'FULFILLED', 'EXPIRED') AND updated_at < :before
+                         LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteClosedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -41,7 +41,9 @@ public class PriceListCleanupScheduler {
                 PriceListStatus.READY, threshold);
 
         for (PriceListRequest request : expired) {
-            if (request.getFileKey() != null) {
+            // Файл может разделяться с более свежим запросом того же содержимого — удаляем последним
+            if (request.getFileKey() != null && !priceListRequestRepository.existsByFileKeyAndStatusAndIdNot(
+                    request.getFileKey(), PriceListStatus.READY, request.getId())) {
                 storageService.deleteFile(request.getFileKey());
             }
             request.setStatus(PriceListStatus.EXPIRED);
@@ -0,0 +1,32 @@
+package ru.rfsnab.productservice.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.productservice.service.StockReservationService;
+
+/**
+ * Ежедневная чистка истории резервов: освобождённые и отгруженные резервы старше срока хранения
+ * удаляются пачками, чтобы таблица не росла вместе с числом заказов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationCleanupScheduler {
+
+    private final StockReservationService reservationService;
+
+    @Scheduled(cron = "${product-service.stock.closed-cleanup-cron:0 30 3 * * *}")
+    public void purgeClosed() {
+        int total = 0;
+        int purged;
+        do {
+            purged = reservationService.purgeClosed();
+            total += purged;
+        } while (purged > 0);
+        if (total > 0) {
+            log.info("Удалено закрытых резервов: {}", total);
+        }
+    }
+}
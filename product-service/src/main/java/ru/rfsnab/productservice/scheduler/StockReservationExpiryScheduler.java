@@ -0,0 +1,30 @@
+package ru.rfsnab.productservice.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.productservice.service.StockReservationService;
+
+/**
+ * Возврат остатков по истёкшим резервам: заказ так и не подтвердили (брошенная форма,
+ * сбой order-service после резерва) или не повторили неуспешную оплату.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationExpiryScheduler {
+
+    private final StockReservationService reservationService;
+
+    @Scheduled(fixedDelayString = "${product-service.stock.expiry-check-interval-ms:60000}")
+    public void releaseExpired() {
+        int released;
+        do {
+            released = reservationService.releaseExpired();
+            if (released > 0) {
+                log.info("Освобождено истёкших резервов: {}", released);
+            }
+        } while (released > 0);
+    }
+}
@@ -3,7 +3,10 @@ package ru.rfsnab.productservice.service;
 import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.rfsnab.productservice.dto.CategoryTreeDTO;
 import ru.rfsnab.productservice.exception.BusinessException;
 import ru.rfsnab.productservice.exception.CategoryNotFoundException;
@@ -14,6 +17,7 @@ import ru.rfsnab.productservice.repository.ProductRepository;
 import java.math.BigDecimal;
 import java.util.*;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CategoryService {
@@ -24,14 +28,26 @@ public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
     private final SlugGeneratorService slugGenerator;
+    private final CategoryTreeVersions versions;
 
-    // Кэш дерева категорий (в памяти). volatile: пишется в synchronized refreshCategoryTree(),
-    // читается запросами без синхронизации — нужна видимость новой ссылки другим потокам.
-    private volatile List<CategoryTreeDTO> cachedCategoryTree = new ArrayList<>();
+    // Снимок дерева категорий (в памяти). volatile: пишется в synchronized refreshCategoryTree(),
+    // читается запросами без синхронизации — дерево, индекс и акции подменяются одной ссылкой.
+    private volatile CategorySnapshot snapshot = CategorySnapshot.EMPTY;
 
-    // Кэш акционных процентов: categoryId -> процент. Наследуется вниз по дереву:
-    // потомок без собственной метки берёт процент ближайшего отмеченного предка.
-    private volatile Map<Long, BigDecimal> cachedSaleMarkups = Map.of();
+    /**
+     * Неизменяемый снимок дерева категорий, помеченный версией кластера.
+     *
+     * @param nodesById   индекс узлов дерева по id — поиск категории за O(1)
+     * @param saleMarkups categoryId -> действующий акционный процент. Наследуется вниз по дереву:
+     *                    потомок без собственной метки берёт процент ближайшего отмеченного предка
+     */
+    private record CategorySnapshot(long version,
+                                    List<CategoryTreeDTO> tree,
+                                    Map<Long, CategoryTreeDTO> nodesById,
+                                    Map<Long, BigDecimal> saleMarkups) {
+        static final CategorySnapshot EMPTY =
+                new CategorySnapshot(CategoryTreeVersions.UNKNOWN, List.of(), Map.of(), Map.of());
+    }
 
     /**
      * Инициализация дерева категорий при старте приложения
@@ -45,17 +61,55 @@ public class CategoryService {
      * Получить дерево категорий (из кэша)
      */
     public List<CategoryTreeDTO> getCategoryTree() {
-        return cachedCategoryTree;
+        return snapshot.tree();
     }
 
     /**
-     * Построить дерево категорий из БД и обновить кэш
+     * Построить дерево категорий из БД и обновить кэш.
+     * Версия читается до загрузки: изменение, закоммиченное во время чтения,
+     * даст более новую версию и повторное обновление.
      */
     public synchronized void refreshCategoryTree() {
+        long version = versions.current();
         List<Category> allCategories = categoryRepository.findAll();
         Map<Long, BigDecimal> saleMarkups = buildSaleMarkups(allCategories);
-        cachedCategoryTree = buildTree(allCategories, saleMarkups);
-        cachedSaleMarkups = saleMarkups;
+        Map<Long, CategoryTreeDTO> nodesById = new HashMap<>();
+        List<CategoryTreeDTO> tree = buildTree(allCategories, saleMarkups, nodesById);
+        snapshot = new CategorySnapshot(version, tree, nodesById, saleMarkups);
+    }
+
+    /**
+     * Перечитать дерево, если в кластере есть версия новее локального снимка
+     * (категории изменил другой узел).
+     */
+    public void refreshIfOlderThan(long version) {
+        if (snapshot.version() < version) {
+            synchronized (this) {
+                if (snapshot.version() < version) {
+                    log.debug("Дерево категорий: версия {} -> {}, перечитываем", snapshot.version(), version);
+                    refreshCategoryTree();
+                }
+            }
+        }
+    }
+
+    /**
+     * Категории изменены: после коммита поднять версию в кластере и перечитать дерево.
+     * Вне транзакции — сразу.
+     */
+    private void onCategoriesChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.bump();
+                    refreshCategoryTree();
+                }
+            });
+        } else {
+            versions.bump();
+            refreshCategoryTree();
+        }
     }
 
     /**
@@ -63,14 +117,14 @@ public class CategoryService {
      * null — категория не акционная.
      */
     public BigDecimal getCategorySaleMarkup(Long categoryId) {
-        return categoryId != null ? cachedSaleMarkups.get(categoryId) : null;
+        return categoryId != null ? snapshot.saleMarkups().get(categoryId) : null;
     }
 
     /**
      * Id всех категорий, попадающих в акцию (отмеченные + их потомки).
      */
     public Set<Long> getSaleCategoryIds() {
-        return cachedSaleMarkups.keySet();
+        return snapshot.saleMarkups().keySet();
     }
 
     /**
@@ -112,9 +166,11 @@ public class CategoryService {
 
     /**
      * Построение дерева из плоского списка категорий
+     *
+     * @param map заполняется узлами дерева по id
      */
-    private List<CategoryTreeDTO> buildTree(List<Category> categories, Map<Long, BigDecimal> saleMarkups) {
-        Map<Long, CategoryTreeDTO> map = new HashMap<>();
+    private List<CategoryTreeDTO> buildTree(List<Category> categories, Map<Long, BigDecimal> saleMarkups,
+                                            Map<Long, CategoryTreeDTO> map) {
 
         for (Category category : categories) {
             BigDecimal effectiveMarkup = saleMarkups.get(category.getId());
@@ -192,7 +248,7 @@ public class CategoryService {
         }
 
         Category saved = categoryRepository.save(category);
-        refreshCategoryTree();
+        onCategoriesChanged();
 
         return saved;
     }
@@ -236,7 +292,7 @@ public class CategoryService {
         }
 
         Category saved = categoryRepository.save(existing);
-        refreshCategoryTree();
+        onCategoriesChanged();
 
         return saved;
     }
@@ -252,7 +308,7 @@ public class CategoryService {
             cat.setDisplayOrder(order);
             categoryRepository.save(cat);
         });
-        refreshCategoryTree();
+        onCategoriesChanged();
     }
 
     /**
@@ -272,7 +328,7 @@ public class CategoryService {
         }
 
         categoryRepository.deleteById(id);
-        refreshCategoryTree();
+        onCategoriesChanged();
     }
 
     /**
@@ -310,7 +366,7 @@ public class CategoryService {
 
         category.setParent(parent);
         Category saved = categoryRepository.save(category);
-        refreshCategoryTree();
+        onCategoriesChanged();
 
         return saved;
     }
@@ -343,10 +399,10 @@ public class CategoryService {
 
     /**
      * Собрать id категории и всех её потомков (для фильтрации товаров по поддереву).
-     * Использует закэшированное дерево категорий.
+     * Использует индекс закэшированного дерева категорий.
      */
     public List<Long> getSubtreeCategoryIds(Long categoryId) {
-        CategoryTreeDTO node = findNodeById(cachedCategoryTree, categoryId);
+        CategoryTreeDTO node = snapshot.nodesById().get(categoryId);
         if (node == null) {
             return List.of(categoryId);
         }
@@ -373,23 +429,10 @@ public class CategoryService {
      * Возвращает null, если категория не найдена в кэше.
      */
     public String getCategoryNameById(Long categoryId) {
-        CategoryTreeDTO node = findNodeById(cachedCategoryTree, categoryId);
+        CategoryTreeDTO node = snapshot.nodesById().get(categoryId);
         return node != null ? node.getName() : null;
     }
 
-    private CategoryTreeDTO findNodeById(List<CategoryTreeDTO> nodes, Long categoryId) {
-        for (CategoryTreeDTO node : nodes) {
-            if (node.getId().equals(categoryId)) {
-                return node;
-            }
-            CategoryTreeDTO found = findNodeById(node.getChildren(), categoryId);
-            if (found != null) {
-                return found;
-            }
-        }
-        return null;
-    }
-
     private void collectIds(CategoryTreeDTO node, List<Long> ids) {
         ids.add(node.getId());
         for (CategoryTreeDTO child : node.getChildren()) {
@@ -430,7 +473,7 @@ public class CategoryService {
         }
 
         Category saved = categoryRepository.save(category);
-        refreshCategoryTree();
+        onCategoriesChanged();
         return saved;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package ru.rfsnab.productservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Держит дерево категорий этого узла в актуальном состоянии относительно кластера:
+ * реагирует на оповещения об изменении (pub/sub) и периодически сверяет версию —
+ * pub/sub не гарантирует доставку, сообщение могло потеряться при переподключении к Redis.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "product-service.category-tree.sync.enabled", havingValue = "true", matchIfMissing = true)
+public class CategoryTreeSyncListener implements MessageListener {
+
+    private final CategoryService categoryService;
+    private final CategoryTreeVersions versions;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            categoryService.refreshIfOlderThan(Long.parseLong(body));
+        } catch (NumberFormatException e) {
+            log.warn("Некорректная версия дерева категорий в канале {}: '{}'", CategoryTreeVersions.CHANNEL, body);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${product-service.category-tree.sync.check-interval-ms:60000}")
+    public void reconcile() {
+        long version = versions.current();
+        if (version != CategoryTreeVersions.UNKNOWN) {
+            categoryService.refreshIfOlderThan(version);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.rfsnab.productservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Общий для всех реплик номер версии дерева категорий (счётчик в Redis).
+ *
+ * Узел, изменивший категории, после коммита увеличивает версию и рассылает её в канал
+ * {@link #CHANNEL}; остальные узлы перечитывают дерево, если пришедшая версия новее их снимка.
+ * Redis здесь — только сигнал: при его недоступности запись категорий не падает,
+ * а другие узлы догонят версию при плановой сверке (CategoryTreeSyncListener).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeVersions {
+
+    public static final String CHANNEL = "product-service:category-tree";
+    static final String VERSION_KEY = "product-service:category-tree:version";
+
+    /** Версия, которой помечается снимок, если Redis недоступен или синхронизация выключена. */
+    public static final long UNKNOWN = -1L;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${product-service.category-tree.sync.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Текущая версия дерева в кластере. 0 — категории ещё ни разу не менялись.
+     */
+    public long current() {
+        if (!enabled) {
+            return UNKNOWN;
+        }
+        try {
+            String value = redisTemplate.opsForValue().get(VERSION_KEY);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать версию дерева категорий из Redis: {}", e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Увеличить версию и оповестить остальные узлы. Вызывается после коммита изменения категорий.
+     */
+    public void bump() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+            redisTemplate.convertAndSend(CHANNEL, String.valueOf(version));
+            log.debug("Дерево категорий: опубликована версия {}", version);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось опубликовать новую версию дерева категорий: {}", e.getMessage());
+        }
+    }
+}
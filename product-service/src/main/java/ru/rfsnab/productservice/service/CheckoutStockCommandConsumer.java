@@ -0,0 +1,65 @@
+package ru.rfsnab.productservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.productservice.dto.ReserveStockCommand;
+import ru.rfsnab.productservice.dto.StockReservationReply;
+import ru.rfsnab.productservice.exception.InsufficientStockException;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Команды резерва от саги оформления order-service: резерв и ответ в checkout-stock-replies.
+ * Резерв с тем же составом идемпотентен, поэтому при сбое отправки ответа команда
+ * просто обрабатывается повторно (DefaultErrorHandler) и ответ уходит снова.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutStockCommandConsumer {
+
+    private static final long REPLY_SEND_TIMEOUT_SECONDS = 10;
+
+    private final StockReservationService reservationService;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${app.kafka.topic.checkout-stock-replies}")
+    private String repliesTopic;
+
+    @KafkaListener(
+            topics = "${app.kafka.topic.checkout-stock-commands}",
+            groupId = "${app.kafka.consumer.stock-group-id}",
+            containerFactory = "checkoutStockCommandListenerContainerFactory"
+    )
+    public void onReserveStockCommand(ReserveStockCommand command) throws ExecutionException, TimeoutException {
+        log.info("Команда резерва: orderId={}, позиций={}", command.orderId(), command.lines().size());
+        StockReservationReply reply;
+        if (command.deadline() != null && command.deadline().isBefore(LocalDateTime.now())) {
+            // Заказ уже отменён по таймауту — резерв никто не подтвердит
+            reply = StockReservationReply.rejected(command.orderId(), "Истёк срок оформления заказа");
+        } else {
+            try {
+                reservationService.reserve(command.orderId(), command.lines());
+                reply = StockReservationReply.reserved(command.orderId());
+            } catch (InsufficientStockException e) {
+                reply = StockReservationReply.rejected(command.orderId(), e.getMessage());
+            }
+        }
+
+        try {
+            kafkaTemplate.send(repliesTopic, command.orderId().toString(), reply)
+                    .get(REPLY_SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Отправка ответа на команду резерва прервана", e);
+        }
+        log.info("Ответ на команду резерва: orderId={}, status={}", command.orderId(), reply.status());
+    }
+}
@@ -1,6 +1,5 @@
 package ru.rfsnab.productservice.service;
 
-import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.BorderStyle;
@@ -23,13 +22,13 @@ import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.rfsnab.productservice.dto.CategoryTreeDTO;
 import ru.rfsnab.productservice.dto.PriceListRequested;
+import ru.rfsnab.productservice.dto.PriceListRow;
 import ru.rfsnab.productservice.dto.PriceListResponse;
 import ru.rfsnab.productservice.exception.CategoryValidationException;
 import ru.rfsnab.productservice.exception.PriceListDispatchException;
@@ -38,27 +37,30 @@ import ru.rfsnab.productservice.exception.PriceListNotReadyException;
 import ru.rfsnab.productservice.exception.PriceListPendingException;
 import ru.rfsnab.productservice.model.PriceListRequest;
 import ru.rfsnab.productservice.model.PriceListStatus;
-import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.repository.PriceListRequestRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -121,7 +123,6 @@ public class PriceListService {
     private final CategoryService categoryService;
     private final StorageService storageService;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final EntityManager entityManager;
 
     @Transactional
     public PriceListResponse create(Long userId, String clientType, List<Long> categoryIds) {
@@ -143,6 +144,16 @@ public class PriceListService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
+        String contentKey = contentKey(clientType, categoryIds);
+        Optional<PriceListRequest> reusable = findReusable(contentKey);
+        if (reusable.isPresent()) {
+            // Тот же прайс уже сформирован сегодня по неизменному каталогу — отдаём готовый файл без генерации
+            copyResult(reusable.get(), request, contentKey);
+            request = priceListRequestRepository.save(request);
+            log.info("Прайс-лист requestId={} выдан из готового файла {}", request.getId(), request.getFileKey());
+            return toResponse(request);
+        }
+
         try {
             request = priceListRequestRepository.saveAndFlush(request);
         } catch (DataIntegrityViolationException e) {
@@ -211,6 +222,38 @@ public class PriceListService {
             return;
         }
 
+        try {
+            String contentKey = contentKey(request.getClientType(), request.getCategoryIds());
+            Optional<PriceListRequest> reusable = findReusable(contentKey);
+            if (reusable.isPresent()) {
+                copyResult(reusable.get(), request, contentKey);
+                priceListRequestRepository.save(request);
+                log.info("Прайс-лист requestId={} выдан из готового файла {}", requestId, request.getFileKey());
+                return;
+            }
+
+            String fileKey = "price-lists/%d/%d.xlsx".formatted(request.getUserId(), request.getId());
+            int rowCount = writeWorkbook(request, fileKey);
+
+            request.setStatus(PriceListStatus.READY);
+            request.setFileKey(fileKey);
+            request.setContentKey(contentKey);
+            request.setRowCount(rowCount);
+            request.setCompletedAt(LocalDateTime.now());
+            priceListRequestRepository.save(request);
+
+            log.info("Прайс-лист requestId={} сгенерирован: rowCount={}, fileKey={}", requestId, rowCount, fileKey);
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка генерации прайс-листа requestId={}: {}", requestId, e.getMessage(), e);
+            markFailed(requestId, e.getMessage());
+        }
+    }
+
+    /**
+     * Формирует книгу и пишет её сразу в multipart-загрузку S3: в памяти только окно строк SXSSF
+     * и одна часть загрузки. Возвращает число товарных строк.
+     */
+    private int writeWorkbook(PriceListRequest request, String fileKey) throws IOException {
         try (SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_ACCESS_WINDOW)) {
             SXSSFSheet sheet = workbook.createSheet("Прайс-лист");
             sheet.setColumnWidth(COL_NUMBER, COL_WIDTH_NUMBER);
@@ -236,30 +279,61 @@ public class PriceListService {
                 writeCategoryBranch(sheet, styles, node, 0, isB2B, rowIndexHolder, visitedCategoryIds,
                         categoryStylesByLevel);
             }
-            int rowCount = rowIndexHolder[1];
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            workbook.write(out);
-            workbook.dispose();
+            try {
+                storageService.uploadStream(fileKey, XLSX_CONTENT_TYPE, workbook::write);
+            } finally {
+                workbook.dispose();
+            }
+            return rowIndexHolder[1];
+        }
+    }
 
-            String fileKey = "price-lists/%d/%d.xlsx".formatted(request.getUserId(), request.getId());
-            storageService.uploadBytes(out.toByteArray(), fileKey, XLSX_CONTENT_TYPE);
+    private Optional<PriceListRequest> findReusable(String contentKey) {
+        return priceListRequestRepository
+                .findFirstByContentKeyAndStatusOrderByCreatedAtDesc(contentKey, PriceListStatus.READY)
+                .filter(ready -> ready.getFileKey() != null && storageService.fileExists(ready.getFileKey()));
+    }
 
-            // request откреплён от контекста entityManager.clear() в цикле — перечитываем управляемый объект
-            PriceListRequest managed = priceListRequestRepository.findById(requestId).orElseThrow();
-            managed.setStatus(PriceListStatus.READY);
-            managed.setFileKey(fileKey);
-            managed.setRowCount(rowCount);
-            managed.setCompletedAt(LocalDateTime.now());
-            priceListRequestRepository.save(managed);
+    private void copyResult(PriceListRequest source, PriceListRequest target, String contentKey) {
+        target.setStatus(PriceListStatus.READY);
+        target.setFileKey(source.getFileKey());
+        target.setContentKey(contentKey);
+        target.setRowCount(source.getRowCount());
+        target.setCompletedAt(LocalDateTime.now());
+    }
 
-            log.info("Прайс-лист requestId={} сгенерирован: rowCount={}, fileKey={}", requestId, rowCount, fileKey);
-        } catch (IOException | RuntimeException e) {
-            log.error("Ошибка генерации прайс-листа requestId={}: {}", requestId, e.getMessage(), e);
-            markFailed(requestId, e.getMessage());
+    /**
+     * Отпечаток содержимого прайса: дата в шапке, тип клиента (колонка цены), набор категорий,
+     * структура выбранных веток дерева и версия каталога (число товаров + последнее изменение).
+     * Любая правка товара меняет updatedAt, удаление — число товаров, поэтому старый файл не переиспользуется.
+     */
+    String contentKey(String clientType, List<Long> categoryIds) {
+        StringBuilder key = new StringBuilder()
+                .append(LocalDate.now()).append('|')
+                .append(clientType).append('|')
+                .append(categoryIds.stream().distinct().sorted().toList()).append('|')
+                .append(productRepository.count()).append('|')
+                .append(productRepository.findLastUpdatedAt()).append('|');
+        for (CategoryTreeDTO node : findSelectedCategoryNodes(categoryIds)) {
+            appendBranch(key, node);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
         }
     }
 
+    private void appendBranch(StringBuilder key, CategoryTreeDTO node) {
+        key.append('(').append(node.getId()).append(':').append(node.getName()).append(':').append(node.getDisplayOrder());
+        for (CategoryTreeDTO child : node.getChildren()) {
+            appendBranch(key, child);
+        }
+        key.append(')');
+    }
+
     private void markFailed(Long requestId, String errorMessage) {
         priceListRequestRepository.findById(requestId).ifPresent(request -> {
             request.setStatus(PriceListStatus.FAILED);
@@ -505,25 +579,30 @@ public class PriceListService {
             return;
         }
 
-        boolean[] headerWritten = {false};
+        boolean headerWritten = false;
 
-        int page = 0;
-        Page<Product> productPage;
+        // Keyset по (displayOrder, id): страница продолжает с последней строки, без OFFSET и без сущностей
+        int afterOrder = Integer.MIN_VALUE;
+        long afterId = 0L;
+        List<PriceListRow> rows;
         do {
-            productPage = productRepository.findByCategoryIdAndIsActiveTrue(
-                    node.getId(), PageRequest.of(page, GENERATION_PAGE_SIZE));
+            rows = productRepository.findPriceListRows(
+                    node.getId(), afterOrder, afterId, PageRequest.of(0, GENERATION_PAGE_SIZE));
 
-            for (Product product : productPage.getContent()) {
-                if (!headerWritten[0]) {
+            for (PriceListRow product : rows) {
+                if (!headerWritten) {
                     writeCategoryHeaderRow(sheet, styles, node.getName(), level, rowIndexHolder, categoryStylesByLevel);
-                    headerWritten[0] = true;
+                    headerWritten = true;
                 }
                 writeProductRow(sheet, styles, product, isB2B, rowIndexHolder);
             }
 
-            entityManager.clear();
-            page++;
-        } while (productPage.hasNext());
+            if (!rows.isEmpty()) {
+                PriceListRow last = rows.get(rows.size() - 1);
+                afterOrder = last.displayOrder();
+                afterId = last.id();
+            }
+        } while (rows.size() == GENERATION_PAGE_SIZE);
 
         for (CategoryTreeDTO child : node.getChildren()) {
             writeCategoryBranch(sheet, styles, child, level + 1, isB2B, rowIndexHolder, visitedCategoryIds,
@@ -543,16 +622,16 @@ public class PriceListService {
         writeCell(row, COL_NAME, categoryName, style);
     }
 
-    private void writeProductRow(SXSSFSheet sheet, Map<String, CellStyle> styles, Product product,
+    private void writeProductRow(SXSSFSheet sheet, Map<String, CellStyle> styles, PriceListRow product,
                                   boolean isB2B, int[] rowIndexHolder) {
         Row row = sheet.createRow(rowIndexHolder[0]++);
-        BigDecimal price = isB2B ? product.getPrice() : product.getWholesalePrice();
+        BigDecimal price = isB2B ? product.price() : product.wholesalePrice();
         int number = ++rowIndexHolder[1];
 
         writeCell(row, COL_NUMBER, String.valueOf(number), styles.get("number"));
-        writeCell(row, COL_SKU, product.getSku(), styles.get("productCell"));
-        writeCell(row, COL_NAME, product.getName(), styles.get("productName"));
-        writeCell(row, COL_UNIT, product.getUnitOfMeasure(), styles.get("unit"));
+        writeCell(row, COL_SKU, product.sku(), styles.get("productCell"));
+        writeCell(row, COL_NAME, product.name(), styles.get("productName"));
+        writeCell(row, COL_UNIT, product.unitOfMeasure(), styles.get("unit"));
         boolean hasPrice = price != null && price.signum() > 0;
         writeCell(row, COL_PRICE, hasPrice ? price.toPlainString() : PRICE_ON_REQUEST, styles.get("price"));
     }
@@ -16,6 +16,8 @@ public class ProductAttributeService {
 
     private final ProductAttributeRepository attributeRepository;
     private final ProductService productService;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache detailCache;
 
     /**
      * Добавить атрибут к товару
@@ -28,7 +30,10 @@ public class ProductAttributeService {
         Product product = productService.getProductById(productId);
 
         attribute.setProduct(product);
-        return attributeRepository.save(attribute);
+        ProductAttribute saved = attributeRepository.save(attribute);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
+        return saved;
     }
 
     /**
@@ -50,7 +55,10 @@ public class ProductAttributeService {
         } else {
             throw new BusinessException("Обновляемые данные не должны быть пустыми");
         }
-        return attributeRepository.save(existing);
+        ProductAttribute saved = attributeRepository.save(existing);
+        facetIndex.invalidateProducts(List.of(existing.getProduct().getId()));
+        detailCache.evictProducts(List.of(existing.getProduct().getId()));
+        return saved;
     }
 
     /**
@@ -62,6 +70,10 @@ public class ProductAttributeService {
         if(!attributeRepository.existsById(id)){
             throw new BusinessException("Аттрибут не найден id="+id);
         }
+        attributeRepository.findProductIdById(id).ifPresent(productId -> {
+            facetIndex.invalidateProducts(List.of(productId));
+            detailCache.evictProducts(List.of(productId));
+        });
         attributeRepository.deleteById(id);
     }
 
@@ -73,6 +85,8 @@ public class ProductAttributeService {
     public void deleteAllAttributes(Long productId){
         productService.getProductById(productId);
         attributeRepository.deleteAllByProduct(productId);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
     }
 
     /**
@@ -0,0 +1,95 @@
+package ru.rfsnab.productservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import ru.rfsnab.productservice.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Курсор keyset-прокрутки товаров: сортировка + значения ключа сортировки последней выданной строки.
+ * Наружу уходит непрозрачной base64url-строкой; клиент передаёт её обратно без разбора.
+ * Сортировка фиксируется в курсоре — следующие порции идут в том же порядке, что и первая.
+ * Разрешены только NOT NULL поля (keyset не умеет сравнивать NULL), id всегда замыкает ключ.
+ */
+record ProductCursor(Sort sort, KeysetScrollPosition position) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final Map<String, Function<String, Object>> SORTABLE = Map.of(
+            "id", Long::valueOf,
+            "name", value -> value,
+            "displayOrder", Integer::valueOf,
+            "createdAt", LocalDateTime::parse,
+            "updatedAt", LocalDateTime::parse
+    );
+
+    /** Первая порция: сортировка из запроса, дополненная id как уникальным тайбрейкером. */
+    static ProductCursor first(Sort requested) {
+        for (Sort.Order order : requested) {
+            requireSortable(order.getProperty());
+        }
+        Sort sort = requested.getOrderFor("id") != null
+                ? requested
+                : requested.and(Sort.by(Sort.Direction.ASC, "id"));
+        return new ProductCursor(sort, ScrollPosition.keyset());
+    }
+
+    static ProductCursor decode(String token) {
+        try {
+            Key[] keys = JSON.readValue(Base64.getUrlDecoder().decode(token), Key[].class);
+            List<Sort.Order> orders = new ArrayList<>();
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Key key : keys) {
+                Function<String, Object> parser = requireSortable(key.property());
+                orders.add(new Sort.Order(Sort.Direction.fromString(key.direction()), key.property()));
+                values.put(key.property(), parser.apply(key.value()));
+            }
+            if (orders.isEmpty() || !values.containsKey("id")) {
+                throw new BusinessException("Некорректный курсор");
+            }
+            return new ProductCursor(Sort.by(orders), ScrollPosition.forward(values));
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException("Некорректный курсор");
+        }
+    }
+
+    /** Курсор порции, следующей за строкой с позицией last (Window.positionAt). */
+    String encodeAfter(ScrollPosition last) {
+        Map<String, ?> values = ((KeysetScrollPosition) last).getKeys();
+        List<Key> keys = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            keys.add(new Key(order.getProperty(), order.getDirection().name(),
+                    String.valueOf(values.get(order.getProperty()))));
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(JSON.writeValueAsString(keys).getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сформировать курсор", e);
+        }
+    }
+
+    private static Function<String, Object> requireSortable(String property) {
+        Function<String, Object> parser = SORTABLE.get(property);
+        if (parser == null) {
+            throw new BusinessException("Сортировка по полю '" + property + "' не поддерживается при прокрутке курсором");
+        }
+        return parser;
+    }
+
+    private record Key(String property, String direction, String value) {
+    }
+}
@@ -0,0 +1,320 @@
+package ru.rfsnab.productservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rfsnab.productservice.dto.ProductResponse;
+import ru.rfsnab.productservice.repository.ProductRepository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш собранных карточек товара (товар + варианты + картинки/атрибуты/видео/документы)
+ * для GET /products/{id} и /slug/{slug} — самых частых чтений (витрина и корзина order-service).
+ *
+ * Два уровня: L1 — Caffeine в памяти узла, L2 — Redis, общий для реплик. Slug хранится
+ * отдельной ссылкой slug → id. Запись товара сбрасывает ключи точечно (сам товар и его
+ * родитель-вариант) после коммита и рассылает id в канал {@link #CHANNEL}: остальные узлы
+ * чистят свой L1. Pub/sub не гарантирует доставку, поэтому L1 живёт недолго (local-ttl-minutes).
+ *
+ * Запись в L2 — compare-and-set по версии товара в Redis: сброс увеличивает версию, а узел,
+ * собравший карточку из снимка до чужого сброса, не перезапишет L2 устаревшей копией.
+ *
+ * Акционная цена зависит от категории, а дерево категорий меняется отдельно от товаров:
+ * запись помнит процент и название категории, с которыми собрана, и при расхождении
+ * с текущим деревом (CategoryService, в памяти) считается промахом.
+ *
+ * Redis — только ускорение: при его недоступности карточка читается из БД.
+ * Возвращаемые объекты разделяются между запросами — изменять их нельзя.
+ */
+@Slf4j
+@Component
+public class ProductDetailCache implements MessageListener {
+
+    public static final String CHANNEL = "product-service:product-cache";
+    static final String KEY_PREFIX = "product-service:product:";
+    static final String SLUG_KEY_PREFIX = "product-service:product-slug:";
+    static final String VERSION_KEY_PREFIX = "product-service:product-version:";
+
+    /**
+     * KEYS[1] — карточка, KEYS[2] — версия товара; ARGV: версия, прочитанная до сборки карточки
+     * (нет ключа — '0'), JSON карточки, TTL в миллисекундах. 1 — записали, 0 — товар успели сбросить.
+     */
+    static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[2]) or '0'
+            if current ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS — пары (версия, карточка) сбрасываемых товаров; ARGV[1] — TTL версии в миллисекундах.
+     * Версия растёт раньше удаления карточки, поэтому начатая до сброса запись не пройдёт.
+     */
+    static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #KEYS, 2 do
+                redis.call('INCR', KEYS[i])
+                redis.call('PEXPIRE', KEYS[i], ARGV[1])
+                redis.call('DEL', KEYS[i + 1])
+            end
+            return #KEYS / 2
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ProductRepository productRepository;
+    private final CategoryService categoryService;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+
+    private final Cache<Long, Entry> local;
+    private final Cache<String, Long> slugs;
+
+    // Растёт на каждой инвалидации: карточка, чтение которой началось до неё, в L1 не кладётся
+    private final AtomicLong modCount = new AtomicLong();
+
+    public ProductDetailCache(StringRedisTemplate redisTemplate,
+                              ObjectMapper objectMapper,
+                              ProductRepository productRepository,
+                              CategoryService categoryService,
+                              @Value("${product-service.product-cache.redis.enabled:true}") boolean redisEnabled,
+                              @Value("${product-service.product-cache.redis.ttl-minutes:30}") long redisTtlMinutes,
+                              @Value("${product-service.product-cache.local-max-size:10000}") long localMaxSize,
+                              @Value("${product-service.product-cache.local-ttl-minutes:5}") long localTtlMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.productRepository = productRepository;
+        this.categoryService = categoryService;
+        this.redisEnabled = redisEnabled;
+        this.redisTtl = Duration.ofMinutes(redisTtlMinutes);
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(localTtlMinutes))
+                .build();
+        this.slugs = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(localTtlMinutes))
+                .build();
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    /**
+     * Карточка по id: L1 → L2 → loader (БД). Собранная loader'ом карточка кладётся в оба уровня;
+     * версия товара читается до loader'а и сверяется при записи в L2.
+     */
+    public ProductResponse get(Long id, Supplier<ProductResponse> loader) {
+        Entry cached = local.getIfPresent(id);
+        if (cached != null && isFresh(cached)) {
+            return cached.response();
+        }
+
+        long stamp = modCount.get();
+        Entry shared = readShared(id);
+        if (shared != null && isFresh(shared)) {
+            putLocal(stamp, id, shared);
+            return shared.response();
+        }
+
+        String version = readVersion(id);
+        ProductResponse response = loader.get();
+        Entry entry = entryOf(response);
+        if (putLocal(stamp, id, entry) && version != null) {
+            writeShared(id, version, entry);
+        }
+        return response;
+    }
+
+    /**
+     * id товара по slug из кэша; null — ссылка не закэширована. Ссылка может устареть
+     * (slug сменился) — вызывающий сверяет slug полученной карточки.
+     */
+    public Long findIdBySlug(String slug) {
+        Long id = slugs.getIfPresent(slug);
+        if (id != null || !redisEnabled) {
+            return id;
+        }
+        try {
+            String value = redisTemplate.opsForValue().get(SLUG_KEY_PREFIX + slug);
+            if (value != null) {
+                id = Long.valueOf(value);
+                slugs.put(slug, id);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать slug '{}' из Redis: {}", slug, e.getMessage());
+        }
+        return id;
+    }
+
+    public void rememberSlug(String slug, Long id) {
+        slugs.put(slug, id);
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(SLUG_KEY_PREFIX + slug, String.valueOf(id), redisTtl);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать slug '{}' в Redis: {}", slug, e.getMessage());
+        }
+    }
+
+    /**
+     * Сбросить карточки изменённых товаров и их родителей (карточка родителя содержит варианты).
+     * Родители читаются сейчас — внутри транзакции запрос видит её несохранённые изменения,
+     * поэтому при удалении вызывать до удаления. Сам сброс внутри транзакции откладывается до коммита.
+     */
+    public void evictProducts(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>(productIds);
+        ids.addAll(productRepository.findParentProductIdsByIdIn(ids));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(ids);
+                }
+            });
+        } else {
+            evict(ids);
+        }
+    }
+
+    /**
+     * Оповещение от другого узла: сбросить L1 у перечисленных товаров.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            evictLocal(Arrays.stream(body.split(",")).map(Long::valueOf).toList());
+        } catch (NumberFormatException e) {
+            log.warn("Некорректный список товаров в канале {}: '{}'", CHANNEL, body);
+        }
+    }
+
+    private void evict(Set<Long> ids) {
+        evictLocal(ids);
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            List<String> keys = ids.stream()
+                    .flatMap(id -> Stream.of(VERSION_KEY_PREFIX + id, KEY_PREFIX + id))
+                    .toList();
+            redisTemplate.execute(EVICT_SCRIPT, keys, String.valueOf(redisTtl.toMillis()));
+            redisTemplate.convertAndSend(CHANNEL, ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сбросить карточки товаров {} в Redis: {}", ids, e.getMessage());
+        }
+        log.debug("Кэш карточек: сброшены товары {}", ids);
+    }
+
+    private void evictLocal(Collection<Long> ids) {
+        modCount.incrementAndGet();
+        local.invalidateAll(ids);
+    }
+
+    private boolean putLocal(long stamp, Long id, Entry entry) {
+        if (modCount.get() != stamp) {
+            return false;
+        }
+        local.put(id, entry);
+        return true;
+    }
+
+    private Entry readShared(Long id) {
+        if (!redisEnabled) {
+            return null;
+        }
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + id);
+            return json != null ? objectMapper.readValue(json, Entry.class) : null;
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Не удалось прочитать карточку товара {} из Redis: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Версия товара в L2 ('0' — товар не сбрасывался за время жизни версии); null — Redis недоступен. */
+    private String readVersion(Long id) {
+        if (!redisEnabled) {
+            return null;
+        }
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + id);
+            return version != null ? version : "0";
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать версию товара {} из Redis: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(Long id, String version, Entry entry) {
+        try {
+            Long written = redisTemplate.execute(WRITE_SCRIPT, List.of(KEY_PREFIX + id, VERSION_KEY_PREFIX + id),
+                    version, objectMapper.writeValueAsString(entry), String.valueOf(redisTtl.toMillis()));
+            if (!Long.valueOf(1).equals(written)) {
+                log.debug("Кэш карточек: товар {} сброшен во время сборки, в Redis не записан", id);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Не удалось записать карточку товара {} в Redis: {}", id, e.getMessage());
+        }
+    }
+
+    private Entry entryOf(ProductResponse response) {
+        Long categoryId = response.getCategoryId();
+        return categoryId == null
+                ? new Entry(response, null, null)
+                : new Entry(response, categoryService.getCategorySaleMarkup(categoryId),
+                        categoryService.getCategoryNameById(categoryId));
+    }
+
+    /** Карточка собрана при тех же акции и названии категории, что и в текущем дереве. */
+    private boolean isFresh(Entry entry) {
+        Long categoryId = entry.response().getCategoryId();
+        if (categoryId == null) {
+            return true;
+        }
+        BigDecimal markup = categoryService.getCategorySaleMarkup(categoryId);
+        boolean sameMarkup = markup == null || entry.categoryMarkup() == null
+                ? markup == entry.categoryMarkup()
+                : markup.compareTo(entry.categoryMarkup()) == 0;
+        return sameMarkup && Objects.equals(categoryService.getCategoryNameById(categoryId), entry.categoryName());
+    }
+
+    /**
+     * Карточка и состояние категории, при котором она собрана.
+     */
+    record Entry(ProductResponse response, BigDecimal categoryMarkup, String categoryName) {
+    }
+}
@@ -0,0 +1,306 @@
+package ru.rfsnab.productservice.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.rfsnab.productservice.dto.FacetDto;
+import ru.rfsnab.productservice.repository.ProductAttributeRepository;
+import ru.rfsnab.productservice.repository.ProductRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс фасетов каталога в памяти: для каждой категории — свойство → значение → битовая
+ * карта её активных товаров-родителей. Товар привязан ровно к одной категории, поэтому
+ * счётчики по поддереву — сумма счётчиков его категорий, а фильтр по выбранным свойствам —
+ * пересечение карт внутри каждой категории.
+ *
+ * Снимки категорий строятся лениво (все недостающие категории поддерева — одним запросом)
+ * и сбрасываются точечно: только у категорий, чьи товары реально изменились, и только
+ * после коммита изменившей их транзакции. Импорт одного чанка больше не обнуляет фасеты
+ * всего каталога.
+ *
+ * Индекс у каждой реплики свой: сброс рассылается в канал {@link #CHANNEL}, и остальные узлы
+ * сбрасывают те же снимки у себя (как L1 в {@link ProductDetailCache}). Pub/sub не гарантирует
+ * доставку, поэтому снимок живёт не дольше local-ttl-minutes.
+ */
+@Slf4j
+@Service
+public class ProductFacetIndex implements MessageListener {
+
+    public static final String CHANNEL = "product-service:product-facets";
+
+    private final ProductAttributeRepository attributeRepository;
+    private final ProductRepository productRepository;
+    private final CategoryService categoryService;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean syncEnabled;
+
+    private final ConcurrentMap<Long, CategoryFacets> snapshots;
+
+    // Растёт на каждой инвалидации. Снимок, чтение которого началось до инвалидации,
+    // не публикуется: он мог успеть прочитать данные до коммита изменений.
+    private final AtomicLong modCount = new AtomicLong();
+
+    public ProductFacetIndex(ProductAttributeRepository attributeRepository,
+                             ProductRepository productRepository,
+                             CategoryService categoryService,
+                             StringRedisTemplate redisTemplate,
+                             @Value("${product-service.facets.sync.enabled:true}") boolean syncEnabled,
+                             @Value("${product-service.facets.local-ttl-minutes:10}") long localTtlMinutes) {
+        this.attributeRepository = attributeRepository;
+        this.productRepository = productRepository;
+        this.categoryService = categoryService;
+        this.redisTemplate = redisTemplate;
+        this.syncEnabled = syncEnabled;
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(localTtlMinutes))
+                .<Long, CategoryFacets>build()
+                .asMap();
+    }
+
+    public boolean isSyncEnabled() {
+        return syncEnabled;
+    }
+
+    /**
+     * Фасеты поддерева категории со счётчиками товаров.
+     * Счётчик значения свойства P учитывает выбранные значения всех ДРУГИХ свойств
+     * (AND между свойствами, OR внутри свойства) — выбор внутри P его счётчики не сужает.
+     *
+     * @param selected выбранные значения "свойство → значения", пустая карта — без фильтра
+     */
+    public List<FacetDto> getFacets(Long categoryId, Map<String, List<String>> selected) {
+        List<Long> categoryIds = categoryService.getSubtreeCategoryIds(categoryId);
+
+        Map<String, Map<String, Integer>> totals = new TreeMap<>();
+        for (CategoryFacets facets : snapshotsOf(categoryIds)) {
+            facets.accumulate(selected, totals);
+        }
+
+        List<FacetDto> result = new ArrayList<>(totals.size());
+        totals.forEach((name, counts) ->
+                result.add(new FacetDto(name, List.copyOf(counts.keySet()), counts)));
+        return result;
+    }
+
+    /**
+     * Сбросить снимки категорий, затронутых изменением товаров: текущих категорий товаров
+     * и тех, где товары числились до изменения (перенос, деактивация, удаление).
+     * Внутри транзакции сброс откладывается до коммита.
+     */
+    public void invalidateProducts(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = Set.copyOf(productIds);
+        // Текущие категории читаем сейчас: внутри транзакции запрос видит её несохранённые изменения
+        Set<Long> currentCategoryIds = new HashSet<>(productRepository.findCategoryIdsByIdIn(ids));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(ids, currentCategoryIds);
+                    publish(ids, currentCategoryIds);
+                }
+            });
+        } else {
+            evict(ids, currentCategoryIds);
+            publish(ids, currentCategoryIds);
+        }
+    }
+
+    /**
+     * Оповещение от другого узла: "категории|товары" — сбросить те же снимки в своём индексе.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            String[] parts = body.split("\\|", -1);
+            evict(parseIds(parts[1]), parseIds(parts[0]));
+        } catch (RuntimeException e) {
+            log.warn("Некорректное оповещение в канале {}: '{}'", CHANNEL, body);
+        }
+    }
+
+    private void publish(Set<Long> productIds, Set<Long> categoryIds) {
+        if (!syncEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(CHANNEL, joinIds(categoryIds) + "|" + joinIds(productIds));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось разослать сброс фасетов товаров {}: {}", productIds, e.getMessage());
+        }
+    }
+
+    private static String joinIds(Set<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static Set<Long> parseIds(String csv) {
+        return csv.isEmpty()
+                ? Set.of()
+                : Arrays.stream(csv.split(",")).map(Long::valueOf).collect(Collectors.toSet());
+    }
+
+    private void evict(Set<Long> productIds, Set<Long> categoryIds) {
+        Set<Long> affected = new HashSet<>(categoryIds);
+        snapshots.forEach((categoryId, facets) -> {
+            if (facets.containsAny(productIds)) {
+                affected.add(categoryId);
+            }
+        });
+        modCount.incrementAndGet();
+        affected.forEach(snapshots::remove);
+        log.debug("Фасеты: сброшены снимки категорий {} после изменения {} товаров", affected, productIds.size());
+    }
+
+    private List<CategoryFacets> snapshotsOf(List<Long> categoryIds) {
+        List<CategoryFacets> result = new ArrayList<>(categoryIds.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long categoryId : categoryIds) {
+            CategoryFacets facets = snapshots.get(categoryId);
+            if (facets != null) {
+                result.add(facets);
+            } else {
+                missing.add(categoryId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long stamp = modCount.get();
+        Map<Long, CategoryFacets.Builder> builders = new HashMap<>();
+        for (Long categoryId : missing) {
+            builders.put(categoryId, new CategoryFacets.Builder());
+        }
+        for (Object[] row : attributeRepository.findFacetEntries(missing, ProductAttributeExclusions.NAMES)) {
+            builders.get((Long) row[0]).add((Long) row[1], (String) row[2], (String) row[3]);
+        }
+
+        boolean publish = modCount.get() == stamp;
+        builders.forEach((categoryId, builder) -> {
+            CategoryFacets facets = builder.build();
+            if (publish) {
+                snapshots.putIfAbsent(categoryId, facets);
+            }
+            result.add(facets);
+        });
+        return result;
+    }
+
+    /**
+     * Неизменяемый снимок фасетов одной категории. Бит i карты — товар productIds[i].
+     */
+    static final class CategoryFacets {
+
+        private final long[] productIds;
+        private final Map<String, Map<String, BitSet>> bitmaps;
+
+        private CategoryFacets(long[] productIds, Map<String, Map<String, BitSet>> bitmaps) {
+            this.productIds = productIds;
+            this.bitmaps = bitmaps;
+        }
+
+        boolean containsAny(Set<Long> ids) {
+            for (Long id : ids) {
+                if (Arrays.binarySearch(productIds, id) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void accumulate(Map<String, List<String>> selected, Map<String, Map<String, Integer>> totals) {
+            bitmaps.forEach((name, byValue) -> {
+                BitSet base = matching(selected, name);
+                Map<String, Integer> counts = totals.computeIfAbsent(name, k -> new TreeMap<>());
+                byValue.forEach((value, bits) -> {
+                    int count;
+                    if (base == null) {
+                        count = bits.cardinality();
+                    } else {
+                        BitSet intersection = (BitSet) bits.clone();
+                        intersection.and(base);
+                        count = intersection.cardinality();
+                    }
+                    counts.merge(value, count, Integer::sum);
+                });
+            });
+        }
+
+        /**
+         * Товары категории, удовлетворяющие выбору по всем свойствам, кроме skipName.
+         * null — ограничений нет.
+         */
+        private BitSet matching(Map<String, List<String>> selected, String skipName) {
+            BitSet result = null;
+            for (Map.Entry<String, List<String>> e : selected.entrySet()) {
+                if (e.getKey().equals(skipName)) {
+                    continue;
+                }
+                BitSet any = new BitSet(productIds.length);
+                Map<String, BitSet> byValue = bitmaps.getOrDefault(e.getKey(), Map.of());
+                for (String value : e.getValue()) {
+                    BitSet bits = byValue.get(value);
+                    if (bits != null) {
+                        any.or(bits);
+                    }
+                }
+                if (result == null) {
+                    result = any;
+                } else {
+                    result.and(any);
+                }
+            }
+            return result;
+        }
+
+        static final class Builder {
+            private final Set<Long> productIds = new LinkedHashSet<>();
+            private final List<Object[]> rows = new ArrayList<>();
+
+            void add(Long productId, String name, String value) {
+                productIds.add(productId);
+                rows.add(new Object[]{productId, name, value});
+            }
+
+            CategoryFacets build() {
+                long[] ids = productIds.stream().mapToLong(Long::longValue).sorted().toArray();
+                Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+                for (Object[] row : rows) {
+                    int bit = Arrays.binarySearch(ids, (Long) row[0]);
+                    bitmaps.computeIfAbsent((String) row[1], k -> new HashMap<>())
+                            .computeIfAbsent((String) row[2], k -> new BitSet(ids.length))
+                            .set(bit);
+                }
+                return new CategoryFacets(ids, bitmaps);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ public class ProductImageService {
     private final ProductImageRepository imageRepository;
     private final ProductService productService;
     private final StorageService storageService;
+    private final ProductDetailCache detailCache;
     private record ImageDimensions(int width, int height) {}
 
     /**
@@ -63,6 +64,7 @@ public class ProductImageService {
                 .displayOrder(nextOrder)
                 .build();
 
+        detailCache.evictProducts(List.of(productId));
         return imageRepository.save(image);
     }
 
@@ -106,6 +108,7 @@ public class ProductImageService {
                 .displayOrder(nextOrder)
                 .build();
 
+        detailCache.evictProducts(List.of(productId));
         return imageRepository.save(image);
     }
 
@@ -143,6 +146,7 @@ public class ProductImageService {
 
         // Удаляем из БД
         imageRepository.deleteById(imageId);
+        detailCache.evictProducts(List.of(image.getProduct().getId()));
     }
 
     /**
@@ -158,6 +162,7 @@ public class ProductImageService {
 
         Long productId = image.getProduct().getId();
         imageRepository.resetPrimaryForProduct(productId);
+        detailCache.evictProducts(List.of(productId));
 
         image.setIsPrimary(true);
         return imageRepository.save(image);
@@ -179,6 +184,7 @@ public class ProductImageService {
                 .orElseThrow(() -> new BusinessException("Изображение не найдено"));
 
         image.setDisplayOrder(newOrder);
+        detailCache.evictProducts(List.of(image.getProduct().getId()));
         return imageRepository.save(image);
     }
 
@@ -194,6 +200,7 @@ public class ProductImageService {
                 .orElseThrow(() -> new BusinessException("Изображение не найдено"));
 
         image.setAltText(altText);
+        detailCache.evictProducts(List.of(image.getProduct().getId()));
         return imageRepository.save(image);
     }
 
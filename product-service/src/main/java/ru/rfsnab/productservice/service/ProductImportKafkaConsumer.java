@@ -0,0 +1,121 @@
+package ru.rfsnab.productservice.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportAction;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportItemResult;
+import ru.rfsnab.productservice.dto.ProductImportItem;
+import ru.rfsnab.productservice.dto.ProductImportMessage;
+import ru.rfsnab.productservice.dto.ProductImportResultEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Потоковый импорт товаров из integration-service: топик product-import-items, по товару на сообщение.
+ *
+ * Слушатель пакетный: выборка consumer'а (до max.poll.records) импортируется как batch-импорт
+ * по прогонам, результат каждого прогона уходит в product-import-results, и только после этого
+ * контейнер коммитит offset'ы всей выборки. Упавшая выборка переигрывается целиком
+ * (DefaultErrorHandler) — импорт по externalId идемпотентен.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductImportKafkaConsumer {
+
+    private static final long RESULT_SEND_TIMEOUT_SECONDS = 10;
+
+    private final ProductImportService productImportService;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Validator validator;
+
+    @Value("${app.kafka.topic.product-import-results}")
+    private String resultsTopic;
+
+    @KafkaListener(
+            topics = "${app.kafka.topic.product-import-items}",
+            groupId = "${app.kafka.consumer.import-group-id}",
+            containerFactory = "productImportListenerContainerFactory"
+    )
+    public void onImportItems(List<ConsumerRecord<String, ProductImportMessage>> records)
+            throws ExecutionException, TimeoutException {
+        Map<String, List<ProductImportItem>> itemsByRun = new LinkedHashMap<>();
+        for (ConsumerRecord<String, ProductImportMessage> record : records) {
+            ProductImportMessage message = record.value();
+            if (message == null || message.runId() == null || message.item() == null) {
+                // Ответа не будет: integration-service отметит товар как failed по таймауту
+                log.warn("Нечитаемое сообщение импорта пропущено: key={}, partition={}, offset={}",
+                        record.key(), record.partition(), record.offset());
+                continue;
+            }
+            itemsByRun.computeIfAbsent(message.runId(), k -> new ArrayList<>()).add(message.item());
+        }
+
+        for (Map.Entry<String, List<ProductImportItem>> entry : itemsByRun.entrySet()) {
+            BatchProductImportResponse response = importValid(entry.getValue());
+            try {
+                kafkaTemplate.send(resultsTopic, entry.getKey(), new ProductImportResultEvent(entry.getKey(), response))
+                        .get(RESULT_SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Отправка результата импорта прервана", e);
+            }
+            log.info("Потоковый импорт: runId={}, получено {}, created={}, updated={}, unchanged={}, failed={}",
+                    entry.getKey(), response.getTotalReceived(), response.getCreated(), response.getUpdated(),
+                    response.getUnchanged(), response.getFailed());
+        }
+    }
+
+    /**
+     * В REST-импорте товары проверяет @Valid контроллера; здесь невалидные товары
+     * получают FAILED сразу, остальные идут в обычный batch-импорт.
+     */
+    private BatchProductImportResponse importValid(List<ProductImportItem> items) {
+        List<ProductImportItem> valid = new ArrayList<>(items.size());
+        List<ImportItemResult> rejected = new ArrayList<>();
+        for (ProductImportItem item : items) {
+            Set<ConstraintViolation<ProductImportItem>> violations = validator.validate(item);
+            if (violations.isEmpty()) {
+                valid.add(item);
+            } else {
+                rejected.add(ImportItemResult.builder()
+                        .externalId(item.getExternalId())
+                        .action(ImportAction.FAILED)
+                        .success(false)
+                        .errorMessage(violations.stream()
+                                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                                .collect(Collectors.joining("; ")))
+                        .build());
+            }
+        }
+        if (rejected.isEmpty()) {
+            return productImportService.importItems(valid);
+        }
+
+        BatchProductImportResponse response = valid.isEmpty()
+                ? BatchProductImportResponse.builder().results(new ArrayList<>()).build()
+                : productImportService.importItems(valid);
+        List<ImportItemResult> results = new ArrayList<>(response.getResults());
+        results.addAll(rejected);
+        response.setResults(results);
+        response.setTotalReceived(items.size());
+        response.setFailed(response.getFailed() + rejected.size());
+        return response;
+    }
+}
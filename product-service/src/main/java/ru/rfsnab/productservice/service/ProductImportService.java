@@ -3,26 +3,30 @@ package ru.rfsnab.productservice.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
-import ru.rfsnab.productservice.configuration.CacheConfig;
 import ru.rfsnab.productservice.dto.BatchProductImportRequest;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportAction;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportItemResult;
 import ru.rfsnab.productservice.dto.ProductImportItem;
+import ru.rfsnab.productservice.dto.ProductTombstoneRequest;
+import ru.rfsnab.productservice.dto.ProductTombstoneResponse;
 import ru.rfsnab.productservice.exception.CategoryNotFoundException;
 import ru.rfsnab.productservice.model.Category;
 import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.model.ProductAttribute;
 import ru.rfsnab.productservice.repository.CategoryRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +39,8 @@ import java.util.stream.Collectors;
  * Матчинг по externalId: существующие товары обновляются, новые создаются.
  * Поле description (зона сайта) никогда не затирается при импорте.
  * Варианты (размерная сетка ФТК) создаются как дочерние записи в таблице products.
+ * Остаток из выгрузки — складской: действующие резервы заказов (уже списанные из stock_quantity)
+ * вычитаются из него при записи, иначе импорт во время резерва «вернул» бы зарезервированный товар.
  */
 @Service
 @RequiredArgsConstructor
@@ -47,21 +53,28 @@ public class ProductImportService {
     private static final int LOGGED_FIELD_LENGTH_THRESHOLD = 200;
     private static final int LOGGED_VALUE_PREVIEW_LENGTH = 100;
 
-    @Value("${product-service.import.chunk-size:25}")
+    @Value("${product-service.import.chunk-size:100}")
     private int chunkSize;
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final PlatformTransactionManager transactionManager;
     private final SlugGeneratorService slugService;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache detailCache;
+    private final StockReservationRepository reservationRepository;
 
-    @CacheEvict(value = CacheConfig.FACETS_CACHE, allEntries = true)
     public BatchProductImportResponse importBatch(BatchProductImportRequest request) {
-        List<ProductImportItem> items = request.getItems();
+        return importItems(request.getItems());
+    }
 
-        Map<String, Product> existingProducts = loadExistingProducts(items);
+    /**
+     * Импорт уже провалидированных товаров: из REST batch-импорта и из Kafka-потока
+     * product-import-items (ProductImportKafkaConsumer), где пачка — одна выборка consumer'а.
+     */
+    public BatchProductImportResponse importItems(List<ProductImportItem> items) {
+        // Занятые slug'и подгружаются по чанкам и только для новых названий (reserveSlugsForNewProducts)
         Set<String> reservedSlugs = ConcurrentHashMap.newKeySet();
-        reservedSlugs.addAll(productRepository.findAllSlugs());
 
         Category importCategory = categoryRepository.findBySlug(IMPORT_CATEGORY_SLUG)
                 .orElseThrow(() -> new CategoryNotFoundException(
@@ -71,37 +84,101 @@ public class ProductImportService {
 
         List<ImportItemResult> allResults = new ArrayList<>(items.size());
         for (List<ProductImportItem> chunk : chunks) {
-            allResults.addAll(processChunk(chunk, existingProducts, reservedSlugs, importCategory));
+            allResults.addAll(processChunk(chunk, reservedSlugs, importCategory));
         }
 
+        // Фасеты и карточки сбрасываются только у реально изменённых товаров
+        List<Long> changedIds = allResults.stream()
+                .filter(r -> r.getAction() == ImportAction.CREATED || r.getAction() == ImportAction.UPDATED)
+                .map(ImportItemResult::getProductId)
+                .toList();
+        facetIndex.invalidateProducts(changedIds);
+        detailCache.evictProducts(changedIds);
+
         return buildResponse(items.size(), allResults);
     }
 
     /**
-     * Каждый товар импортируется в собственной транзакции: ошибка одного товара
-     * откатывает только его изменения и не помечает транзакцию aborted (PostgreSQL 25P02),
-     * из-за чего раньше одна ошибка каскадно валила весь чанк (см. isCascadeFailure).
+     * Tombstone-проход: товары, которых больше нет в полной выгрузке поставщика, и их варианты
+     * снимаются с продажи обнулением остатка. isActive импорт не трогает (новые товары создаются
+     * неактивными и включаются вручную), а остаток — поле импорта: вернувшийся в выгрузку товар
+     * получит его обратно обычным batch-импортом.
+     *
+     * Действующие резервы таких товаров (в том числе уже без свободного остатка) снимаются в той же
+     * транзакции без возврата остатка — иначе отмена заказа или истечение резерва вернули бы
+     * выведенному товару удержанные единицы. Строки товаров блокируются первыми, в порядке id.
+     */
+    public ProductTombstoneResponse withdrawMissing(ProductTombstoneRequest request) {
+        List<String> externalIds = request.getExternalIds();
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        List<Long> withdrawnIds = txTemplate.execute(status -> {
+            List<Long> lockedIds = productRepository.lockByExternalIdOrParent(externalIds);
+            if (lockedIds.isEmpty()) {
+                return List.of();
+            }
+            int released = reservationRepository.releaseWithoutRestockByProductIdIn(lockedIds, LocalDateTime.now());
+            if (released > 0) {
+                log.warn("Tombstone импорта: сняты без возврата остатка {} резервов выведенных товаров", released);
+            }
+            List<Long> ids = productRepository.findIdsInStockByExternalIdOrParent(externalIds);
+            if (!ids.isEmpty()) {
+                productRepository.zeroStockByIdIn(ids);
+            }
+            return ids;
+        });
+
+        facetIndex.invalidateProducts(withdrawnIds);
+        detailCache.evictProducts(withdrawnIds);
+        log.info("Tombstone импорта: прислано {} externalId, снято с остатка {} товаров и вариантов",
+                externalIds.size(), withdrawnIds.size());
+
+        return ProductTombstoneResponse.builder()
+                .requested(externalIds.size())
+                .withdrawn(withdrawnIds.size())
+                .build();
+    }
+
+    /**
+     * Чанк импортируется одной транзакцией: товары и варианты чанка читаются двумя запросами
+     * и остаются managed, изменения уходят JDBC-батчами при коммите (hibernate.jdbc.batch_size),
+     * неизменённые товары и атрибуты не порождают ни одного UPDATE.
+     *
+     * Если чанк упал, он переигрывается по одному товару в отдельных транзакциях — ошибка
+     * одного товара откатывает только его изменения и не помечает транзакцию aborted
+     * (PostgreSQL 25P02, см. isCascadeFailure). Savepoint'ы внутри общей транзакции здесь
+     * не подходят: после ошибки flush сессия Hibernate неконсистентна и не может продолжать
+     * работу с остальными товарами чанка.
      */
     private List<ImportItemResult> processChunk(List<ProductImportItem> chunk,
-                                                Map<String, Product> existingProducts,
                                                 Set<String> reservedSlugs,
                                                 Category importCategory) {
         TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        Set<String> slugsBeforeChunk = Set.copyOf(reservedSlugs);
+        try {
+            return txTemplate.execute(status -> upsertItems(chunk, reservedSlugs, importCategory));
+        } catch (Exception e) {
+            if (chunk.size() > 1) {
+                log.warn("Чанк импорта из {} товаров откатан ({}), повтор по одному товару",
+                        chunk.size(), e.getMessage());
+            }
+            // slug'и откатанных товаров снова свободны
+            reservedSlugs.retainAll(slugsBeforeChunk);
+        }
+
         List<ImportItemResult> results = new ArrayList<>(chunk.size());
         for (ProductImportItem item : chunk) {
-            results.add(processItem(item, existingProducts, reservedSlugs, importCategory, txTemplate));
+            results.add(processItem(item, reservedSlugs, importCategory, txTemplate));
         }
         return results;
     }
 
     private ImportItemResult processItem(ProductImportItem item,
-                                         Map<String, Product> existingProducts,
                                          Set<String> reservedSlugs,
                                          Category importCategory,
                                          TransactionTemplate txTemplate) {
         try {
             return txTemplate.execute(status ->
-                    upsertProduct(item, existingProducts, reservedSlugs, importCategory));
+                    upsertItems(List.of(item), reservedSlugs, importCategory).get(0));
         } catch (Exception e) {
             boolean cascade = isCascadeFailure(e);
             if (cascade) {
@@ -120,8 +197,31 @@ public class ProductImportService {
         }
     }
 
+    /**
+     * Upsert группы товаров в текущей транзакции: один запрос за существующими товарами,
+     * один — за существующими вариантами, slug'и — только для новых названий.
+     * Строки товаров блокируются до чтения, чтобы резервы и остатки читались согласованно.
+     */
+    private List<ImportItemResult> upsertItems(List<ProductImportItem> items,
+                                               Set<String> reservedSlugs,
+                                               Category importCategory) {
+        productRepository.lockByExternalIdIn(collectExternalIds(items));
+        Map<String, Product> existingProducts = loadExistingProducts(items);
+        Map<String, Product> existingChildren = loadExistingChildren(items);
+        Map<Long, Integer> heldStock = loadHeldStock(existingProducts, existingChildren);
+        reserveSlugsForNewProducts(items, existingProducts, existingChildren, reservedSlugs);
+
+        List<ImportItemResult> results = new ArrayList<>(items.size());
+        for (ProductImportItem item : items) {
+            results.add(upsertProduct(item, existingProducts, existingChildren, heldStock, reservedSlugs, importCategory));
+        }
+        return results;
+    }
+
     private ImportItemResult upsertProduct(ProductImportItem item,
                                            Map<String, Product> existingProducts,
+                                           Map<String, Product> existingChildren,
+                                           Map<Long, Integer> heldStock,
                                            Set<String> reservedSlugs,
                                            Category importCategory) {
             Product product = existingProducts.get(item.getExternalId());
@@ -169,7 +269,7 @@ public class ProductImportService {
                 product.setWholesalePrice(item.getWholesalePrice());
             }
             if (item.getStockQuantity() != null) {
-                product.setStockQuantity(item.getStockQuantity());
+                product.setStockQuantity(availableStock(item.getStockQuantity(), heldStock, product.getId()));
             }
 
             List<ProductImportItem.ProductAttributeImportItem> parentAttrs = resolveParentAttributes(item);
@@ -184,7 +284,8 @@ public class ProductImportService {
 
             boolean childrenChanged = false;
             if (item.getVariants() != null && !item.getVariants().isEmpty()) {
-                childrenChanged = upsertChildVariants(savedProduct, item.getVariants(), existingProducts, reservedSlugs, importCategory);
+                childrenChanged = upsertChildVariants(savedProduct, item.getVariants(), existingChildren, heldStock,
+                        reservedSlugs, importCategory);
             }
 
             ImportAction action;
@@ -273,19 +374,10 @@ public class ProductImportService {
      */
     private boolean upsertChildVariants(Product parent,
                                      List<ProductImportItem.VariantImportItem> variantItems,
-                                     Map<String, Product> existingProducts,
+                                     Map<String, Product> existingChildren,
+                                     Map<Long, Integer> heldStock,
                                      Set<String> reservedSlugs,
                                      Category importCategory) {
-        List<String> externalIds = variantItems.stream()
-                .map(ProductImportItem.VariantImportItem::getExternalId)
-                .filter(id -> id != null)
-                .toList();
-
-        Map<String, Product> existingChildren = externalIds.isEmpty()
-                ? Collections.emptyMap()
-                : productRepository.findByExternalIdIn(externalIds).stream()
-                        .collect(Collectors.toMap(Product::getExternalId, Function.identity()));
-
         boolean anyChanged = false;
 
         for (ProductImportItem.VariantImportItem vi : variantItems) {
@@ -315,7 +407,9 @@ public class ProductImportService {
             }
             if (vi.getPrice() != null) child.setPrice(vi.getPrice());
             if (vi.getWholesalePrice() != null) child.setWholesalePrice(vi.getWholesalePrice());
-            if (vi.getStockQuantity() != null) child.setStockQuantity(vi.getStockQuantity());
+            if (vi.getStockQuantity() != null) {
+                child.setStockQuantity(availableStock(vi.getStockQuantity(), heldStock, child.getId()));
+            }
             if (vi.getBarcode() != null) child.setBarcode(vi.getBarcode());
             if (vi.getCountryOfOrigin() != null) child.setCountryOfOrigin(vi.getCountryOfOrigin());
 
@@ -364,6 +458,49 @@ public class ProductImportService {
         return parentName + (vi.getSku() != null ? " (" + vi.getSku() + ")" : "");
     }
 
+    /**
+     * externalId товаров и вариантов группы — для блокировки строк одним запросом.
+     */
+    private List<String> collectExternalIds(List<ProductImportItem> items) {
+        List<String> externalIds = new ArrayList<>(items.size());
+        for (ProductImportItem item : items) {
+            externalIds.add(item.getExternalId());
+            if (item.getVariants() != null) {
+                item.getVariants().stream()
+                        .map(ProductImportItem.VariantImportItem::getExternalId)
+                        .filter(id -> id != null)
+                        .forEach(externalIds::add);
+            }
+        }
+        return externalIds;
+    }
+
+    /**
+     * Сколько единиц существующих товаров и вариантов группы удерживают действующие резервы (productId → qty).
+     */
+    private Map<Long, Integer> loadHeldStock(Map<String, Product> existingProducts,
+                                             Map<String, Product> existingChildren) {
+        List<Long> productIds = new ArrayList<>(existingProducts.size() + existingChildren.size());
+        existingProducts.values().forEach(p -> productIds.add(p.getId()));
+        existingChildren.values().forEach(p -> productIds.add(p.getId()));
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return reservationRepository.sumHeldByProductIdIn(productIds).stream()
+                .collect(Collectors.toMap(StockReservationRepository.HeldStock::getProductId,
+                        held -> held.getQuantity().intValue()));
+    }
+
+    /**
+     * Остаток к записи: складской остаток выгрузки минус действующие резервы.
+     * Если выгрузка уже меньше резервов, пишется 0 — остаток не может быть отрицательным.
+     * У нового товара (id ещё нет) резервов быть не может.
+     */
+    private static int availableStock(int importedStock, Map<Long, Integer> heldStock, Long productId) {
+        Integer held = productId != null ? heldStock.get(productId) : null;
+        return held == null ? importedStock : Math.max(0, importedStock - held);
+    }
+
     private Map<String, Product> loadExistingProducts(List<ProductImportItem> items) {
         List<String> externalIds = items.stream()
                 .map(ProductImportItem::getExternalId)
@@ -372,6 +509,69 @@ public class ProductImportService {
                 .collect(Collectors.toMap(Product::getExternalId, Function.identity()));
     }
 
+    /**
+     * Существующие варианты всех товаров группы одним запросом (раньше — запрос на каждого родителя).
+     */
+    private Map<String, Product> loadExistingChildren(List<ProductImportItem> items) {
+        List<String> externalIds = items.stream()
+                .filter(item -> item.getVariants() != null)
+                .flatMap(item -> item.getVariants().stream())
+                .map(ProductImportItem.VariantImportItem::getExternalId)
+                .filter(id -> id != null)
+                .toList();
+        if (externalIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return productRepository.findByExternalIdIn(externalIds).stream()
+                .collect(Collectors.toMap(Product::getExternalId, Function.identity()));
+    }
+
+    /**
+     * Добавляет в reservedSlugs занятые в БД slug'и, с которыми могут столкнуться новые товары
+     * и варианты группы. Существующим товарам slug не меняется, поэтому для них БД не читается;
+     * для новых — один запрос по базовым slug'ам и по запросу на каждый уже занятый базовый slug
+     * (его суффиксы -2, -3, ...), вместо загрузки всех slug'ов каталога на каждый batch.
+     */
+    private void reserveSlugsForNewProducts(List<ProductImportItem> items,
+                                            Map<String, Product> existingProducts,
+                                            Map<String, Product> existingChildren,
+                                            Set<String> reservedSlugs) {
+        Set<String> baseSlugs = new HashSet<>();
+        for (ProductImportItem item : items) {
+            if (!existingProducts.containsKey(item.getExternalId())) {
+                addBaseSlug(baseSlugs, item.getName());
+            }
+            if (item.getVariants() == null || item.getName() == null) {
+                continue;
+            }
+            for (ProductImportItem.VariantImportItem vi : item.getVariants()) {
+                if (vi.getExternalId() != null && !existingChildren.containsKey(vi.getExternalId())) {
+                    addBaseSlug(baseSlugs, buildVariantName(item.getName(), vi));
+                }
+            }
+        }
+        baseSlugs.removeAll(reservedSlugs);
+        if (baseSlugs.isEmpty()) {
+            return;
+        }
+
+        for (String taken : productRepository.findSlugsIn(baseSlugs)) {
+            reservedSlugs.add(taken);
+            reservedSlugs.addAll(productRepository.findSlugsWithSuffix(taken));
+        }
+    }
+
+    private void addBaseSlug(Set<String> baseSlugs, String name) {
+        try {
+            String slug = slugService.generateSlug(name);
+            if (slug != null) {
+                baseSlugs.add(slug);
+            }
+        } catch (IllegalArgumentException ignored) {
+            // Невалидное название упадёт при обработке самого товара и попадёт в FAILED
+        }
+    }
+
     /**
      * Атрибуты родителя для импорта: явные attributes имеют приоритет; если их нет,
      * берём свойства из properties (ФТК прокидывает характеристики именно так).
@@ -404,12 +604,24 @@ public class ProductImportService {
                 .orElse(null);
     }
 
+    /**
+     * Приводит атрибуты товара к набору из импорта по разнице (имя+значение): удаляются только
+     * пропавшие пары (orphanRemoval), добавляются только новые. Совпадающие атрибуты не трогаются —
+     * повторная синхронизация без изменений не пишет в product_attributes ничего.
+     */
     private void updateAttributes(Product product, List<ProductImportItem.ProductAttributeImportItem> attrItems) {
         if (attrItems == null || attrItems.isEmpty()) {
             return;
         }
-        product.getAttributes().clear();
+        Map<String, ProductImportItem.ProductAttributeImportItem> wanted = new LinkedHashMap<>();
         for (ProductImportItem.ProductAttributeImportItem attrItem : attrItems) {
+            wanted.putIfAbsent(attributeKey(attrItem.getName(), attrItem.getValue()), attrItem);
+        }
+
+        product.getAttributes().removeIf(a ->
+                wanted.remove(attributeKey(a.getAttributeName(), a.getAttributeValue())) == null);
+
+        for (ProductImportItem.ProductAttributeImportItem attrItem : wanted.values()) {
             ProductAttribute attribute = ProductAttribute.builder()
                     .product(product)
                     .attributeName(attrItem.getName())
@@ -419,9 +631,13 @@ public class ProductImportService {
         }
     }
 
+    private static String attributeKey(String name, String value) {
+        return name + "\u0000" + value;
+    }
+
     /**
      * Сравнивает текущие атрибуты товара с атрибутами из импорта по значению (имя+значение),
-     * не по identity — иначе updateAttributes() (clear + пересоздание) всегда бы считался изменением.
+     * не по identity — вновь созданные ProductAttribute не должны считаться изменением.
      * Если attrItems==null/пусто — updateAttributes() ничего не делает, значит изменений нет.
      */
     private boolean attributesChanged(Product product, List<ProductImportItem.ProductAttributeImportItem> attrItems) {
@@ -429,10 +645,10 @@ public class ProductImportService {
             return false;
         }
         Set<String> currentPairs = product.getAttributes().stream()
-                .map(a -> a.getAttributeName() + " " + a.getAttributeValue())
+                .map(a -> attributeKey(a.getAttributeName(), a.getAttributeValue()))
                 .collect(Collectors.toSet());
         Set<String> newPairs = attrItems.stream()
-                .map(a -> a.getName() + " " + a.getValue())
+                .map(a -> attributeKey(a.getName(), a.getValue()))
                 .collect(Collectors.toSet());
         return !currentPairs.equals(newPairs);
     }
@@ -2,28 +2,32 @@ package ru.rfsnab.productservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.rfsnab.productservice.configuration.CacheConfig;
+import ru.rfsnab.productservice.dto.CursorPage;
 import ru.rfsnab.productservice.dto.FacetDto;
+import ru.rfsnab.productservice.dto.ProductResponse;
 import ru.rfsnab.productservice.exception.BusinessException;
 import ru.rfsnab.productservice.exception.CategoryNotFoundException;
 import ru.rfsnab.productservice.exception.ProductNotFoundException;
+import ru.rfsnab.productservice.mapper.ProductMapper;
 import ru.rfsnab.productservice.model.Category;
 import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.repository.CategoryRepository;
-import ru.rfsnab.productservice.repository.ProductAttributeRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
 import ru.rfsnab.productservice.spec.ProductSpecifications;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,11 +39,20 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+    /** Максимум id в одном запросе снимков (см. ProductServiceClient в order-service). */
+    public static final int MAX_SNAPSHOT_IDS = 500;
+    /** Максимальный размер порции при прокрутке курсором. */
+    public static final int MAX_SCROLL_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final CategoryService categoryService;
     private final SlugGeneratorService slugGenerator;
-    private final ProductAttributeRepository attributeRepository;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache detailCache;
+
+    @Value("${product-service.search.full-text:true}")
+    private boolean fullTextSearchEnabled;
 
     /***
      * Подсчет товаров в категории
@@ -78,6 +91,9 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(product);
+        // Новый товар меняет счётчики фасетов категории, вариант — карточку родителя
+        facetIndex.invalidateProducts(List.of(saved.getId()));
+        detailCache.evictProducts(List.of(saved.getId()));
         log.info("Продукт создан с id={}, slug={}", saved.getId(), product.getSlug());
 
         return saved;
@@ -123,6 +139,8 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(existing);
+        facetIndex.invalidateProducts(List.of(saved.getId()));
+        detailCache.evictProducts(List.of(saved.getId()));
         log.info("Продукт с id={} обновлен ", saved.getId());
 
         return saved;
@@ -149,6 +167,54 @@ public class ProductService {
                 .orElseThrow(() -> new ProductNotFoundException(id));
     }
 
+    /**
+     * Карточка товара с вариантами — через кэш карточек (ProductDetailCache)
+     */
+    public ProductResponse getProductResponse(Long id) {
+        return detailCache.get(id, () -> assembleResponse(getProductById(id)));
+    }
+
+    /**
+     * Карточка товара по slug — через кэш: slug → id, затем карточка по id.
+     * Закэшированная ссылка могла устареть (slug сменился) — тогда ищем по БД.
+     */
+    public ProductResponse getProductResponseBySlug(String slug) {
+        Long cachedId = detailCache.findIdBySlug(slug);
+        if (cachedId != null) {
+            try {
+                ProductResponse response = getProductResponse(cachedId);
+                if (slug.equals(response.getSlug())) {
+                    return response;
+                }
+            } catch (ProductNotFoundException e) {
+                log.debug("Ссылка slug '{}' -> {} устарела", slug, cachedId);
+            }
+        }
+        Product product = getProductBySlug(slug);
+        detailCache.rememberSlug(slug, product.getId());
+        return detailCache.get(product.getId(), () -> assembleResponse(product));
+    }
+
+    private ProductResponse assembleResponse(Product product) {
+        return ProductMapper.mapToResponse(product, getChildren(product.getId()), getSaleMarkupFor(product));
+    }
+
+    /**
+     * Товары для снимков цены/остатка order-service (с категорией, одним запросом).
+     * Размер запроса ограничен: корзина больше лимита — повод разбить её на несколько запросов на стороне клиента.
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsForSnapshot(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > MAX_SNAPSHOT_IDS) {
+            throw new BusinessException("Слишком много товаров в запросе: " + ids.size()
+                    + " (максимум " + MAX_SNAPSHOT_IDS + ")");
+        }
+        return productRepository.findAllByIdIn(Set.copyOf(ids));
+    }
+
     /**
      * Получить товар по slug
      */
@@ -171,11 +237,19 @@ public class ProductService {
     }
 
     /**
-     * Поиск товаров по названию
+     * Поиск товаров по названию и артикулу.
+     * На PostgreSQL — ранжированный полнотекстовый поиск по индексам; порядок задаёт релевантность,
+     * поэтому сортировка из запроса игнорируется. Без полнотекстового индекса (H2 в тестах) —
+     * переносимый поиск по вхождению.
      */
     public Page<Product> searchProducts(String query, Pageable pageable) {
         log.debug("Searching products with query: {}", query);
-        return productRepository.searchByNameOrArticle(query, pageable);
+        if (!fullTextSearchEnabled) {
+            return productRepository.searchByNameOrArticle(query, pageable);
+        }
+        String term = query.trim().toLowerCase();
+        return productRepository.fullTextSearch(term, ProductRepository.containsPattern(term),
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
     }
 
     /**
@@ -332,24 +406,70 @@ public class ProductService {
     }
 
     /**
-     * Фасеты каталога для категории (поддерева): свойства и их различные значения,
-     * только по активным товарам-родителям. Результат кэшируется по categoryId.
+     * Фасеты каталога для категории (поддерева): свойства, их различные значения и счётчики
+     * товаров, только по активным товарам-родителям. Счётчики учитывают уже выбранные
+     * фильтры attrFilters (см. ProductFacetIndex).
+     */
+    public List<FacetDto> getFacets(Long categoryId, Map<String, List<String>> attrFilters) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new CategoryNotFoundException(categoryId);
+        }
+        return facetIndex.getFacets(categoryId, attrFilters == null ? Map.of() : attrFilters);
+    }
+
+    /**
+     * Лента витрины курсором: порция продолжает с последней выданной строки по ключу
+     * сортировки + id (keyset), стоимость не растёт с глубиной, как у OFFSET.
+     * COUNT выполняется, только если нужен клиенту (withTotal).
+     *
+     * @param cursor курсор из предыдущей порции; null — первая порция с сортировкой sort
      */
-    @Cacheable(value = CacheConfig.FACETS_CACHE, key = "#categoryId")
-    public List<FacetDto> getFacets(Long categoryId) {
+    public CursorPage<Product> scrollProducts(String cursor, Sort sort, int size, boolean withTotal) {
+        return scroll(ProductSpecifications.activeParents(), cursor, sort, size, withTotal);
+    }
+
+    /**
+     * Лента категории (поддерево) курсором — с теми же фильтрами по атрибутам и поиском,
+     * что и getProductsByCategoryFiltered.
+     */
+    public CursorPage<Product> scrollProductsByCategory(Long categoryId, Map<String, List<String>> attrFilters,
+                                                        String query, String cursor, Sort sort, int size,
+                                                        boolean withTotal) {
         if (!categoryRepository.existsById(categoryId)) {
             throw new CategoryNotFoundException(categoryId);
         }
         List<Long> categoryIds = categoryService.getSubtreeCategoryIds(categoryId);
-        Map<String, List<String>> grouped = new LinkedHashMap<>();
-        for (Object[] row : attributeRepository.findFacetRows(categoryIds, ProductAttributeExclusions.NAMES)) {
-            String name = (String) row[0];
-            String value = (String) row[1];
-            grouped.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        return scroll(ProductSpecifications.categoryWithAttributes(
+                        categoryIds, attrFilters == null ? Map.of() : attrFilters, query),
+                cursor, sort, size, withTotal);
+    }
+
+    /** Админский листинг курсором — для массового редактирования без "страницы 300". */
+    public CursorPage<Product> scrollProductsAdmin(Long categoryId, Boolean isActive, String cursor, Sort sort,
+                                                   int size, boolean withTotal) {
+        if (categoryId != null && !categoryRepository.existsById(categoryId)) {
+            throw new CategoryNotFoundException(categoryId);
         }
-        return grouped.entrySet().stream()
-                .map(e -> new FacetDto(e.getKey(), e.getValue()))
-                .toList();
+        return scroll(ProductSpecifications.adminListing(categoryId, isActive), cursor, sort, size, withTotal);
+    }
+
+    private CursorPage<Product> scroll(Specification<Product> spec, String cursor, Sort sort, int size,
+                                       boolean withTotal) {
+        ProductCursor position = cursor == null || cursor.isBlank()
+                ? ProductCursor.first(sort)
+                : ProductCursor.decode(cursor);
+        int limit = Math.min(Math.max(size, 1), MAX_SCROLL_SIZE);
+
+        Window<Product> window = productRepository.findBy(spec, q -> q
+                .sortBy(position.sort())
+                .limit(limit)
+                .scroll(position.position()));
+
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? position.encodeAfter(window.positionAt(window.size() - 1))
+                : null;
+        Long total = withTotal ? productRepository.count(spec) : null;
+        return new CursorPage<>(window.getContent(), nextCursor, nextCursor != null, total);
     }
 
     /**
@@ -363,7 +483,7 @@ public class ProductService {
     }
 
     /**
-     * Увеличить количество на складе
+     * Увеличить количество на складе (атомарный UPDATE — без потери параллельных изменений)
      */
     @Transactional
     public Product increaseStock(Long productId, Integer quantity) {
@@ -373,18 +493,21 @@ public class ProductService {
             throw new BusinessException("Количество должно быть положительным");
         }
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException(productId));
+        if (productRepository.increaseStock(productId, quantity) == 0) {
+            throw new ProductNotFoundException(productId);
+        }
+        detailCache.evictProducts(List.of(productId));
 
-        product.setStockQuantity(product.getStockQuantity() + quantity);
-        Product saved = productRepository.save(product);
+        Product saved = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
 
         log.info("Stock increased for product id={}, new stock={}", productId, saved.getStockQuantity());
         return saved;
     }
 
     /**
-     * Уменьшить количество на складе
+     * Уменьшить количество на складе. Проверка остатка и списание — один условный UPDATE,
+     * поэтому параллельные списания не уводят остаток в минус.
      */
     @Transactional
     public Product decreaseStock(Long productId, Integer quantity) {
@@ -394,17 +517,15 @@ public class ProductService {
             throw new BusinessException("Количество должно быть положительным");
         }
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException(productId));
-
-        if (product.getStockQuantity() < quantity) {
-            throw new BusinessException(
-                    "Недостаточно товара на складе. Доступно: " + product.getStockQuantity()
-            );
+        if (productRepository.decreaseStockIfAvailable(productId, quantity) == 0) {
+            Integer available = productRepository.findStockQuantityById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException(productId));
+            throw new BusinessException("Недостаточно товара на складе. Доступно: " + available);
         }
+        detailCache.evictProducts(List.of(productId));
 
-        product.setStockQuantity(product.getStockQuantity() - quantity);
-        Product saved = productRepository.save(product);
+        Product saved = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
 
         log.info("Stock decreased for product id={}, new stock={}", productId, saved.getStockQuantity());
         return saved;
@@ -426,6 +547,7 @@ public class ProductService {
 
         product.setStockQuantity(quantity);
         Product saved = productRepository.save(product);
+        detailCache.evictProducts(List.of(productId));
 
         log.info("Stock set for product id={}, stock={}", productId, saved.getStockQuantity());
         return saved;
@@ -453,6 +575,8 @@ public class ProductService {
 
         product.setIsActive(true);
         Product saved = productRepository.save(product);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
 
         log.info("Product activated id={}", productId);
         return saved;
@@ -470,6 +594,8 @@ public class ProductService {
 
         product.setIsActive(false);
         Product saved = productRepository.save(product);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
 
         log.info("Product deactivated id={}", productId);
         return saved;
@@ -502,6 +628,8 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(product);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
         log.info("Category updated for product id={}", productId);
 
         return saved;
@@ -530,7 +658,9 @@ public class ProductService {
         if(productRepository.findById(id).isEmpty()){
             throw new ProductNotFoundException("Товар не найден с id="+id);
         }
+        detailCache.evictProducts(List.of(id));
         productRepository.deleteById(id);
+        facetIndex.invalidateProducts(List.of(id));
     }
 
     /**
@@ -539,7 +669,9 @@ public class ProductService {
     @Transactional
     public void batchDelete(List<Long> ids) {
         log.info("Массовое удаление {} товаров", ids.size());
+        detailCache.evictProducts(ids);
         productRepository.deleteAllById(ids);
+        facetIndex.invalidateProducts(ids);
     }
 
     @Transactional
@@ -553,6 +685,8 @@ public class ProductService {
             product.setCategory(category);
             product.setUpdatedAt(LocalDateTime.now());
         });
+        facetIndex.invalidateProducts(productIds);
+        detailCache.evictProducts(productIds);
     }
 
     /**
@@ -562,6 +696,10 @@ public class ProductService {
     public Product setParent(Long productId, Long parentProductId) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ProductNotFoundException(productId));
+        // Карточка прежнего родителя тоже меняется — вариант из неё уходит
+        if (product.getParentProductId() != null) {
+            detailCache.evictProducts(List.of(product.getParentProductId()));
+        }
 
         if (parentProductId == null) {
             product.setIsVariantChild(false);
@@ -579,7 +717,10 @@ public class ProductService {
             product.setParentProductId(parentProductId);
         }
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        facetIndex.invalidateProducts(List.of(productId));
+        detailCache.evictProducts(List.of(productId));
+        return saved;
     }
 
     /**
@@ -616,6 +757,7 @@ public class ProductService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ProductNotFoundException(productId));
         product.setDisplayOrder(displayOrder);
+        detailCache.evictProducts(List.of(productId));
         return productRepository.save(product);
     }
 
@@ -630,6 +772,7 @@ public class ProductService {
             product.setDisplayOrder(order);
             productRepository.save(product);
         });
+        detailCache.evictProducts(orders.keySet());
     }
 
     /**
@@ -641,6 +784,8 @@ public class ProductService {
         List<Product> products = productRepository.findAllById(productIds);
         products.forEach(p -> p.setIsActive(isActive));
         productRepository.saveAll(products);
+        facetIndex.invalidateProducts(productIds);
+        detailCache.evictProducts(productIds);
     }
 
     /**
@@ -665,5 +810,6 @@ public class ProductService {
             p.setSaleMarkupPercent(markup);
         });
         productRepository.saveAll(products);
+        detailCache.evictProducts(productIds);
     }
 }
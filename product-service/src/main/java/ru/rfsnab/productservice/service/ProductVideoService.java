@@ -19,6 +19,7 @@ public class ProductVideoService {
 
     private final ProductVideoRepository videoRepository;
     private final ProductService productService;
+    private final ProductDetailCache detailCache;
 
     /**
      * Добавить видео к товару
@@ -43,6 +44,7 @@ public class ProductVideoService {
         }
 
         ProductVideo saved = videoRepository.save(video);
+        detailCache.evictProducts(List.of(productId));
         log.info("Video added to product id={}, video id={}", productId, saved.getId());
 
         return saved;
@@ -56,10 +58,10 @@ public class ProductVideoService {
     public void deleteVideo(Long id){
         log.info("Deleting video id={}", id);
 
-        if(!videoRepository.existsById(id)){
-            throw new BusinessException("Видео не найдено");
-        }
+        ProductVideo video = videoRepository.findById(id)
+                .orElseThrow(() -> new BusinessException("Видео не найдено"));
         videoRepository.deleteById(id);
+        detailCache.evictProducts(List.of(video.getProduct().getId()));
         log.info("Video deleted id={}",id);
     }
 
@@ -79,6 +81,7 @@ public class ProductVideoService {
 
         // Сбрасываем isPrimary для всех видео товара
         videoRepository.resetPrimaryForProduct(productId);
+        detailCache.evictProducts(List.of(productId));
 
         // Устанавливаем главное
         video.setIsPrimary(true);
@@ -107,6 +110,7 @@ public class ProductVideoService {
 
         video.setDisplayOrder(newOrder);
         ProductVideo saved = videoRepository.save(video);
+        detailCache.evictProducts(List.of(video.getProduct().getId()));
 
         log.info("Video order updated id={}", videoId);
 
@@ -125,6 +129,7 @@ public class ProductVideoService {
 
         ProductVideo existing = videoRepository.findById(id)
                 .orElseThrow(() -> new BusinessException("Видео не найдено"));
+        Long previousProductId = existing.getProduct().getId();
 
         existing.setProduct(updateVideo.getProduct());
         existing.setVideoUrl(updateVideo.getVideoUrl());
@@ -138,6 +143,9 @@ public class ProductVideoService {
         existing.setProvider(updateVideo.getProvider());
 
         ProductVideo saved = videoRepository.save(existing);
+        detailCache.evictProducts(saved.getProduct() == null
+                ? List.of(previousProductId)
+                : List.of(previousProductId, saved.getProduct().getId()));
         log.info("Video info updated id={}", id);
 
         return saved;
@@ -0,0 +1,122 @@
+package ru.rfsnab.productservice.service;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Поток записи в S3 частями (multipart upload): в памяти держится только текущая часть.
+ * Multipart открывается лениво, когда заполнилась первая часть; файл меньше одной части
+ * уходит обычным PutObject. {@link #complete()} завершает загрузку, {@link #abort()} отменяет
+ * её — уже загруженные части удаляются и не висят в bucket.
+ */
+class S3MultipartOutputStream extends OutputStream {
+
+    /** Минимальный размер части S3 — 5 MB (кроме последней). */
+    static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+
+    private final byte[] buffer = new byte[PART_SIZE];
+    private int position;
+    private String uploadId;
+    private final List<CompletedPart> parts = new ArrayList<>();
+
+    S3MultipartOutputStream(S3Client s3Client, String bucket, String key, String contentType) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == buffer.length) {
+            flushPart();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == buffer.length) {
+                flushPart();
+            }
+            int chunk = Math.min(length, buffer.length - position);
+            System.arraycopy(data, offset, buffer, position, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Дописать последнюю часть и собрать объект.
+     */
+    void complete() {
+        if (uploadId == null) {
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position));
+            return;
+        }
+        if (position > 0) {
+            flushPart();
+        }
+        s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+    }
+
+    void abort() {
+        if (uploadId != null) {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        }
+    }
+
+    private void flushPart() {
+        if (uploadId == null) {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        }
+        int partNumber = parts.size() + 1;
+        String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build(),
+                RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position)).eTag();
+        parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+        position = 0;
+    }
+}
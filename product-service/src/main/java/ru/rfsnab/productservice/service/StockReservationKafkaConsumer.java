@@ -0,0 +1,34 @@
+package ru.rfsnab.productservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import ru.rfsnab.productservice.dto.StockReservationEvent;
+
+/**
+ * Consumer событий order-service о резервах заказов.
+ * Все действия идемпотентны, поэтому повторная доставка события безопасна.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationKafkaConsumer {
+
+    private final StockReservationService reservationService;
+
+    @KafkaListener(
+            topics = "${app.kafka.topic.order-stock-events}",
+            groupId = "${app.kafka.consumer.stock-group-id}",
+            containerFactory = "stockReservationListenerContainerFactory"
+    )
+    public void onStockReservationEvent(StockReservationEvent event) {
+        log.info("Событие резерва: orderId={}, action={}", event.orderId(), event.action());
+        switch (event.action()) {
+            case "COMMIT" -> reservationService.commit(event.orderId());
+            case "FULFILL" -> reservationService.fulfill(event.orderId());
+            case "RELEASE" -> reservationService.release(event.orderId());
+            default -> log.warn("Неизвестное действие с резервом: {}", event.action());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package ru.rfsnab.productservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.productservice.dto.StockReservationReply;
+import ru.rfsnab.productservice.dto.StockReservationRequest;
+import ru.rfsnab.productservice.exception.InsufficientStockException;
+import ru.rfsnab.productservice.model.StockReservation;
+import ru.rfsnab.productservice.model.StockReservationStatus;
+import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Резервирование остатков под заказы order-service.
+ *
+ * Резерв списывает остаток сразу — условным UPDATE (stock >= qty) по каждой позиции в одной
+ * короткой транзакции: либо зарезервированы все позиции заказа, либо ни одна. Строки товаров
+ * блокируются только на время этой транзакции и всегда за один проход в порядке возрастания id
+ * (при замене состава — тоже), поэтому встречные заказы не взаимоблокируются, а популярный товар
+ * не держит очередь из долгих транзакций.
+ *
+ * Дальше резерв живёт по событиям order-service (COMMIT/FULFILL/RELEASE, см. StockReservationKafkaConsumer),
+ * а неподтверждённые резервы с истёкшим сроком возвращает StockReservationExpiryScheduler и сообщает
+ * об этом order-service (ответ EXPIRED в checkout-stock-replies через outbox): заказ без резерва
+ * не должен идти дальше. COMMIT, опоздавший к истечению, резервирует товар заново или отвечает LOST.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    private static final Set<StockReservationStatus> ACTIVE =
+            EnumSet.of(StockReservationStatus.RESERVED, StockReservationStatus.COMMITTED);
+
+    /** Резерв заказа действует или уже закрыт отгрузкой — восстанавливать после истечения нечего. */
+    private static final Set<StockReservationStatus> HELD_OR_FULFILLED = EnumSet.of(
+            StockReservationStatus.RESERVED, StockReservationStatus.COMMITTED, StockReservationStatus.FULFILLED);
+
+    private static final int EXPIRED_BATCH_SIZE = 500;
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final StockReservationRepository reservationRepository;
+    private final ProductDetailCache detailCache;
+    private final OutboxService outboxService;
+
+    @Value("${app.kafka.topic.checkout-stock-replies}")
+    private String repliesTopic;
+
+    @Value("${product-service.stock.reservation-ttl-minutes:30}")
+    private long reservationTtlMinutes;
+
+    @Value("${product-service.stock.closed-retention-days:30}")
+    private long closedRetentionDays;
+
+    /**
+     * Зарезервировать позиции заказа. Действующий резерв заказа заменяется новым составом
+     * (редактирование заказа); повтор с тем же составом ничего не меняет (ретрай клиента).
+     * Замена — один проход по товарам в порядке id: прежний резерв товара освобождается, а остаток
+     * меняется на разницу между новым и прежним количеством.
+     *
+     * @throws InsufficientStockException если хотя бы одной позиции не хватает — ничего не резервируется
+     */
+    @Transactional
+    public List<StockReservation> reserve(UUID orderId, List<StockReservationRequest.Line> lines) {
+        // Дубли товара схлопываем; TreeMap — фиксированный порядок блокировок по id
+        Map<Long, Integer> requested = lines.stream().collect(Collectors.toMap(
+                StockReservationRequest.Line::productId,
+                StockReservationRequest.Line::quantity,
+                Integer::sum,
+                TreeMap::new));
+
+        List<StockReservation> active = reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(orderId, ACTIVE);
+        if (sameLines(active, requested)) {
+            return active;
+        }
+
+        Map<Long, StockReservation> previous = active.stream()
+                .collect(Collectors.toMap(StockReservation::getProductId, Function.identity()));
+        SortedSet<Long> productIds = new TreeSet<>(requested.keySet());
+        productIds.addAll(previous.keySet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<String> shortages = new ArrayList<>();
+        for (Long productId : productIds) {
+            StockReservation replaced = previous.get(productId);
+            // Остаток возвращается только тем, кто перевёл резерв в RELEASED (см. releaseAll)
+            int released = replaced != null && reservationRepository.markReleased(replaced.getId(), now) == 1
+                    ? replaced.getQuantity()
+                    : 0;
+            int quantity = requested.getOrDefault(productId, 0);
+            int delta = quantity - released;
+            if (delta > 0 && productRepository.decreaseStockIfAvailable(productId, delta) == 0) {
+                shortages.add(describeShortage(productId, quantity, released));
+            } else if (delta < 0) {
+                productRepository.increaseStock(productId, -delta);
+            }
+        }
+        if (!shortages.isEmpty()) {
+            // Откат транзакции вернёт уже списанные позиции и прежний резерв
+            throw new InsufficientStockException("Недостаточно товара на складе: " + String.join("; ", shortages));
+        }
+        // Остаток входит в карточку товара
+        detailCache.evictProducts(productIds);
+
+        LocalDateTime expiresAt = now.plusMinutes(reservationTtlMinutes);
+        List<StockReservation> reservations = new ArrayList<>(requested.size());
+        requested.forEach((productId, quantity) -> reservations.add(StockReservation.builder()
+                .orderId(orderId)
+                .productId(productId)
+                .quantity(quantity)
+                .status(StockReservationStatus.RESERVED)
+                .expiresAt(expiresAt)
+                .build()));
+
+        List<StockReservation> saved = reservationRepository.saveAll(reservations);
+        log.info("Резерв под заказ {}: {} позиций до {}", orderId, saved.size(), expiresAt);
+        return saved;
+    }
+
+    /**
+     * Заказ подтверждён или оплачен — резерв больше не истекает.
+     * Подтверждение, опоздавшее к истечению резерва, резервирует товар заново (см. recommitExpired).
+     */
+    @Transactional
+    public void commit(UUID orderId) {
+        int updated = reservationRepository.commitByOrderId(orderId, LocalDateTime.now());
+        if (updated == 0 && !reservationRepository.existsByOrderIdAndStatusIn(orderId, HELD_OR_FULFILLED)) {
+            recommitExpired(orderId);
+            return;
+        }
+        log.info("Резерв заказа {} подтверждён ({} позиций)", orderId, updated);
+    }
+
+    /**
+     * Заказ отгружен — резерв закрывается без возврата остатка.
+     */
+    @Transactional
+    public void fulfill(UUID orderId) {
+        int updated = reservationRepository.fulfillByOrderId(orderId, LocalDateTime.now());
+        log.info("Резерв заказа {} закрыт отгрузкой ({} позиций)", orderId, updated);
+    }
+
+    /**
+     * Заказ отменён — вернуть остатки по всем действующим резервам.
+     */
+    @Transactional
+    public void release(UUID orderId) {
+        int released = releaseAll(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(orderId, ACTIVE));
+        log.info("Резерв заказа {} освобождён ({} позиций)", orderId, released);
+    }
+
+    /**
+     * Вернуть остатки по истёкшим неподтверждённым резервам (одна пачка).
+     *
+     * @return число освобождённых резервов
+     */
+    @Transactional
+    public int releaseExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockReservation> expired = new ArrayList<>(
+                reservationRepository.findExpired(now, PageRequest.of(0, EXPIRED_BATCH_SIZE)));
+        expired.sort(Comparator.comparing(StockReservation::getProductId));
+
+        List<Long> releasedProductIds = new ArrayList<>();
+        Set<UUID> orderIds = new LinkedHashSet<>();
+        for (StockReservation reservation : expired) {
+            // Как и в releaseAll: остаток возвращает только тот, кто перевёл резерв
+            if (reservationRepository.markExpired(reservation.getId(), now) == 1) {
+                productRepository.increaseStock(reservation.getProductId(), reservation.getQuantity());
+                releasedProductIds.add(reservation.getProductId());
+                orderIds.add(reservation.getOrderId());
+            }
+        }
+        detailCache.evictProducts(releasedProductIds);
+
+        String reason = "Заказ не подтверждён за " + reservationTtlMinutes + " мин — резерв товара снят";
+        orderIds.forEach(orderId -> outboxService.enqueue(repliesTopic, orderId.toString(),
+                StockReservationReply.expired(orderId, reason)));
+        return releasedProductIds.size();
+    }
+
+    /**
+     * Удалить пачку закрытых резервов старше срока хранения: история нужна для разбора
+     * недавних заказов, а не навсегда.
+     *
+     * @return число удалённых резервов
+     */
+    @Transactional
+    public int purgeClosed() {
+        return reservationRepository.deleteClosedBefore(
+                LocalDateTime.now().minusDays(closedRetentionDays), PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * Освобождение идемпотентно: остаток возвращается только тем, кто перевёл резерв в RELEASED,
+     * поэтому повторное событие или гонка с планировщиком не удвоят возврат.
+     */
+    private int releaseAll(List<StockReservation> reservations) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> releasedProductIds = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            if (reservationRepository.markReleased(reservation.getId(), now) == 1) {
+                productRepository.increaseStock(reservation.getProductId(), reservation.getQuantity());
+                releasedProductIds.add(reservation.getProductId());
+            }
+        }
+        detailCache.evictProducts(releasedProductIds);
+        return releasedProductIds.size();
+    }
+
+    /**
+     * COMMIT пришёл, когда резерв уже истёк (подтверждение заказа совпало с истечением срока):
+     * товар последнего резерва списывается заново. Не хватает хотя бы одной позиции — ничего не
+     * списывается, а order-service получает LOST и отменяет заказ, вместо того чтобы продать товар без остатка.
+     */
+    private void recommitExpired(UUID orderId) {
+        List<StockReservation> expired = latestExpired(orderId);
+        if (expired.isEmpty()) {
+            log.warn("COMMIT заказа {} без резерва — пропуск", orderId);
+            return;
+        }
+
+        List<StockReservation> taken = new ArrayList<>(expired.size());
+        List<String> shortages = new ArrayList<>();
+        for (StockReservation reservation : expired) {
+            if (productRepository.decreaseStockIfAvailable(reservation.getProductId(), reservation.getQuantity()) == 1) {
+                taken.add(reservation);
+            } else {
+                shortages.add(describeShortage(reservation.getProductId(), reservation.getQuantity(), 0));
+            }
+        }
+        if (!shortages.isEmpty()) {
+            // Строки товаров уже заблокированы в порядке id — списанное возвращаем в этой же транзакции
+            taken.forEach(r -> productRepository.increaseStock(r.getProductId(), r.getQuantity()));
+            String reason = "Резерв истёк до подтверждения заказа, а товара уже не хватает: "
+                    + String.join("; ", shortages);
+            outboxService.enqueue(repliesTopic, orderId.toString(), StockReservationReply.lost(orderId, reason));
+            log.warn("Резерв заказа {} не восстановлен: {}", orderId, reason);
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        taken.forEach(r -> reservationRepository.recommitExpired(r.getId(), now));
+        detailCache.evictProducts(taken.stream().map(StockReservation::getProductId).toList());
+        log.info("Резерв заказа {} истёк до подтверждения и восстановлен ({} позиций)", orderId, taken.size());
+    }
+
+    /** Позиции последнего резерва заказа: у всех строк одного резерва общий expiresAt. */
+    private List<StockReservation> latestExpired(UUID orderId) {
+        List<StockReservation> expired = reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(
+                orderId, EnumSet.of(StockReservationStatus.EXPIRED));
+        return expired.stream()
+                .map(StockReservation::getExpiresAt)
+                .max(Comparator.naturalOrder())
+                .map(latest -> expired.stream().filter(r -> latest.equals(r.getExpiresAt())).toList())
+                .orElse(List.of());
+    }
+
+    private static boolean sameLines(List<StockReservation> active, Map<Long, Integer> requested) {
+        if (active.size() != requested.size()) {
+            return false;
+        }
+        for (StockReservation reservation : active) {
+            if (!reservation.getQuantity().equals(requested.get(reservation.getProductId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param released сколько товара заказ уже держал прежним резервом — тоже доступно заказу
+     */
+    private String describeShortage(Long productId, int quantity, int released) {
+        return productRepository.findStockQuantityById(productId)
+                .map(stock -> "товар " + productId + " (запрошено " + quantity + ", доступно " + (stock + released) + ")")
+                .orElse("товар " + productId + " не найден");
+    }
+}
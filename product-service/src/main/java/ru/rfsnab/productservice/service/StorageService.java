@@ -11,6 +11,7 @@ import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -111,25 +112,41 @@ public class StorageService {
     }
 
     /**
-     * Загрузить произвольные байты в Yandex Object Storage
-     * @param data содержимое файла
-     * @param fileKey путь в bucket
+     * Пишет содержимое файла прямо в Yandex Object Storage (multipart upload), не собирая
+     * его целиком в памяти: буферизуется только текущая часть (S3MultipartOutputStream.PART_SIZE).
+     * Если writer бросил исключение, загрузка отменяется и файл в bucket не появляется.
+     *
+     * @param fileKey     путь в bucket
      * @param contentType MIME тип содержимого
+     * @param writer      пишет содержимое в переданный поток (поток не закрывает)
      */
-    public void uploadBytes(byte[] data, String fileKey, String contentType) {
+    public void uploadStream(String fileKey, String contentType, ContentWriter writer) throws IOException {
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3Client, bucketName, fileKey, contentType);
         try {
-            PutObjectRequest request = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileKey)
-                    .contentType(contentType)
-                    .build();
+            writer.writeTo(out);
+            out.complete();
+        } catch (IOException | RuntimeException e) {
+            abortQuietly(out, e);
+            if (e instanceof S3Exception s3e) {
+                throw new InvalidFileException("Ошибка при загрузке файла: " + s3e.getMessage());
+            }
+            throw e;
+        }
+    }
 
-            s3Client.putObject(request, RequestBody.fromBytes(data));
-        } catch (S3Exception e) {
-            throw new InvalidFileException("Ошибка при загрузке файла: " + e.getMessage());
+    private void abortQuietly(S3MultipartOutputStream out, Exception cause) {
+        try {
+            out.abort();
+        } catch (RuntimeException abortError) {
+            cause.addSuppressed(abortError);
         }
     }
 
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
     /**
      * Открыть поток на скачивание файла из Yandex Object Storage
      * @param fileKey путь к файлу в bucket
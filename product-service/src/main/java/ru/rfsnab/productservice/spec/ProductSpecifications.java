@@ -19,7 +19,8 @@ public final class ProductSpecifications {
      * Активные родители категории (поддерева), у которых для КАЖДОГО выбранного свойства
      * есть атрибут с одним из выбранных значений (AND между свойствами, OR внутри свойства).
      * Непустой nameQuery дополнительно ограничивает выборку по вхождению в название,
-     * артикул или внешние коды (1С/ФТК).
+     * артикул или внешние коды (1С/ФТК). LOWER(col) LIKE '%q%' на PostgreSQL обслуживается
+     * триграммными индексами (V20261018100000__add_product_search_index).
      */
     public static Specification<Product> categoryWithAttributes(
             List<Long> categoryIds, Map<String, List<String>> attrFilters, String nameQuery) {
@@ -54,6 +55,28 @@ public final class ProductSpecifications {
         };
     }
 
+    /** Витрина: активные товары без дочерних вариантов. */
+    public static Specification<Product> activeParents() {
+        return (root, query, cb) -> cb.and(
+                cb.isTrue(root.get("isActive")),
+                cb.isFalse(root.get("isVariantChild")));
+    }
+
+    /** Админский листинг: родители, опционально по категории и активности. */
+    public static Specification<Product> adminListing(Long categoryId, Boolean isActive) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.isFalse(root.get("isVariantChild")));
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("category").get("id"), categoryId));
+            }
+            if (isActive != null) {
+                predicates.add(cb.equal(root.get("isActive"), isActive));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
     /**
      * Активные товары, участвующие в акции: собственная метка ЛИБО принадлежность
      * акционной категории (поддеревья уже развёрнуты в saleCategoryIds).
@@ -0,0 +1,29 @@
+-- Поиск по каталогу: LOWER(col) LIKE '%q%' по name/sku/external_code/external_id
+-- не мог использовать ни один индекс и на каждый запрос сканировал всю таблицу products.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- а) Полнотекстовый вектор с русской морфологией ("куртки" находит "куртка").
+-- Генерируемая STORED-колонка пересчитывается самим PostgreSQL на любом INSERT/UPDATE,
+-- в т.ч. при импорте 1С/ФТК, — отдельно поддерживать её в Java не нужно.
+-- Артикулы/коды индексируются конфигурацией 'simple' (без стемминга) с тем же весом, что и имя.
+ALTER TABLE products
+    ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(sku, '') || ' ' || coalesce(external_code, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(material, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_products_search_vector
+    ON products USING GIN (search_vector);
+
+-- б) Триграммные индексы по выражениям LOWER(col): обслуживают подстрочный поиск
+-- (LIKE '%q%' — частичный артикул, префикс слова "огне") и ProductSpecifications.categoryWithAttributes.
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm
+    ON products USING GIN (LOWER(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_sku_trgm
+    ON products USING GIN (LOWER(sku) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_external_code_trgm
+    ON products USING GIN (LOWER(external_code) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_external_id_trgm
+    ON products USING GIN (LOWER(external_id) gin_trgm_ops);
@@ -0,0 +1,23 @@
+-- Резервы остатков под заказы order-service.
+-- Остаток product.stock_quantity уменьшается в момент резерва (условным UPDATE),
+-- запись резерва нужна, чтобы вернуть его при отмене/истечении срока.
+CREATE TABLE stock_reservation (
+    id BIGSERIAL PRIMARY KEY,
+    order_id UUID NOT NULL,
+    product_id BIGINT NOT NULL REFERENCES products (id) ON DELETE CASCADE,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    status VARCHAR(20) NOT NULL,
+    -- NULL у подтверждённых (COMMITTED) резервов — держатся до отмены заказа
+    expires_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_stock_reservation_order ON stock_reservation (order_id);
+
+-- Поиск истёкших резервов планировщиком
+CREATE INDEX idx_stock_reservation_expires ON stock_reservation (expires_at) WHERE status = 'RESERVED';
+
+-- Не больше одного действующего резерва товара на заказ (освобождённые остаются историей)
+CREATE UNIQUE INDEX ux_stock_reservation_active ON stock_reservation (order_id, product_id)
+    WHERE status <> 'RELEASED';
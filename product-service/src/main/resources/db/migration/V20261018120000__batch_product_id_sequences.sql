@@ -0,0 +1,5 @@
+-- Пакетный импорт: Product и ProductAttribute получают id из последовательностей блоками по 50
+-- (Hibernate pooled optimizer, allocationSize = 50) — с IDENTITY JDBC-батчинг INSERT'ов невозможен.
+-- Значения, выдаваемые DEFAULT nextval(...), остаются уникальными, просто идут с шагом 50.
+ALTER SEQUENCE products_id_seq INCREMENT BY 50;
+ALTER SEQUENCE product_attributes_id_seq INCREMENT BY 50;
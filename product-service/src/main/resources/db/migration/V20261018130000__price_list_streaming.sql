@@ -0,0 +1,15 @@
+-- Прайс-лист: keyset-обход товаров категории в порядке (display_order, id)
+CREATE INDEX IF NOT EXISTS idx_products_price_list
+    ON products (category_id, display_order, id)
+    WHERE is_active = true;
+
+-- Переиспользование готового файла для одинаковых запросов
+ALTER TABLE price_list_request ADD COLUMN content_key VARCHAR(64);
+
+CREATE INDEX idx_price_list_request_content_key
+    ON price_list_request (content_key)
+    WHERE status = 'READY';
+
+CREATE INDEX idx_price_list_request_file_key
+    ON price_list_request (file_key)
+    WHERE status = 'READY';
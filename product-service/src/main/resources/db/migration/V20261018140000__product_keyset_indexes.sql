@@ -0,0 +1,10 @@
+-- Keyset-прокрутка листингов: индексы под сортировку по умолчанию с тайбрейкером id.
+-- Лента витрины: ORDER BY created_at DESC, id ASC
+CREATE INDEX IF NOT EXISTS idx_products_storefront_created
+    ON products (created_at DESC, id)
+    WHERE is_active = true AND is_variant_child = false;
+
+-- Админка: ORDER BY name, id (листинг категории идёт по idx_products_price_list)
+CREATE INDEX IF NOT EXISTS idx_products_admin_name
+    ON products (name, id)
+    WHERE is_variant_child = false;
@@ -0,0 +1,6 @@
+-- Действующие резервы — только RESERVED и COMMITTED: закрытый отгрузкой (FULFILLED) резерв,
+-- как и освобождённый, остаётся историей и не мешает новому резерву товара в том же заказе
+DROP INDEX IF EXISTS ux_stock_reservation_active;
+
+CREATE UNIQUE INDEX ux_stock_reservation_active ON stock_reservation (order_id, product_id)
+    WHERE status IN ('RESERVED', 'COMMITTED');
@@ -0,0 +1,8 @@
+-- Сумма удерживаемого резервами остатка по товарам (импорт каталога, вывод из продажи):
+-- в индексе только действующие резервы, история его не раздувает
+CREATE INDEX idx_stock_reservation_product_active ON stock_reservation (product_id)
+    WHERE status IN ('RESERVED', 'COMMITTED');
+
+-- Удаление закрытых резервов старше срока хранения (StockReservationCleanupScheduler)
+CREATE INDEX idx_stock_reservation_closed_updated ON stock_reservation (updated_at)
+    WHERE status IN ('RELEASED', 'FULFILLED');
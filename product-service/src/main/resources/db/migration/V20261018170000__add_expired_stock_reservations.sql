@@ -0,0 +1,6 @@
+-- Истёкшие по сроку резервы (EXPIRED) отделены от освобождённых: по ним order-service получает
+-- уведомление, а опоздавший COMMIT резервирует товар заново. В истории они чистятся наравне с закрытыми
+DROP INDEX IF EXISTS idx_stock_reservation_closed_updated;
+
+CREATE INDEX idx_stock_reservation_closed_updated ON stock_reservation (updated_at)
+    WHERE status IN ('RELEASED', 'FULFILLED', 'EXPIRED');
@@ -0,0 +1,15 @@
+-- Артикул поставщика (external_id) — в полнотекстовом векторе наравне с sku и external_code:
+-- запрос из слов названия и кода поставщика ("рукавицы FTK12345") находится и ранжируется.
+-- Выражение STORED-колонки не меняется на месте — колонка и её GIN-индекс пересоздаются.
+ALTER TABLE products DROP COLUMN IF EXISTS search_vector;
+
+ALTER TABLE products
+    ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(sku, '') || ' ' || coalesce(external_code, '')
+                                        || ' ' || coalesce(external_id, '')), 'A') ||
+        setweight(to_tsvector('russian', coalesce(material, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_products_search_vector
+    ON products USING GIN (search_vector);
@@ -103,7 +103,7 @@ class PriceListControllerIntegrationTest {
     private Category testCategory;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         priceListRequestRepository.deleteAll();
         productRepository.deleteAll();
         categoryRepository.deleteAll();
@@ -131,7 +131,7 @@ class PriceListControllerIntegrationTest {
 
         reset(storageService);
         when(storageService.fileExists(anyString())).thenReturn(true);
-        doNothing().when(storageService).uploadBytes(any(byte[].class), anyString(), anyString());
+        doNothing().when(storageService).uploadStream(anyString(), anyString(), any());
     }
 
     @Test
@@ -170,6 +170,22 @@ class PriceListControllerIntegrationTest {
         mockMvc.perform(get("/api/v1/price-lists/{id}/download", requestId)
                         .header("X-User-Id", "999"))
                 .andExpect(status().isNotFound());
+
+        // Тот же прайс для другого клиента при неизменном каталоге — готов сразу, без повторной генерации
+        String reused = mockMvc.perform(post("/api/v1/price-lists")
+                        .header("X-User-Id", "20")
+                        .header("X-Client-Type", "B2B")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status", is("READY")))
+                .andReturn().getResponse().getContentAsString();
+
+        var reusedRequest = priceListRequestRepository.findById(objectMapper.readTree(reused).get("id").asLong())
+                .orElseThrow();
+        assertThat(reusedRequest.getFileKey())
+                .isEqualTo(priceListRequestRepository.findById(requestId).orElseThrow().getFileKey());
+        verify(storageService, times(1)).uploadStream(anyString(), anyString(), any());
     }
 
     @Test
@@ -22,6 +22,7 @@ import ru.rfsnab.productservice.service.CategoryService;
 import ru.rfsnab.productservice.service.StorageService;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -468,6 +469,133 @@ class ProductControllerTest {
         }
     }
 
+    // ==================== GET .../scroll (курсор) ====================
+
+    @Nested
+    @DisplayName("GET /api/v1/products/**/scroll (keyset-курсор)")
+    class ScrollTests {
+
+        private void givenCategoryProducts(int count) {
+            for (int i = 1; i <= count; i++) {
+                productRepository.save(Product.builder()
+                        .name("Огнетушитель ОП-" + i)
+                        .slug("ognetushitel-scroll-" + i)
+                        .price(new BigDecimal("100.00"))
+                        .stockQuantity(1)
+                        .isActive(true)
+                        .isFeatured(false)
+                        .displayOrder(i % 2) // дубли ключа сортировки — порядок держит тайбрейкер id
+                        .category(testCategory)
+                        .build());
+            }
+        }
+
+        private List<Integer> ids(String json) throws Exception {
+            List<Integer> ids = new java.util.ArrayList<>();
+            objectMapper.readTree(json).get("content").forEach(node -> ids.add(node.get("id").asInt()));
+            return ids;
+        }
+
+        @Test
+        @DisplayName("порции по курсору покрывают категорию без пропусков и повторов, последняя без курсора")
+        void scrollByCategory_WalksAllProductsOnce() throws Exception {
+            givenCategoryProducts(4); // + testProduct = 5 товаров
+
+            List<Integer> seen = new java.util.ArrayList<>();
+            String cursor = null;
+            int requests = 0;
+            do {
+                var request = get("/api/v1/products/category/{categoryId}/scroll", testCategory.getId())
+                        .param("size", "2");
+                if (cursor != null) {
+                    request.param("cursor", cursor);
+                }
+                String body = mockMvc.perform(request)
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.totalElements").doesNotExist())
+                        .andReturn().getResponse().getContentAsString();
+                seen.addAll(ids(body));
+                var next = objectMapper.readTree(body).get("nextCursor");
+                cursor = next == null || next.isNull() ? null : next.asText();
+                requests++;
+            } while (cursor != null && requests < 10);
+
+            assertThat(requests).isEqualTo(3);
+            assertThat(seen).hasSize(5).doesNotHaveDuplicates();
+        }
+
+        @Test
+        @DisplayName("withTotal=true добавляет общее число строк")
+        void scroll_WithTotal_ReturnsCount() throws Exception {
+            givenCategoryProducts(2);
+
+            mockMvc.perform(get("/api/v1/products/scroll").param("size", "1").param("withTotal", "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content", hasSize(1)))
+                    .andExpect(jsonPath("$.hasNext", is(true)))
+                    .andExpect(jsonPath("$.totalElements", is(3)));
+        }
+
+        @Test
+        @DisplayName("админский листинг курсором видит и неактивные товары")
+        void scrollAdmin_IncludesInactive() throws Exception {
+            testProduct.setIsActive(false);
+            productRepository.save(testProduct);
+
+            mockMvc.perform(get("/api/v1/products/admin/scroll").param("categoryId", testCategory.getId().toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content", hasSize(1)))
+                    .andExpect(jsonPath("$.hasNext", is(false)))
+                    .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+        }
+
+        @Test
+        @DisplayName("повреждённый курсор и сортировка по nullable-полю -> 400")
+        void scroll_InvalidCursorOrSort_Returns400() throws Exception {
+            mockMvc.perform(get("/api/v1/products/scroll").param("cursor", "not-a-cursor"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/api/v1/products/scroll").param("sort", "price,asc"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    // ==================== POST /stock-snapshot (Internal) ====================
+
+    @Nested
+    @DisplayName("POST /api/v1/products/stock-snapshot (Internal)")
+    class StockSnapshotTests {
+
+        @Test
+        @DisplayName("с X-Internal-Token возвращает снимки найденных товаров с акционной ценой")
+        void stockSnapshot_InternalToken_ReturnsSnapshots() throws Exception {
+            testCategory.setIsSale(true);
+            testCategory.setSaleMarkupPercent(new BigDecimal("-10"));
+            categoryRepository.save(testCategory);
+            categoryService.refreshCategoryTree();
+
+            mockMvc.perform(post("/api/v1/products/stock-snapshot")
+                            .header("X-Internal-Token", "test-secret")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(testProduct.getId(), 999999L))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].id", is(testProduct.getId().intValue())))
+                    .andExpect(jsonPath("$[0].price", is(1350.00)))
+                    .andExpect(jsonPath("$[0].stockQuantity", is(100)))
+                    .andExpect(jsonPath("$[0].isActive", is(true)))
+                    .andExpect(jsonPath("$[0].images").doesNotExist());
+        }
+
+        @Test
+        @DisplayName("без X-Internal-Token возвращает 401")
+        void stockSnapshot_NoToken_Unauthorized() throws Exception {
+            mockMvc.perform(post("/api/v1/products/stock-snapshot")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[" + testProduct.getId() + "]"))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
+
     // ==================== POST Endpoints (Admin/Manager) ====================
 
     @Nested
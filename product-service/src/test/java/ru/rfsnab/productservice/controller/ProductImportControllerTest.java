@@ -14,6 +14,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.rfsnab.productservice.dto.BatchProductImportRequest;
 import ru.rfsnab.productservice.dto.ProductImportItem;
+import ru.rfsnab.productservice.dto.ProductTombstoneRequest;
 import ru.rfsnab.productservice.model.Category;
 import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.repository.CategoryRepository;
@@ -474,4 +475,75 @@ class ProductImportControllerTest {
         assertThat(saved.getBarcode()).isEqualTo("4600000000001");
         assertThat(saved.getCountryOfOrigin()).isEqualTo("Китай");
     }
+
+    @Test
+    @WithMockUser
+    @DisplayName("POST /import/tombstones — выбывший товар и его варианты сняты с остатка, остальные не тронуты")
+    void shouldZeroStockOfMissingProductsAndVariants() throws Exception {
+        BatchProductImportRequest request = new BatchProductImportRequest(List.of(
+                ProductImportItem.builder()
+                        .externalId("FTK-GONE-001")
+                        .name("Костюм снятый с производства")
+                        .price(new BigDecimal("5000"))
+                        .source("FTK")
+                        .variants(List.of(
+                                ProductImportItem.VariantImportItem.builder()
+                                        .externalId("FTK-GONE-001.001")
+                                        .stockQuantity(7)
+                                        .attributes(Map.of("Размер", "S"))
+                                        .build()
+                        ))
+                        .build(),
+                ProductImportItem.builder()
+                        .externalId("FTK-KEEP-001")
+                        .name("Перчатки в наличии")
+                        .price(new BigDecimal("300"))
+                        .stockQuantity(40)
+                        .source("FTK")
+                        .build()
+        ));
+        mockMvc.perform(post("/api/v1/products/import/batch")
+                        .header("X-Internal-Token", "test-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
+
+        ProductTombstoneRequest tombstones = new ProductTombstoneRequest(List.of("FTK-GONE-001", "FTK-UNKNOWN"));
+        mockMvc.perform(post("/api/v1/products/import/tombstones")
+                        .header("X-Internal-Token", "test-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(tombstones)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested").value(2))
+                .andExpect(jsonPath("$.withdrawn").value(1));
+
+        Map<String, Integer> stockByExternalId = productRepository.findAll().stream()
+                .collect(java.util.stream.Collectors.toMap(Product::getExternalId, Product::getStockQuantity));
+        assertThat(stockByExternalId)
+                .containsEntry("FTK-GONE-001", 0)
+                .containsEntry("FTK-GONE-001.001", 0)
+                .containsEntry("FTK-KEEP-001", 40);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("POST /import/tombstones — пустой список отклоняется валидацией")
+    void shouldRejectEmptyTombstones() throws Exception {
+        mockMvc.perform(post("/api/v1/products/import/tombstones")
+                        .header("X-Internal-Token", "test-secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProductTombstoneRequest(List.of()))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("POST /import/tombstones без X-Internal-Token — 403 даже для ADMIN")
+    void shouldRejectTombstonesWithoutInternalToken() throws Exception {
+        mockMvc.perform(post("/api/v1/products/import/tombstones")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProductTombstoneRequest(List.of("FTK-001")))))
+                .andExpect(status().isForbidden());
+    }
 }
@@ -0,0 +1,131 @@
+package ru.rfsnab.productservice.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.rfsnab.productservice.model.Category;
+import ru.rfsnab.productservice.model.Product;
+import ru.rfsnab.productservice.model.ProductAttribute;
+import ru.rfsnab.productservice.model.ProductImage;
+import ru.rfsnab.productservice.model.ProductVideo;
+import ru.rfsnab.productservice.repository.CategoryRepository;
+import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.service.StorageService;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Число SQL-запросов на страницу листинга не зависит от размера страницы:
+ * категория — join'ом, коллекции (images/videos/attributes/documents) — батчами.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DisplayName("Листинг товаров без N+1")
+class ProductListingQueryCountTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Страница + COUNT + hasVariants + 4 батча коллекций = 7; небольшой запас на служебные запросы.
+     * Без батчей было бы 60+ (по запросу на каждую коллекцию каждой строки).
+     */
+    private static final long MAX_STATEMENTS_PER_PAGE = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private StorageService storageService; // мокаем S3
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        category = categoryRepository.save(Category.builder()
+                .name("Спецодежда")
+                .slug("specodezhda-" + System.nanoTime())
+                .isActive(true)
+                .displayOrder(0)
+                .build());
+
+        for (int i = 0; i < PAGE_SIZE + 5; i++) {
+            Product product = Product.builder()
+                    .name("Куртка " + i)
+                    .slug("kurtka-" + i + "-" + System.nanoTime())
+                    .price(new BigDecimal("1000.00"))
+                    .stockQuantity(10)
+                    .isActive(true)
+                    .isFeatured(true)
+                    .category(category)
+                    .build();
+            product.getImages().add(ProductImage.builder()
+                    .product(product).fileKey("k" + i).fileUrl("https://cdn/k" + i)
+                    .fileSize(100L).contentType("image/webp").isPrimary(true).build());
+            product.getVideos().add(ProductVideo.builder()
+                    .product(product).videoUrl("https://video/" + i).build());
+            product.getAttributes().add(ProductAttribute.builder()
+                    .product(product).attributeName("Цвет").attributeValue("Синий").build());
+            productRepository.save(product);
+        }
+    }
+
+    private long countStatements(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get(url).param("size", String.valueOf(PAGE_SIZE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(PAGE_SIZE)))
+                .andExpect(jsonPath("$.content[0].images", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].videos", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].attributes", hasSize(1)));
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products — ограниченное число запросов на страницу")
+    void allProducts_BoundedStatements() throws Exception {
+        assertThat(countStatements("/api/v1/products")).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/featured — ограниченное число запросов на страницу")
+    void featuredProducts_BoundedStatements() throws Exception {
+        assertThat(countStatements("/api/v1/products/featured")).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/category/{id} — ограниченное число запросов на страницу")
+    void categoryProducts_BoundedStatements() throws Exception {
+        assertThat(countStatements("/api/v1/products/category/" + category.getId()))
+                .isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+}
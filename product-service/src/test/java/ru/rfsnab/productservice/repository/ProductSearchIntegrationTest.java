@@ -0,0 +1,117 @@
+package ru.rfsnab.productservice.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import ru.rfsnab.productservice.BaseIntegrationTest;
+import ru.rfsnab.productservice.model.Product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Интеграционные тесты ProductRepository.fullTextSearch на реальном PostgreSQL
+ * (search_vector с русской морфологией, триграммы, приоритет точного артикула).
+ */
+@DisplayName("ProductRepository.fullTextSearch Integration")
+class ProductSearchIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+    }
+
+    private Product saveProduct(String name, String sku, boolean isActive, boolean isVariantChild) {
+        return productRepository.save(Product.builder()
+                .name(name)
+                .slug("p-" + System.nanoTime())
+                .sku(sku)
+                .isActive(isActive)
+                .isVariantChild(isVariantChild)
+                .stockQuantity(10)
+                .build());
+    }
+
+    private Page<Product> search(String query) {
+        String term = query.trim().toLowerCase();
+        return productRepository.fullTextSearch(term, ProductRepository.containsPattern(term), PageRequest.of(0, 10));
+    }
+
+    @Test
+    @DisplayName("морфология: запрос во множественном числе находит товар в единственном")
+    void shouldMatchWordForms() {
+        Product jacket = saveProduct("Куртка утеплённая", "K-100", true, false);
+        saveProduct("Перчатки рабочие", "P-200", true, false);
+
+        assertThat(search("куртки").getContent()).extracting(Product::getId)
+                .containsExactly(jacket.getId());
+    }
+
+    @Test
+    @DisplayName("подстрока: префикс слова и часть артикула находятся по триграммам")
+    void shouldMatchSubstrings() {
+        Product extinguisher = saveProduct("Огнетушитель ОП-4", "OP4-2024", true, false);
+
+        assertThat(search("огне").getContent()).extracting(Product::getId)
+                .containsExactly(extinguisher.getId());
+        assertThat(search("4-20").getContent()).extracting(Product::getId)
+                .containsExactly(extinguisher.getId());
+    }
+
+    @Test
+    @DisplayName("'%' и '_' в запросе совпадают буквально, а не как шаблон LIKE")
+    void shouldMatchLikeWildcardsLiterally() {
+        Product percent = saveProduct("Скидка 100%", "D-1", true, false);
+        saveProduct("Скидка 1000", "D-2", true, false);
+        saveProduct("Труба ПП20", "T-1", true, false);
+
+        assertThat(search("0%").getContent()).extracting(Product::getId)
+                .containsExactly(percent.getId());
+        assertThat(search("пп_0").getContent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("артикул поставщика (external_id) находится полнотекстовым поиском")
+    void shouldMatchExternalIdBySearchVector() {
+        Product product = productRepository.save(Product.builder()
+                .name("Рукавицы брезентовые")
+                .slug("p-" + System.nanoTime())
+                .externalId("FTK12345")
+                .isActive(true)
+                .isVariantChild(false)
+                .stockQuantity(10)
+                .build());
+
+        // Слова запроса — в разных колонках: подстрокой не находится, только по search_vector
+        assertThat(search("рукавицы ftk12345").getContent()).extracting(Product::getId)
+                .containsExactly(product.getId());
+    }
+
+    @Test
+    @DisplayName("точное совпадение артикула поднимается выше совпадений по названию")
+    void shouldBoostExactArticle() {
+        Product byName = saveProduct("Каска A-15 защитная", "X-1", true, false);
+        Product byArticle = saveProduct("Каска защитная", "A-15", true, false);
+
+        assertThat(search("A-15").getContent()).extracting(Product::getId)
+                .containsExactly(byArticle.getId(), byName.getId());
+    }
+
+    @Test
+    @DisplayName("неактивные товары и варианты-дети в выдачу не попадают")
+    void shouldExcludeInactiveAndVariantChildren() {
+        Product active = saveProduct("Респиратор", "R-1", true, false);
+        saveProduct("Респиратор (вариант)", "R-2", true, true);
+        saveProduct("Респиратор неактивный", "R-3", false, false);
+
+        Page<Product> result = search("респиратор");
+
+        assertThat(result.getContent()).extracting(Product::getId).containsExactly(active.getId());
+        assertThat(result.getTotalElements()).isEqualTo(1);
+    }
+}
@@ -35,6 +35,9 @@ class CategoryServiceTest {
     @Mock
     private SlugGeneratorService slugGenerator;
 
+    @Mock
+    private CategoryTreeVersions versions;
+
     private CategoryService categoryService;
 
     private Category rootCategory;
@@ -42,7 +45,7 @@ class CategoryServiceTest {
 
     @BeforeEach
     void setUp() {
-        categoryService = new CategoryService(categoryRepository, productRepository, slugGenerator);
+        categoryService = new CategoryService(categoryRepository, productRepository, slugGenerator, versions);
 
         rootCategory = Category.builder()
                 .id(1L)
@@ -479,4 +482,54 @@ class CategoryServiceTest {
             assertThat(tree.get(0).getChildren().get(0).getName()).isEqualTo("Порошковые");
         }
     }
+
+    // ==================== Согласование дерева между узлами ====================
+
+    @Nested
+    @DisplayName("версия дерева в кластере")
+    class ClusterVersionTests {
+
+        @Test
+        @DisplayName("изменение категории поднимает версию и перечитывает дерево")
+        void createCategory_BumpsVersionAndRefreshes() {
+            // Given
+            when(slugGenerator.generateSlug("Новая")).thenReturn("novaya");
+            when(categoryRepository.existsBySlug("novaya")).thenReturn(false);
+            when(categoryRepository.save(any(Category.class))).thenAnswer(inv -> inv.getArgument(0));
+            when(categoryRepository.findAll()).thenReturn(List.of(rootCategory));
+
+            // When
+            categoryService.createCategory(Category.builder().name("Новая").build());
+
+            // Then
+            verify(versions).bump();
+            assertThat(categoryService.getCategoryNameById(1L)).isEqualTo("Огнетушители");
+        }
+
+        @Test
+        @DisplayName("версия другого узла новее снимка — дерево перечитывается, старая или та же — нет")
+        void refreshIfOlderThan_ReloadsOnlyForNewerVersion() {
+            // Given - снимок версии 5
+            when(versions.current()).thenReturn(5L);
+            when(categoryRepository.findAll()).thenReturn(List.of(rootCategory));
+            categoryService.refreshCategoryTree();
+
+            // When
+            categoryService.refreshIfOlderThan(4L);
+            categoryService.refreshIfOlderThan(5L);
+
+            // Then
+            verify(categoryRepository, times(1)).findAll();
+
+            // When - другой узел добавил подкатегорию и опубликовал версию 6
+            when(versions.current()).thenReturn(6L);
+            when(categoryRepository.findAll()).thenReturn(List.of(rootCategory, childCategory));
+            categoryService.refreshIfOlderThan(6L);
+
+            // Then
+            verify(categoryRepository, times(2)).findAll();
+            assertThat(categoryService.getSubtreeCategoryIds(1L)).containsExactlyInAnyOrder(1L, 2L);
+            assertThat(categoryService.getCategoryNameById(2L)).isEqualTo("Порошковые");
+        }
+    }
 }
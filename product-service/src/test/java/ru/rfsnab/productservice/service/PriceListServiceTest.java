@@ -1,6 +1,5 @@
 package ru.rfsnab.productservice.service;
 
-import jakarta.persistence.EntityManager;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
@@ -15,15 +14,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import ru.rfsnab.productservice.dto.CategoryTreeDTO;
 import ru.rfsnab.productservice.dto.PriceListRequested;
 import ru.rfsnab.productservice.dto.PriceListResponse;
+import ru.rfsnab.productservice.dto.PriceListRow;
 import ru.rfsnab.productservice.exception.CategoryValidationException;
 import ru.rfsnab.productservice.exception.PriceListDispatchException;
 import ru.rfsnab.productservice.exception.PriceListNotFoundException;
@@ -31,7 +28,6 @@ import ru.rfsnab.productservice.exception.PriceListNotReadyException;
 import ru.rfsnab.productservice.exception.PriceListPendingException;
 import ru.rfsnab.productservice.model.PriceListRequest;
 import ru.rfsnab.productservice.model.PriceListStatus;
-import ru.rfsnab.productservice.model.Product;
 import ru.rfsnab.productservice.repository.PriceListRequestRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
 
@@ -48,6 +44,8 @@ import java.util.concurrent.TimeoutException;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -71,16 +69,22 @@ class PriceListServiceTest {
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
 
-    @Mock
-    private EntityManager entityManager;
-
     private PriceListService priceListService;
 
     @BeforeEach
     void setUp() {
         priceListService = new PriceListService(
-                priceListRequestRepository, productRepository, categoryService, storageService, kafkaTemplate,
-                entityManager);
+                priceListRequestRepository, productRepository, categoryService, storageService, kafkaTemplate);
+    }
+
+    private ByteArrayOutputStream captureUpload() throws IOException {
+        ByteArrayOutputStream capturedBytes = new ByteArrayOutputStream();
+        doAnswer(inv -> {
+            StorageService.ContentWriter writer = inv.getArgument(2);
+            writer.writeTo(capturedBytes);
+            return null;
+        }).when(storageService).uploadStream(anyString(), anyString(), any());
+        return capturedBytes;
     }
 
     // ==================== create() ====================
@@ -113,6 +117,33 @@ class PriceListServiceTest {
             verify(kafkaTemplate).send(eq(PriceListService.TOPIC_PRICE_LIST_REQUESTS), any(PriceListRequested.class));
         }
 
+        @Test
+        @DisplayName("тот же прайс уже готов по неизменному каталогу -> запрос сразу READY, без Kafka")
+        void create_IdenticalReadyExists_ReusesFileWithoutKafka() {
+            when(categoryService.existsById(1L)).thenReturn(true);
+            when(priceListRequestRepository.existsByUserIdAndStatus(10L, PriceListStatus.PENDING)).thenReturn(false);
+            PriceListRequest ready = PriceListRequest.builder()
+                    .id(50L).userId(7L).status(PriceListStatus.READY).fileKey("price-lists/7/50.xlsx").rowCount(42)
+                    .build();
+            when(priceListRequestRepository.findFirstByContentKeyAndStatusOrderByCreatedAtDesc(
+                    anyString(), eq(PriceListStatus.READY))).thenReturn(java.util.Optional.of(ready));
+            when(storageService.fileExists("price-lists/7/50.xlsx")).thenReturn(true);
+            when(priceListRequestRepository.save(any(PriceListRequest.class))).thenAnswer(inv -> {
+                PriceListRequest r = inv.getArgument(0);
+                r.setId(101L);
+                return r;
+            });
+
+            PriceListResponse response = priceListService.create(10L, "B2B", List.of(1L));
+
+            assertThat(response.id()).isEqualTo(101L);
+            assertThat(response.status()).isEqualTo("READY");
+            assertThat(response.rowCount()).isEqualTo(42);
+            verify(priceListRequestRepository).save(argThat(r -> "price-lists/7/50.xlsx".equals(r.getFileKey())
+                    && r.getContentKey() != null));
+            verifyNoInteractions(kafkaTemplate);
+        }
+
         @Test
         @DisplayName("выбрасывает 400 для несуществующей категории")
         void create_CategoryNotFound_ThrowsException() {
@@ -256,21 +287,12 @@ class PriceListServiceTest {
                     .id(1L).name("Огнетушители").displayOrder(0).build();
             when(categoryService.getCategoryTree()).thenReturn(List.of(categoryNode));
 
-            Product product = Product.builder()
-                    .id(1L).sku("ART-1").name("Товар 1").unitOfMeasure("шт")
-                    .price(new BigDecimal("100.00")).wholesalePrice(new BigDecimal("120.00"))
-                    .stockQuantity(50).isActive(true).build();
+            PriceListRow product = new PriceListRow(1L, 0, "ART-1", "Товар 1", "шт",
+                    new BigDecimal("100.00"), new BigDecimal("120.00"));
+            when(productRepository.findPriceListRows(eq(1L), anyInt(), anyLong(), any(Pageable.class)))
+                    .thenReturn(List.of(product));
 
-            Page<Product> page = new PageImpl<>(List.of(product), PageRequest.of(0, 1000), 1);
-            when(productRepository.findByCategoryIdAndIsActiveTrue(eq(1L), any(Pageable.class)))
-                    .thenReturn(page);
-
-            ByteArrayOutputStream capturedBytes = new ByteArrayOutputStream();
-            doAnswer(inv -> {
-                byte[] data = inv.getArgument(0);
-                capturedBytes.write(data);
-                return null;
-            }).when(storageService).uploadBytes(any(byte[].class), anyString(), anyString());
+            ByteArrayOutputStream capturedBytes = captureUpload();
 
             priceListService.generate(1L);
 
@@ -321,22 +343,15 @@ class PriceListServiceTest {
                     .children(new ArrayList<>(List.of(childNode))).build();
             when(categoryService.getCategoryTree()).thenReturn(List.of(parentNode));
 
-            Product product = Product.builder()
-                    .id(1L).sku("ART-2").name("Товар 2").unitOfMeasure("шт")
-                    .price(new BigDecimal("50.00")).wholesalePrice(new BigDecimal("60.00"))
-                    .stockQuantity(10).isActive(true).build();
+            PriceListRow product = new PriceListRow(1L, 0, "ART-2", "Товар 2", "шт",
+                    new BigDecimal("50.00"), new BigDecimal("60.00"));
 
-            when(productRepository.findByCategoryIdAndIsActiveTrue(eq(1L), any(Pageable.class)))
-                    .thenReturn(new PageImpl<>(List.of(), PageRequest.of(0, 1000), 0));
-            when(productRepository.findByCategoryIdAndIsActiveTrue(eq(2L), any(Pageable.class)))
-                    .thenReturn(new PageImpl<>(List.of(product), PageRequest.of(0, 1000), 1));
+            when(productRepository.findPriceListRows(eq(1L), anyInt(), anyLong(), any(Pageable.class)))
+                    .thenReturn(List.of());
+            when(productRepository.findPriceListRows(eq(2L), anyInt(), anyLong(), any(Pageable.class)))
+                    .thenReturn(List.of(product));
 
-            ByteArrayOutputStream capturedBytes = new ByteArrayOutputStream();
-            doAnswer(inv -> {
-                byte[] data = inv.getArgument(0);
-                capturedBytes.write(data);
-                return null;
-            }).when(storageService).uploadBytes(any(byte[].class), anyString(), anyString());
+            ByteArrayOutputStream capturedBytes = captureUpload();
 
             priceListService.generate(1L);
 
@@ -358,6 +373,70 @@ class PriceListServiceTest {
             }
         }
 
+        @Test
+        @DisplayName("полная страница -> следующая читается keyset'ом от последней строки (displayOrder, id)")
+        void generate_FullPage_ContinuesFromLastRow() throws IOException {
+            PriceListRequest request = PriceListRequest.builder()
+                    .id(1L).userId(10L).clientType("B2C").status(PriceListStatus.PENDING)
+                    .categoryIds(List.of(1L)).createdAt(LocalDateTime.now()).build();
+            when(priceListRequestRepository.findById(1L)).thenReturn(java.util.Optional.of(request));
+            when(categoryService.getCategoryTree()).thenReturn(List.of(
+                    CategoryTreeDTO.builder().id(1L).name("Огнетушители").displayOrder(0).build()));
+
+            List<PriceListRow> firstPage = new ArrayList<>();
+            for (long id = 1; id <= 1000; id++) {
+                firstPage.add(new PriceListRow(id, 5, "ART-" + id, "Товар " + id, "шт", null, BigDecimal.TEN));
+            }
+            when(productRepository.findPriceListRows(eq(1L), eq(Integer.MIN_VALUE), eq(0L), any(Pageable.class)))
+                    .thenReturn(firstPage);
+            when(productRepository.findPriceListRows(eq(1L), eq(5), eq(1000L), any(Pageable.class)))
+                    .thenReturn(List.of(new PriceListRow(1001L, 6, "ART-1001", "Товар 1001", "шт", null, null)));
+            captureUpload();
+
+            priceListService.generate(1L);
+
+            assertThat(request.getStatus()).isEqualTo(PriceListStatus.READY);
+            assertThat(request.getRowCount()).isEqualTo(1001);
+            verify(productRepository, times(2)).findPriceListRows(eq(1L), anyInt(), anyLong(), any(Pageable.class));
+        }
+
+        @Test
+        @DisplayName("готовый файл с тем же содержимым -> переиспользуется без генерации и загрузки")
+        void generate_IdenticalReadyExists_ReusesFile() throws IOException {
+            PriceListRequest request = PriceListRequest.builder()
+                    .id(2L).userId(10L).clientType("B2B").status(PriceListStatus.PENDING)
+                    .categoryIds(List.of(1L)).createdAt(LocalDateTime.now()).build();
+            when(priceListRequestRepository.findById(2L)).thenReturn(java.util.Optional.of(request));
+            PriceListRequest ready = PriceListRequest.builder()
+                    .id(1L).userId(7L).status(PriceListStatus.READY).fileKey("price-lists/7/1.xlsx").rowCount(3)
+                    .build();
+            when(priceListRequestRepository.findFirstByContentKeyAndStatusOrderByCreatedAtDesc(
+                    anyString(), eq(PriceListStatus.READY))).thenReturn(java.util.Optional.of(ready));
+            when(storageService.fileExists("price-lists/7/1.xlsx")).thenReturn(true);
+
+            priceListService.generate(2L);
+
+            assertThat(request.getStatus()).isEqualTo(PriceListStatus.READY);
+            assertThat(request.getFileKey()).isEqualTo("price-lists/7/1.xlsx");
+            assertThat(request.getRowCount()).isEqualTo(3);
+            verify(storageService, never()).uploadStream(anyString(), anyString(), any());
+            verify(productRepository, never()).findPriceListRows(any(), anyInt(), anyLong(), any());
+        }
+
+        @Test
+        @DisplayName("отпечаток содержимого меняется вместе с версией каталога и не зависит от порядка категорий")
+        void contentKey_DependsOnCatalogVersionNotCategoryOrder() {
+            when(productRepository.count()).thenReturn(10L);
+            when(productRepository.findLastUpdatedAt()).thenReturn(LocalDateTime.of(2026, 1, 1, 12, 0));
+
+            String key = priceListService.contentKey("B2B", List.of(2L, 1L));
+            assertThat(priceListService.contentKey("B2B", List.of(1L, 2L))).isEqualTo(key);
+            assertThat(priceListService.contentKey("B2C", List.of(1L, 2L))).isNotEqualTo(key);
+
+            when(productRepository.findLastUpdatedAt()).thenReturn(LocalDateTime.of(2026, 1, 1, 12, 5));
+            assertThat(priceListService.contentKey("B2B", List.of(1L, 2L))).isNotEqualTo(key);
+        }
+
         @Test
         @DisplayName("при ошибке генерации помечает запрос FAILED, не пробрасывая исключение наружу")
         void generate_Error_MarksFailed() {
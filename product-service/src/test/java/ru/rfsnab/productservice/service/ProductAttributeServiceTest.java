@@ -31,6 +31,12 @@ class ProductAttributeServiceTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private ProductFacetIndex facetIndex;
+
+    @Mock
+    private ProductDetailCache detailCache;
+
     @InjectMocks
     private ProductAttributeService attributeService;
 
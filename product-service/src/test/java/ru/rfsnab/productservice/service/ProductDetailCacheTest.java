@@ -0,0 +1,191 @@
+package ru.rfsnab.productservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import ru.rfsnab.productservice.dto.ProductResponse;
+import ru.rfsnab.productservice.repository.ProductRepository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductDetailCacheTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryService categoryService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private ProductDetailCache cache(boolean redisEnabled) {
+        return new ProductDetailCache(redisTemplate, objectMapper, productRepository, categoryService,
+                redisEnabled, 30, 100, 5);
+    }
+
+    private static ProductResponse response(Long id, Long categoryId) {
+        return ProductResponse.builder().id(id).name("Товар " + id).slug("tovar-" + id).categoryId(categoryId).build();
+    }
+
+    private static Supplier<ProductResponse> counting(AtomicInteger loads, ProductResponse response) {
+        return () -> {
+            loads.incrementAndGet();
+            return response;
+        };
+    }
+
+    @Test
+    void get_SecondRead_ServedFromLocalCache() {
+        ProductDetailCache cache = cache(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, counting(loads, response(1L, null)));
+        ProductResponse result = cache.get(1L, counting(loads, response(1L, null)));
+
+        assertThat(result.getName()).isEqualTo("Товар 1");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictProducts_ReloadsProductAndItsParent() {
+        ProductDetailCache cache = cache(false);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, counting(loads, response(1L, null)));
+        cache.get(2L, counting(loads, response(2L, null)));
+        when(productRepository.findParentProductIdsByIdIn(anyCollection())).thenReturn(List.of(1L));
+
+        // Изменился вариант 2 — сбрасывается и карточка родителя 1
+        cache.evictProducts(List.of(2L));
+        cache.get(1L, counting(loads, response(1L, null)));
+        cache.get(2L, counting(loads, response(2L, null)));
+
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void get_CategoryMarkupChanged_TreatedAsMiss() {
+        ProductDetailCache cache = cache(false);
+        AtomicInteger loads = new AtomicInteger();
+        when(categoryService.getCategoryNameById(5L)).thenReturn("Огнетушители");
+        when(categoryService.getCategorySaleMarkup(5L)).thenReturn(new BigDecimal("10"));
+        cache.get(1L, counting(loads, response(1L, 5L)));
+
+        when(categoryService.getCategorySaleMarkup(5L)).thenReturn(new BigDecimal("-15"));
+        cache.get(1L, counting(loads, response(1L, 5L)));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_EvictedWhileLoading_ResultNotCached() {
+        ProductDetailCache cache = cache(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Запись товара закоммитилась, пока карточка собиралась из старого снимка
+        cache.get(1L, () -> {
+            loads.incrementAndGet();
+            cache.onMessage(new DefaultMessage(new byte[0], "1".getBytes(StandardCharsets.UTF_8)), null);
+            return response(1L, null);
+        });
+        cache.get(1L, counting(loads, response(1L, null)));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onMessage_EvictsLocalEntries() {
+        ProductDetailCache cache = cache(false);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, counting(loads, response(1L, null)));
+
+        cache.onMessage(new DefaultMessage(new byte[0], "1,2".getBytes(StandardCharsets.UTF_8)), null);
+        cache.get(1L, counting(loads, response(1L, null)));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_SharedEntry_ServedWithoutLoader() throws Exception {
+        ProductDetailCache cache = cache(true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(ProductDetailCache.KEY_PREFIX + 1))
+                .thenReturn(objectMapper.writeValueAsString(new ProductDetailCache.Entry(response(1L, null), null, null)));
+        AtomicInteger loads = new AtomicInteger();
+
+        ProductResponse result = cache.get(1L, counting(loads, response(1L, null)));
+
+        assertThat(result.getSlug()).isEqualTo("tovar-1");
+        assertThat(loads).hasValue(0);
+        verify(valueOperations, never()).get(ProductDetailCache.VERSION_KEY_PREFIX + 1);
+    }
+
+    @Test
+    void get_Loaded_WrittenToSharedOnlyAtVersionReadBeforeLoad() {
+        ProductDetailCache cache = cache(true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(ProductDetailCache.KEY_PREFIX + 1)).thenReturn(null);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Версию сверяет скрипт записи: сброс на другом узле во время сборки её увеличит
+        cache.get(1L, () -> {
+            verify(valueOperations).get(ProductDetailCache.VERSION_KEY_PREFIX + 1);
+            loads.incrementAndGet();
+            return response(1L, null);
+        });
+
+        assertThat(loads).hasValue(1);
+        verify(redisTemplate).execute(eq(ProductDetailCache.WRITE_SCRIPT),
+                eq(List.of(ProductDetailCache.KEY_PREFIX + 1, ProductDetailCache.VERSION_KEY_PREFIX + 1)),
+                eq("0"), anyString(), eq("1800000"));
+    }
+
+    @Test
+    void get_RedisUnavailable_FallsBackToLoader() {
+        ProductDetailCache cache = cache(true);
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("connection refused"));
+        AtomicInteger loads = new AtomicInteger();
+
+        ProductResponse result = cache.get(1L, counting(loads, response(1L, null)));
+
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictProducts_PublishesIdsToOtherNodes() {
+        ProductDetailCache cache = cache(true);
+        when(productRepository.findParentProductIdsByIdIn(anyCollection())).thenReturn(List.of());
+
+        cache.evictProducts(List.of(7L));
+
+        verify(redisTemplate).execute(eq(ProductDetailCache.EVICT_SCRIPT),
+                eq(List.of(ProductDetailCache.VERSION_KEY_PREFIX + 7, ProductDetailCache.KEY_PREFIX + 7)),
+                eq("1800000"));
+        verify(redisTemplate).convertAndSend(eq(ProductDetailCache.CHANNEL), eq("7"));
+    }
+}
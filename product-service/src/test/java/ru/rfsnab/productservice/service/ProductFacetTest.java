@@ -1,21 +1,30 @@
 package ru.rfsnab.productservice.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import ru.rfsnab.productservice.dto.FacetDto;
+import ru.rfsnab.productservice.exception.CategoryNotFoundException;
 import ru.rfsnab.productservice.repository.CategoryRepository;
 import ru.rfsnab.productservice.repository.ProductAttributeRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,30 +45,114 @@ class ProductFacetTest {
     @Mock
     private ProductAttributeRepository attributeRepository;
 
-    @InjectMocks
+    private ProductFacetIndex facetIndex;
+
+    @Mock
+    private ProductDetailCache detailCache;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
     private ProductService productService;
 
-    @Test
-    void groupsAttributeRowsIntoFacets() {
-        when(categoryRepository.existsById(5L)).thenReturn(true);
+    @BeforeEach
+    void setUp() {
+        facetIndex = new ProductFacetIndex(attributeRepository, productRepository, categoryService,
+                redisTemplate, true, 10);
+        productService = new ProductService(productRepository, categoryRepository, categoryService,
+                slugGenerator, facetIndex, detailCache);
+    }
+
+    private void givenSubtreeRows() {
         when(categoryService.getSubtreeCategoryIds(5L)).thenReturn(List.of(5L, 6L));
-        when(attributeRepository.findFacetRows(eq(List.of(5L, 6L)), anySet())).thenReturn(List.of(
-                new Object[]{"Состав ткани", "100% хлопок"},
-                new Object[]{"Состав ткани", "65% полиэфир / 35% хлопок"},
-                new Object[]{"Защитные свойства", "Ми"}
+        when(attributeRepository.findFacetEntries(eq(List.of(5L, 6L)), anySet())).thenReturn(List.of(
+                new Object[]{5L, 1L, "Состав ткани", "100% хлопок"},
+                new Object[]{5L, 1L, "Защитные свойства", "Ми"},
+                new Object[]{5L, 2L, "Состав ткани", "65% полиэфир / 35% хлопок"},
+                new Object[]{6L, 3L, "Состав ткани", "100% хлопок"},
+                new Object[]{6L, 3L, "Защитные свойства", "Ми"},
+                new Object[]{6L, 4L, "Состав ткани", "100% хлопок"}
         ));
+    }
 
-        List<FacetDto> facets = productService.getFacets(5L);
+    private static FacetDto facet(List<FacetDto> facets, String name) {
+        return facets.stream().filter(f -> f.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void groupsAttributeRowsIntoFacetsWithCountsAcrossSubtree() {
+        when(categoryRepository.existsById(5L)).thenReturn(true);
+        givenSubtreeRows();
+
+        List<FacetDto> facets = productService.getFacets(5L, Map.of());
 
         assertThat(facets).hasSize(2);
-        assertThat(facets).anySatisfy(f -> {
-            assertThat(f.name()).isEqualTo("Состав ткани");
-            assertThat(f.values()).containsExactly("100% хлопок", "65% полиэфир / 35% хлопок");
-        });
-        assertThat(facets).anySatisfy(f -> {
-            assertThat(f.name()).isEqualTo("Защитные свойства");
-            assertThat(f.values()).containsExactly("Ми");
-        });
+        FacetDto fabric = facet(facets, "Состав ткани");
+        assertThat(fabric.values()).containsExactly("100% хлопок", "65% полиэфир / 35% хлопок");
+        assertThat(fabric.counts()).containsExactly(
+                entry("100% хлопок", 3), entry("65% полиэфир / 35% хлопок", 1));
+        assertThat(facet(facets, "Защитные свойства").counts()).containsEntry("Ми", 2);
+    }
+
+    @Test
+    void countsReflectSelectionOnOtherProperties() {
+        givenSubtreeRows();
+
+        List<FacetDto> facets = facetIndex.getFacets(5L, Map.of("Защитные свойства", List.of("Ми")));
+
+        // Выбор "Ми" сужает счётчики состава ткани до товаров 1 и 3...
+        assertThat(facet(facets, "Состав ткани").counts())
+                .containsEntry("100% хлопок", 2)
+                .containsEntry("65% полиэфир / 35% хлопок", 0);
+        // ...но не счётчики самого свойства "Защитные свойства"
+        assertThat(facet(facets, "Защитные свойства").counts()).containsEntry("Ми", 2);
+    }
+
+    @Test
+    void servesRepeatedRequestsFromIndexAndReloadsOnlyInvalidatedCategory() {
+        givenSubtreeRows();
+        facetIndex.getFacets(5L, Map.of());
+        facetIndex.getFacets(5L, Map.of());
+        verify(attributeRepository, times(1)).findFacetEntries(eq(List.of(5L, 6L)), anySet());
+
+        // Товар 4 перенесён (категория 6) — пересобирается только снимок категории 6
+        when(productRepository.findCategoryIdsByIdIn(anyCollection())).thenReturn(List.of());
+        when(attributeRepository.findFacetEntries(eq(List.of(6L)), anySet())).thenReturn(List.<Object[]>of(
+                new Object[]{6L, 3L, "Состав ткани", "100% хлопок"},
+                new Object[]{6L, 3L, "Защитные свойства", "Ми"}
+        ));
+        facetIndex.invalidateProducts(List.of(4L));
+
+        List<FacetDto> facets = facetIndex.getFacets(5L, Map.of());
+
+        assertThat(facet(facets, "Состав ткани").counts()).containsEntry("100% хлопок", 2);
+        verify(attributeRepository).findFacetEntries(eq(List.of(6L)), anySet());
+        verify(redisTemplate).convertAndSend(ProductFacetIndex.CHANNEL, "|4");
+    }
+
+    @Test
+    void invalidationFromAnotherReplicaReloadsOnlyAffectedCategories() {
+        givenSubtreeRows();
+        facetIndex.getFacets(5L, Map.of());
+
+        // Другой узел сменил товар 4 (категория 6) — оповещение "категории|товары"
+        when(attributeRepository.findFacetEntries(eq(List.of(6L)), anySet())).thenReturn(List.<Object[]>of(
+                new Object[]{6L, 3L, "Состав ткани", "100% хлопок"}
+        ));
+        facetIndex.onMessage(new DefaultMessage(new byte[0], "6|4".getBytes(StandardCharsets.UTF_8)), null);
+
+        List<FacetDto> facets = facetIndex.getFacets(5L, Map.of());
+
+        assertThat(facet(facets, "Состав ткани").counts()).containsEntry("100% хлопок", 2);
+        verify(attributeRepository).findFacetEntries(eq(List.of(6L)), anySet());
+    }
+
+    @Test
+    void throwsForUnknownCategory() {
+        when(categoryRepository.existsById(99L)).thenReturn(false);
+
+        assertThatThrownBy(() -> productService.getFacets(99L, Map.of()))
+                .isInstanceOf(CategoryNotFoundException.class);
     }
 
     @Test
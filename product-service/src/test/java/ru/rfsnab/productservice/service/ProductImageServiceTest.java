@@ -36,6 +36,9 @@ class ProductImageServiceTest {
     @Mock
     private StorageService storageService;
 
+    @Mock
+    private ProductDetailCache detailCache;
+
     @InjectMocks
     private ProductImageService imageService;
 
@@ -0,0 +1,138 @@
+package ru.rfsnab.productservice.service;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportAction;
+import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportItemResult;
+import ru.rfsnab.productservice.dto.ProductImportItem;
+import ru.rfsnab.productservice.dto.ProductImportMessage;
+import ru.rfsnab.productservice.dto.ProductImportResultEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductImportKafkaConsumer")
+class ProductImportKafkaConsumerTest {
+
+    private static final String RESULTS_TOPIC = "product-import-results";
+
+    private static final ValidatorFactory VALIDATOR_FACTORY = Validation.buildDefaultValidatorFactory();
+
+    @Mock
+    private ProductImportService productImportService;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private ProductImportKafkaConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Validator validator = VALIDATOR_FACTORY.getValidator();
+        consumer = new ProductImportKafkaConsumer(productImportService, kafkaTemplate, validator);
+        ReflectionTestUtils.setField(consumer, "resultsTopic", RESULTS_TOPIC);
+        // lenient: тест нечитаемого сообщения до отправки результата не доходит
+        lenient().when(kafkaTemplate.send(eq(RESULTS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        VALIDATOR_FACTORY.close();
+    }
+
+    private ConsumerRecord<String, ProductImportMessage> record(long offset, String runId, String externalId, String name) {
+        ProductImportItem item = ProductImportItem.builder().externalId(externalId).name(name).build();
+        return new ConsumerRecord<>("product-import-items", 0, offset, externalId, new ProductImportMessage(runId, item));
+    }
+
+    private BatchProductImportResponse created(List<ProductImportItem> items) {
+        List<ImportItemResult> results = new ArrayList<>();
+        items.forEach(i -> results.add(ImportItemResult.builder()
+                .externalId(i.getExternalId()).action(ImportAction.CREATED).success(true).build()));
+        return BatchProductImportResponse.builder()
+                .totalReceived(items.size()).created(items.size()).results(results).build();
+    }
+
+    @Test
+    @DisplayName("выборка делится по прогонам: один batch-импорт и один результат на runId")
+    void shouldImportAndReplyPerRun() throws Exception {
+        when(productImportService.importItems(anyList())).thenAnswer(inv -> created(inv.getArgument(0)));
+
+        consumer.onImportItems(List.of(
+                record(0, "run-a", "FTK-1", "Костюм рабочий"),
+                record(1, "run-b", "1C-1", "Перчатки нитриловые"),
+                record(2, "run-a", "FTK-2", "Куртка утеплённая")));
+
+        ArgumentCaptor<ProductImportResultEvent> events = ArgumentCaptor.forClass(ProductImportResultEvent.class);
+        verify(kafkaTemplate).send(eq(RESULTS_TOPIC), eq("run-a"), events.capture());
+        verify(kafkaTemplate).send(eq(RESULTS_TOPIC), eq("run-b"), events.capture());
+
+        ProductImportResultEvent runA = events.getAllValues().getFirst();
+        assertThat(runA.response().getCreated()).isEqualTo(2);
+        assertThat(runA.response().getResults()).extracting(ImportItemResult::getExternalId)
+                .containsExactly("FTK-1", "FTK-2");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("невалидный товар получает FAILED без обращения к БД, остальные импортируются")
+    void shouldRejectInvalidItems() throws Exception {
+        when(productImportService.importItems(anyList())).thenAnswer(inv -> created(inv.getArgument(0)));
+
+        consumer.onImportItems(List.of(
+                record(0, "run-a", "FTK-1", "Костюм рабочий"),
+                record(1, "run-a", "FTK-2", "К")));
+
+        ArgumentCaptor<List<ProductImportItem>> imported = ArgumentCaptor.forClass(List.class);
+        verify(productImportService).importItems(imported.capture());
+        assertThat(imported.getValue()).extracting(ProductImportItem::getExternalId).containsExactly("FTK-1");
+
+        ArgumentCaptor<ProductImportResultEvent> event = ArgumentCaptor.forClass(ProductImportResultEvent.class);
+        verify(kafkaTemplate).send(eq(RESULTS_TOPIC), eq("run-a"), event.capture());
+        BatchProductImportResponse response = event.getValue().response();
+        assertThat(response.getTotalReceived()).isEqualTo(2);
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults()).filteredOn(r -> !r.isSuccess())
+                .singleElement()
+                .satisfies(r -> assertThat(r.getErrorMessage()).startsWith("name:"));
+    }
+
+    @Test
+    @DisplayName("нечитаемое сообщение (ошибка десериализации) пропускается")
+    void shouldSkipUndeserializableRecord() throws Exception {
+        consumer.onImportItems(List.of(new ConsumerRecord<>("product-import-items", 0, 0L, "FTK-1", null)));
+
+        verify(productImportService, never()).importItems(anyList());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+}
@@ -14,19 +14,31 @@ import ru.rfsnab.productservice.dto.BatchProductImportRequest;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse;
 import ru.rfsnab.productservice.dto.BatchProductImportResponse.ImportAction;
 import ru.rfsnab.productservice.dto.ProductImportItem;
+import ru.rfsnab.productservice.dto.ProductTombstoneRequest;
+import ru.rfsnab.productservice.dto.ProductTombstoneResponse;
 import ru.rfsnab.productservice.model.Category;
 import ru.rfsnab.productservice.model.Product;
+import ru.rfsnab.productservice.model.ProductAttribute;
 import ru.rfsnab.productservice.repository.CategoryRepository;
 import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository.HeldStock;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 
@@ -46,22 +58,32 @@ class ProductImportServiceTest {
     @Mock
     private SlugGeneratorService slugService;
 
+    @Mock
+    private ProductFacetIndex facetIndex;
+
+    @Mock
+    private ProductDetailCache detailCache;
+
+    @Mock
+    private StockReservationRepository reservationRepository;
+
     private ProductImportService importService;
 
     private Category importCategory;
 
     @BeforeEach
     void setUp() {
-        // Импорт выполняет каждый товар в своей транзакции через TransactionTemplate:
+        // Импорт выполняет чанк (а при ошибке — каждый товар) в транзакции через TransactionTemplate:
         // без этого стаба мок отдаёт null вместо TransactionStatus и товары не обрабатываются.
         when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
 
-        importService = new ProductImportService(productRepository, categoryRepository, transactionManager, slugService);
+        importService = new ProductImportService(productRepository, categoryRepository, transactionManager, slugService,
+                facetIndex, detailCache, reservationRepository);
         ReflectionTestUtils.setField(importService, "chunkSize", 25);
 
         importCategory = Category.builder().id(1L).name("Импорт из 1С").slug("import-1c").build();
-        when(categoryRepository.findBySlug("import-1c")).thenReturn(Optional.of(importCategory));
-        when(productRepository.findAllSlugs()).thenReturn(List.of());
+        // tombstone-проход категорию импорта не читает
+        lenient().when(categoryRepository.findBySlug("import-1c")).thenReturn(Optional.of(importCategory));
     }
 
     // ==================== upsertChildVariants() — категория ребёнка ====================
@@ -285,4 +307,211 @@ class ProductImportServiceTest {
                 .extracting(a -> a.getAttributeName() + "=" + a.getAttributeValue())
                 .containsExactlyInAnyOrder("Состав ткани=100% хлопок", "Защитные свойства=Ми");
     }
+
+    // ==================== пакетный upsert ====================
+
+    @Nested
+    @DisplayName("пакетный upsert")
+    class BulkUpsertTests {
+
+        @Test
+        @DisplayName("атрибуты обновляются по разнице: совпадающие сохраняются, пропавшие удаляются, новые добавляются")
+        void reimport_AttributesDiffed() {
+            Product existing = Product.builder()
+                    .id(30L)
+                    .externalId("FTK-30")
+                    .name("Костюм")
+                    .category(importCategory)
+                    .attributes(new ArrayList<>())
+                    .build();
+            ProductAttribute fabric = ProductAttribute.builder()
+                    .id(1L).product(existing).attributeName("Состав ткани").attributeValue("100% хлопок").build();
+            ProductAttribute color = ProductAttribute.builder()
+                    .id(2L).product(existing).attributeName("Цвет").attributeValue("синий").build();
+            existing.getAttributes().addAll(List.of(fabric, color));
+
+            ProductImportItem item = ProductImportItem.builder()
+                    .externalId("FTK-30")
+                    .name("Костюм")
+                    .properties(new LinkedHashMap<>(Map.of(
+                            "Состав ткани", "100% хлопок",
+                            "Цвет", "красный")))
+                    .build();
+
+            when(productRepository.findByExternalIdIn(List.of("FTK-30"))).thenReturn(List.of(existing));
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+
+            BatchProductImportResponse response = importService.importBatch(
+                    BatchProductImportRequest.builder().items(List.of(item)).build());
+
+            assertThat(response.getUpdated()).isEqualTo(1);
+            assertThat(existing.getAttributes()).contains(fabric).doesNotContain(color);
+            assertThat(existing.getAttributes())
+                    .extracting(a -> a.getAttributeName() + "=" + a.getAttributeValue())
+                    .containsExactlyInAnyOrder("Состав ткани=100% хлопок", "Цвет=красный");
+        }
+
+        @Test
+        @DisplayName("ошибка одного товара: чанк переигрывается по одному, остальные товары импортируются")
+        void failingItem_IsolatedByReplay() {
+            ProductImportItem good = ProductImportItem.builder().externalId("OK-1").name("Каска").build();
+            ProductImportItem bad = ProductImportItem.builder().externalId("BAD-1").name("Перчатки").build();
+
+            when(slugService.generateUniqueSlug(anyString(), any())).thenAnswer(inv -> "slug-" + inv.getArgument(0));
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> {
+                Product p = inv.getArgument(0);
+                if ("BAD-1".equals(p.getExternalId())) {
+                    throw new IllegalStateException("value too long for type character varying(255)");
+                }
+                return p;
+            });
+
+            BatchProductImportResponse response = importService.importBatch(
+                    BatchProductImportRequest.builder().items(List.of(good, bad)).build());
+
+            assertThat(response.getCreated()).isEqualTo(1);
+            assertThat(response.getFailed()).isEqualTo(1);
+            assertThat(response.getResults())
+                    .filteredOn(r -> "BAD-1".equals(r.getExternalId()))
+                    .singleElement()
+                    .satisfies(r -> assertThat(r.getErrorMessage()).contains("varying(255)"));
+        }
+
+        @Test
+        @DisplayName("занятые slug'и читаются только для новых названий, а не весь каталог")
+        void slugsLoadedOnlyForNewProducts() {
+            ProductImportItem item = ProductImportItem.builder().externalId("NEW-1").name("Костюм").build();
+
+            when(slugService.generateSlug("Костюм")).thenReturn("kostyum");
+            when(productRepository.findSlugsIn(Set.of("kostyum"))).thenReturn(List.of("kostyum"));
+            when(productRepository.findSlugsWithSuffix("kostyum")).thenReturn(List.of("kostyum-2"));
+            when(slugService.generateUniqueSlug(eq("Костюм"), any())).thenReturn("kostyum-3");
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+
+            importService.importBatch(BatchProductImportRequest.builder().items(List.of(item)).build());
+
+            verify(slugService).generateUniqueSlug(eq("Костюм"),
+                    argThat(reserved -> reserved.containsAll(Set.of("kostyum", "kostyum-2"))));
+        }
+
+        @Test
+        @DisplayName("существующие товары не читают slug'и из БД")
+        void existingProducts_NoSlugQueries() {
+            Product existing = Product.builder()
+                    .id(40L).externalId("EX-1").name("Каска").category(importCategory).build();
+            ProductImportItem item = ProductImportItem.builder().externalId("EX-1").name("Каска").build();
+
+            when(productRepository.findByExternalIdIn(List.of("EX-1"))).thenReturn(List.of(existing));
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+
+            BatchProductImportResponse response = importService.importBatch(
+                    BatchProductImportRequest.builder().items(List.of(item)).build());
+
+            assertThat(response.getUnchanged()).isEqualTo(1);
+            verify(productRepository, never()).findSlugsIn(any());
+        }
+    }
+
+    // ==================== остаток и резервы ====================
+
+    @Nested
+    @DisplayName("остаток и действующие резервы")
+    class HeldStockTests {
+
+        private record Held(Long productId, Long quantity) implements HeldStock {
+            @Override public Long getProductId() { return productId; }
+            @Override public Long getQuantity()  { return quantity; }
+        }
+
+        @Test
+        @DisplayName("из остатка выгрузки вычитаются резервы товара и варианта, строки блокируются до чтения")
+        void importedStock_MinusHeld() {
+            Product parent = Product.builder()
+                    .id(50L).externalId("FTK-50").name("Костюм").category(importCategory).stockQuantity(7).build();
+            Product child = Product.builder()
+                    .id(51L).externalId("FTK-50.001").name("Костюм (48)").category(importCategory)
+                    .isVariantChild(true).parentProductId(50L).stockQuantity(1).build();
+            ProductImportItem item = ProductImportItem.builder()
+                    .externalId("FTK-50")
+                    .name("Костюм")
+                    .stockQuantity(10)
+                    .variants(List.of(ProductImportItem.VariantImportItem.builder()
+                            .externalId("FTK-50.001").stockQuantity(2).build()))
+                    .build();
+
+            when(productRepository.findByExternalIdIn(List.of("FTK-50"))).thenReturn(List.of(parent));
+            when(productRepository.findByExternalIdIn(List.of("FTK-50.001"))).thenReturn(List.of(child));
+            when(reservationRepository.sumHeldByProductIdIn(anyCollection()))
+                    .thenReturn(List.of(new Held(50L, 3L), new Held(51L, 5L)));
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+
+            importService.importBatch(BatchProductImportRequest.builder().items(List.of(item)).build());
+
+            org.mockito.InOrder order = org.mockito.Mockito.inOrder(productRepository);
+            order.verify(productRepository).lockByExternalIdIn(List.of("FTK-50", "FTK-50.001"));
+            order.verify(productRepository).findByExternalIdIn(List.of("FTK-50"));
+            assertThat(parent.getStockQuantity()).isEqualTo(7);
+            // выгрузка меньше резервов — остаток не уходит в минус
+            assertThat(child.getStockQuantity()).isZero();
+        }
+
+        @Test
+        @DisplayName("новый товар получает остаток выгрузки как есть — резервов у него быть не может")
+        void newProduct_NoHeldLookup() {
+            ProductImportItem item = ProductImportItem.builder()
+                    .externalId("NEW-50").name("Каска").stockQuantity(12).build();
+
+            when(slugService.generateUniqueSlug(anyString(), any())).thenReturn("kaska");
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+
+            importService.importBatch(BatchProductImportRequest.builder().items(List.of(item)).build());
+
+            org.mockito.ArgumentCaptor<Product> captor = org.mockito.ArgumentCaptor.forClass(Product.class);
+            verify(productRepository).save(captor.capture());
+            assertThat(captor.getValue().getStockQuantity()).isEqualTo(12);
+            verify(reservationRepository, never()).sumHeldByProductIdIn(anyCollection());
+        }
+    }
+
+    // ==================== withdrawMissing() ====================
+
+    @Nested
+    @DisplayName("withdrawMissing() — tombstone-проход")
+    class WithdrawMissingTests {
+
+        @Test
+        @DisplayName("резервы выведенных товаров снимаются без возврата остатка до обнуления, строки заблокированы")
+        void withdrawn_HeldReleasedWithoutRestock() {
+            List<String> externalIds = List.of("FTK-60");
+            when(productRepository.lockByExternalIdOrParent(externalIds)).thenReturn(List.of(60L, 61L));
+            when(reservationRepository.releaseWithoutRestockByProductIdIn(eq(List.of(60L, 61L)), any()))
+                    .thenReturn(2);
+            // у варианта 61 свободного остатка нет — его держат только резервы
+            when(productRepository.findIdsInStockByExternalIdOrParent(externalIds)).thenReturn(List.of(60L));
+
+            ProductTombstoneResponse response = importService.withdrawMissing(
+                    ProductTombstoneRequest.builder().externalIds(externalIds).build());
+
+            org.mockito.InOrder order = org.mockito.Mockito.inOrder(productRepository, reservationRepository);
+            order.verify(productRepository).lockByExternalIdOrParent(externalIds);
+            order.verify(reservationRepository).releaseWithoutRestockByProductIdIn(eq(List.of(60L, 61L)), any());
+            order.verify(productRepository).zeroStockByIdIn(List.of(60L));
+            verify(productRepository, never()).increaseStock(any(), org.mockito.ArgumentMatchers.anyInt());
+            assertThat(response.getWithdrawn()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("ни одного выбывшего товара в каталоге — резервы и остатки не трогаются")
+        void nothingToWithdraw_NoUpdates() {
+            List<String> externalIds = List.of("GONE-1");
+            when(productRepository.lockByExternalIdOrParent(externalIds)).thenReturn(List.of());
+
+            ProductTombstoneResponse response = importService.withdrawMissing(
+                    ProductTombstoneRequest.builder().externalIds(externalIds).build());
+
+            verify(reservationRepository, never()).releaseWithoutRestockByProductIdIn(anyCollection(), any());
+            verify(productRepository, never()).zeroStockByIdIn(anyCollection());
+            assertThat(response.getWithdrawn()).isZero();
+        }
+    }
 }
@@ -13,6 +13,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
 import ru.rfsnab.productservice.exception.BusinessException;
 import ru.rfsnab.productservice.exception.CategoryNotFoundException;
 import ru.rfsnab.productservice.exception.ProductNotFoundException;
@@ -47,6 +48,12 @@ class ProductServiceTest {
     @Mock
     private SlugGeneratorService slugGenerator;
 
+    @Mock
+    private ProductFacetIndex facetIndex;
+
+    @Mock
+    private ProductDetailCache detailCache;
+
     @InjectMocks
     private ProductService productService;
 
@@ -106,6 +113,8 @@ class ProductServiceTest {
             assertThat(result.getId()).isEqualTo(2L);
             assertThat(result.getSlug()).isEqualTo("novyy-ognetushitel");
             verify(productRepository).save(any(Product.class));
+            verify(facetIndex).invalidateProducts(List.of(2L));
+            verify(detailCache).evictProducts(List.of(2L));
         }
 
         @Test
@@ -120,7 +129,11 @@ class ProductServiceTest {
             when(productRepository.existsBySlug("ognetushitel")).thenReturn(true);
             when(slugGenerator.makeUnique("ognetushitel", 2)).thenReturn("ognetushitel-2");
             when(productRepository.existsBySlug("ognetushitel-2")).thenReturn(false);
-            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+            when(productRepository.save(any(Product.class))).thenAnswer(inv -> {
+                Product p = inv.getArgument(0);
+                p.setId(3L);
+                return p;
+            });
 
             // When
             Product result = productService.createProduct(newProduct);
@@ -191,14 +204,16 @@ class ProductServiceTest {
         @DisplayName("increaseStock() увеличивает количество на складе")
         void increaseStock_ValidQuantity_IncreasesStock() {
             // Given
+            when(productRepository.increaseStock(1L, 50)).thenReturn(1);
+            testProduct.setStockQuantity(150);
             when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
-            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
 
             // When
             Product result = productService.increaseStock(1L, 50);
 
             // Then
             assertThat(result.getStockQuantity()).isEqualTo(150); // 100 + 50
+            verify(productRepository, never()).save(any(Product.class));
         }
 
         @Test
@@ -214,26 +229,42 @@ class ProductServiceTest {
         @DisplayName("decreaseStock() уменьшает количество на складе")
         void decreaseStock_ValidQuantity_DecreasesStock() {
             // Given
+            when(productRepository.decreaseStockIfAvailable(1L, 30)).thenReturn(1);
+            testProduct.setStockQuantity(70);
             when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
-            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
 
             // When
             Product result = productService.decreaseStock(1L, 30);
 
             // Then
             assertThat(result.getStockQuantity()).isEqualTo(70); // 100 - 30
+            verify(productRepository, never()).save(any(Product.class));
         }
 
         @Test
         @DisplayName("decreaseStock() выбрасывает исключение при недостатке товара")
         void decreaseStock_InsufficientStock_ThrowsException() {
             // Given
-            when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
+            when(productRepository.decreaseStockIfAvailable(1L, 200)).thenReturn(0);
+            when(productRepository.findStockQuantityById(1L)).thenReturn(Optional.of(100));
 
             // When & Then
             assertThatThrownBy(() -> productService.decreaseStock(1L, 200))
                     .isInstanceOf(BusinessException.class)
-                    .hasMessageContaining("Недостаточно товара");
+                    .hasMessageContaining("Недостаточно товара")
+                    .hasMessageContaining("100");
+        }
+
+        @Test
+        @DisplayName("decreaseStock() выбрасывает ProductNotFoundException для несуществующего товара")
+        void decreaseStock_UnknownProduct_ThrowsNotFound() {
+            // Given
+            when(productRepository.decreaseStockIfAvailable(99L, 1)).thenReturn(0);
+            when(productRepository.findStockQuantityById(99L)).thenReturn(Optional.empty());
+
+            // When & Then
+            assertThatThrownBy(() -> productService.decreaseStock(99L, 1))
+                    .isInstanceOf(ProductNotFoundException.class);
         }
 
         @Test
@@ -362,6 +393,33 @@ class ProductServiceTest {
             assertThat(results.getTotalPages()).isEqualTo(0);
         }
 
+        @Test
+        @DisplayName("searchProducts() с полнотекстовым индексом: нормализует запрос и отбрасывает сортировку")
+        void searchProducts_FullText_UsesRankedSearchWithoutSort() {
+            // Given
+            ReflectionTestUtils.setField(productService, "fullTextSearchEnabled", true);
+            Pageable pageable = PageRequest.of(0, 20, Sort.by("name"));
+            Page<Product> page = new PageImpl<>(List.of(testProduct), PageRequest.of(0, 20), 1);
+            when(productRepository.fullTextSearch("оп-4", "%оп-4%", PageRequest.of(0, 20))).thenReturn(page);
+
+            // When
+            Page<Product> results = productService.searchProducts("  ОП-4 ", pageable);
+
+            // Then
+            assertThat(results.getContent()).containsExactly(testProduct);
+            verify(productRepository, never()).searchByNameOrArticle(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("searchProducts() с полнотекстовым индексом: '%' и '_' запроса экранируются для LIKE")
+        void searchProducts_FullText_EscapesLikeWildcards() {
+            ReflectionTestUtils.setField(productService, "fullTextSearchEnabled", true);
+
+            productService.searchProducts("50%_OFF", PageRequest.of(0, 20));
+
+            verify(productRepository).fullTextSearch("50%_off", "%50\\%\\_off%", PageRequest.of(0, 20));
+        }
+
         @Test
         @DisplayName("searchProducts() возвращает вторую страницу результатов")
         void searchProducts_SecondPage_ReturnsCorrectPage() {
@@ -0,0 +1,157 @@
+package ru.rfsnab.productservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.rfsnab.productservice.BaseIntegrationTest;
+import ru.rfsnab.productservice.dto.StockReservationRequest.Line;
+import ru.rfsnab.productservice.exception.InsufficientStockException;
+import ru.rfsnab.productservice.model.Product;
+import ru.rfsnab.productservice.model.StockReservationStatus;
+import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочная проверка резервов на реальном PostgreSQL: много параллельных заказов
+ * на один «горячий» товар и встречные заказы на пару товаров.
+ */
+@DisplayName("StockReservationService: параллельные резервы")
+class StockReservationConcurrencyIntegrationTest extends BaseIntegrationTest {
+
+    private static final int THREADS = 32;
+
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        productRepository.deleteAll();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Product saveProduct(int stock) {
+        return productRepository.save(Product.builder()
+                .name("Товар " + System.nanoTime())
+                .slug("p-" + System.nanoTime())
+                .isActive(true)
+                .isVariantChild(false)
+                .stockQuantity(stock)
+                .build());
+    }
+
+    private int stockOf(Long productId) {
+        return productRepository.findStockQuantityById(productId).orElseThrow();
+    }
+
+    /** Запустить задачи одновременно (общий старт по защёлке) и дождаться всех. */
+    private void runConcurrently(List<Runnable> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    @DisplayName("горячий товар: успешно ровно stock/qty заказов, остаток не уходит в минус")
+    void hotProductIsNeverOversold() throws Exception {
+        Product hot = saveProduct(50);
+        int orders = 200;
+        int quantity = 2;
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            tasks.add(() -> {
+                try {
+                    reservationService.reserve(UUID.randomUUID(), List.of(new Line(hot.getId(), quantity)));
+                    reserved.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        runConcurrently(tasks);
+
+        assertThat(reserved.get()).isEqualTo(25);
+        assertThat(rejected.get()).isEqualTo(orders - 25);
+        assertThat(stockOf(hot.getId())).isZero();
+        assertThat(reservationRepository.findAll())
+                .hasSize(25)
+                .allSatisfy(r -> assertThat(r.getStatus()).isEqualTo(StockReservationStatus.RESERVED));
+    }
+
+    @Test
+    @DisplayName("встречные заказы на пару товаров не взаимоблокируются")
+    void crossOrderedLinesDoNotDeadlock() throws Exception {
+        Product a = saveProduct(1_000);
+        Product b = saveProduct(1_000);
+        int orders = 100;
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            // Половина заказов перечисляет позиции в обратном порядке
+            List<Line> lines = i % 2 == 0
+                    ? List.of(new Line(a.getId(), 1), new Line(b.getId(), 1))
+                    : List.of(new Line(b.getId(), 1), new Line(a.getId(), 1));
+            tasks.add(() -> reservationService.reserve(UUID.randomUUID(), lines));
+        }
+        runConcurrently(tasks);
+
+        assertThat(stockOf(a.getId())).isEqualTo(1_000 - orders);
+        assertThat(stockOf(b.getId())).isEqualTo(1_000 - orders);
+    }
+
+    @Test
+    @DisplayName("отмена и планировщик освобождают резерв ровно один раз")
+    void concurrentReleaseReturnsStockOnce() throws Exception {
+        Product product = saveProduct(10);
+        UUID orderId = UUID.randomUUID();
+        reservationService.reserve(orderId, List.of(new Line(product.getId(), 4)));
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(() -> reservationService.release(orderId));
+        }
+        runConcurrently(tasks);
+
+        assertThat(stockOf(product.getId())).isEqualTo(10);
+    }
+}
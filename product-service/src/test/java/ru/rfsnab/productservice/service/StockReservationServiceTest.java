@@ -0,0 +1,289 @@
+package ru.rfsnab.productservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.rfsnab.common.outbox.OutboxService;
+import ru.rfsnab.productservice.dto.StockReservationReply;
+import ru.rfsnab.productservice.dto.StockReservationRequest.Line;
+import ru.rfsnab.productservice.exception.InsufficientStockException;
+import ru.rfsnab.productservice.model.StockReservation;
+import ru.rfsnab.productservice.model.StockReservationStatus;
+import ru.rfsnab.productservice.repository.ProductRepository;
+import ru.rfsnab.productservice.repository.StockReservationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StockReservationService")
+class StockReservationServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StockReservationRepository reservationRepository;
+
+    @Mock
+    private ProductDetailCache detailCache;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private StockReservationService reservationService;
+
+    private final UUID orderId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationService, "reservationTtlMinutes", 30L);
+        ReflectionTestUtils.setField(reservationService, "closedRetentionDays", 30L);
+        ReflectionTestUtils.setField(reservationService, "repliesTopic", "checkout-stock-replies");
+    }
+
+    private StockReservation reservation(long id, long productId, int quantity) {
+        return StockReservation.builder()
+                .id(id).orderId(orderId).productId(productId).quantity(quantity)
+                .status(StockReservationStatus.RESERVED)
+                .build();
+    }
+
+    private StockReservation expired(long id, long productId, int quantity, LocalDateTime expiresAt) {
+        return StockReservation.builder()
+                .id(id).orderId(orderId).productId(productId).quantity(quantity)
+                .status(StockReservationStatus.EXPIRED)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    @Test
+    @DisplayName("reserve() списывает позиции в порядке id и схлопывает дубли")
+    void reserve_DecrementsInIdOrder() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of());
+        when(productRepository.decreaseStockIfAvailable(anyLong(), anyInt())).thenReturn(1);
+        when(reservationRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        List<StockReservation> result = reservationService.reserve(orderId,
+                List.of(new Line(7L, 1), new Line(3L, 2), new Line(7L, 4)));
+
+        InOrder order = inOrder(productRepository);
+        order.verify(productRepository).decreaseStockIfAvailable(3L, 2);
+        order.verify(productRepository).decreaseStockIfAvailable(7L, 5);
+        assertThat(result).extracting(StockReservation::getProductId).containsExactly(3L, 7L);
+        assertThat(result).allSatisfy(r -> {
+            assertThat(r.getStatus()).isEqualTo(StockReservationStatus.RESERVED);
+            assertThat(r.getExpiresAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @DisplayName("reserve() при нехватке бросает InsufficientStockException со всеми позициями и ничего не сохраняет")
+    void reserve_Shortage_ThrowsAndSavesNothing() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of());
+        when(productRepository.decreaseStockIfAvailable(1L, 5)).thenReturn(0);
+        when(productRepository.decreaseStockIfAvailable(2L, 1)).thenReturn(1);
+        when(productRepository.findStockQuantityById(1L)).thenReturn(Optional.of(3));
+
+        assertThatThrownBy(() -> reservationService.reserve(orderId, List.of(new Line(1L, 5), new Line(2L, 1))))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("товар 1")
+                .hasMessageContaining("доступно 3");
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("reserve() с тем же составом не трогает остатки (повтор запроса)")
+    void reserve_SameLines_IsIdempotent() {
+        List<StockReservation> active = List.of(reservation(10L, 1L, 2));
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(active);
+
+        assertThat(reservationService.reserve(orderId, List.of(new Line(1L, 2)))).isSameAs(active);
+        verify(productRepository, never()).decreaseStockIfAvailable(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("reserve() с новым составом заменяет старый резерв, списывая только разницу")
+    void reserve_ChangedLines_ReplacesReservation() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(reservation(10L, 1L, 2)));
+        when(reservationRepository.markReleased(eq(10L), any())).thenReturn(1);
+        when(productRepository.decreaseStockIfAvailable(1L, 2)).thenReturn(1);
+        when(reservationRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        reservationService.reserve(orderId, List.of(new Line(1L, 4)));
+
+        verify(productRepository).decreaseStockIfAvailable(1L, 2);
+        verify(productRepository, never()).increaseStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("reserve() при замене состава берёт строки товаров одним проходом в порядке id")
+    void reserve_ChangedLines_SinglePassInIdOrder() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(reservation(10L, 2L, 3), reservation(11L, 5L, 1)));
+        when(reservationRepository.markReleased(anyLong(), any())).thenReturn(1);
+        when(productRepository.decreaseStockIfAvailable(anyLong(), anyInt())).thenReturn(1);
+        when(reservationRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Товар 5 убран, товар 2 уменьшен, товары 1 и 7 добавлены
+        reservationService.reserve(orderId, List.of(new Line(7L, 2), new Line(2L, 1), new Line(1L, 4)));
+
+        InOrder order = inOrder(productRepository);
+        order.verify(productRepository).decreaseStockIfAvailable(1L, 4);
+        order.verify(productRepository).increaseStock(2L, 2);
+        order.verify(productRepository).increaseStock(5L, 1);
+        order.verify(productRepository).decreaseStockIfAvailable(7L, 2);
+    }
+
+    @Test
+    @DisplayName("reserve() при нехватке на новый состав учитывает остаток, который заказ уже держал")
+    void reserve_ChangedLines_ShortageCountsHeldStock() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(reservation(10L, 1L, 2)));
+        when(reservationRepository.markReleased(eq(10L), any())).thenReturn(1);
+        when(productRepository.decreaseStockIfAvailable(1L, 8)).thenReturn(0);
+        when(productRepository.findStockQuantityById(1L)).thenReturn(Optional.of(3));
+
+        assertThatThrownBy(() -> reservationService.reserve(orderId, List.of(new Line(1L, 10))))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("запрошено 10, доступно 5");
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("release() возвращает остаток только по резервам, которые перевёл в RELEASED")
+    void release_ReturnsStockOnlyOnce() {
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(reservation(10L, 1L, 2), reservation(11L, 2L, 3)));
+        when(reservationRepository.markReleased(eq(10L), any())).thenReturn(1);
+        when(reservationRepository.markReleased(eq(11L), any())).thenReturn(0);
+
+        reservationService.release(orderId);
+
+        verify(productRepository).increaseStock(1L, 2);
+        verify(productRepository, never()).increaseStock(2L, 3);
+    }
+
+    @Test
+    @DisplayName("fulfill() закрывает резерв отгрузкой без возврата остатка")
+    void fulfill_KeepsStockDecremented() {
+        when(reservationRepository.fulfillByOrderId(eq(orderId), any())).thenReturn(2);
+
+        reservationService.fulfill(orderId);
+
+        verify(reservationRepository).fulfillByOrderId(eq(orderId), any());
+        verify(productRepository, never()).increaseStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("releaseExpired() освобождает истёкшие резервы в порядке id товара и сообщает order-service")
+    void releaseExpired_ReleasesInProductOrder() {
+        when(reservationRepository.findExpired(any(), any()))
+                .thenReturn(List.of(reservation(20L, 9L, 1), reservation(21L, 4L, 2)));
+        when(reservationRepository.markExpired(anyLong(), any())).thenReturn(1);
+
+        assertThat(reservationService.releaseExpired()).isEqualTo(2);
+
+        InOrder order = inOrder(productRepository);
+        order.verify(productRepository).increaseStock(4L, 2);
+        order.verify(productRepository).increaseStock(9L, 1);
+        // Одно уведомление на заказ, а не на позицию
+        ArgumentCaptor<StockReservationReply> reply = ArgumentCaptor.forClass(StockReservationReply.class);
+        verify(outboxService).enqueue(eq("checkout-stock-replies"), eq(orderId.toString()), reply.capture());
+        assertThat(reply.getValue().status()).isEqualTo("EXPIRED");
+    }
+
+    @Test
+    @DisplayName("commit() после истечения резерва списывает товар последнего резерва заново")
+    void commit_AfterExpiry_ReservesAgain() {
+        LocalDateTime latest = LocalDateTime.now().minusMinutes(1);
+        when(reservationRepository.commitByOrderId(eq(orderId), any())).thenReturn(0);
+        when(reservationRepository.existsByOrderIdAndStatusIn(eq(orderId), anyCollection())).thenReturn(false);
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(expired(30L, 1L, 2, latest), expired(31L, 2L, 9, latest.minusHours(1)),
+                        expired(32L, 3L, 1, latest)));
+        when(productRepository.decreaseStockIfAvailable(anyLong(), anyInt())).thenReturn(1);
+
+        reservationService.commit(orderId);
+
+        verify(productRepository).decreaseStockIfAvailable(1L, 2);
+        verify(productRepository).decreaseStockIfAvailable(3L, 1);
+        verify(productRepository, never()).decreaseStockIfAvailable(2L, 9);
+        verify(reservationRepository).recommitExpired(eq(30L), any());
+        verify(reservationRepository).recommitExpired(eq(32L), any());
+        verify(outboxService, never()).enqueue(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("commit() после истечения резерва без остатка — ничего не списано, order-service получает LOST")
+    void commit_AfterExpiry_ShortageReportsLost() {
+        LocalDateTime latest = LocalDateTime.now().minusMinutes(1);
+        when(reservationRepository.commitByOrderId(eq(orderId), any())).thenReturn(0);
+        when(reservationRepository.existsByOrderIdAndStatusIn(eq(orderId), anyCollection())).thenReturn(false);
+        when(reservationRepository.findByOrderIdAndStatusInOrderByProductIdAsc(eq(orderId), anyCollection()))
+                .thenReturn(List.of(expired(30L, 1L, 2, latest), expired(31L, 2L, 5, latest)));
+        when(productRepository.decreaseStockIfAvailable(1L, 2)).thenReturn(1);
+        when(productRepository.decreaseStockIfAvailable(2L, 5)).thenReturn(0);
+        when(productRepository.findStockQuantityById(2L)).thenReturn(Optional.of(1));
+
+        reservationService.commit(orderId);
+
+        verify(productRepository).increaseStock(1L, 2);
+        verify(reservationRepository, never()).recommitExpired(anyLong(), any());
+        ArgumentCaptor<StockReservationReply> reply = ArgumentCaptor.forClass(StockReservationReply.class);
+        verify(outboxService).enqueue(eq("checkout-stock-replies"), eq(orderId.toString()), reply.capture());
+        assertThat(reply.getValue().status()).isEqualTo("LOST");
+        assertThat(reply.getValue().reason()).contains("товар 2");
+    }
+
+    @Test
+    @DisplayName("повторный commit() подтверждённого резерва ничего не восстанавливает")
+    void commit_AlreadyCommitted_NoOp() {
+        when(reservationRepository.commitByOrderId(eq(orderId), any())).thenReturn(0);
+        when(reservationRepository.existsByOrderIdAndStatusIn(eq(orderId), anyCollection())).thenReturn(true);
+
+        reservationService.commit(orderId);
+
+        verify(productRepository, never()).decreaseStockIfAvailable(anyLong(), anyInt());
+        verify(outboxService, never()).enqueue(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("purgeClosed() удаляет пачку закрытых резервов старше срока хранения")
+    void purgeClosed_DeletesOlderThanRetention() {
+        when(reservationRepository.deleteClosedBefore(any(), anyInt())).thenReturn(3);
+
+        assertThat(reservationService.purgeClosed()).isEqualTo(3);
+
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(reservationRepository).deleteClosedBefore(before.capture(), anyInt());
+        assertThat(before.getValue()).isBefore(LocalDateTime.now().minusDays(29));
+    }
+}
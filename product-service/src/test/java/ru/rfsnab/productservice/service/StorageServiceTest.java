@@ -16,6 +16,8 @@ import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.IOException;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
@@ -90,6 +92,61 @@ class StorageServiceTest {
         }
     }
 
+    // ==================== uploadStream() Tests ====================
+
+    @Nested
+    @DisplayName("uploadStream()")
+    class UploadStreamTests {
+
+        @Test
+        @DisplayName("содержимое меньше одной части уходит обычным PutObject")
+        void uploadStream_SmallContent_SinglePut() throws IOException {
+            when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                    .thenReturn(PutObjectResponse.builder().build());
+
+            storageService.uploadStream("price-lists/1/1.xlsx", "application/xlsx",
+                    out -> out.write("small".getBytes()));
+
+            verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+            verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        }
+
+        @Test
+        @DisplayName("большое содержимое грузится частями и собирается CompleteMultipartUpload")
+        void uploadStream_LargeContent_MultipartUpload() throws IOException {
+            when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                    .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+            when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                    .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+            storageService.uploadStream("price-lists/1/1.xlsx", "application/xlsx",
+                    out -> out.write(new byte[S3MultipartOutputStream.PART_SIZE * 2 + 10]));
+
+            verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+            verify(s3Client).completeMultipartUpload(argThat((CompleteMultipartUploadRequest r) ->
+                    "upload-1".equals(r.uploadId()) && r.multipartUpload().parts().size() == 3));
+            verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        }
+
+        @Test
+        @DisplayName("ошибка записи после первой части отменяет multipart-загрузку")
+        void uploadStream_WriterFails_AbortsUpload() {
+            when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                    .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+            when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                    .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+            assertThatThrownBy(() -> storageService.uploadStream("price-lists/1/2.xlsx", "application/xlsx", out -> {
+                out.write(new byte[S3MultipartOutputStream.PART_SIZE + 1]);
+                throw new IOException("disk full");
+            })).isInstanceOf(IOException.class).hasMessage("disk full");
+
+            verify(s3Client).abortMultipartUpload(argThat((AbortMultipartUploadRequest r) ->
+                    "upload-2".equals(r.uploadId())));
+            verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        }
+    }
+
     // ==================== deleteFile() Tests ====================
 
     @Nested
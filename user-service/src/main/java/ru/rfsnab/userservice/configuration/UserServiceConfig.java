@@ -13,8 +13,9 @@ public class UserServiceConfig {
         return new BCryptPasswordEncoder();
     }
 
+    /** Пул соединений, таймауты и bulkhead подключает http-client-common через RestClient.Builder. */
     @Bean
-    public RestClient restClient() {
-        return RestClient.create();
+    public RestClient restClient(RestClient.Builder restClientBuilder) {
+        return restClientBuilder.build();
     }
 }
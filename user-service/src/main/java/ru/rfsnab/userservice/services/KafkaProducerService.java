@@ -2,22 +2,26 @@ package ru.rfsnab.userservice.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import ru.rfsnab.common.outbox.OutboxService;
 import ru.rfsnab.userservice.models.kafka.UserEvent;
 
+/**
+ * События пользователя. Пишутся в outbox в транзакции вызывающего метода
+ * и уходят в Kafka релеем (OutboxRelay).
+ */
 @Service
 @RequiredArgsConstructor
 public class KafkaProducerService {
-    private final KafkaTemplate<String, UserEvent> kafkaTemplate;
+    private final OutboxService outboxService;
     @Value("${app.kafka.topic.user-events}")
     private String userEventsTopic;
 
     public void sendUserRegisteredEvent(UserEvent event){
-        try{
-            kafkaTemplate.send(userEventsTopic, event.getUserId().toString(), event);
-        } catch (Exception e){
-            throw new RuntimeException("Failed to send Kafka event", e);
-        }
+        outboxService.enqueue(userEventsTopic, event.getUserId().toString(), event);
+    }
+
+    public void sendUserProfileUpdatedEvent(UserEvent event){
+        outboxService.enqueue(userEventsTopic, event.getUserId().toString(), event);
     }
 }
@@ -1,31 +1,25 @@
 package ru.rfsnab.userservice.services;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import ru.rfsnab.common.outbox.OutboxService;
 import ru.rfsnab.userservice.models.kafka.LegalEntityEvent;
 
 /**
  * Kafka-продюсер для событий жизненного цикла юридического лица.
+ * События пишутся в outbox в транзакции изменения юрлица (см. OutboxRelay).
  */
-@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LegalEntityKafkaProducerService {
 
-    private final KafkaTemplate<String, LegalEntityEvent> legalEntityKafkaTemplate;
+    private final OutboxService outboxService;
 
     @Value("${app.kafka.topic.legal-entity-events}")
     private String topic;
 
     public void send(LegalEntityEvent event) {
-        legalEntityKafkaTemplate.send(topic, event.legalEntityId().toString(), event)
-                .whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        log.error("Failed to send LegalEntityEvent: {}", event.eventType(), ex);
-                    }
-                });
+        outboxService.enqueue(topic, event.legalEntityId().toString(), event);
     }
 }
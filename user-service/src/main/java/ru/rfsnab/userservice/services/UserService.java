@@ -47,6 +47,7 @@ public class UserService {
         return user;
     }
 
+    @Transactional
     public UserEntity registerUser(UserEntity user){
         if (user.getPhone() != null && userRepository.existsByPhone(user.getPhone())) {
             throw new UserAlreadyExistsException("Пользователь с таким номером телефона уже существует");
@@ -71,6 +72,7 @@ public class UserService {
         return savedUser;
     }
 
+    @Transactional
     public UserEntity updateUser(Long id,UserEntity user){
         return userRepository.findById(id)
                 .map(
@@ -84,7 +86,9 @@ public class UserService {
                             userEntity.setSurname(user.getSurname());
                             userEntity.setPhone(user.getPhone());
                             userEntity.setRoles(user.getRoles());
-                            return userRepository.save(userEntity);
+                            UserEntity saved = userRepository.save(userEntity);
+                            publishProfileUpdated(saved);
+                            return saved;
                         }
                 ).orElseThrow(()->new RuntimeException(String.format("User with id = %s not found", id)));
     }
@@ -165,7 +169,9 @@ public class UserService {
         if (firstname != null) user.setFirstname(firstname);
         if (lastname != null) user.setLastname(lastname);
         if (phone != null) user.setPhone(phone);
-        return userRepository.save(user);
+        UserEntity saved = userRepository.save(user);
+        publishProfileUpdated(saved);
+        return saved;
     }
 
     @Transactional
@@ -219,6 +225,20 @@ public class UserService {
         return missing;
     }
 
+    /**
+     * Профиль изменён — order-service сбрасывает по этому событию закэшированную заполненность профиля.
+     */
+    private void publishProfileUpdated(UserEntity user) {
+        kafkaProducerService.sendUserProfileUpdatedEvent(UserEvent.builder()
+                .eventType("USER_PROFILE_UPDATED")
+                .userId(user.getId())
+                .email(user.getEmail())
+                .firstName(user.getFirstname())
+                .lastName(user.getLastname())
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+
     private boolean isBlank(String value) {
         return value == null || value.isBlank();
     }
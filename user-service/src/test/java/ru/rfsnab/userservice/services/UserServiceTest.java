@@ -168,6 +168,7 @@ class UserServiceTest {
         assertThat(result.getRoles()).hasSize(1);
         verify(userRepository, times(1)).findById(1L);
         verify(userRepository, times(1)).save(any(UserEntity.class));
+        verify(kafkaProducerService, times(1)).sendUserProfileUpdatedEvent(any(UserEvent.class));
     }
 
     @Test